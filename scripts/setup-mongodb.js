@@ -80,6 +80,95 @@ db.extracted_events.createIndex(
   { name: "idx_status_retry" }
 );
 
+// Buffer for async custom event ingestion: due events and claimed batches
+db.pending_custom_events.createIndex(
+  { "status": 1, "nextAttemptAt": 1 }, 
+  { name: "idx_status_next_attempt" }
+);
+
+db.pending_custom_events.createIndex(
+  { "claimToken": 1 }, 
+  { sparse: true, name: "idx_claim_token" }
+);
+
+// Local user and account snapshots
+db.entity_snapshots.createIndex(
+  { "tenantId": 1, "kind": 1, "entityId": 1 }, 
+  { unique: true, name: "idx_tenant_kind_entity" }
+);
+
+db.entity_snapshots.createIndex(
+  { "tenantId": 1, "accountId": 1 }, 
+  { sparse: true, name: "idx_tenant_account" }
+);
+
+db.snapshot_sync_state.createIndex(
+  { "tenantId": 1 }, 
+  { name: "idx_tenant_id" }
+);
+
+db.tenant_run_leases.createIndex(
+  { "tenantId": 1 }, 
+  { name: "idx_tenant_id" }
+);
+
+// Capped: keeps the most recent finished jobs (gainsight.jobs.history-max-*)
+db.createCollection("extraction_jobs", { capped: true, size: 16777216, max: 10000 });
+
+db.extraction_jobs.createIndex(
+  { "tenantId": 1, "finishedAt": -1 }, 
+  { name: "idx_tenant_finished" }
+);
+
+db.extraction_checkpoints.createIndex(
+  { "caughtUp": 1, "tenantId": 1 }, 
+  { name: "idx_caught_up_tenant" }
+);
+
+db.payload_dictionaries.createIndex(
+  { "tenantId": 1, "version": -1 }, 
+  { name: "idx_tenant_version" }
+);
+
+// Unreferenced payloads are collected by refCount (gainsight.payload.storage=content-addressed)
+db.event_payloads.createIndex(
+  { "refCount": 1 }, 
+  { name: "idx_ref_count" }
+);
+
+db.event_payloads.createIndex(
+  { "tenantId": 1 }, 
+  { name: "idx_tenant_id" }
+);
+
+// Event query API (also created on startup by EventQueryService)
+db.extracted_events.createIndex(
+  { "tenantId": 1, "eventName": 1, "eventTimestamp": -1 }, 
+  { name: "idx_tenant_name_ts" }
+);
+
+db.extracted_events.createIndex(
+  { "tenantId": 1, "eventType": 1, "eventTimestamp": -1 }, 
+  { name: "idx_tenant_type_ts" }
+);
+
+db.extracted_events.createIndex(
+  { "tenantId": 1, "eventTimestamp": -1 }, 
+  { name: "idx_tenant_ts" }
+);
+
+// Promoted property backfills walk one tenant's events in _id order (also created on startup)
+db.extracted_events.createIndex(
+  { "tenantId": 1, "_id": 1 }, 
+  { name: "idx_tenant_doc_id" }
+);
+
+// Promoted properties get one partial index per name, created by PropertyPromotionService, e.g.:
+// db.extracted_events.createIndex(
+//   { "tenantId": 1, "promoted.url": 1, "eventTimestamp": -1 },
+//   { name: "idx_promoted_url", partialFilterExpression: { "promoted.url": { $exists: true } } }
+// );
+
 // Print current indexes
 print("\nIndexes for tenant_configurations:");
 db.tenant_configurations.getIndexes().forEach(function(index) {
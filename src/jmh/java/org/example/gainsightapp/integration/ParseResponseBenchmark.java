@@ -0,0 +1,87 @@
+package org.example.gainsightapp.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.fixtures.GainsightPageFixtures;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Throughput of turning a raw page body into a {@link MultiTenantGainsightPXClient.GainsightResponse},
+ * from a String and from an identity or gzip-encoded byte stream as read off the wire.
+ * Run with {@code -prof gc} (the profile default) to see bytes allocated per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ParseResponseBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int pageSize;
+
+    @Param({"CUSTOM", "STANDARD"})
+    public GainsightPageFixtures.Shape shape;
+
+    private MultiTenantGainsightPXClient client;
+    private ResponseEntity<String> response;
+    private TenantConfiguration tenant;
+    private byte[] identityBody;
+    private byte[] gzipBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        ExtractionMetrics metrics = new ExtractionMetrics(new SimpleMeterRegistry(), 200);
+        client = new MultiTenantGainsightPXClient(
+            new GainsightHttpClientPool(10, 10, 1000, 1000, 30, 30, metrics), objectMapper, metrics,
+            new GainsightCircuitBreakers(3, 10, 60, 3600, metrics));
+        response = new ResponseEntity<>(
+            GainsightPageFixtures.page(objectMapper, shape, pageSize, 42L), HttpStatus.OK);
+        tenant = new TenantConfiguration("bench", "Benchmark", "key", "http://localhost");
+        identityBody = response.getBody().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(identityBody);
+        }
+        gzipBody = compressed.toByteArray();
+    }
+
+    @Benchmark
+    public MultiTenantGainsightPXClient.GainsightResponse parseGainsightResponse() {
+        return client.parseGainsightResponse(response);
+    }
+
+    @Benchmark
+    public MultiTenantGainsightPXClient.GainsightResponse readIdentityPage() throws IOException {
+        return client.readPage(tenant, shape.name(), 0, HttpStatus.OK, null, new ByteArrayInputStream(identityBody));
+    }
+
+    @Benchmark
+    public MultiTenantGainsightPXClient.GainsightResponse readGzipPage() throws IOException {
+        return client.readPage(tenant, shape.name(), 0, HttpStatus.OK, "gzip", new ByteArrayInputStream(gzipBody));
+    }
+}
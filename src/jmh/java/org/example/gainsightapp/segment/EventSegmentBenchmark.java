@@ -0,0 +1,87 @@
+package org.example.gainsightapp.segment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to aggregate one tenant-day segment per hour: over all rows, restricted to a few event
+ * names (whole runs skipped), and with a promoted property predicate on top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class EventSegmentBenchmark {
+
+    private static final long DAY_START = 1_714_521_600_000L;
+    private static final int DAY_MILLIS = 86_400_000;
+
+    @Param({"1000000"})
+    public int rows;
+
+    private Path file;
+    private EventSegment segment;
+    private int[] hours;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42L);
+        EventSegmentWriter writer = new EventSegmentWriter(DAY_START, List.of("promoted.plan:STRING"));
+        String[] plans = {"free", "pro", "enterprise"};
+        for (int i = 0; i < rows; i++) {
+            writer.add("event_" + random.nextInt(200), random.nextInt(4) == 0 ? "STANDARD" : "CUSTOM",
+                DAY_START + random.nextInt(DAY_MILLIS), "user_" + random.nextInt(20_000),
+                new String[] {plans[random.nextInt(plans.length)]});
+        }
+        file = Files.createTempFile("event-segment", ".seg");
+        writer.write(file);
+        segment = EventSegment.open(file);
+
+        hours = new int[25];
+        for (int hour = 0; hour <= 24; hour++) {
+            hours[hour] = hour * 3_600_000;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<EventSegment.Group> allEvents() {
+        return segment.aggregate(new EventSegment.Filter(null, null, null), hours);
+    }
+
+    @Benchmark
+    public List<EventSegment.Group> fewNames() {
+        return segment.aggregate(new EventSegment.Filter(null, Set.of("event_1", "event_2", "event_3"), null), hours);
+    }
+
+    @Benchmark
+    public List<EventSegment.Group> withPredicate() {
+        return segment.aggregate(new EventSegment.Filter("CUSTOM", null, Map.of("promoted.plan:STRING", "pro")), hours);
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers;
+import org.example.gainsightapp.integration.GainsightHttpClientPool;
+import org.example.gainsightapp.integration.MultiTenantGainsightPXClient;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.repository.EntitySnapshotRepository;
+import org.example.gainsightapp.repository.ExtractedEventRepository;
+import org.example.gainsightapp.repository.TenantConfigurationRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Wires a {@link GainsightEventExtractionService} without Spring or MongoDB for benchmarks.
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static ObjectMapper objectMapper() {
+        return new ObjectMapper().registerModule(new JavaTimeModule());
+    }
+
+    static GainsightEventExtractionService extractionService(ObjectMapper objectMapper) {
+        ExtractionMetrics metrics = new ExtractionMetrics(new SimpleMeterRegistry(), 200);
+        GainsightCircuitBreakers circuitBreakers = new GainsightCircuitBreakers(3, 10, 60, 3600, metrics);
+        return new GainsightEventExtractionService(
+            new MultiTenantGainsightPXClient(
+                new GainsightHttpClientPool(10, 10, 1000, 1000, 30, 30, metrics), objectMapper, metrics, circuitBreakers),
+            stub(TenantConfigurationRepository.class),
+            new TenantRegistry(stub(TenantConfigurationRepository.class), null, circuitBreakers, metrics),
+            stub(ExtractedEventRepository.class),
+            new ExtractedEventMapper(objectMapper),
+            metrics,
+            circuitBreakers,
+            new EventEnricher(stub(EntitySnapshotRepository.class), objectMapper, metrics,
+                false, "", "", 1, 1),
+            new PayloadStore(null, metrics, "inline", 1),
+            new PayloadCodec(null, metrics, false, "inline", 1, 1, 1, 1),
+            new MemoryBudget(metrics, 0, 1, 1, 1, 1),
+            new TenantRunCoordinator(null, metrics, 600), // runs are never started here
+            new ExtractionJobService(null, metrics, 1, 1),
+            new ExtractionCheckpointStore(null),
+            1,
+            1);
+    }
+
+    /** Repository stub: every lookup answers "absent", saves return their argument. */
+    @SuppressWarnings("unchecked")
+    static <T> T stub(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+                return false;
+            }
+            if (returnType == long.class) {
+                return 0L;
+            }
+            if (returnType == int.class) {
+                return 0;
+            }
+            if (returnType == Optional.class) {
+                return Optional.empty();
+            }
+            if (List.class.isAssignableFrom(returnType)) {
+                return List.of();
+            }
+            return method.getName().startsWith("save") && args != null ? args[0] : null;
+        });
+    }
+}
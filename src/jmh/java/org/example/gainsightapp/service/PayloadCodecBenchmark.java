@@ -0,0 +1,124 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.gainsightapp.fixtures.GainsightPageFixtures;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+/**
+ * CPU cost of the payload codec per page, with a dictionary trained from other events of the
+ * same shape and without one. The {@code rawBytes} and {@code storedBytes} counters give the
+ * compression ratio of each variant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class PayloadCodecBenchmark {
+
+    @Param({"100"})
+    public int pageSize;
+
+    @Param({"CUSTOM", "STANDARD"})
+    public GainsightPageFixtures.Shape shape;
+
+    private static final byte[] NO_DICTIONARY = new byte[0];
+
+    private byte[] dictionary;
+    private List<byte[]> payloads;
+    private List<byte[]> compressed;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+        public long rawBytes;
+        public long storedBytes;
+    }
+
+    @State(Scope.Thread)
+    public static class Codec {
+        Deflater deflater;
+
+        @Setup
+        public void setUp() {
+            deflater = new Deflater(6, true);
+        }
+
+        @TearDown
+        public void tearDown() {
+            deflater.end();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper objectMapper = BenchmarkSupport.objectMapper();
+        List<String> samples = new ArrayList<>();
+        for (JsonNode event : GainsightPageFixtures.events(objectMapper, shape, 500, 7L)) {
+            samples.add(event.toString());
+        }
+        dictionary = PayloadCodec.train(samples, PayloadCodec.MAX_DICTIONARY_BYTES);
+
+        payloads = new ArrayList<>();
+        compressed = new ArrayList<>();
+        Deflater deflater = new Deflater(6, true);
+        for (JsonNode event : GainsightPageFixtures.events(objectMapper, shape, pageSize, 42L)) {
+            byte[] raw = event.toString().getBytes(StandardCharsets.UTF_8);
+            payloads.add(raw);
+            compressed.add(PayloadCodec.compress(deflater, dictionary, raw));
+        }
+        deflater.end();
+    }
+
+    @Benchmark
+    public long compressWithDictionary(Codec codec, Bytes bytes) {
+        return compressPage(codec, bytes, dictionary);
+    }
+
+    @Benchmark
+    public long compressWithoutDictionary(Codec codec, Bytes bytes) {
+        return compressPage(codec, bytes, NO_DICTIONARY);
+    }
+
+    @Benchmark
+    public long decompressWithDictionary() throws DataFormatException {
+        long total = 0;
+        for (byte[] payload : compressed) {
+            total += PayloadCodec.decompress(dictionary, payload).length;
+        }
+        return total;
+    }
+
+    private long compressPage(Codec codec, Bytes bytes, byte[] dictionary) {
+        long total = 0;
+        for (byte[] payload : payloads) {
+            int stored = PayloadCodec.compress(codec.deflater, dictionary, payload).length;
+            bytes.rawBytes += payload.length;
+            bytes.storedBytes += stored;
+            total += stored;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.gainsightapp.fixtures.GainsightPageFixtures;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of mapping a parsed page to {@link ExtractedEvent}s (id/name/timestamp
+ * extraction and payload serialization).
+ *
+ * The duplicate check is stubbed to "not seen", so the numbers cover the CPU side of
+ * {@code processEvents} without a MongoDB round-trip per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ProcessEventsBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int pageSize;
+
+    @Param({"CUSTOM", "STANDARD"})
+    public GainsightPageFixtures.Shape shape;
+
+    private GainsightEventExtractionService service;
+    private TenantConfiguration tenant;
+    private JsonNode events;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = BenchmarkSupport.objectMapper();
+        service = BenchmarkSupport.extractionService(objectMapper);
+        tenant = new TenantConfiguration("bench-tenant", "Bench Corp", "key", "http://localhost");
+        events = GainsightPageFixtures.events(objectMapper, shape, pageSize, 42L);
+    }
+
+    @Benchmark
+    public List<ExtractedEvent> processEvents() {
+        return service.processEvents(tenant, events, shape.name());
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.gainsightapp.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@code parseTimestamp} for each format the API is seen to send.
+ * Later formats in the fallback list (and epoch millis, which is tried last) pay for
+ * every failed attempt before them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class TimestampParseBenchmark {
+
+    @Param({"2024-05-01T12:34:56", "2024-05-01T12:34:56.789Z", "2024-05-01 12:34:56", "1714566896789"})
+    public String timestamp;
+
+    private ExtractedEventMapper eventMapper;
+
+    @Setup
+    public void setUp() {
+        eventMapper = new ExtractedEventMapper(BenchmarkSupport.objectMapper());
+    }
+
+    @Benchmark
+    public LocalDateTime parseTimestamp() {
+        return eventMapper.parseTimestamp(timestamp);
+    }
+}
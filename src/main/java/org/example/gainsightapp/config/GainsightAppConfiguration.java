@@ -2,6 +2,7 @@ package org.example.gainsightapp.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.example.gainsightapp.integration.GainsightHttpClientPool;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.retry.annotation.EnableRetry;
@@ -14,13 +15,9 @@ import org.springframework.web.client.RestTemplate;
 public class GainsightAppConfiguration {
     
     @Bean
-    public RestTemplate restTemplate() {
-        RestTemplate restTemplate = new RestTemplate();
-        
-        // Configure timeouts
-        restTemplate.getRequestFactory();
-        
-        return restTemplate;
+    public RestTemplate restTemplate(GainsightHttpClientPool httpClientPool) {
+        // Pooled, keep-alive client with connect/read timeouts; see GainsightHttpClientPool
+        return httpClientPool.restTemplate();
     }
     
     @Bean
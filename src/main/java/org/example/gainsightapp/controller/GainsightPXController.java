@@ -1,41 +1,150 @@
 package org.example.gainsightapp.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import org.example.gainsightapp.integration.GainsightLookupCache;
 import org.example.gainsightapp.integration.GainsightPXClient;
+import org.example.gainsightapp.integration.MultiTenantGainsightPXClient;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.service.CustomEventIngestionService;
+import org.example.gainsightapp.service.TenantRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/gainsight")
 public class GainsightPXController {
 
+    // Upstream headers relayed with a streamed body; hop-by-hop headers are left to the container
+    private static final List<String> RELAYED_HEADERS = List.of(
+        HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_ENCODING, HttpHeaders.CONTENT_LENGTH,
+        HttpHeaders.ETAG, HttpHeaders.VARY, HttpHeaders.RETRY_AFTER);
+
     private final GainsightPXClient pxClient;
+    private final GainsightLookupCache lookupCache;
+    private final MultiTenantGainsightPXClient tenantClient;
+    private final TenantRegistry tenantRegistry;
+    private final CustomEventIngestionService ingestionService;
 
-    public GainsightPXController(GainsightPXClient pxClient) {
+    public GainsightPXController(GainsightPXClient pxClient, GainsightLookupCache lookupCache,
+                                 MultiTenantGainsightPXClient tenantClient, TenantRegistry tenantRegistry,
+                                 ObjectProvider<CustomEventIngestionService> ingestionService) {
         this.pxClient = pxClient;
+        this.lookupCache = lookupCache;
+        this.tenantClient = tenantClient;
+        this.tenantRegistry = tenantRegistry;
+        // Only present with gainsight.ingestion.mode=async
+        this.ingestionService = ingestionService.getIfAvailable();
     }
 
     @GetMapping("/users")
-    public ResponseEntity<?> getUsers(
+    public void getUsers(
             @RequestParam(required = false) Integer pageSize,
-            @RequestParam(required = false) String scrollId
-    ) {
-        return pxClient.listUsers(pageSize, scrollId);
+            @RequestParam(required = false) String scrollId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        pxClient.streamUsers(pageSize, scrollId, acceptEncoding, upstream -> relay(upstream, response));
     }
 
     @GetMapping("/user/{id}")
-    public ResponseEntity<?> getUser(@PathVariable String id) {
-        return pxClient.getUserById(id);
+    public ResponseEntity<?> getUser(@PathVariable String id,
+                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return toResponse(lookupCache.getUser(id), ifNoneMatch);
     }
 
     @GetMapping("/account/{id}")
-    public ResponseEntity<?> getAccount(@PathVariable String id) {
-        return pxClient.getAccountById(id);
+    public ResponseEntity<?> getAccount(@PathVariable String id,
+                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return toResponse(lookupCache.getAccount(id), ifNoneMatch);
     }
 
     @PostMapping("/event")
-    public ResponseEntity<?> postEvent(@RequestBody Map<String, Object> eventPayload) {
-        return pxClient.sendCustomEvent(eventPayload);
+    public ResponseEntity<?> postEvent(@RequestBody JsonNode eventPayload,
+                                       @RequestParam(required = false) String tenantId) {
+        if (ingestionService != null) {
+            try {
+                int accepted = ingestionService.accept(tenantId, eventPayload);
+                return ResponseEntity.accepted().body(Map.of("accepted", accepted));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            } catch (IllegalStateException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", e.getMessage()));
+            }
+        }
+
+        if (!eventPayload.isObject()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Event batches require gainsight.ingestion.mode=async"));
+        }
+        if (tenantId == null) {
+            return pxClient.sendCustomEvent(eventPayload.toString());
+        }
+        TenantConfiguration tenant = tenantRegistry.getTenant(tenantId).orElse(null);
+        if (tenant == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Tenant not found: " + tenantId));
+        }
+        return ResponseEntity.status(tenantClient.sendCustomEvent(tenant, eventPayload.toString())).build();
+    }
+
+    /**
+     * Copies status, relevant headers and the raw body through a fixed-size buffer, so memory
+     * use does not depend on the size of the upstream page.
+     */
+    private static Void relay(ClientHttpResponse upstream, HttpServletResponse response) throws IOException {
+        response.setStatus(upstream.getStatusCode().value());
+        for (String header : RELAYED_HEADERS) {
+            List<String> values = upstream.getHeaders().get(header);
+            if (values != null) {
+                values.forEach(value -> response.addHeader(header, value));
+            }
+        }
+        try (InputStream body = upstream.getBody()) {
+            OutputStream out = response.getOutputStream();
+            StreamUtils.copy(body, out);
+            out.flush();
+        }
+        return null;
+    }
+
+    private ResponseEntity<?> toResponse(GainsightLookupCache.Entry entry, String ifNoneMatch) {
+        if (entry.etag() != null && matches(ifNoneMatch, entry.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entry.etag()).build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(entry.status());
+        if (entry.etag() != null) {
+            response.eTag(entry.etag());
+        }
+        return response.body(entry.body());
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String current = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = stripWeak(candidate.trim());
+            if (tag.equals("*") || tag.equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
     }
 }
\ No newline at end of file
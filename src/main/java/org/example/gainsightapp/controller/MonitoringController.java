@@ -1,9 +1,14 @@
 package org.example.gainsightapp.controller;
 
+import org.example.gainsightapp.integration.GainsightCircuitBreakers;
+import org.example.gainsightapp.integration.GainsightHttpClientPool;
+import org.example.gainsightapp.model.SnapshotSyncState;
 import org.example.gainsightapp.model.TenantConfiguration;
 import org.example.gainsightapp.repository.ExtractedEventRepository;
 import org.example.gainsightapp.repository.TenantConfigurationRepository;
+import org.example.gainsightapp.service.SnapshotSyncService;
 import org.example.gainsightapp.service.TenantManagementService;
+import org.example.gainsightapp.service.TenantRegistry;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -21,14 +26,26 @@ public class MonitoringController {
     private final TenantConfigurationRepository tenantRepository;
     private final ExtractedEventRepository eventRepository;
     private final TenantManagementService tenantService;
+    private final TenantRegistry tenantRegistry;
+    private final GainsightHttpClientPool httpClientPool;
+    private final GainsightCircuitBreakers circuitBreakers;
+    private final SnapshotSyncService snapshotSyncService;
     
     public MonitoringController(
             TenantConfigurationRepository tenantRepository,
             ExtractedEventRepository eventRepository,
-            TenantManagementService tenantService) {
+            TenantManagementService tenantService,
+            TenantRegistry tenantRegistry,
+            GainsightHttpClientPool httpClientPool,
+            GainsightCircuitBreakers circuitBreakers,
+            SnapshotSyncService snapshotSyncService) {
         this.tenantRepository = tenantRepository;
         this.eventRepository = eventRepository;
         this.tenantService = tenantService;
+        this.tenantRegistry = tenantRegistry;
+        this.httpClientPool = httpClientPool;
+        this.circuitBreakers = circuitBreakers;
+        this.snapshotSyncService = snapshotSyncService;
     }
     
     @GetMapping("/health")
@@ -37,8 +54,8 @@ public class MonitoringController {
         
         try {
             // Basic service health
-            long totalTenants = tenantRepository.count();
-            long activeTenants = tenantRepository.findByActiveTrue().size();
+            long totalTenants = tenantRegistry.size();
+            long activeTenants = tenantRegistry.getActiveTenants().size();
             long totalEvents = eventRepository.count();
             
             health.put("status", "UP");
@@ -80,8 +97,8 @@ public class MonitoringController {
             LocalDateTime last24Hours = LocalDateTime.now().minusHours(24);
             
             // Tenant metrics
-            long totalTenants = tenantRepository.count();
-            long activeTenants = tenantRepository.findByActiveTrue().size();
+            long totalTenants = tenantRegistry.size();
+            long activeTenants = tenantRegistry.getActiveTenants().size();
             
             metrics.put("tenants", Map.of(
                 "total", totalTenants,
@@ -99,7 +116,7 @@ public class MonitoringController {
             ));
             
             // Extraction status
-            List<TenantConfiguration> allTenants = tenantRepository.findAll();
+            List<TenantConfiguration> allTenants = tenantRegistry.getAllTenants();
             long successfulExtractions = allTenants.stream()
                 .filter(t -> t.getLastSuccessfulExtraction() != null)
                 .filter(t -> t.getLastSuccessfulExtraction().isAfter(last24Hours))
@@ -114,6 +131,10 @@ public class MonitoringController {
                 "failed", failedExtractions
             ));
             
+            // HTTP connection pool
+            metrics.put("httpPool", httpClientPool.getPoolStatistics());
+            metrics.put("openCircuits", circuitBreakers.getOpenBreakers());
+            
             metrics.put("timestamp", LocalDateTime.now());
             
             return ResponseEntity.ok(metrics);
@@ -146,7 +167,7 @@ public class MonitoringController {
             }
             
             // Gainsight PX connectivity (test with first active tenant)
-            List<TenantConfiguration> activeTenants = tenantRepository.findByActiveTrue();
+            List<TenantConfiguration> activeTenants = tenantRegistry.getActiveTenants();
             if (!activeTenants.isEmpty()) {
                 TenantConfiguration firstTenant = activeTenants.get(0);
                 boolean connectionValid = tenantService.testTenantConnection(firstTenant.getTenantId());
@@ -162,4 +183,9 @@ public class MonitoringController {
             return ResponseEntity.status(500).body(status);
         }
     }
+    
+    @GetMapping("/snapshots")
+    public ResponseEntity<List<SnapshotSyncState>> getSnapshotSyncStates() {
+        return ResponseEntity.ok(snapshotSyncService.getSyncStates());
+    }
 }
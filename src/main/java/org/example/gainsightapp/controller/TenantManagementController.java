@@ -1,9 +1,16 @@
 package org.example.gainsightapp.controller;
 
 import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.ExtractionJob;
 import org.example.gainsightapp.model.TenantConfiguration;
 import org.example.gainsightapp.repository.ExtractedEventRepository;
+import org.example.gainsightapp.service.EventAggregationService;
+import org.example.gainsightapp.service.EventQueryService;
+import org.example.gainsightapp.service.EventSegmentService;
+import org.example.gainsightapp.service.ExtractionJobService;
 import org.example.gainsightapp.service.GainsightEventExtractionService;
+import org.example.gainsightapp.service.PayloadStore;
+import org.example.gainsightapp.service.PropertyPromotionService;
 import org.example.gainsightapp.service.TenantManagementService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,15 +18,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/tenants")
@@ -29,21 +40,42 @@ public class TenantManagementController {
     
     private final TenantManagementService tenantService;
     private final GainsightEventExtractionService extractionService;
+    private final ExtractionJobService jobService;
     private final ExtractedEventRepository eventRepository;
+    private final PayloadStore payloadStore;
+    private final EventQueryService eventQueryService;
+    private final PropertyPromotionService promotionService;
+    private final EventAggregationService aggregationService;
+    private final EventSegmentService segmentService;
     
     public TenantManagementController(
             TenantManagementService tenantService,
             GainsightEventExtractionService extractionService,
-            ExtractedEventRepository eventRepository) {
+            ExtractionJobService jobService,
+            ExtractedEventRepository eventRepository,
+            PayloadStore payloadStore,
+            EventQueryService eventQueryService,
+            PropertyPromotionService promotionService,
+            EventAggregationService aggregationService,
+            EventSegmentService segmentService) {
         this.tenantService = tenantService;
         this.extractionService = extractionService;
+        this.jobService = jobService;
         this.eventRepository = eventRepository;
+        this.payloadStore = payloadStore;
+        this.eventQueryService = eventQueryService;
+        this.promotionService = promotionService;
+        this.aggregationService = aggregationService;
+        this.segmentService = segmentService;
     }
     
     @PostMapping
     public ResponseEntity<?> createTenant(@Valid @RequestBody TenantConfiguration tenant) {
         try {
             TenantConfiguration createdTenant = tenantService.createTenant(tenant);
+            if (!PropertyPromotionService.of(createdTenant).isEmpty()) {
+                promotionService.configure(createdTenant.getTenantId(), createdTenant.getPromotedProperties());
+            }
             return ResponseEntity.status(HttpStatus.CREATED).body(createdTenant);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -150,10 +182,31 @@ public class TenantManagementController {
             TenantConfiguration tenant = tenantService.getTenant(tenantId)
                 .orElseThrow(() -> new IllegalArgumentException("Tenant not found: " + tenantId));
             
-            // Run extraction asynchronously
-            new Thread(() -> extractionService.extractEventsForTenant(tenant)).start();
-            
-            return ResponseEntity.ok(Map.of("message", "Event extraction triggered successfully"));
+            // Runs in the background as a job; joins the active run instead if there is one
+            GainsightEventExtractionService.TriggerOutcome outcome = extractionService.triggerExtraction(tenant);
+            Map<String, Object> body = new HashMap<>();
+            switch (outcome.result()) {
+                case STARTED -> {
+                    body.put("message", "Event extraction triggered successfully");
+                    body.put("status", "started");
+                }
+                case COALESCED -> {
+                    body.put("message", "Event extraction already running; a follow-up run is queued");
+                    body.put("status", "coalesced");
+                }
+                case CIRCUIT_OPEN -> {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(Map.of("error", "Gainsight PX circuit is open for tenant: " + tenantId));
+                }
+                case SHUTTING_DOWN -> {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(Map.of("error", "Extraction is shutting down; retry on another instance"));
+                }
+            }
+            if (outcome.job() != null) {
+                body.put("jobId", outcome.job().getId());
+            }
+            return ResponseEntity.accepted().body(body);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
@@ -163,6 +216,28 @@ public class TenantManagementController {
         }
     }
     
+    @GetMapping("/{tenantId}/jobs")
+    public ResponseEntity<List<ExtractionJob>> getTenantJobs(
+            @PathVariable String tenantId,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(jobService.list(tenantId, Math.max(1, Math.min(limit, 500))));
+    }
+    
+    @GetMapping("/{tenantId}/jobs/{jobId}")
+    public ResponseEntity<?> getTenantJob(@PathVariable String tenantId, @PathVariable String jobId) {
+        return jobService.find(tenantId, jobId)
+            .<ResponseEntity<?>>map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @PostMapping("/{tenantId}/jobs/{jobId}/cancel")
+    public ResponseEntity<?> cancelTenantJob(@PathVariable String tenantId, @PathVariable String jobId) {
+        return jobService.cancel(tenantId, jobId)
+            .<ResponseEntity<?>>map(job -> ResponseEntity.accepted().body(job))
+            .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("error", "No running job " + jobId + " for tenant " + tenantId + " on this instance")));
+    }
+    
     @GetMapping("/{tenantId}/events")
     public ResponseEntity<Page<ExtractedEvent>> getTenantEvents(
             @PathVariable String tenantId,
@@ -175,7 +250,7 @@ public class TenantManagementController {
             Sort sort = Sort.by(Sort.Direction.fromString(sortDirection), sortBy);
             Pageable pageable = PageRequest.of(page, size, sort);
             
-            Page<ExtractedEvent> events = eventRepository.findAll(pageable);
+            Page<ExtractedEvent> events = eventRepository.findByTenantId(tenantId, pageable);
             
             return ResponseEntity.ok(events);
         } catch (Exception e) {
@@ -184,6 +259,107 @@ public class TenantManagementController {
         }
     }
     
+    /**
+     * Indexed event query, newest first: {@code from} is inclusive, {@code to} exclusive, so the
+     * next page is fetched with {@code to} set to the last returned {@code eventTimestamp}.
+     */
+    @GetMapping("/{tenantId}/events/query")
+    public ResponseEntity<?> queryTenantEvents(
+            @PathVariable String tenantId,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) String eventName,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam Map<String, String> params) {
+        try {
+            Set<String> projection = fields == null ? Set.of() : new LinkedHashSet<>(Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .toList());
+            EventQueryService.EventQueryResult result = eventQueryService.find(new EventQueryService.EventQuery(
+                tenantId, eventType, eventName, from, to, promotedFilters(params), projection, limit));
+            
+            Map<String, Object> body = new HashMap<>();
+            body.put("events", result.events());
+            body.put("count", result.events().size());
+            body.put("index", result.index());
+            return ResponseEntity.ok(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error querying events for tenant {}: {}", tenantId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Internal server error"));
+        }
+    }
+    
+    @GetMapping("/{tenantId}/events/aggregate")
+    public ResponseEntity<?> aggregateTenantEvents(
+            @PathVariable String tenantId,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) List<String> eventName,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) EventAggregationService.Interval interval,
+            @RequestParam Map<String, String> params) {
+        try {
+            EventAggregationService.AggregationResult result = aggregationService.aggregate(
+                new EventAggregationService.AggregationQuery(tenantId, eventType, eventName, from, to,
+                    promotedFilters(params), interval));
+            
+            Map<String, Object> body = new HashMap<>();
+            body.put("buckets", result.buckets());
+            body.put("count", result.buckets().size());
+            body.put("truncated", result.truncated());
+            body.put("index", result.index());
+            body.put("segments", result.segments());
+            body.put("cached", result.cached());
+            return ResponseEntity.ok(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error aggregating events for tenant {}: {}", tenantId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Internal server error"));
+        }
+    }
+    
+    @GetMapping("/{tenantId}/promoted-properties")
+    public ResponseEntity<?> getPromotedProperties(@PathVariable String tenantId) {
+        return tenantService.getTenant(tenantId)
+            .<ResponseEntity<?>>map(tenant -> {
+                Map<String, Object> body = new HashMap<>();
+                body.put("properties", PropertyPromotionService.of(tenant));
+                promotionService.backfillStatus(tenantId).ifPresent(status -> body.put("backfill", status));
+                return ResponseEntity.ok(body);
+            })
+            .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @PutMapping("/{tenantId}/promoted-properties")
+    public ResponseEntity<?> updatePromotedProperties(@PathVariable String tenantId,
+                                                      @RequestBody List<String> properties) {
+        try {
+            List<PropertyPromotionService.PromotedProperty> promoted = promotionService.configure(tenantId, properties);
+            Map<String, Object> body = new HashMap<>();
+            body.put("properties", promoted);
+            promotionService.backfillStatus(tenantId).ifPresent(status -> body.put("backfill", status));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error promoting properties for tenant {}: {}", tenantId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Internal server error"));
+        }
+    }
+    
     @GetMapping("/{tenantId}/stats")
     public ResponseEntity<?> getTenantStats(@PathVariable String tenantId) {
         try {
@@ -192,6 +368,7 @@ public class TenantManagementController {
             
             LocalDateTime last24Hours = LocalDateTime.now().minusHours(24);
             Long eventsLast24Hours = eventRepository.countEventsByTenantSince(tenantId, last24Hours);
+            long eventsLast90Days = aggregationService.countEvents(tenantId, LocalDateTime.now().minusDays(90), null);
             
             Map<String, Object> stats = new HashMap<>();
             stats.put("tenantId", tenantId);
@@ -200,11 +377,20 @@ public class TenantManagementController {
             stats.put("lastAttemptedExtraction", tenant.getLastAttemptedExtraction());
             stats.put("lastExtractionError", tenant.getLastExtractionError());
             stats.put("eventsLast24Hours", eventsLast24Hours);
+            stats.put("eventsLast90Days", eventsLast90Days);
             stats.put("extractionIntervalMinutes", tenant.getExtractionIntervalMinutes());
+            if (payloadStore.isEnabled()) {
+                stats.put("payloads", payloadStore.stats(tenantId));
+            }
+            if (segmentService.isEnabled()) {
+                stats.put("segments", segmentService.stats(tenantId));
+            }
             
             return ResponseEntity.ok(stats);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("Error fetching stats for tenant {}: {}", tenantId, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -223,4 +409,15 @@ public class TenantManagementController {
         List<TenantConfiguration> tenantsWithErrors = tenantService.getTenantsWithErrors();
         return ResponseEntity.ok(tenantsWithErrors);
     }
+    
+    // Query parameters named promoted.<name> filter on promoted properties
+    private static Map<String, String> promotedFilters(Map<String, String> params) {
+        Map<String, String> filters = new HashMap<>();
+        params.forEach((name, value) -> {
+            if (name.startsWith("promoted.")) {
+                filters.put(name.substring("promoted.".length()), value);
+            }
+        });
+        return filters;
+    }
 }
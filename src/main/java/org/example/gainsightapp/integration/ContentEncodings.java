@@ -0,0 +1,121 @@
+package org.example.gainsightapp.integration;
+
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP content-coding support for Gainsight PX responses.
+ *
+ * Decoding is done here rather than by the HTTP client so the body can be inflated as a
+ * stream straight into the JSON parser while both the wire and the decoded size are counted.
+ */
+final class ContentEncodings {
+
+    private static final String ACCEPT_ENCODING = "gzip, deflate, br";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private ContentEncodings() {
+    }
+
+    static String acceptEncoding() {
+        return ACCEPT_ENCODING;
+    }
+
+    /**
+     * Normalised coding name for metrics and logging; {@code identity} when the body is not encoded.
+     */
+    static String normalize(String contentEncoding) {
+        if (contentEncoding == null || contentEncoding.isBlank()) {
+            return "identity";
+        }
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        return "x-gzip".equals(encoding) ? "gzip" : encoding;
+    }
+
+    static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+        String encoding = normalize(contentEncoding);
+        if ("identity".equals(encoding)) {
+            return body;
+        }
+        // An encoded but empty body (e.g. a 204 with Content-Encoding set) has no header to read
+        PushbackInputStream pushback = new PushbackInputStream(body, 1);
+        int first = pushback.read();
+        if (first < 0) {
+            return pushback;
+        }
+        pushback.unread(first);
+        return switch (encoding) {
+            case "gzip" -> new GZIPInputStream(pushback, BUFFER_SIZE);
+            case "deflate" -> inflate(pushback);
+            case "br" -> new BrotliInputStream(pushback);
+            default -> throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+        };
+    }
+
+    // "deflate" should be zlib-wrapped (RFC 9110) but some servers send raw deflate; sniff the header
+    private static InputStream inflate(InputStream body) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(body, BUFFER_SIZE);
+        buffered.mark(2);
+        int cmf = buffered.read();
+        int flg = buffered.read();
+        buffered.reset();
+        boolean zlibWrapped = cmf >= 0 && flg >= 0 && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+        return new InflaterInputStream(buffered, new Inflater(!zlibWrapped), BUFFER_SIZE);
+    }
+
+    /**
+     * Pass-through stream that counts the bytes read through it.
+     */
+    static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
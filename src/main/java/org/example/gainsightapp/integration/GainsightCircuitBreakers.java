@@ -0,0 +1,375 @@
+package org.example.gainsightapp.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Circuit breakers for Gainsight PX calls, one per tenant and one per API host.
+ *
+ * Breakers are driven by the outcome of real requests: consecutive failures open the
+ * breaker, and an open breaker stays open for an exponentially growing period
+ * ({@code gainsight.circuit.open-duration-seconds}, doubling up to
+ * {@code gainsight.circuit.max-open-duration-seconds}). Once that period has passed a
+ * single caller is let through as a half-open probe; its outcome closes the breaker or
+ * opens it again. Authentication failures open the tenant breaker immediately, transport
+ * errors and 5xx responses also count against the host, and 429 throttling counts against
+ * neither.
+ */
+@Component
+public class GainsightCircuitBreakers {
+
+    private static final Logger logger = LoggerFactory.getLogger(GainsightCircuitBreakers.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public enum Permission {
+        /** Breaker closed, run normally. */
+        ALLOWED,
+        /** Breaker half-open; the caller should send a lightweight probe before doing real work. */
+        PROBE,
+        /** Breaker open; skip the call. */
+        DENIED
+    }
+
+    private final int tenantFailureThreshold;
+    private final int hostFailureThreshold;
+    private final Duration openDuration;
+    private final Duration maxOpenDuration;
+    private final MeterRegistry registry;
+    private final Map<String, CircuitBreaker> tenantBreakers = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreaker> hostBreakers = new ConcurrentHashMap<>();
+    private final Map<String, ProbeGrant> probes = new ConcurrentHashMap<>();
+
+    /** Which breakers granted the probe a tenant currently holds; {@code host} is null if not that one. */
+    private record ProbeGrant(String host, boolean tenant) {}
+
+    public GainsightCircuitBreakers(
+            @Value("${gainsight.circuit.failure-threshold:3}") int tenantFailureThreshold,
+            @Value("${gainsight.circuit.host-failure-threshold:10}") int hostFailureThreshold,
+            @Value("${gainsight.circuit.open-duration-seconds:60}") long openDurationSeconds,
+            @Value("${gainsight.circuit.max-open-duration-seconds:3600}") long maxOpenDurationSeconds,
+            ExtractionMetrics metrics) {
+        this.tenantFailureThreshold = tenantFailureThreshold;
+        this.hostFailureThreshold = hostFailureThreshold;
+        this.openDuration = Duration.ofSeconds(openDurationSeconds);
+        this.maxOpenDuration = Duration.ofSeconds(maxOpenDurationSeconds);
+        this.registry = metrics.getRegistry();
+
+        Gauge.builder("gainsight.circuit.open", tenantBreakers, GainsightCircuitBreakers::countNotClosed)
+            .description("Circuit breakers currently open or half-open")
+            .tag("scope", "tenant")
+            .register(registry);
+        Gauge.builder("gainsight.circuit.open", hostBreakers, GainsightCircuitBreakers::countNotClosed)
+            .description("Circuit breakers currently open or half-open")
+            .tag("scope", "host")
+            .register(registry);
+    }
+
+    /**
+     * Decides whether a tenant run may start. A {@link Permission#PROBE} must be followed by
+     * a request whose outcome is recorded, or handed back with {@link #release}.
+     */
+    public Permission tryAcquire(TenantConfiguration tenant) {
+        Instant now = Instant.now();
+        CircuitBreaker host = hostBreaker(tenant);
+        Permission hostPermission = host.tryAcquire(now);
+        if (hostPermission == Permission.DENIED) {
+            rejected("host");
+            return Permission.DENIED;
+        }
+
+        Permission tenantPermission = tenantBreaker(tenant).tryAcquire(now);
+        if (tenantPermission == Permission.DENIED) {
+            if (hostPermission == Permission.PROBE) {
+                host.releaseProbe();
+            }
+            rejected("tenant");
+            return Permission.DENIED;
+        }
+        if (hostPermission == Permission.PROBE || tenantPermission == Permission.PROBE) {
+            probes.put(String.valueOf(tenant.getTenantId()),
+                new ProbeGrant(hostPermission == Permission.PROBE ? hostOf(tenant.getApiUrl()) : null,
+                    tenantPermission == Permission.PROBE));
+            return Permission.PROBE;
+        }
+        return Permission.ALLOWED;
+    }
+
+    /**
+     * Hands back a probe slot that ended without a recorded outcome, so the next run can probe.
+     * Only the breakers that granted this tenant's probe are released; a host probe held by
+     * another tenant is left alone.
+     */
+    public void release(TenantConfiguration tenant, Permission permission) {
+        if (permission != Permission.PROBE) {
+            return;
+        }
+        ProbeGrant grant = probes.remove(String.valueOf(tenant.getTenantId()));
+        if (grant == null) {
+            return;
+        }
+        releaseHostProbe(grant);
+        if (grant.tenant()) {
+            tenantBreaker(tenant).releaseProbe();
+        }
+    }
+
+    /**
+     * Drops the breaker of a deleted tenant. Host breakers are shared and stay, but a host
+     * probe the tenant still held is handed back.
+     */
+    public void evictTenant(String tenantId) {
+        String key = String.valueOf(tenantId);
+        tenantBreakers.remove(key);
+        ProbeGrant grant = probes.remove(key);
+        if (grant != null) {
+            releaseHostProbe(grant);
+        }
+    }
+
+    private void releaseHostProbe(ProbeGrant grant) {
+        CircuitBreaker host = grant.host() != null ? hostBreakers.get(grant.host()) : null;
+        if (host != null) {
+            host.releaseProbe();
+        }
+    }
+
+    public void recordSuccess(TenantConfiguration tenant) {
+        hostBreaker(tenant).onSuccess();
+        tenantBreaker(tenant).onSuccess();
+    }
+
+    public void recordFailure(TenantConfiguration tenant, Throwable failure) {
+        Instant now = Instant.now();
+        String reason = failure.getMessage();
+        switch (classify(failure)) {
+            case THROTTLED -> { }
+            case CREDENTIALS -> tenantBreaker(tenant).onFailure(now, true, reason);
+            case UNAVAILABLE -> {
+                hostBreaker(tenant).onFailure(now, false, reason);
+                tenantBreaker(tenant).onFailure(now, false, reason);
+            }
+            case TENANT -> tenantBreaker(tenant).onFailure(now, false, reason);
+        }
+    }
+
+    public State getState(TenantConfiguration tenant) {
+        CircuitBreaker breaker = tenantBreakers.get(String.valueOf(tenant.getTenantId()));
+        return breaker != null ? breaker.getState() : State.CLOSED;
+    }
+
+    /**
+     * Breakers that are not closed, for the monitoring endpoint.
+     */
+    public List<Map<String, Object>> getOpenBreakers() {
+        List<Map<String, Object>> open = new ArrayList<>();
+        hostBreakers.values().forEach(breaker -> breaker.describeIfNotClosed(open));
+        tenantBreakers.values().forEach(breaker -> breaker.describeIfNotClosed(open));
+        return open;
+    }
+
+    private CircuitBreaker tenantBreaker(TenantConfiguration tenant) {
+        return tenantBreakers.computeIfAbsent(String.valueOf(tenant.getTenantId()),
+            id -> new CircuitBreaker("tenant", id, tenantFailureThreshold));
+    }
+
+    private CircuitBreaker hostBreaker(TenantConfiguration tenant) {
+        return hostBreakers.computeIfAbsent(hostOf(tenant.getApiUrl()),
+            host -> new CircuitBreaker("host", host, hostFailureThreshold));
+    }
+
+    public static String hostOf(String apiUrl) {
+        if (apiUrl == null) {
+            return "unknown";
+        }
+        try {
+            String host = URI.create(apiUrl).getHost();
+            return host != null ? host : apiUrl;
+        } catch (IllegalArgumentException e) {
+            return apiUrl;
+        }
+    }
+
+    private enum FailureKind { THROTTLED, CREDENTIALS, UNAVAILABLE, TENANT }
+
+    private static FailureKind classify(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            int status = -1;
+            if (t instanceof HttpStatusCodeException e) {
+                status = e.getStatusCode().value();
+            } else if (t instanceof WebClientResponseException e) {
+                status = e.getStatusCode().value();
+            }
+            if (status == 429) {
+                return FailureKind.THROTTLED;
+            }
+            if (status == 401 || status == 403) {
+                return FailureKind.CREDENTIALS;
+            }
+            if (status >= 500) {
+                return FailureKind.UNAVAILABLE;
+            }
+            if (status > 0) {
+                return FailureKind.TENANT;
+            }
+            if (t instanceof ResourceAccessException || t instanceof WebClientRequestException
+                    || t instanceof TimeoutException || t instanceof IOException) {
+                return FailureKind.UNAVAILABLE;
+            }
+        }
+        return FailureKind.TENANT;
+    }
+
+    private void rejected(String scope) {
+        Counter.builder("gainsight.circuit.rejected")
+            .description("Tenant runs skipped because a circuit breaker was open")
+            .tag("scope", scope)
+            .register(registry)
+            .increment();
+    }
+
+    private void transitioned(CircuitBreaker breaker, State state) {
+        Counter.builder("gainsight.circuit.transitions")
+            .description("Circuit breaker state changes")
+            .tags("scope", breaker.scope, "state", state.name())
+            .register(registry)
+            .increment();
+    }
+
+    private static double countNotClosed(Map<String, CircuitBreaker> breakers) {
+        return breakers.values().stream().filter(breaker -> breaker.getState() != State.CLOSED).count();
+    }
+
+    private final class CircuitBreaker {
+
+        private final String scope;
+        private final String key;
+        private final int failureThreshold;
+
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private int consecutiveOpens;
+        private Instant openUntil;
+        private boolean probeInFlight;
+        private String lastFailure;
+
+        CircuitBreaker(String scope, String key, int failureThreshold) {
+            this.scope = scope;
+            this.key = key;
+            this.failureThreshold = failureThreshold;
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+
+        synchronized Permission tryAcquire(Instant now) {
+            switch (state) {
+                case CLOSED:
+                    return Permission.ALLOWED;
+                case OPEN:
+                    if (now.isBefore(openUntil)) {
+                        return Permission.DENIED;
+                    }
+                    moveTo(State.HALF_OPEN);
+                    probeInFlight = true;
+                    return Permission.PROBE;
+                default:
+                    if (probeInFlight) {
+                        return Permission.DENIED;
+                    }
+                    probeInFlight = true;
+                    return Permission.PROBE;
+            }
+        }
+
+        synchronized void releaseProbe() {
+            if (state == State.HALF_OPEN) {
+                probeInFlight = false;
+            }
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                consecutiveOpens = 0;
+                probeInFlight = false;
+                lastFailure = null;
+                moveTo(State.CLOSED);
+                logger.info("Circuit for {} {} closed", scope, key);
+            }
+        }
+
+        synchronized void onFailure(Instant now, boolean tripImmediately, String reason) {
+            lastFailure = reason;
+            switch (state) {
+                case CLOSED -> {
+                    consecutiveFailures++;
+                    if (tripImmediately || consecutiveFailures >= failureThreshold) {
+                        open(now);
+                    }
+                }
+                case HALF_OPEN -> open(now);
+                case OPEN -> { } // Late failure from a request started before the breaker opened
+            }
+        }
+
+        private void open(Instant now) {
+            consecutiveOpens++;
+            probeInFlight = false;
+            Duration duration = openDuration.multipliedBy(1L << Math.min(consecutiveOpens - 1, 20));
+            if (duration.compareTo(maxOpenDuration) > 0) {
+                duration = maxOpenDuration;
+            }
+            // Up to 10% jitter so tenants that failed together don't all probe together
+            long jitterMillis = ThreadLocalRandom.current().nextLong(duration.toMillis() / 10 + 1);
+            openUntil = now.plus(duration).plusMillis(jitterMillis);
+            moveTo(State.OPEN);
+            logger.warn("Circuit for {} {} opened until {} (consecutive opens: {}): {}",
+                       scope, key, openUntil, consecutiveOpens, lastFailure);
+            consecutiveFailures = 0;
+        }
+
+        private void moveTo(State next) {
+            state = next;
+            transitioned(this, next);
+        }
+
+        synchronized void describeIfNotClosed(List<Map<String, Object>> target) {
+            if (state == State.CLOSED) {
+                return;
+            }
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put("scope", scope);
+            description.put("key", key);
+            description.put("state", state);
+            description.put("openUntil", openUntil);
+            description.put("consecutiveOpens", consecutiveOpens);
+            description.put("lastFailure", lastFailure);
+            target.add(description);
+        }
+    }
+}
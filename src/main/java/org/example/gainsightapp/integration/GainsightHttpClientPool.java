@@ -0,0 +1,194 @@
+package org.example.gainsightapp.integration;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.message.MessageSupport;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, pooled HTTP client for all Gainsight PX calls.
+ *
+ * One Apache HttpClient connection pool backs every {@link RestTemplate} handed out here, so
+ * keep-alive connections are reused across tenants. Per-host connection limits, a bounded wait
+ * for a pooled connection and a per-tenant response timeout ({@link TenantConfiguration#getTimeoutSeconds()})
+ * keep a single slow or hung tenant from holding every extraction worker.
+ */
+@Component
+public class GainsightHttpClientPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(GainsightHttpClientPool.class);
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final Duration connectionRequestTimeout;
+    private final int defaultTimeoutSeconds;
+    private final Map<Integer, RestTemplate> restTemplatesByTimeout = new ConcurrentHashMap<>();
+
+    public GainsightHttpClientPool(
+            @Value("${gainsight.http.max-connections:200}") int maxConnections,
+            @Value("${gainsight.http.max-connections-per-host:50}") int maxConnectionsPerHost,
+            @Value("${gainsight.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${gainsight.http.connection-request-timeout-ms:10000}") long connectionRequestTimeoutMs,
+            @Value("${gainsight.http.default-timeout-seconds:30}") int defaultTimeoutSeconds,
+            @Value("${gainsight.http.keep-alive-seconds:30}") long keepAliveSeconds,
+            ExtractionMetrics metrics) {
+        this.connectionRequestTimeout = Duration.ofMillis(connectionRequestTimeoutMs);
+        this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnectionsPerHost)
+            .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofSeconds(defaultTimeoutSeconds))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build())
+            .build();
+
+        TimeValue defaultKeepAlive = TimeValue.ofSeconds(keepAliveSeconds);
+        this.httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                .setResponseTimeout(Timeout.ofSeconds(defaultTimeoutSeconds))
+                .build())
+            // Honour a shorter server Keep-Alive hint, never keep a connection longer than configured
+            .setKeepAliveStrategy((response, context) -> {
+                Iterator<HeaderElement> elements = MessageSupport.iterate(response, "Keep-Alive");
+                while (elements.hasNext()) {
+                    HeaderElement element = elements.next();
+                    if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                        try {
+                            long serverSeconds = Long.parseLong(element.getValue());
+                            return TimeValue.ofSeconds(Math.min(serverSeconds, keepAliveSeconds));
+                        } catch (NumberFormatException ignored) {
+                            // Fall through to the default
+                        }
+                    }
+                }
+                return defaultKeepAlive;
+            })
+            // Content-Encoding is handled by MultiTenantGainsightPXClient so wire and decoded bytes can be counted
+            .disableContentCompression()
+            .evictExpiredConnections()
+            .evictIdleConnections(defaultKeepAlive)
+            .build();
+
+        registerPoolGauges(metrics.getRegistry());
+        logger.info("Initialized Gainsight HTTP pool: maxConnections={}, maxPerHost={}, defaultTimeout={}s",
+                   maxConnections, maxConnectionsPerHost, defaultTimeoutSeconds);
+    }
+
+    /**
+     * RestTemplate using the default timeout, for calls that are not tied to a tenant.
+     */
+    public RestTemplate restTemplate() {
+        return restTemplateForTimeout(defaultTimeoutSeconds);
+    }
+
+    /**
+     * RestTemplate whose response timeout follows the tenant's {@code timeoutSeconds}.
+     * Templates are cached per distinct timeout and all share the same connection pool.
+     */
+    public RestTemplate restTemplateFor(TenantConfiguration tenant) {
+        Integer timeoutSeconds = tenant.getTimeoutSeconds();
+        return restTemplateForTimeout(timeoutSeconds != null && timeoutSeconds > 0
+            ? timeoutSeconds : defaultTimeoutSeconds);
+    }
+
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    public Map<String, Object> getPoolStatistics() {
+        PoolStats stats = connectionManager.getTotalStats();
+        return Map.of(
+            "leased", stats.getLeased(),
+            "available", stats.getAvailable(),
+            "pending", stats.getPending(),
+            "max", stats.getMax(),
+            "routes", connectionManager.getRoutes().size()
+        );
+    }
+
+    @PreDestroy
+    public void close() {
+        httpClient.close(CloseMode.GRACEFUL);
+    }
+
+    private RestTemplate restTemplateForTimeout(int timeoutSeconds) {
+        return restTemplatesByTimeout.computeIfAbsent(timeoutSeconds, seconds -> {
+            HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+            requestFactory.setConnectionRequestTimeout(connectionRequestTimeout);
+            requestFactory.setReadTimeout(Duration.ofSeconds(seconds));
+            RestTemplate restTemplate = new RestTemplate(requestFactory);
+            restTemplate.setErrorHandler(new DecodingResponseErrorHandler());
+            return restTemplate;
+        });
+    }
+
+    /**
+     * Error bodies arrive compressed too, since decompression is not left to HttpClient;
+     * decode them so exception messages stay readable.
+     */
+    private static class DecodingResponseErrorHandler extends DefaultResponseErrorHandler {
+        @Override
+        protected byte[] getResponseBody(ClientHttpResponse response) {
+            String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+            if ("identity".equals(ContentEncodings.normalize(encoding))) {
+                return super.getResponseBody(response);
+            }
+            try (InputStream body = ContentEncodings.decode(response.getBody(), encoding)) {
+                return body.readAllBytes();
+            } catch (IOException e) {
+                return new byte[0];
+            }
+        }
+    }
+
+    private void registerPoolGauges(MeterRegistry registry) {
+        Gauge.builder("gainsight.http.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased())
+            .description("Connections currently leased from the Gainsight HTTP pool")
+            .register(registry);
+        Gauge.builder("gainsight.http.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable())
+            .description("Idle keep-alive connections in the Gainsight HTTP pool")
+            .register(registry);
+        Gauge.builder("gainsight.http.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+            .description("Requests waiting for a connection from the Gainsight HTTP pool")
+            .register(registry);
+        Gauge.builder("gainsight.http.pool.max", connectionManager, cm -> cm.getTotalStats().getMax())
+            .description("Maximum connections in the Gainsight HTTP pool")
+            .register(registry);
+    }
+}
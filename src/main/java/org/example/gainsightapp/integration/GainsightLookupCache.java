@@ -0,0 +1,204 @@
+package org.example.gainsightapp.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Bounded LRU cache in front of the user and account lookups proxied by
+ * {@code GainsightPXController}.
+ *
+ * Entries are served without an upstream call for {@code gainsight.px.cache.ttl-seconds}.
+ * After that they are kept for up to {@code gainsight.px.cache.stale-retention-seconds}
+ * so that, when Gainsight PX returned an ETag, the next lookup can revalidate with
+ * {@code If-None-Match} and reuse the cached body on a 304. Concurrent misses or
+ * revalidations for the same key share a single upstream request. A 404 is cached for the
+ * shorter {@code gainsight.px.cache.not-found-ttl-seconds}; other errors are not cached.
+ */
+@Component
+public class GainsightLookupCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GainsightLookupCache.class);
+
+    /** Cached upstream response; {@code etag} is null when upstream sent none. */
+    public record Entry(HttpStatusCode status, Map<?, ?> body, String etag, long fetchedAtNanos) {}
+
+    private final GainsightPXClient pxClient;
+    private final MeterRegistry registry;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long notFoundTtlNanos;
+    private final long retentionNanos;
+    private final Map<String, Entry> entries;
+    private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+    public GainsightLookupCache(
+            GainsightPXClient pxClient,
+            ExtractionMetrics metrics,
+            @Value("${gainsight.px.cache.max-entries:10000}") int maxEntries,
+            @Value("${gainsight.px.cache.ttl-seconds:60}") long ttlSeconds,
+            @Value("${gainsight.px.cache.stale-retention-seconds:600}") long staleRetentionSeconds,
+            @Value("${gainsight.px.cache.not-found-ttl-seconds:10}") long notFoundTtlSeconds) {
+        this.pxClient = pxClient;
+        this.registry = metrics.getRegistry();
+        this.maxEntries = maxEntries;
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        this.notFoundTtlNanos = Duration.ofSeconds(Math.min(ttlSeconds, notFoundTtlSeconds)).toNanos();
+        this.retentionNanos = Duration.ofSeconds(Math.max(ttlSeconds, staleRetentionSeconds)).toNanos();
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > GainsightLookupCache.this.maxEntries) {
+                    evicted("size");
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        Gauge.builder("gainsight.px.cache.size", this, GainsightLookupCache::size)
+            .description("Entries in the Gainsight PX lookup cache")
+            .register(registry);
+    }
+
+    public Entry getUser(String identifyId) {
+        return get("user", identifyId, pxClient::getUserById);
+    }
+
+    public Entry getAccount(String accountId) {
+        return get("account", accountId, pxClient::getAccountById);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Entry get(String kind, String id, BiFunction<String, String, ResponseEntity<Map>> fetch) {
+        String key = kind + ":" + id;
+        long now = System.nanoTime();
+        Entry cached = lookup(key, now);
+        if (cached != null && now - cached.fetchedAtNanos() < ttlNanos) {
+            requested(kind, "hit");
+            return cached;
+        }
+
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            requested(kind, "coalesced");
+            return await(leader);
+        }
+        try {
+            Entry loaded = load(kind, id, cached, fetch);
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Entry load(String kind, String id, Entry stale,
+                       BiFunction<String, String, ResponseEntity<Map>> fetch) {
+        String key = kind + ":" + id;
+        String ifNoneMatch = stale != null ? stale.etag() : null;
+        ResponseEntity<Map> response;
+        try {
+            response = fetch.apply(id, ifNoneMatch);
+        } catch (HttpClientErrorException.NotFound e) {
+            // Other 4xx/5xx responses are thrown by the client's error handler and not cached
+            requested(kind, "miss");
+            logger.debug("Caching not found for {} {}", kind, id);
+            Entry notFound = new Entry(HttpStatus.NOT_FOUND, Map.of("error", kind + " not found: " + id),
+                null, System.nanoTime());
+            synchronized (entries) {
+                entries.put(key, notFound);
+            }
+            return notFound;
+        }
+
+        Entry entry;
+        if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED) && stale != null) {
+            requested(kind, "revalidated");
+            entry = new Entry(stale.status(), stale.body(), stale.etag(), System.nanoTime());
+        } else {
+            requested(kind, "miss");
+            entry = new Entry(response.getStatusCode(), response.getBody(),
+                response.getHeaders().getETag(), System.nanoTime());
+        }
+
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private Entry lookup(String key, long now) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.fetchedAtNanos() >= retentionNanos) {
+                entries.remove(key);
+                evicted("expired");
+                return null;
+            }
+            // Stale entries without an ETag cannot be revalidated; refetch as a plain miss
+            if (entry != null && entry.etag() == null && now - entry.fetchedAtNanos() >= ttlNanos) {
+                return null;
+            }
+            if (entry != null && entry.status().isSameCodeAs(HttpStatus.NOT_FOUND)
+                    && now - entry.fetchedAtNanos() >= notFoundTtlNanos) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private static Entry await(CompletableFuture<Entry> leader) {
+        try {
+            return leader.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void requested(String kind, String result) {
+        Counter.builder("gainsight.px.cache.requests")
+            .description("Gainsight PX lookups by cache outcome")
+            .tags("kind", kind, "result", result)
+            .register(registry)
+            .increment();
+    }
+
+    private void evicted(String cause) {
+        Counter.builder("gainsight.px.cache.evictions")
+            .description("Entries removed from the Gainsight PX lookup cache")
+            .tag("cause", cause)
+            .register(registry)
+            .increment();
+    }
+}
@@ -2,12 +2,16 @@ package org.example.gainsightapp.integration;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 
@@ -18,8 +22,9 @@ public class GainsightPXClient {
     private final String baseUrl;
     private final String apiKey;
 
-    public GainsightPXClient(@Value("${gainsight.px.api-url}") String baseUrl, @Value("${gainsight.px.api-key}") String apiKey) {
-        this.restTemplate = new RestTemplate();
+    public GainsightPXClient(@Value("${gainsight.px.api-url}") String baseUrl, @Value("${gainsight.px.api-key}") String apiKey,
+                             GainsightHttpClientPool httpClientPool) {
+        this.restTemplate = httpClientPool.restTemplate();
         this.baseUrl = baseUrl;
         this.apiKey = apiKey;
     }
@@ -38,16 +43,45 @@ public class GainsightPXClient {
         return restTemplate.exchange(builder.toUriString(), HttpMethod.GET, request, String.class);
     }
 
+    // Stream a users page to the handler without buffering it; error statuses are passed on, not thrown.
+    // acceptEncoding is forwarded as-is so a compressed body can be relayed without decoding it.
+    public <T> T streamUsers(Integer pageSize, String scrollId, String acceptEncoding,
+                             ResponseExtractor<T> handler) throws IOException {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(baseUrl + "/v1/users");
+        if (pageSize != null) builder.queryParam("pageSize", pageSize);
+        if (scrollId != null) builder.queryParam("scrollId", scrollId);
+
+        ClientHttpRequest request = restTemplate.getRequestFactory()
+            .createRequest(builder.build().encode().toUri(), HttpMethod.GET);
+        request.getHeaders().addAll(createHeaders());
+        if (acceptEncoding != null) {
+            request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        try (ClientHttpResponse response = request.execute()) {
+            return handler.extractData(response);
+        }
+    }
+
     // Fetch a user by identifyId
     public ResponseEntity<Map> getUserById(String identifyId) {
+        return getUserById(identifyId, null);
+    }
+
+    // Fetch a user, revalidating against an ETag (304 with no body when unchanged)
+    public ResponseEntity<Map> getUserById(String identifyId, String ifNoneMatch) {
         String url = baseUrl + "/v1/users/" + identifyId;
-        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(createHeaders()), Map.class);
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(createHeaders(ifNoneMatch)), Map.class);
     }
 
     // Fetch an account by ID
     public ResponseEntity<Map> getAccountById(String accountId) {
+        return getAccountById(accountId, null);
+    }
+
+    // Fetch an account, revalidating against an ETag (304 with no body when unchanged)
+    public ResponseEntity<Map> getAccountById(String accountId, String ifNoneMatch) {
         String url = baseUrl + "/v1/accounts/" + accountId;
-        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(createHeaders()), Map.class);
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(createHeaders(ifNoneMatch)), Map.class);
     }
 
     // Send a custom event
@@ -57,6 +91,13 @@ public class GainsightPXClient {
         return restTemplate.exchange(url, HttpMethod.POST, request, String.class);
     }
 
+    // Send a custom event that is already serialized as JSON
+    public ResponseEntity<String> sendCustomEvent(String jsonPayload) {
+        String url = baseUrl + "/v1/events/custom";
+        HttpEntity<String> request = new HttpEntity<>(jsonPayload, createHeaders());
+        return restTemplate.exchange(url, HttpMethod.POST, request, String.class);
+    }
+
     // Create headers with auth
     private HttpHeaders createHeaders() {
         HttpHeaders headers = new HttpHeaders();
@@ -65,4 +106,12 @@ public class GainsightPXClient {
         headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
         return headers;
     }
+
+    private HttpHeaders createHeaders(String ifNoneMatch) {
+        HttpHeaders headers = createHeaders();
+        if (ifNoneMatch != null) {
+            headers.setIfNoneMatch(ifNoneMatch);
+        }
+        return headers;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package org.example.gainsightapp.integration;
+
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Retry policy shared by the blocking and reactive Gainsight PX clients: three attempts with
+ * exponential backoff, retrying only transport errors, 429 throttling and 5xx responses.
+ * Credential errors (401/403) and other 4xx responses fail on the first attempt.
+ */
+public final class GainsightRetryPolicy {
+
+    public static final int MAX_ATTEMPTS = 3;
+    public static final long BACKOFF_MILLIS = 1000;
+    public static final double BACKOFF_MULTIPLIER = 2;
+
+    /** {@link #isRetryable} as a Spring Retry {@code exceptionExpression}. */
+    public static final String RETRYABLE =
+        "T(org.example.gainsightapp.integration.GainsightRetryPolicy).isRetryable(#root)";
+
+    private GainsightRetryPolicy() {
+    }
+
+    public static boolean isRetryable(Throwable e) {
+        int status = -1;
+        if (e instanceof HttpStatusCodeException statusException) {
+            status = statusException.getStatusCode().value();
+        } else if (e instanceof WebClientResponseException responseException) {
+            status = responseException.getStatusCode().value();
+        }
+        if (status > 0) {
+            return status == 429 || status >= 500;
+        }
+        return e instanceof ResourceAccessException || e instanceof WebClientRequestException
+            || e instanceof TimeoutException;
+    }
+}
@@ -1,19 +1,25 @@
 package org.example.gainsightapp.integration;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.metrics.jfr.PageParseEvent;
 import org.example.gainsightapp.model.TenantConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.*;
 import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Recover;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.ResourceAccessException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
 
@@ -22,62 +28,57 @@ public class MultiTenantGainsightPXClient {
     
     private static final Logger logger = LoggerFactory.getLogger(MultiTenantGainsightPXClient.class);
     
-    private final RestTemplate restTemplate;
+    private final GainsightHttpClientPool httpClientPool;
     private final ObjectMapper objectMapper;
+    private final ExtractionMetrics metrics;
+    private final GainsightCircuitBreakers circuitBreakers;
     
-    public MultiTenantGainsightPXClient(RestTemplate restTemplate, ObjectMapper objectMapper) {
-        this.restTemplate = restTemplate;
+    public MultiTenantGainsightPXClient(GainsightHttpClientPool httpClientPool, ObjectMapper objectMapper,
+                                        ExtractionMetrics metrics, GainsightCircuitBreakers circuitBreakers) {
+        this.httpClientPool = httpClientPool;
         this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.circuitBreakers = circuitBreakers;
     }
     
-    @Retryable(value = {ResourceAccessException.class, HttpClientErrorException.class}, 
-               maxAttempts = 3, 
-               backoff = @Backoff(delay = 1000, multiplier = 2))
+    @Retryable(retryFor = RestClientException.class,
+               exceptionExpression = GainsightRetryPolicy.RETRYABLE,
+               maxAttempts = GainsightRetryPolicy.MAX_ATTEMPTS,
+               backoff = @Backoff(delay = GainsightRetryPolicy.BACKOFF_MILLIS,
+                                  multiplier = GainsightRetryPolicy.BACKOFF_MULTIPLIER),
+               recover = "recoverEvents")
     public GainsightResponse fetchEvents(TenantConfiguration tenant, String eventType, 
-                                       String scrollId, Integer pageSize) {
+                                       String scrollId, Integer pageSize, int page) {
+        Timer.Sample sample = metrics.startTimer();
+        String outcome = "error";
         try {
-            String url = buildEventsUrl(tenant.getApiUrl(), eventType);
-            
-            UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(url);
-            if (pageSize != null && pageSize > 0) {
-                builder.queryParam("pageSize", Math.min(pageSize, 1000)); // Limit max page size
-            }
-            if (scrollId != null && !scrollId.isEmpty()) {
-                builder.queryParam("scrollId", scrollId);
-            }
-            
-            // Add date filter for recent events (last 24 hours if first extraction)
-            if (scrollId == null && tenant.getLastSuccessfulExtraction() != null) {
-                String fromDate = tenant.getLastSuccessfulExtraction()
-                    .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-                builder.queryParam("from", fromDate);
-            }
-            
-            HttpEntity<Void> request = new HttpEntity<>(createHeaders(tenant));
+            String uri = buildEventsUri(tenant, eventType, scrollId, pageSize);
             
             logger.debug("Fetching {} events for tenant: {} from URL: {}", 
-                        eventType, tenant.getTenantId(), builder.toUriString());
+                        eventType, tenant.getTenantId(), uri);
             
-            ResponseEntity<String> response = restTemplate.exchange(
-                builder.toUriString(), 
-                HttpMethod.GET, 
-                request, 
-                String.class
-            );
+            GainsightResponse response = fetchPage(tenant, eventType, page, uri);
+            outcome = response.isSuccess() ? "success" : "failure";
+            recordOutcome(tenant, response);
             
-            return parseGainsightResponse(response);
+            return response;
             
         } catch (Exception e) {
             logger.error("Error fetching {} events for tenant {}: {}", 
                         eventType, tenant.getTenantId(), e.getMessage(), e);
-            throw new GainsightPXException("Failed to fetch events", e);
+            throw retryable(e, "Failed to fetch events");
+        } finally {
+            metrics.recordFetch(tenant.getTenantId(), eventType, sample, outcome);
         }
     }
     
-    @Retryable(value = {ResourceAccessException.class, HttpClientErrorException.class}, 
-               maxAttempts = 3, 
-               backoff = @Backoff(delay = 1000, multiplier = 2))
-    public GainsightResponse fetchUsers(TenantConfiguration tenant, String scrollId, Integer pageSize) {
+    @Retryable(retryFor = RestClientException.class,
+               exceptionExpression = GainsightRetryPolicy.RETRYABLE,
+               maxAttempts = GainsightRetryPolicy.MAX_ATTEMPTS,
+               backoff = @Backoff(delay = GainsightRetryPolicy.BACKOFF_MILLIS,
+                                  multiplier = GainsightRetryPolicy.BACKOFF_MULTIPLIER),
+               recover = "recoverSnapshot")
+    public GainsightResponse fetchUsers(TenantConfiguration tenant, String scrollId, Integer pageSize, int page) {
         try {
             String url = tenant.getApiUrl() + "/v1/users";
             
@@ -89,44 +90,154 @@ public class MultiTenantGainsightPXClient {
                 builder.queryParam("scrollId", scrollId);
             }
             
-            HttpEntity<Void> request = new HttpEntity<>(createHeaders(tenant));
-            
             logger.debug("Fetching users for tenant: {} from URL: {}", 
                         tenant.getTenantId(), builder.toUriString());
             
-            ResponseEntity<String> response = restTemplate.exchange(
-                builder.toUriString(), 
-                HttpMethod.GET, 
-                request, 
-                String.class
-            );
-            
-            return parseGainsightResponse(response);
+            GainsightResponse response = fetchPage(tenant, "USERS", page, builder.toUriString());
+            recordOutcome(tenant, response);
+            return response;
             
         } catch (Exception e) {
             logger.error("Error fetching users for tenant {}: {}", 
                         tenant.getTenantId(), e.getMessage(), e);
-            throw new GainsightPXException("Failed to fetch users", e);
+            throw retryable(e, "Failed to fetch users");
+        }
+    }
+    
+    @Retryable(retryFor = RestClientException.class,
+               exceptionExpression = GainsightRetryPolicy.RETRYABLE,
+               maxAttempts = GainsightRetryPolicy.MAX_ATTEMPTS,
+               backoff = @Backoff(delay = GainsightRetryPolicy.BACKOFF_MILLIS,
+                                  multiplier = GainsightRetryPolicy.BACKOFF_MULTIPLIER),
+               recover = "recoverSnapshot")
+    public GainsightResponse fetchAccounts(TenantConfiguration tenant, String scrollId, Integer pageSize, int page) {
+        try {
+            UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(tenant.getApiUrl() + "/v1/accounts");
+            if (pageSize != null && pageSize > 0) {
+                builder.queryParam("pageSize", Math.min(pageSize, 1000));
+            }
+            if (scrollId != null && !scrollId.isEmpty()) {
+                builder.queryParam("scrollId", scrollId);
+            }
+            
+            logger.debug("Fetching accounts for tenant: {} from URL: {}", 
+                        tenant.getTenantId(), builder.toUriString());
+            
+            GainsightResponse response = fetchPage(tenant, "ACCOUNTS", page, builder.toUriString());
+            recordOutcome(tenant, response);
+            return response;
+            
+        } catch (Exception e) {
+            logger.error("Error fetching accounts for tenant {}: {}", 
+                        tenant.getTenantId(), e.getMessage(), e);
+            throw retryable(e, "Failed to fetch accounts");
         }
     }
     
+    /**
+     * Runs once a fetch has failed for good (retries used up, or an error that is not
+     * retried), so a page counts as a single breaker failure however many attempts it took.
+     */
+    @Recover
+    GainsightResponse recoverEvents(RuntimeException e, TenantConfiguration tenant, String eventType,
+                                    String scrollId, Integer pageSize, int page) {
+        circuitBreakers.recordFailure(tenant, e);
+        throw e;
+    }
+    
+    @Recover
+    GainsightResponse recoverSnapshot(RuntimeException e, TenantConfiguration tenant, String scrollId,
+                                      Integer pageSize, int page) {
+        circuitBreakers.recordFailure(tenant, e);
+        throw e;
+    }
+    
+    /**
+     * Posts one custom event, already serialized as JSON, with the tenant's credentials.
+     * Errors are thrown as {@link org.springframework.web.client.RestClientException}s so
+     * callers can tell retryable failures apart.
+     */
+    public HttpStatusCode sendCustomEvent(TenantConfiguration tenant, String jsonPayload) {
+        HttpHeaders headers = createHeaders(tenant);
+        headers.remove(HttpHeaders.ACCEPT_ENCODING);
+        ResponseEntity<Void> response = httpClientPool.restTemplateFor(tenant).exchange(
+            tenant.getApiUrl() + "/v1/events/custom", HttpMethod.POST, new HttpEntity<>(jsonPayload, headers), Void.class);
+        return response.getStatusCode();
+    }
+    
+    /**
+     * Single-record request used to validate credentials and as the half-open circuit probe.
+     * The outcome is fed to {@link GainsightCircuitBreakers}.
+     */
     public boolean testConnection(TenantConfiguration tenant) {
         try {
             String url = tenant.getApiUrl() + "/v1/users?pageSize=1";
             HttpEntity<Void> request = new HttpEntity<>(createHeaders(tenant));
             
-            ResponseEntity<String> response = restTemplate.exchange(
-                url, HttpMethod.GET, request, String.class);
+            ResponseEntity<Void> response = httpClientPool.restTemplateFor(tenant).exchange(
+                url, HttpMethod.GET, request, Void.class);
             
-            return response.getStatusCode().is2xxSuccessful();
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                circuitBreakers.recordFailure(tenant,
+                    new GainsightPXException("Unexpected status " + response.getStatusCode().value()));
+                return false;
+            }
+            circuitBreakers.recordSuccess(tenant);
+            return true;
             
         } catch (Exception e) {
             logger.warn("Connection test failed for tenant {}: {}", 
                        tenant.getTenantId(), e.getMessage());
+            circuitBreakers.recordFailure(tenant, e);
             return false;
         }
     }
     
+    /**
+     * Only 2xx pages count as a success; anything else that got past the error handler
+     * (1xx, 3xx) is a failure for the breakers.
+     */
+    private void recordOutcome(TenantConfiguration tenant, GainsightResponse response) {
+        if (response.isSuccess()) {
+            circuitBreakers.recordSuccess(tenant);
+        } else {
+            circuitBreakers.recordFailure(tenant,
+                new GainsightPXException("Unexpected status " + response.getStatusCode()));
+        }
+    }
+    
+    /**
+     * Transport and HTTP errors are rethrown as they are so {@link GainsightRetryPolicy} can
+     * classify them; everything else is wrapped.
+     */
+    private static RuntimeException retryable(Exception e, String message) {
+        if (e instanceof RestClientException restClientException) {
+            return restClientException;
+        }
+        return new GainsightPXException(message, e);
+    }
+    
+    String buildEventsUri(TenantConfiguration tenant, String eventType, String scrollId, Integer pageSize) {
+        String url = buildEventsUrl(tenant.getApiUrl(), eventType);
+        
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(url);
+        if (pageSize != null && pageSize > 0) {
+            builder.queryParam("pageSize", Math.min(pageSize, 1000)); // Limit max page size
+        }
+        if (scrollId != null && !scrollId.isEmpty()) {
+            builder.queryParam("scrollId", scrollId);
+        }
+        
+        // Add date filter for recent events (last 24 hours if first extraction)
+        if (scrollId == null && tenant.getLastSuccessfulExtraction() != null) {
+            String fromDate = tenant.getLastSuccessfulExtraction()
+                .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            builder.queryParam("from", fromDate);
+        }
+        
+        return builder.toUriString();
+    }
+    
     private String buildEventsUrl(String baseUrl, String eventType) {
         return switch (eventType.toUpperCase()) {
             case "CUSTOM" -> baseUrl + "/v1/events/custom";
@@ -135,58 +246,124 @@ public class MultiTenantGainsightPXClient {
         };
     }
     
-    private HttpHeaders createHeaders(TenantConfiguration tenant) {
+    HttpHeaders createHeaders(TenantConfiguration tenant) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + tenant.getApiKey());
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        headers.set(HttpHeaders.ACCEPT_ENCODING, ContentEncodings.acceptEncoding());
         return headers;
     }
     
-    private GainsightResponse parseGainsightResponse(ResponseEntity<String> response) {
+    private GainsightResponse fetchPage(TenantConfiguration tenant, String eventType, int page, String uri) {
+        HttpHeaders headers = createHeaders(tenant);
+        return httpClientPool.restTemplateFor(tenant).execute(
+            uri,
+            HttpMethod.GET,
+            request -> request.getHeaders().putAll(headers),
+            response -> readPage(tenant, eventType, page, response.getStatusCode(),
+                response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), response.getBody())
+        );
+    }
+    
+    /**
+     * Decodes a (possibly compressed) page body as a stream straight into the JSON parser,
+     * without materialising the decoded body, and records wire vs. decoded bytes.
+     * {@code page} is the page's number within its scroll, for the JFR event.
+     */
+    GainsightResponse readPage(TenantConfiguration tenant, String eventType, int page, HttpStatusCode status,
+                               String contentEncoding, InputStream body) throws IOException {
+        PageParseEvent parseEvent = new PageParseEvent();
+        parseEvent.begin();
+        
+        String encoding = ContentEncodings.normalize(contentEncoding);
+        ContentEncodings.CountingInputStream wire = new ContentEncodings.CountingInputStream(body);
+        ContentEncodings.CountingInputStream decoded =
+            new ContentEncodings.CountingInputStream(ContentEncodings.decode(wire, contentEncoding));
+        JsonNode root;
+        try (decoded; JsonParser parser = objectMapper.getFactory().createParser(decoded)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            root = objectMapper.readTree(parser);
+            // Read to the end so the gzip trailer is verified and the connection can be reused
+            decoded.transferTo(OutputStream.nullOutputStream());
+        }
+        if (root == null) {
+            root = objectMapper.missingNode();
+        }
+        
+        GainsightResponse gainsightResponse = toGainsightResponse(status, root);
+        gainsightResponse.setResponseBytes(decoded.getCount());
+        gainsightResponse.setWireBytes(wire.getCount());
+        gainsightResponse.setContentEncoding(encoding);
+        metrics.recordPageBytes(tenant.getTenantId(), eventType, decoded.getCount());
+        metrics.recordTransfer(tenant.getTenantId(), eventType, encoding, wire.getCount(), decoded.getCount());
+        
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.tenantId = tenant.getTenantId();
+            parseEvent.eventType = eventType;
+            parseEvent.page = page;
+            parseEvent.bytes = decoded.getCount();
+            parseEvent.wireBytes = wire.getCount();
+            parseEvent.events = gainsightResponse.getData() != null ? gainsightResponse.getData().size() : 0;
+            parseEvent.commit();
+        }
+        return gainsightResponse;
+    }
+    
+    // Package-private so the JMH benchmarks in src/jmh can drive it directly
+    GainsightResponse parseGainsightResponse(ResponseEntity<String> response) {
         try {
-            JsonNode root = objectMapper.readTree(response.getBody());
-            
-            GainsightResponse gainsightResponse = new GainsightResponse();
-            gainsightResponse.setSuccess(response.getStatusCode().is2xxSuccessful());
-            gainsightResponse.setStatusCode(response.getStatusCode().value());
+            GainsightResponse gainsightResponse = toGainsightResponse(
+                response.getStatusCode(), objectMapper.readTree(response.getBody()));
             gainsightResponse.setRawResponse(response.getBody());
-            
-            // Extract common fields
-            if (root.has("scrollId")) {
-                JsonNode scrollIdNode = root.get("scrollId");
-                if (!scrollIdNode.isNull()) {
-                    gainsightResponse.setScrollId(scrollIdNode.asText());
-                }
-            }
-            
-            if (root.has("hasMore")) {
-                gainsightResponse.setHasMore(root.get("hasMore").asBoolean());
-            }
-            
-            // Extract data array - handle multiple possible field names
-            if (root.has("data") && root.get("data").isArray()) {
-                gainsightResponse.setData(root.get("data"));
-            } else if (root.has("customEvents") && root.get("customEvents").isArray()) {
-                gainsightResponse.setData(root.get("customEvents"));
-            } else if (root.has("users") && root.get("users").isArray()) {
-                gainsightResponse.setData(root.get("users"));
-            } else if (root.isArray()) {
-                gainsightResponse.setData(root);
-            }
-            
             return gainsightResponse;
-            
         } catch (Exception e) {
             logger.error("Error parsing Gainsight response: {}", e.getMessage(), e);
             throw new GainsightPXException("Failed to parse response", e);
         }
     }
     
+    private GainsightResponse toGainsightResponse(HttpStatusCode status, JsonNode root) {
+        GainsightResponse gainsightResponse = new GainsightResponse();
+        gainsightResponse.setSuccess(status.is2xxSuccessful());
+        gainsightResponse.setStatusCode(status.value());
+        
+        // Extract common fields
+        if (root.has("scrollId")) {
+            JsonNode scrollIdNode = root.get("scrollId");
+            if (!scrollIdNode.isNull()) {
+                gainsightResponse.setScrollId(scrollIdNode.asText());
+            }
+        }
+        
+        if (root.has("hasMore")) {
+            gainsightResponse.setHasMore(root.get("hasMore").asBoolean());
+        }
+        
+        // Extract data array - handle multiple possible field names
+        if (root.has("data") && root.get("data").isArray()) {
+            gainsightResponse.setData(root.get("data"));
+        } else if (root.has("customEvents") && root.get("customEvents").isArray()) {
+            gainsightResponse.setData(root.get("customEvents"));
+        } else if (root.has("users") && root.get("users").isArray()) {
+            gainsightResponse.setData(root.get("users"));
+        } else if (root.has("accounts") && root.get("accounts").isArray()) {
+            gainsightResponse.setData(root.get("accounts"));
+        } else if (root.isArray()) {
+            gainsightResponse.setData(root);
+        }
+        
+        return gainsightResponse;
+    }
+    
     public static class GainsightResponse {
         private boolean success;
         private int statusCode;
         private String rawResponse;
+        private long responseBytes;
+        private long wireBytes;
+        private String contentEncoding;
         private JsonNode data;
         private String scrollId;
         private boolean hasMore;
@@ -202,6 +379,15 @@ public class MultiTenantGainsightPXClient {
         public String getRawResponse() { return rawResponse; }
         public void setRawResponse(String rawResponse) { this.rawResponse = rawResponse; }
         
+        public long getResponseBytes() { return responseBytes; }
+        public void setResponseBytes(long responseBytes) { this.responseBytes = responseBytes; }
+        
+        public long getWireBytes() { return wireBytes; }
+        public void setWireBytes(long wireBytes) { this.wireBytes = wireBytes; }
+        
+        public String getContentEncoding() { return contentEncoding; }
+        public void setContentEncoding(String contentEncoding) { this.contentEncoding = contentEncoding; }
+        
         public JsonNode getData() { return data; }
         public void setData(JsonNode data) { this.data = data; }
         
@@ -0,0 +1,155 @@
+package org.example.gainsightapp.integration;
+
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Non-blocking counterpart of {@link MultiTenantGainsightPXClient#fetchEvents}.
+ *
+ * Each page is a {@link Mono}, so no thread waits on the HTTP round-trip; callers follow the
+ * scroll cursor themselves and request the next page only once they are ready for it. URL
+ * building, headers (including {@code Accept-Encoding}) and the streaming decode/parse are
+ * shared with the blocking client so both paths read the API identically.
+ */
+@Service
+@ConditionalOnProperty(name = "gainsight.extraction.mode", havingValue = "reactive")
+public class ReactiveGainsightPXClient {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveGainsightPXClient.class);
+    
+    private final WebClient webClient;
+    private final MultiTenantGainsightPXClient blockingClient;
+    private final ExtractionMetrics metrics;
+    private final GainsightCircuitBreakers circuitBreakers;
+    private final int defaultTimeoutSeconds;
+    
+    public ReactiveGainsightPXClient(
+            WebClient.Builder webClientBuilder,
+            MultiTenantGainsightPXClient blockingClient,
+            ExtractionMetrics metrics,
+            GainsightCircuitBreakers circuitBreakers,
+            @Value("${gainsight.reactive.max-connections:500}") int maxConnections,
+            @Value("${gainsight.http.connect-timeout-ms:5000}") int connectTimeoutMs,
+            @Value("${gainsight.http.connection-request-timeout-ms:10000}") long connectionRequestTimeoutMs,
+            @Value("${gainsight.http.keep-alive-seconds:30}") long keepAliveSeconds,
+            @Value("${gainsight.http.default-timeout-seconds:30}") int defaultTimeoutSeconds) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("gainsight-px")
+            .maxConnections(maxConnections)
+            .pendingAcquireTimeout(Duration.ofMillis(connectionRequestTimeoutMs))
+            .maxIdleTime(Duration.ofSeconds(keepAliveSeconds))
+            .metrics(true)
+            .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs);
+        
+        this.webClient = webClientBuilder
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(64 * 1024 * 1024))
+            .build();
+        this.blockingClient = blockingClient;
+        this.metrics = metrics;
+        this.circuitBreakers = circuitBreakers;
+        this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+    }
+    
+    public Mono<MultiTenantGainsightPXClient.GainsightResponse> fetchEventPage(
+            TenantConfiguration tenant, String eventType, String scrollId, Integer pageSize, int page) {
+        return Mono.defer(() -> {
+                URI uri = URI.create(blockingClient.buildEventsUri(tenant, eventType, scrollId, pageSize));
+                HttpHeaders headers = blockingClient.createHeaders(tenant);
+                Timer.Sample sample = metrics.startTimer();
+                
+                logger.debug("Fetching {} events for tenant: {} from URL: {}", eventType, tenant.getTenantId(), uri);
+                
+                return webClient.get()
+                    .uri(uri)
+                    .headers(h -> h.addAll(headers))
+                    .retrieve()
+                    // Kept compressed in memory; decoded as a stream during parsing
+                    .toEntity(byte[].class)
+                    .timeout(Duration.ofSeconds(timeoutSeconds(tenant)))
+                    .doOnSuccess(response -> metrics.recordFetch(tenant.getTenantId(), eventType, sample,
+                        response.getStatusCode().is2xxSuccessful() ? "success" : "failure"))
+                    .doOnError(e -> metrics.recordFetch(tenant.getTenantId(), eventType, sample, "error"));
+            })
+            // Same attempts and schedule as the blocking client's @Retryable
+            .retryWhen(Retry.backoff(GainsightRetryPolicy.MAX_ATTEMPTS - 1,
+                    Duration.ofMillis(GainsightRetryPolicy.BACKOFF_MILLIS))
+                .jitter(0)
+                .filter(GainsightRetryPolicy::isRetryable)
+                .doBeforeRetry(signal -> metrics.recordRetries(tenant.getTenantId(), eventType, 1))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+            // Parsing is CPU work; keep it off the Netty event loop
+            .publishOn(Schedulers.parallel())
+            .<MultiTenantGainsightPXClient.GainsightResponse>handle((response, sink) -> {
+                byte[] body = response.getBody() != null ? response.getBody() : new byte[0];
+                try {
+                    sink.next(blockingClient.readPage(tenant, eventType, page, response.getStatusCode(),
+                        response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING),
+                        new ByteArrayInputStream(body)));
+                } catch (IOException e) {
+                    sink.error(new MultiTenantGainsightPXClient.GainsightPXException("Failed to parse response", e));
+                }
+            })
+            .doOnNext(parsed -> circuitBreakers.recordSuccess(tenant))
+            .doOnError(e -> circuitBreakers.recordFailure(tenant, e))
+            .onErrorMap(e -> !(e instanceof MultiTenantGainsightPXClient.GainsightPXException), e -> {
+                logger.error("Error fetching {} events for tenant {}: {}",
+                            eventType, tenant.getTenantId(), e.getMessage());
+                return new MultiTenantGainsightPXClient.GainsightPXException("Failed to fetch events", e);
+            });
+    }
+    
+    /**
+     * Non-blocking counterpart of {@link MultiTenantGainsightPXClient#testConnection}, used as
+     * the half-open circuit probe. Completes with {@code false} instead of erroring.
+     */
+    public Mono<Boolean> testConnection(TenantConfiguration tenant) {
+        HttpHeaders headers = blockingClient.createHeaders(tenant);
+        return webClient.get()
+            .uri(URI.create(tenant.getApiUrl() + "/v1/users?pageSize=1"))
+            .headers(h -> h.addAll(headers))
+            .retrieve()
+            .toBodilessEntity()
+            .timeout(Duration.ofSeconds(timeoutSeconds(tenant)))
+            .map(response -> {
+                if (!response.getStatusCode().is2xxSuccessful()) {
+                    circuitBreakers.recordFailure(tenant, new MultiTenantGainsightPXClient.GainsightPXException(
+                        "Unexpected status " + response.getStatusCode().value()));
+                    return false;
+                }
+                circuitBreakers.recordSuccess(tenant);
+                return true;
+            })
+            .onErrorResume(e -> {
+                logger.warn("Connection test failed for tenant {}: {}", tenant.getTenantId(), e.getMessage());
+                circuitBreakers.recordFailure(tenant, e);
+                return Mono.just(false);
+            });
+    }
+    
+    private int timeoutSeconds(TenantConfiguration tenant) {
+        Integer timeoutSeconds = tenant.getTimeoutSeconds();
+        return timeoutSeconds != null && timeoutSeconds > 0 ? timeoutSeconds : defaultTimeoutSeconds;
+    }
+}
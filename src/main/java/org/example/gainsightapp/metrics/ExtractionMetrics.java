@@ -0,0 +1,204 @@
+package org.example.gainsightapp.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Central place for the extraction hot-path meters.
+ *
+ * Meters are tagged by tenant and event type. The tenant tag is bounded: once
+ * {@code gainsight.metrics.max-tenant-tags} distinct tenants have been seen, further
+ * tenants are reported under {@link #OVERFLOW_TENANT} so the Prometheus series count
+ * stays predictable no matter how many tenants are configured.
+ */
+@Component
+public class ExtractionMetrics {
+
+    public static final String OVERFLOW_TENANT = "_other";
+
+    private final MeterRegistry registry;
+    private final int maxTenantTags;
+    private final Set<String> taggedTenants = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicLong> sweepCompletions = new ConcurrentHashMap<>();
+    private final AtomicLong maxTenantLagSeconds = new AtomicLong();
+
+    public ExtractionMetrics(MeterRegistry registry,
+                             @Value("${gainsight.metrics.max-tenant-tags:200}") int maxTenantTags) {
+        this.registry = registry;
+        this.maxTenantTags = maxTenantTags;
+
+        Gauge.builder("gainsight.extraction.lag", maxTenantLagSeconds, AtomicLong::get)
+            .description("Largest time since the last successful extraction across active tenants")
+            .baseUnit("seconds")
+            .register(registry);
+    }
+
+    public Timer.Sample startTimer() {
+        return Timer.start(registry);
+    }
+
+    public void recordFetch(String tenantId, String eventType, Timer.Sample sample, String outcome) {
+        sample.stop(Timer.builder("gainsight.fetch.latency")
+            .description("Latency of a single Gainsight PX page request")
+            .tags(tags(tenantId, eventType).and("outcome", outcome))
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(10))
+            .maximumExpectedValue(Duration.ofSeconds(60))
+            .register(registry));
+    }
+
+    public void recordPageBytes(String tenantId, String eventType, long bytes) {
+        DistributionSummary.builder("gainsight.fetch.bytes")
+            .description("Decoded size of a Gainsight PX page response body")
+            .baseUnit("bytes")
+            .tags(tags(tenantId, eventType))
+            .publishPercentileHistogram()
+            .minimumExpectedValue(1024.0)
+            .maximumExpectedValue(64.0 * 1024 * 1024)
+            .register(registry)
+            .record(bytes);
+    }
+
+    /**
+     * Bytes received on the wire vs. bytes after content decoding; the ratio of the two
+     * counters is the compression ratio per tenant and encoding.
+     */
+    public void recordTransfer(String tenantId, String eventType, String encoding, long wireBytes, long decodedBytes) {
+        Tags tags = tags(tenantId, eventType).and("encoding", encoding);
+        Counter.builder("gainsight.transfer.wire.bytes")
+            .description("Response body bytes received from Gainsight PX, as transferred")
+            .baseUnit("bytes")
+            .tags(tags)
+            .register(registry)
+            .increment(wireBytes);
+        Counter.builder("gainsight.transfer.decoded.bytes")
+            .description("Response body bytes received from Gainsight PX, after decompression")
+            .baseUnit("bytes")
+            .tags(tags)
+            .register(registry)
+            .increment(decodedBytes);
+    }
+
+    public void recordPageEvents(String tenantId, String eventType, int events) {
+        DistributionSummary.builder("gainsight.page.events")
+            .description("Number of events returned in a single page")
+            .tags(tags(tenantId, eventType))
+            .publishPercentileHistogram()
+            .minimumExpectedValue(1.0)
+            .maximumExpectedValue(1000.0)
+            .register(registry)
+            .record(events);
+    }
+
+    public void recordDedup(String tenantId, String eventType, int duplicates, int unique) {
+        Tags tags = tags(tenantId, eventType);
+        Counter.builder("gainsight.dedup.checks")
+            .description("Duplicate checks against stored events")
+            .tags(tags.and("result", "hit"))
+            .register(registry)
+            .increment(duplicates);
+        Counter.builder("gainsight.dedup.checks")
+            .description("Duplicate checks against stored events")
+            .tags(tags.and("result", "miss"))
+            .register(registry)
+            .increment(unique);
+    }
+
+    public void recordPersist(String tenantId, String eventType, Timer.Sample sample, int events) {
+        sample.stop(Timer.builder("gainsight.persist.latency")
+            .description("Latency of writing one page of events to MongoDB")
+            .tags(tags(tenantId, eventType))
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofSeconds(30))
+            .register(registry));
+        Counter.builder("gainsight.persist.events")
+            .description("Events written to MongoDB")
+            .tags(tags(tenantId, eventType))
+            .register(registry)
+            .increment(events);
+    }
+
+    public void recordCheckpoint(String tenantId, String eventType, Timer.Sample sample) {
+        sample.stop(Timer.builder("gainsight.checkpoint.latency")
+            .description("Latency of saving the scroll checkpoint after a page")
+            .tags(tags(tenantId, eventType))
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofSeconds(10))
+            .register(registry));
+    }
+
+    public void recordRetries(String tenantId, String eventType, int retries) {
+        Counter.builder("gainsight.fetch.retries")
+            .description("Retried Gainsight PX requests")
+            .tags(tags(tenantId, eventType))
+            .register(registry)
+            .increment(retries);
+    }
+
+    /**
+     * Wraps the extraction executor so queue depth, active workers and the time tasks
+     * spend waiting for a worker ({@code executor.idle}) are exported.
+     */
+    public ExecutorService monitorExecutor(ExecutorService executor, String name) {
+        return ExecutorServiceMetrics.monitor(registry, executor, name);
+    }
+
+    public void recordSweep(String sweep, Timer.Sample sample) {
+        sample.stop(Timer.builder("gainsight.scheduler.sweep.duration")
+            .description("Duration of a scheduled extraction sweep")
+            .tag("sweep", sweep)
+            .register(registry));
+
+        sweepCompletions.computeIfAbsent(sweep, name -> {
+            AtomicLong completedAt = new AtomicLong(System.currentTimeMillis());
+            Gauge.builder("gainsight.scheduler.lag", completedAt,
+                    value -> (System.currentTimeMillis() - value.get()) / 1000.0)
+                .description("Time since the scheduled sweep last completed")
+                .baseUnit("seconds")
+                .tag("sweep", name)
+                .register(registry);
+            return completedAt;
+        }).set(System.currentTimeMillis());
+    }
+
+    public void updateTenantLag(long maxLagSeconds) {
+        maxTenantLagSeconds.set(maxLagSeconds);
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    public Tags tags(String tenantId, String eventType) {
+        return Tags.of("tenant", tenantTag(tenantId), "eventType", eventType == null ? "none" : eventType);
+    }
+
+    public String tenantTag(String tenantId) {
+        if (tenantId == null) {
+            return OVERFLOW_TENANT;
+        }
+        if (taggedTenants.contains(tenantId)) {
+            return tenantId;
+        }
+        if (taggedTenants.size() < maxTenantTags && taggedTenants.add(tenantId)) {
+            return tenantId;
+        }
+        return taggedTenants.contains(tenantId) ? tenantId : OVERFLOW_TENANT;
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.gainsightapp.metrics;
+
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.interceptor.MethodInvocationRetryCallback;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts retried Gainsight PX calls. Registered as a bean, so every {@code @Retryable}
+ * method picks it up; the tenant and event type are read from the intercepted arguments.
+ */
+@Component
+public class FetchRetryMetricsListener implements RetryListener {
+
+    private final ExtractionMetrics metrics;
+
+    public FetchRetryMetricsListener(ExtractionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        // A final failure is counted as an attempt, not as a retry
+        int retries = context.getRetryCount() - (throwable != null ? 1 : 0);
+        if (retries <= 0 || !(callback instanceof MethodInvocationRetryCallback<?, ?> methodCallback)) {
+            return;
+        }
+
+        Object[] arguments = methodCallback.getInvocation().getArguments();
+        String tenantId = null;
+        String eventType = "USERS";
+        if (arguments.length > 0 && arguments[0] instanceof TenantConfiguration tenant) {
+            tenantId = tenant.getTenantId();
+        }
+        if (arguments.length > 1 && arguments[1] instanceof String type
+                && methodCallback.getInvocation().getMethod().getName().equals("fetchEvents")) {
+            eventType = type;
+        }
+
+        metrics.recordRetries(tenantId, eventType, retries);
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.gainsightapp.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.example.gainsightapp.Checkpoint")
+@Label("Checkpoint")
+@Description("Save of the scroll position after a page")
+public class CheckpointEvent extends ExtractionStageEvent {
+
+    @Label("Page")
+    public int page;
+
+    @Label("Has More")
+    public boolean hasMore;
+}
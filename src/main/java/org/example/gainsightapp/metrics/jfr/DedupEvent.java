@@ -0,0 +1,20 @@
+package org.example.gainsightapp.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.example.gainsightapp.Dedup")
+@Label("Page Dedup")
+@Description("Mapping and duplicate checks for the events of one page")
+public class DedupEvent extends ExtractionStageEvent {
+
+    @Label("Page")
+    public int page;
+
+    @Label("Events")
+    public int events;
+
+    @Label("Duplicates")
+    public int duplicates;
+}
@@ -0,0 +1,21 @@
+package org.example.gainsightapp.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Common fields for the extraction JFR events. Events are only populated and committed
+ * when {@link #shouldCommit()} is true, so a disabled recording costs a begin/end pair.
+ */
+@Category({"Gainsight", "Extraction"})
+@StackTrace(false)
+public abstract class ExtractionStageEvent extends Event {
+
+    @Label("Tenant Id")
+    public String tenantId;
+
+    @Label("Event Type")
+    public String eventType;
+}
@@ -0,0 +1,25 @@
+package org.example.gainsightapp.metrics.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.example.gainsightapp.PageFetch")
+@Label("Page Fetch")
+@Description("Request for one Gainsight PX page, including retries and parsing")
+public class PageFetchEvent extends ExtractionStageEvent {
+
+    @Label("Page")
+    public int page;
+
+    @Label("Status Code")
+    public int statusCode;
+
+    @Label("Response Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Resumed From Scroll Id")
+    public boolean resumed;
+}
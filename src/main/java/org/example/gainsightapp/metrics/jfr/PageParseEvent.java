@@ -0,0 +1,26 @@
+package org.example.gainsightapp.metrics.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.example.gainsightapp.PageParse")
+@Label("Page Parse")
+@Description("Decoding and parsing of one Gainsight PX page body into a JSON tree")
+public class PageParseEvent extends ExtractionStageEvent {
+
+    @Label("Page")
+    public int page;
+
+    @Label("Response Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Wire Size")
+    @DataAmount
+    public long wireBytes;
+
+    @Label("Events")
+    public int events;
+}
@@ -0,0 +1,17 @@
+package org.example.gainsightapp.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.example.gainsightapp.Persist")
+@Label("Page Persist")
+@Description("Write of one page of extracted events to MongoDB")
+public class PersistEvent extends ExtractionStageEvent {
+
+    @Label("Page")
+    public int page;
+
+    @Label("Events")
+    public int events;
+}
@@ -0,0 +1,17 @@
+package org.example.gainsightapp.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.example.gainsightapp.TenantRun")
+@Label("Tenant Extraction Run")
+@Description("One extraction run for a tenant, covering all enabled event types")
+public class TenantRunEvent extends ExtractionStageEvent {
+
+    @Label("Events Extracted")
+    public int events;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,69 @@
+package org.example.gainsightapp.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Local copy of a Gainsight PX user or account, kept current by {@code SnapshotSyncService}.
+ * {@code contentHash} is the SHA-256 of the record as last received and is used to skip
+ * writes for records that have not changed.
+ */
+@Document(collection = "entity_snapshots")
+@CompoundIndexes({
+    @CompoundIndex(name = "idx_tenant_kind_entity", def = "{'tenantId': 1, 'kind': 1, 'entityId': 1}", unique = true),
+    @CompoundIndex(name = "idx_tenant_account", def = "{'tenantId': 1, 'accountId': 1}", sparse = true)
+})
+public class EntitySnapshot {
+    
+    @Id
+    private String id;
+    
+    private String tenantId;
+    private Kind kind;
+    private String entityId; // identifyId for users, id for accounts
+    private String accountId; // Account a user belongs to; null for accounts
+    
+    private String data; // JSON string
+    private String contentHash;
+    
+    private LocalDateTime firstSyncedAt;
+    private LocalDateTime updatedAt;
+    
+    public enum Kind {
+        USER, ACCOUNT
+    }
+    
+    public EntitySnapshot() {}
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getTenantId() { return tenantId; }
+    public void setTenantId(String tenantId) { this.tenantId = tenantId; }
+    
+    public Kind getKind() { return kind; }
+    public void setKind(Kind kind) { this.kind = kind; }
+    
+    public String getEntityId() { return entityId; }
+    public void setEntityId(String entityId) { this.entityId = entityId; }
+    
+    public String getAccountId() { return accountId; }
+    public void setAccountId(String accountId) { this.accountId = accountId; }
+    
+    public String getData() { return data; }
+    public void setData(String data) { this.data = data; }
+    
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+    
+    public LocalDateTime getFirstSyncedAt() { return firstSyncedAt; }
+    public void setFirstSyncedAt(LocalDateTime firstSyncedAt) { this.firstSyncedAt = firstSyncedAt; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,59 @@
+package org.example.gainsightapp.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One distinct event body of a tenant, stored once and referenced by hash from every
+ * {@link ExtractedEvent} that carries it. {@code refCount} counts those events; bodies that
+ * no event references any more are removed by {@code PayloadStore}.
+ */
+@Document(collection = "event_payloads")
+public class EventPayload {
+    
+    @Id
+    private String id; // tenantId:hash
+    
+    private String tenantId;
+    private String hash; // SHA-256 of body
+    
+    private String body; // event JSON, the event id replaced by a placeholder
+    private Integer bytes;
+    private Long refCount = 0L;
+    
+    private LocalDateTime createdAt;
+    private LocalDateTime lastReferencedAt;
+    
+    public EventPayload() {}
+    
+    public static String idFor(String tenantId, String hash) {
+        return tenantId + ":" + hash;
+    }
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getTenantId() { return tenantId; }
+    public void setTenantId(String tenantId) { this.tenantId = tenantId; }
+    
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+    
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+    
+    public Integer getBytes() { return bytes; }
+    public void setBytes(Integer bytes) { this.bytes = bytes; }
+    
+    public Long getRefCount() { return refCount; }
+    public void setRefCount(Long refCount) { this.refCount = refCount; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getLastReferencedAt() { return lastReferencedAt; }
+    public void setLastReferencedAt(LocalDateTime lastReferencedAt) { this.lastReferencedAt = lastReferencedAt; }
+}
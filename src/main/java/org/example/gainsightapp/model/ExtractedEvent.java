@@ -4,10 +4,19 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.index.Indexed;
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Document(collection = "extracted_events")
 public class ExtractedEvent {
     
+    // Compound indexes behind the event query API, created on startup by EventQueryService
+    public static final String IDX_TENANT_NAME_TS = "idx_tenant_name_ts";
+    public static final String IDX_TENANT_TYPE_TS = "idx_tenant_type_ts";
+    public static final String IDX_TENANT_TS = "idx_tenant_ts";
+    
+    // Walked in _id order by promoted property backfills, created on startup by PropertyPromotionService
+    public static final String IDX_TENANT_DOC_ID = "idx_tenant_doc_id";
+    
     @Id
     private String id;
     
@@ -20,8 +29,26 @@ public class ExtractedEvent {
     private String eventType; // CUSTOM or STANDARD
     private String eventName;
     private String eventData; // JSON string
+    
+    // Set instead of eventData when gainsight.payload.compression.enabled=true; see PayloadCodec
+    private byte[] eventDataCompressed;
+    private String payloadCodec;
+    private Integer payloadDictionaryVersion;
+    
+    // Set instead of eventData when gainsight.payload.storage=content-addressed; see PayloadStore
+    private String payloadHash;
     private LocalDateTime eventTimestamp;
     
+    private String identifyId;
+    private String accountId;
+    
+    // Typed copies of the tenant's promoted payload properties, indexed per property; see PropertyPromotionService
+    private Map<String, Object> promoted;
+    
+    // Filled in at extraction time when gainsight.enrichment.enabled=true
+    private Map<String, Object> userAttributes;
+    private Map<String, Object> accountAttributes;
+    
     @Indexed
     private LocalDateTime extractedAt;
     
@@ -75,9 +102,36 @@ public class ExtractedEvent {
     public String getEventData() { return eventData; }
     public void setEventData(String eventData) { this.eventData = eventData; }
     
+    public byte[] getEventDataCompressed() { return eventDataCompressed; }
+    public void setEventDataCompressed(byte[] eventDataCompressed) { this.eventDataCompressed = eventDataCompressed; }
+    
+    public String getPayloadCodec() { return payloadCodec; }
+    public void setPayloadCodec(String payloadCodec) { this.payloadCodec = payloadCodec; }
+    
+    public Integer getPayloadDictionaryVersion() { return payloadDictionaryVersion; }
+    public void setPayloadDictionaryVersion(Integer payloadDictionaryVersion) { this.payloadDictionaryVersion = payloadDictionaryVersion; }
+    
+    public String getPayloadHash() { return payloadHash; }
+    public void setPayloadHash(String payloadHash) { this.payloadHash = payloadHash; }
+    
     public LocalDateTime getEventTimestamp() { return eventTimestamp; }
     public void setEventTimestamp(LocalDateTime eventTimestamp) { this.eventTimestamp = eventTimestamp; }
     
+    public String getIdentifyId() { return identifyId; }
+    public void setIdentifyId(String identifyId) { this.identifyId = identifyId; }
+    
+    public String getAccountId() { return accountId; }
+    public void setAccountId(String accountId) { this.accountId = accountId; }
+    
+    public Map<String, Object> getPromoted() { return promoted; }
+    public void setPromoted(Map<String, Object> promoted) { this.promoted = promoted; }
+    
+    public Map<String, Object> getUserAttributes() { return userAttributes; }
+    public void setUserAttributes(Map<String, Object> userAttributes) { this.userAttributes = userAttributes; }
+    
+    public Map<String, Object> getAccountAttributes() { return accountAttributes; }
+    public void setAccountAttributes(Map<String, Object> accountAttributes) { this.accountAttributes = accountAttributes; }
+    
     public LocalDateTime getExtractedAt() { return extractedAt; }
     public void setExtractedAt(LocalDateTime extractedAt) { this.extractedAt = extractedAt; }
     
@@ -0,0 +1,60 @@
+package org.example.gainsightapp.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Committed scroll position of one tenant's event stream (CUSTOM or STANDARD). Written only
+ * after the page it follows has been stored, so it never points past stored data;
+ * {@code caughtUp} is false while a scroll was left unfinished (shutdown, crash, page limit).
+ */
+@Document(collection = "extraction_checkpoints")
+public class ExtractionCheckpoint {
+    
+    @Id
+    private String id; // tenantId:eventType
+    
+    @Indexed
+    private String tenantId;
+    private String eventType;
+    
+    private String scrollId;
+    private Boolean caughtUp;
+    private Long pagesCommitted = 0L;
+    private Long eventsCommitted = 0L;
+    private LocalDateTime committedAt;
+    
+    public ExtractionCheckpoint() {}
+    
+    public static String idFor(String tenantId, String eventType) {
+        return tenantId + ":" + eventType;
+    }
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getTenantId() { return tenantId; }
+    public void setTenantId(String tenantId) { this.tenantId = tenantId; }
+    
+    public String getEventType() { return eventType; }
+    public void setEventType(String eventType) { this.eventType = eventType; }
+    
+    public String getScrollId() { return scrollId; }
+    public void setScrollId(String scrollId) { this.scrollId = scrollId; }
+    
+    public Boolean getCaughtUp() { return caughtUp; }
+    public void setCaughtUp(Boolean caughtUp) { this.caughtUp = caughtUp; }
+    
+    public Long getPagesCommitted() { return pagesCommitted; }
+    public void setPagesCommitted(Long pagesCommitted) { this.pagesCommitted = pagesCommitted; }
+    
+    public Long getEventsCommitted() { return eventsCommitted; }
+    public void setEventsCommitted(Long eventsCommitted) { this.eventsCommitted = eventsCommitted; }
+    
+    public LocalDateTime getCommittedAt() { return committedAt; }
+    public void setCommittedAt(LocalDateTime committedAt) { this.committedAt = committedAt; }
+}
@@ -0,0 +1,91 @@
+package org.example.gainsightapp.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One extraction run of one tenant. Jobs in progress are tracked in memory by the instance
+ * running them; finished jobs are written once to {@code extraction_jobs}, a capped
+ * collection, so the history keeps the most recent runs.
+ */
+@Document(collection = "extraction_jobs")
+@CompoundIndex(name = "idx_tenant_finished", def = "{'tenantId': 1, 'finishedAt': -1}")
+public class ExtractionJob {
+    
+    @Id
+    private String id;
+    
+    private String tenantId;
+    private String trigger; // manual, sweep or follow-up
+    private String instance;
+    
+    private Status status;
+    private boolean cancelRequested;
+    private String currentEventType;
+    private Integer pages = 0;
+    private Long events = 0L;
+    private Long bytes = 0L;
+    private String error;
+    
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED,
+        /** Stopped by a shutdown; the next run resumes from its checkpoint. */
+        INTERRUPTED;
+    
+        public boolean isFinished() {
+            return this != QUEUED && this != RUNNING;
+        }
+    }
+    
+    public ExtractionJob() {}
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getTenantId() { return tenantId; }
+    public void setTenantId(String tenantId) { this.tenantId = tenantId; }
+    
+    public String getTrigger() { return trigger; }
+    public void setTrigger(String trigger) { this.trigger = trigger; }
+    
+    public String getInstance() { return instance; }
+    public void setInstance(String instance) { this.instance = instance; }
+    
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    
+    public boolean isCancelRequested() { return cancelRequested; }
+    public void setCancelRequested(boolean cancelRequested) { this.cancelRequested = cancelRequested; }
+    
+    public String getCurrentEventType() { return currentEventType; }
+    public void setCurrentEventType(String currentEventType) { this.currentEventType = currentEventType; }
+    
+    public Integer getPages() { return pages; }
+    public void setPages(Integer pages) { this.pages = pages; }
+    
+    public Long getEvents() { return events; }
+    public void setEvents(Long events) { this.events = events; }
+    
+    public Long getBytes() { return bytes; }
+    public void setBytes(Long bytes) { this.bytes = bytes; }
+    
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+    
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
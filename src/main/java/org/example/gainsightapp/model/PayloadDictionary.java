@@ -0,0 +1,55 @@
+package org.example.gainsightapp.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Compression dictionary trained from one tenant's event payloads. Versions are never
+ * deleted or changed, since stored events name the version they were compressed with.
+ */
+@Document(collection = "payload_dictionaries")
+public class PayloadDictionary {
+
+    @Id
+    private String id; // tenantId:version
+    
+    @Indexed
+    private String tenantId;
+    private Integer version;
+    
+    private byte[] dictionary;
+    private Integer samples;
+    private Long sampleBytes;
+    private LocalDateTime trainedAt;
+    
+    public PayloadDictionary() {}
+    
+    public static String idFor(String tenantId, int version) {
+        return tenantId + ":" + version;
+    }
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getTenantId() { return tenantId; }
+    public void setTenantId(String tenantId) { this.tenantId = tenantId; }
+    
+    public Integer getVersion() { return version; }
+    public void setVersion(Integer version) { this.version = version; }
+    
+    public byte[] getDictionary() { return dictionary; }
+    public void setDictionary(byte[] dictionary) { this.dictionary = dictionary; }
+    
+    public Integer getSamples() { return samples; }
+    public void setSamples(Integer samples) { this.samples = samples; }
+    
+    public Long getSampleBytes() { return sampleBytes; }
+    public void setSampleBytes(Long sampleBytes) { this.sampleBytes = sampleBytes; }
+    
+    public LocalDateTime getTrainedAt() { return trainedAt; }
+    public void setTrainedAt(LocalDateTime trainedAt) { this.trainedAt = trainedAt; }
+}
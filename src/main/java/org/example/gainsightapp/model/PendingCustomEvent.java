@@ -0,0 +1,82 @@
+package org.example.gainsightapp.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Custom event accepted by {@code POST /gainsight/event} in async ingestion mode and
+ * waiting to be forwarded to Gainsight PX.
+ */
+@Document(collection = "pending_custom_events")
+@CompoundIndexes({
+    @CompoundIndex(name = "idx_status_next_attempt", def = "{'status': 1, 'nextAttemptAt': 1}"),
+    @CompoundIndex(name = "idx_claim_token", def = "{'claimToken': 1}", sparse = true)
+})
+public class PendingCustomEvent {
+    
+    @Id
+    private String id;
+    
+    // Null means the default Gainsight PX credentials (gainsight.px.*)
+    private String tenantId;
+    
+    private String payload; // JSON string
+    
+    private Status status = Status.PENDING;
+    private String claimToken;
+    private LocalDateTime claimedAt;
+    
+    private Integer attempts = 0;
+    private LocalDateTime nextAttemptAt;
+    private String lastError;
+    
+    private LocalDateTime createdAt;
+    
+    public enum Status {
+        PENDING, SENDING, FAILED
+    }
+    
+    public PendingCustomEvent() {}
+    
+    public PendingCustomEvent(String tenantId, String payload, LocalDateTime createdAt) {
+        this.tenantId = tenantId;
+        this.payload = payload;
+        this.createdAt = createdAt;
+        this.nextAttemptAt = createdAt;
+    }
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getTenantId() { return tenantId; }
+    public void setTenantId(String tenantId) { this.tenantId = tenantId; }
+    
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+    
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    
+    public String getClaimToken() { return claimToken; }
+    public void setClaimToken(String claimToken) { this.claimToken = claimToken; }
+    
+    public LocalDateTime getClaimedAt() { return claimedAt; }
+    public void setClaimedAt(LocalDateTime claimedAt) { this.claimedAt = claimedAt; }
+    
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+    
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
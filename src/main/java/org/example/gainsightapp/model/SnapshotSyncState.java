@@ -0,0 +1,100 @@
+package org.example.gainsightapp.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the user or account snapshot sync for one tenant. {@code scrollId} is the
+ * cursor of an unfinished pass, so an interrupted sync resumes where it stopped; the
+ * run counters describe the current pass and the {@code last*} fields the last completed one.
+ * {@code truncated} is set while a pass is split across runs by the per-run page limit.
+ */
+@Document(collection = "snapshot_sync_state")
+public class SnapshotSyncState {
+    
+    @Id
+    private String id; // tenantId:kind
+    
+    @Indexed
+    private String tenantId;
+    private EntitySnapshot.Kind kind;
+    
+    private String scrollId;
+    private LocalDateTime runStartedAt;
+    private Integer runPages = 0;
+    private Long runCreated = 0L;
+    private Long runUpdated = 0L;
+    private Long runUnchanged = 0L;
+    private Boolean truncated = false;
+    
+    private LocalDateTime lastCompletedAt;
+    private Long lastCreated;
+    private Long lastUpdated;
+    private Long lastUnchanged;
+    private String lastError;
+    private LocalDateTime updatedAt;
+    
+    public SnapshotSyncState() {}
+    
+    public SnapshotSyncState(String tenantId, EntitySnapshot.Kind kind) {
+        this.id = idFor(tenantId, kind);
+        this.tenantId = tenantId;
+        this.kind = kind;
+    }
+    
+    public static String idFor(String tenantId, EntitySnapshot.Kind kind) {
+        return tenantId + ":" + kind;
+    }
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getTenantId() { return tenantId; }
+    public void setTenantId(String tenantId) { this.tenantId = tenantId; }
+    
+    public EntitySnapshot.Kind getKind() { return kind; }
+    public void setKind(EntitySnapshot.Kind kind) { this.kind = kind; }
+    
+    public String getScrollId() { return scrollId; }
+    public void setScrollId(String scrollId) { this.scrollId = scrollId; }
+    
+    public LocalDateTime getRunStartedAt() { return runStartedAt; }
+    public void setRunStartedAt(LocalDateTime runStartedAt) { this.runStartedAt = runStartedAt; }
+    
+    public Integer getRunPages() { return runPages; }
+    public void setRunPages(Integer runPages) { this.runPages = runPages; }
+    
+    public Long getRunCreated() { return runCreated; }
+    public void setRunCreated(Long runCreated) { this.runCreated = runCreated; }
+    
+    public Long getRunUpdated() { return runUpdated; }
+    public void setRunUpdated(Long runUpdated) { this.runUpdated = runUpdated; }
+    
+    public Long getRunUnchanged() { return runUnchanged; }
+    public void setRunUnchanged(Long runUnchanged) { this.runUnchanged = runUnchanged; }
+    
+    public Boolean getTruncated() { return truncated; }
+    public void setTruncated(Boolean truncated) { this.truncated = truncated; }
+    
+    public LocalDateTime getLastCompletedAt() { return lastCompletedAt; }
+    public void setLastCompletedAt(LocalDateTime lastCompletedAt) { this.lastCompletedAt = lastCompletedAt; }
+    
+    public Long getLastCreated() { return lastCreated; }
+    public void setLastCreated(Long lastCreated) { this.lastCreated = lastCreated; }
+    
+    public Long getLastUpdated() { return lastUpdated; }
+    public void setLastUpdated(Long lastUpdated) { this.lastUpdated = lastUpdated; }
+    
+    public Long getLastUnchanged() { return lastUnchanged; }
+    public void setLastUnchanged(Long lastUnchanged) { this.lastUnchanged = lastUnchanged; }
+    
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
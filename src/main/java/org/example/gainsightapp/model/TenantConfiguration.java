@@ -6,6 +6,8 @@ import org.springframework.data.mongodb.core.index.Indexed;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Document(collection = "tenant_configurations")
 public class TenantConfiguration {
@@ -35,12 +37,14 @@ public class TenantConfiguration {
     private Boolean extractStandardEvents = true;
     private Integer maxRetryAttempts = 3;
     private Integer timeoutSeconds = 30;
+    private Integer schedulingWeight = 1; // Share of extraction workers relative to other tenants
+    private List<String> promotedProperties = new ArrayList<>(); // Payload paths copied to ExtractedEvent.promoted, as path or path:type
     
     // Last extraction tracking
     private LocalDateTime lastSuccessfulExtraction;
     private LocalDateTime lastAttemptedExtraction;
     private String lastExtractionError;
-    private String lastProcessedScrollId;
+    private String lastProcessedScrollId; // legacy checkpoint, read only until a stream has its own in extraction_checkpoints
     
     // Timestamps
     private LocalDateTime createdAt;
@@ -69,6 +73,28 @@ public class TenantConfiguration {
         onCreate();
     }
     
+    public TenantConfiguration(TenantConfiguration other) {
+        this.id = other.id;
+        this.tenantId = other.tenantId;
+        this.companyName = other.companyName;
+        this.apiKey = other.apiKey;
+        this.apiUrl = other.apiUrl;
+        this.active = other.active;
+        this.extractionIntervalMinutes = other.extractionIntervalMinutes;
+        this.extractCustomEvents = other.extractCustomEvents;
+        this.extractStandardEvents = other.extractStandardEvents;
+        this.maxRetryAttempts = other.maxRetryAttempts;
+        this.timeoutSeconds = other.timeoutSeconds;
+        this.schedulingWeight = other.schedulingWeight;
+        this.promotedProperties = other.promotedProperties != null ? new ArrayList<>(other.promotedProperties) : null;
+        this.lastSuccessfulExtraction = other.lastSuccessfulExtraction;
+        this.lastAttemptedExtraction = other.lastAttemptedExtraction;
+        this.lastExtractionError = other.lastExtractionError;
+        this.lastProcessedScrollId = other.lastProcessedScrollId;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+    
     // Getters and Setters
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
@@ -103,6 +129,12 @@ public class TenantConfiguration {
     public Integer getTimeoutSeconds() { return timeoutSeconds; }
     public void setTimeoutSeconds(Integer timeoutSeconds) { this.timeoutSeconds = timeoutSeconds; }
     
+    public Integer getSchedulingWeight() { return schedulingWeight; }
+    public void setSchedulingWeight(Integer schedulingWeight) { this.schedulingWeight = schedulingWeight; }
+    
+    public List<String> getPromotedProperties() { return promotedProperties; }
+    public void setPromotedProperties(List<String> promotedProperties) { this.promotedProperties = promotedProperties; }
+    
     public LocalDateTime getLastSuccessfulExtraction() { return lastSuccessfulExtraction; }
     public void setLastSuccessfulExtraction(LocalDateTime lastSuccessfulExtraction) { this.lastSuccessfulExtraction = lastSuccessfulExtraction; }
     
@@ -0,0 +1,78 @@
+package org.example.gainsightapp.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease that makes one run the only active run of a tenant's stream across all instances.
+ * {@code owner} is the token of the holding run and is null while nobody holds it; triggers
+ * that arrive in the meantime set {@code followUpRequested}, so they collapse into one run
+ * after the current one.
+ */
+@Document(collection = "tenant_run_leases")
+public class TenantRunLease {
+    
+    @Id
+    private String id; // tenantId:stream
+    
+    @Indexed
+    private String tenantId;
+    private String stream;
+    
+    private String owner;
+    private String instance;
+    private String trigger;
+    private LocalDateTime acquiredAt;
+    private LocalDateTime renewedAt;
+    private LocalDateTime expiresAt;
+    
+    private Boolean followUpRequested = false;
+    private Long coalescedTriggers = 0L;
+    private LocalDateTime lastReleasedAt;
+    
+    public TenantRunLease() {}
+    
+    public static String idFor(String tenantId, String stream) {
+        return tenantId + ":" + stream;
+    }
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getTenantId() { return tenantId; }
+    public void setTenantId(String tenantId) { this.tenantId = tenantId; }
+    
+    public String getStream() { return stream; }
+    public void setStream(String stream) { this.stream = stream; }
+    
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+    
+    public String getInstance() { return instance; }
+    public void setInstance(String instance) { this.instance = instance; }
+    
+    public String getTrigger() { return trigger; }
+    public void setTrigger(String trigger) { this.trigger = trigger; }
+    
+    public LocalDateTime getAcquiredAt() { return acquiredAt; }
+    public void setAcquiredAt(LocalDateTime acquiredAt) { this.acquiredAt = acquiredAt; }
+    
+    public LocalDateTime getRenewedAt() { return renewedAt; }
+    public void setRenewedAt(LocalDateTime renewedAt) { this.renewedAt = renewedAt; }
+    
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+    
+    public Boolean getFollowUpRequested() { return followUpRequested; }
+    public void setFollowUpRequested(Boolean followUpRequested) { this.followUpRequested = followUpRequested; }
+    
+    public Long getCoalescedTriggers() { return coalescedTriggers; }
+    public void setCoalescedTriggers(Long coalescedTriggers) { this.coalescedTriggers = coalescedTriggers; }
+    
+    public LocalDateTime getLastReleasedAt() { return lastReleasedAt; }
+    public void setLastReleasedAt(LocalDateTime lastReleasedAt) { this.lastReleasedAt = lastReleasedAt; }
+}
@@ -0,0 +1,18 @@
+package org.example.gainsightapp.repository;
+
+import org.example.gainsightapp.model.EntitySnapshot;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EntitySnapshotRepository extends MongoRepository<EntitySnapshot, String> {
+    
+    Optional<EntitySnapshot> findByTenantIdAndKindAndEntityId(String tenantId, EntitySnapshot.Kind kind, String entityId);
+    
+    List<EntitySnapshot> findByTenantIdAndKindAndEntityIdIn(String tenantId, EntitySnapshot.Kind kind, Iterable<String> entityIds);
+    
+    long countByTenantIdAndKind(String tenantId, EntitySnapshot.Kind kind);
+}
@@ -1,6 +1,8 @@
 package org.example.gainsightapp.repository;
 
 import org.example.gainsightapp.model.ExtractedEvent;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -23,4 +25,6 @@ public interface ExtractedEventRepository extends MongoRepository<ExtractedEvent
     Long countEventsByTenantSince(String tenantId, LocalDateTime since);
     
     Optional<ExtractedEvent> findTopByTenantIdOrderByEventTimestampDesc(String tenantId);
+    
+    Page<ExtractedEvent> findByTenantId(String tenantId, Pageable pageable);
 }
@@ -0,0 +1,13 @@
+package org.example.gainsightapp.repository;
+
+import org.example.gainsightapp.model.SnapshotSyncState;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SnapshotSyncStateRepository extends MongoRepository<SnapshotSyncState, String> {
+    
+    List<SnapshotSyncState> findByTenantId(String tenantId);
+}
@@ -3,6 +3,7 @@ package org.example.gainsightapp.repository;
 import org.example.gainsightapp.model.TenantConfiguration;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -21,4 +22,17 @@ public interface TenantConfigurationRepository extends MongoRepository<TenantCon
     
     @Query("{ 'active': true, 'lastExtractionError': { $ne: null } }")
     List<TenantConfiguration> findTenantsWithErrors();
+    
+    // Run bookkeeping is written field by field so it never overwrites a concurrent admin edit
+    @Query("{ 'tenantId': ?0 }")
+    @Update("{ $set: { 'lastAttemptedExtraction': ?1 } }")
+    void updateLastAttemptedExtraction(String tenantId, LocalDateTime attemptedAt);
+    
+    @Query("{ 'tenantId': ?0 }")
+    @Update("{ $set: { 'lastSuccessfulExtraction': ?1 }, $unset: { 'lastExtractionError': '' } }")
+    void updateLastSuccessfulExtraction(String tenantId, LocalDateTime succeededAt);
+    
+    @Query("{ 'tenantId': ?0 }")
+    @Update("{ $set: { 'lastExtractionError': ?1 } }")
+    void updateLastExtractionError(String tenantId, String error);
 }
@@ -0,0 +1,322 @@
+package org.example.gainsightapp.segment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only view of a memory-mapped segment file holding the events of one tenant-day in
+ * columns (written by {@link EventSegmentWriter}).
+ *
+ * Layout, all big-endian: magic, version, day start, write time, row count; the name, type and
+ * user dictionaries; the (name, type, length) runs; the timestamp offset and user code columns;
+ * then each extra column as its name, dictionary and codes. Dictionaries and runs are read into
+ * the heap, the columns stay in the mapping.
+ *
+ * {@link #aggregate} skips whole runs that do not match the name and type filters, finds bucket
+ * edges by binary search on the sorted timestamps of each run and then only loops over plain
+ * {@code int} arrays copied out of the mapping.
+ */
+public final class EventSegment {
+
+    static final int MAGIC = 0x47534547; // "GSEG"
+    static final int VERSION = 1;
+
+    public static final int MAX_BUCKETS = 64;
+
+    private final long dayStart;
+    private final long writtenAt;
+    private final int rows;
+    private final long bytes;
+    private final String[] names;
+    private final String[] types;
+    private final int userCount;
+    private final int[] runName;
+    private final int[] runType;
+    private final int[] runStart;
+    private final int[] runLength;
+    private final int maxRunLength;
+    private final IntBuffer offsets;
+    private final IntBuffer userCodes;
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+
+    private record Column(Map<String, Integer> codes, IntBuffer data) {}
+
+    /**
+     * Rows to aggregate; a null type or name set matches everything, {@code columns} maps extra
+     * columns to the value they must have.
+     */
+    public record Filter(String eventType, Set<String> eventNames, Map<String, String> columns) {}
+
+    /** Events and distinct users of one event name in bucket {@code bucket}. */
+    public record Group(String eventName, int bucket, long events, long users) {}
+
+    private EventSegment(ByteBuffer buffer, long bytes) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not an event segment");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported event segment version " + version);
+        }
+        this.bytes = bytes;
+        this.dayStart = buffer.getLong();
+        this.writtenAt = buffer.getLong();
+        this.rows = buffer.getInt();
+        this.names = readDictionary(buffer);
+        this.types = readDictionary(buffer);
+        this.userCount = skipDictionary(buffer);
+
+        int runs = buffer.getInt();
+        runName = new int[runs];
+        runType = new int[runs];
+        runStart = new int[runs];
+        runLength = new int[runs];
+        int start = 0;
+        int longest = 0;
+        for (int i = 0; i < runs; i++) {
+            runName[i] = buffer.getInt();
+            runType[i] = buffer.getInt();
+            runLength[i] = buffer.getInt();
+            runStart[i] = start;
+            start += runLength[i];
+            longest = Math.max(longest, runLength[i]);
+        }
+        this.maxRunLength = longest;
+        this.offsets = column(buffer, rows);
+        this.userCodes = column(buffer, rows);
+
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            String name = readString(buffer);
+            String[] values = readDictionary(buffer);
+            Map<String, Integer> codes = new HashMap<>(values.length * 2);
+            for (int code = 0; code < values.length; code++) {
+                codes.put(values[code], code);
+            }
+            columns.put(name, new Column(codes, column(buffer, rows)));
+        }
+    }
+
+    public static EventSegment open(Path path) throws IOException {
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new EventSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), channel.size());
+        }
+    }
+
+    public long dayStart() {
+        return dayStart;
+    }
+
+    public long writtenAt() {
+        return writtenAt;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    public Set<String> columns() {
+        return columns.keySet();
+    }
+
+    /**
+     * Events and distinct users per event name and bucket, for groups with at least one event.
+     * Bucket {@code i} covers offsets from the start of the day in
+     * {@code [boundaries[i], boundaries[i + 1])}; there are at most {@link #MAX_BUCKETS}.
+     */
+    public List<Group> aggregate(Filter filter, int[] boundaries) {
+        int buckets = boundaries.length - 1;
+        if (buckets < 1 || buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_BUCKETS + " buckets are supported");
+        }
+        List<Group> groups = new ArrayList<>();
+
+        int type = -1;
+        if (filter.eventType() != null) {
+            type = indexOf(types, filter.eventType());
+            if (type < 0) {
+                return groups;
+            }
+        }
+        boolean[] nameMatches = null;
+        if (filter.eventNames() != null) {
+            nameMatches = new boolean[names.length];
+            for (int i = 0; i < names.length; i++) {
+                nameMatches[i] = names[i] != null && filter.eventNames().contains(names[i]);
+            }
+        }
+        Map<String, String> required = filter.columns() != null ? filter.columns() : Map.of();
+        IntBuffer[] predicates = new IntBuffer[required.size()];
+        int[] predicateCodes = new int[required.size()];
+        int p = 0;
+        for (Map.Entry<String, String> entry : required.entrySet()) {
+            Column column = columns.get(entry.getKey());
+            if (column == null) {
+                throw new IllegalArgumentException("Segment has no column " + entry.getKey());
+            }
+            Integer code = column.codes().get(entry.getValue());
+            if (code == null) {
+                return groups;
+            }
+            predicates[p] = column.data();
+            predicateCodes[p++] = code;
+        }
+
+        int[] timestamps = new int[maxRunLength];
+        int[] users = new int[maxRunLength];
+        int[] mask = new int[maxRunLength];
+        int[] codes = predicates.length > 0 ? new int[maxRunLength] : null;
+        // Buckets a user was counted in for the current name, and the users to reset after it
+        long[] seen = new long[userCount];
+        int[] touched = new int[Math.min(userCount, 1024)];
+        int touchedCount = 0;
+        long[] events = new long[buckets];
+        long[] distinctUsers = new long[buckets];
+        int currentName = -1;
+
+        for (int run = 0; run < runName.length; run++) {
+            if ((type >= 0 && runType[run] != type) || (nameMatches != null && !nameMatches[runName[run]])) {
+                continue;
+            }
+            if (runName[run] != currentName) {
+                if (currentName >= 0) {
+                    flush(groups, names[currentName], events, distinctUsers);
+                }
+                for (int i = 0; i < touchedCount; i++) {
+                    seen[touched[i]] = 0;
+                }
+                touchedCount = 0;
+                currentName = runName[run];
+            }
+
+            int start = runStart[run];
+            int length = runLength[run];
+            offsets.get(start, timestamps, 0, length);
+            userCodes.get(start, users, 0, length);
+            Arrays.fill(mask, 0, length, 1);
+            for (int i = 0; i < predicates.length; i++) {
+                predicates[i].get(start, codes, 0, length);
+                int code = predicateCodes[i];
+                for (int row = 0; row < length; row++) {
+                    mask[row] &= codes[row] == code ? 1 : 0;
+                }
+            }
+
+            int from = lowerBound(timestamps, 0, length, boundaries[0]);
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                int to = lowerBound(timestamps, from, length, boundaries[bucket + 1]);
+                long bit = 1L << bucket;
+                long count = 0;
+                for (int row = from; row < to; row++) {
+                    count += mask[row];
+                }
+                events[bucket] += count;
+                for (int row = from; row < to; row++) {
+                    int user = users[row];
+                    if (mask[row] == 0 || user < 0 || (seen[user] & bit) != 0) {
+                        continue;
+                    }
+                    if (seen[user] == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = user;
+                    }
+                    seen[user] |= bit;
+                    distinctUsers[bucket]++;
+                }
+                from = to;
+            }
+        }
+        if (currentName >= 0) {
+            flush(groups, names[currentName], events, distinctUsers);
+        }
+        return groups;
+    }
+
+    private static void flush(List<Group> groups, String name, long[] events, long[] users) {
+        for (int bucket = 0; bucket < events.length; bucket++) {
+            if (events[bucket] > 0) {
+                groups.add(new Group(name, bucket, events[bucket], users[bucket]));
+            }
+            events[bucket] = 0;
+            users[bucket] = 0;
+        }
+    }
+
+    private static int lowerBound(int[] values, int from, int to, int key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int indexOf(String[] values, String value) {
+        for (int i = 0; i < values.length; i++) {
+            if (value.equals(values[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static IntBuffer column(ByteBuffer buffer, int rows) {
+        IntBuffer column = buffer.slice(buffer.position(), rows * 4).asIntBuffer();
+        buffer.position(buffer.position() + rows * 4);
+        return column;
+    }
+
+    private static String[] readDictionary(ByteBuffer buffer) {
+        String[] values = new String[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(buffer);
+        }
+        return values;
+    }
+
+    // Users are only counted, so their names are never read
+    private static int skipDictionary(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            if (length > 0) {
+                buffer.position(buffer.position() + length);
+            }
+        }
+        return count;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
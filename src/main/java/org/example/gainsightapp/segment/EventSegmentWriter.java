@@ -0,0 +1,172 @@
+package org.example.gainsightapp.segment;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Collects the events of one tenant-day and writes them as an {@link EventSegment} file.
+ *
+ * Rows are sorted by event name, event type and timestamp. Name and type are then stored as
+ * runs of equal (name, type) pairs over their dictionaries, timestamps as milliseconds since
+ * the start of the day, and users and extra columns as dictionary codes ({@code -1} for none).
+ */
+public final class EventSegmentWriter {
+
+    private final long dayStart;
+    private final List<String> columns;
+    private final Dictionary names = new Dictionary();
+    private final Dictionary types = new Dictionary();
+    private final Dictionary users = new Dictionary();
+    private final Dictionary[] columnValues;
+    private int[] nameCodes = new int[1024];
+    private int[] typeCodes = new int[1024];
+    private int[] offsets = new int[1024];
+    private int[] userCodes = new int[1024];
+    private int[][] columnCodes;
+    private int rows;
+
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int code(String value) {
+            return codes.computeIfAbsent(value, key -> {
+                values.add(key);
+                return values.size() - 1;
+            });
+        }
+
+        int codeOrNone(String value) {
+            return value == null ? -1 : code(value);
+        }
+    }
+
+    /**
+     * @param dayStart start of the day in epoch milliseconds
+     * @param columns names of the extra dictionary columns, in the order {@link #add} gets them
+     */
+    public EventSegmentWriter(long dayStart, List<String> columns) {
+        this.dayStart = dayStart;
+        this.columns = List.copyOf(columns);
+        this.columnValues = new Dictionary[columns.size()];
+        this.columnCodes = new int[columns.size()][1024];
+        for (int i = 0; i < columnValues.length; i++) {
+            columnValues[i] = new Dictionary();
+        }
+    }
+
+    public void add(String eventName, String eventType, long timestamp, String user, String[] values) {
+        long offset = timestamp - dayStart;
+        if (offset < 0 || offset > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Timestamp " + timestamp + " is outside the segment's day");
+        }
+        if (rows == offsets.length) {
+            int capacity = rows * 2;
+            nameCodes = Arrays.copyOf(nameCodes, capacity);
+            typeCodes = Arrays.copyOf(typeCodes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            userCodes = Arrays.copyOf(userCodes, capacity);
+            for (int i = 0; i < columnCodes.length; i++) {
+                columnCodes[i] = Arrays.copyOf(columnCodes[i], capacity);
+            }
+        }
+        nameCodes[rows] = names.code(eventName);
+        typeCodes[rows] = types.code(eventType);
+        offsets[rows] = (int) offset;
+        userCodes[rows] = users.codeOrNone(user);
+        for (int i = 0; i < columnCodes.length; i++) {
+            columnCodes[i][rows] = columnValues[i].codeOrNone(values[i]);
+        }
+        rows++;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    /** Writes the segment to a temporary file and moves it into place; returns its size. */
+    public long write(Path path) throws IOException {
+        int[] order = IntStream.range(0, rows).boxed()
+            .sorted(Comparator.<Integer>comparingInt(row -> nameCodes[row])
+                .thenComparingInt(row -> typeCodes[row])
+                .thenComparingInt(row -> offsets[row]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(EventSegment.MAGIC);
+            out.writeInt(EventSegment.VERSION);
+            out.writeLong(dayStart);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(rows);
+            writeDictionary(out, names);
+            writeDictionary(out, types);
+            writeDictionary(out, users);
+
+            List<int[]> runs = new ArrayList<>();
+            for (int i = 0; i < rows; i++) {
+                int row = order[i];
+                int[] last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+                if (last != null && last[0] == nameCodes[row] && last[1] == typeCodes[row]) {
+                    last[2]++;
+                } else {
+                    runs.add(new int[] {nameCodes[row], typeCodes[row], 1});
+                }
+            }
+            out.writeInt(runs.size());
+            for (int[] run : runs) {
+                out.writeInt(run[0]);
+                out.writeInt(run[1]);
+                out.writeInt(run[2]);
+            }
+            writeColumn(out, offsets, order);
+            writeColumn(out, userCodes, order);
+
+            out.writeInt(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                writeString(out, columns.get(i));
+                writeDictionary(out, columnValues[i]);
+                writeColumn(out, columnCodes[i], order);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(path);
+    }
+
+    private static void writeColumn(DataOutputStream out, int[] values, int[] order) throws IOException {
+        for (int row : order) {
+            out.writeInt(values[row]);
+        }
+    }
+
+    private static void writeDictionary(DataOutputStream out, Dictionary dictionary) throws IOException {
+        out.writeInt(dictionary.values.size());
+        for (String value : dictionary.values) {
+            writeString(out, value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,458 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers;
+import org.example.gainsightapp.integration.GainsightPXClient;
+import org.example.gainsightapp.integration.MultiTenantGainsightPXClient;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.PendingCustomEvent;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous ingestion for {@code POST /gainsight/event}, enabled with
+ * {@code gainsight.ingestion.mode=async}.
+ *
+ * Accepted events are written to the {@code pending_custom_events} collection, so they
+ * survive a restart, and the request returns without waiting for Gainsight PX. A flush
+ * loop claims up to {@code gainsight.ingestion.batch-size} events at a time, either every
+ * {@code gainsight.ingestion.flush-interval-ms} or as soon as a full batch is waiting, and
+ * forwards them with the default or the tenant's credentials over the pooled connections.
+ * Claims carry a token so several instances can share the buffer; claims left behind by a
+ * crashed instance are released after {@code gainsight.ingestion.claim-timeout-seconds}.
+ *
+ * Throttling, 5xx and transport errors are retried with exponential backoff up to
+ * {@code gainsight.ingestion.max-attempts}; other 4xx responses fail the event, which is
+ * kept with status FAILED for inspection. Events for tenants whose circuit is open wait
+ * without using up attempts.
+ */
+@Service
+@ConditionalOnProperty(name = "gainsight.ingestion.mode", havingValue = "async")
+public class CustomEventIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomEventIngestionService.class);
+
+    private static final Duration RETRY_BASE_DELAY = Duration.ofSeconds(1);
+    private static final Duration RETRY_MAX_DELAY = Duration.ofMinutes(5);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final GainsightPXClient pxClient;
+    private final MultiTenantGainsightPXClient tenantClient;
+    private final TenantRegistry tenantRegistry;
+    private final GainsightCircuitBreakers circuitBreakers;
+    private final MeterRegistry registry;
+
+    private final long maxPending;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxAttempts;
+    private final Duration claimTimeout;
+
+    private final ScheduledExecutorService flushScheduler;
+    private final ExecutorService sendExecutor;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Timer flushLatency;
+    private final DistributionSummary batchSizes;
+    private final Timer deliveryLag;
+
+    public CustomEventIngestionService(
+            MongoTemplate mongoTemplate,
+            GainsightPXClient pxClient,
+            MultiTenantGainsightPXClient tenantClient,
+            TenantRegistry tenantRegistry,
+            GainsightCircuitBreakers circuitBreakers,
+            ExtractionMetrics metrics,
+            @Value("${gainsight.ingestion.max-pending:100000}") long maxPending,
+            @Value("${gainsight.ingestion.batch-size:500}") int batchSize,
+            @Value("${gainsight.ingestion.flush-interval-ms:1000}") long flushIntervalMs,
+            @Value("${gainsight.ingestion.send-concurrency:8}") int sendConcurrency,
+            @Value("${gainsight.ingestion.max-attempts:8}") int maxAttempts,
+            @Value("${gainsight.ingestion.claim-timeout-seconds:300}") long claimTimeoutSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.pxClient = pxClient;
+        this.tenantClient = tenantClient;
+        this.tenantRegistry = tenantRegistry;
+        this.circuitBreakers = circuitBreakers;
+        this.registry = metrics.getRegistry();
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxAttempts = maxAttempts;
+        this.claimTimeout = Duration.ofSeconds(claimTimeoutSeconds);
+
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gainsight-ingest-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sendExecutor = metrics.monitorExecutor(
+            Executors.newFixedThreadPool(sendConcurrency), "gainsight.ingest.send");
+
+        Gauge.builder("gainsight.ingest.queue.depth", pending, AtomicLong::get)
+            .description("Custom events buffered and not yet delivered")
+            .register(registry);
+        this.flushLatency = Timer.builder("gainsight.ingest.flush.latency")
+            .description("Time to claim, send and acknowledge one batch of custom events")
+            .register(registry);
+        this.batchSizes = DistributionSummary.builder("gainsight.ingest.batch.size")
+            .description("Custom events claimed per flush batch")
+            .register(registry);
+        this.deliveryLag = Timer.builder("gainsight.ingest.delivery.lag")
+            .description("Time from accepting a custom event to delivering it")
+            .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        refreshQueueDepth();
+        flushScheduler.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Async custom event ingestion started ({} buffered)", pending.get());
+    }
+
+    /**
+     * Buffers one event, or each element of an array of events.
+     *
+     * @param tenantId tenant whose credentials are used, or null for the default credentials
+     * @return the number of events accepted
+     * @throws IllegalArgumentException if the payload or tenant is invalid
+     * @throws IllegalStateException if the buffer is full
+     */
+    public int accept(String tenantId, JsonNode payload) {
+        List<JsonNode> events = new ArrayList<>();
+        if (payload != null && payload.isArray()) {
+            payload.forEach(events::add);
+        } else if (payload != null) {
+            events.add(payload);
+        }
+        if (events.isEmpty() || events.stream().anyMatch(event -> !event.isObject())) {
+            throw new IllegalArgumentException("Expected an event object or a non-empty array of event objects");
+        }
+        if (tenantId != null && tenantRegistry.getTenant(tenantId).isEmpty()) {
+            throw new IllegalArgumentException("Tenant not found: " + tenantId);
+        }
+
+        if (pending.addAndGet(events.size()) > maxPending) {
+            pending.addAndGet(-events.size());
+            count("rejected", events.size());
+            throw new IllegalStateException("Custom event buffer is full");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<PendingCustomEvent> documents = events.stream()
+            .map(event -> new PendingCustomEvent(tenantId, event.toString(), now))
+            .toList();
+        try {
+            mongoTemplate.insert(documents, PendingCustomEvent.class);
+        } catch (RuntimeException e) {
+            pending.addAndGet(-events.size());
+            throw e;
+        }
+        count("accepted", events.size());
+
+        if (pending.get() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            flushScheduler.execute(this::flushSafely);
+        }
+        return events.size();
+    }
+
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushScheduler.shutdown();
+        try {
+            if (!flushScheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                flushScheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flushScheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // Anything still claimed is released again after the claim timeout
+        sendExecutor.shutdownNow();
+    }
+
+    // Package-private so tests can drive a flush directly
+    void flushSafely() {
+        flushRequested.set(false);
+        try {
+            releaseExpiredClaims();
+            // Keep going while full batches are waiting
+            while (!flushScheduler.isShutdown() && flushBatch() == batchSize) {
+                flushRequested.set(false);
+            }
+        } catch (Exception e) {
+            logger.error("Error flushing custom events: {}", e.getMessage(), e);
+        } finally {
+            refreshQueueDepth();
+        }
+    }
+
+    private int flushBatch() {
+        Timer.Sample sample = Timer.start(registry);
+        List<PendingCustomEvent> batch = claimBatch();
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        batchSizes.record(batch.size());
+
+        Outcomes outcomes = new Outcomes();
+        Map<String, List<PendingCustomEvent>> byTenant = new LinkedHashMap<>();
+        batch.forEach(event -> byTenant.computeIfAbsent(event.getTenantId(), id -> new ArrayList<>()).add(event));
+
+        List<CompletableFuture<Void>> sends = new ArrayList<>();
+        byTenant.forEach((tenantId, events) -> {
+            if (tenantId == null) {
+                events.forEach(event -> sends.add(sendAsync(null, event, outcomes)));
+                return;
+            }
+            TenantConfiguration tenant = tenantRegistry.getTenant(tenantId).orElse(null);
+            if (tenant == null) {
+                events.forEach(event -> outcomes.failed(event, "Tenant not found: " + tenantId));
+                return;
+            }
+            List<PendingCustomEvent> sendable = events;
+            GainsightCircuitBreakers.Permission permission = circuitBreakers.tryAcquire(tenant);
+            switch (permission) {
+                case DENIED -> {
+                    outcomes.deferred.addAll(events);
+                    return;
+                }
+                case PROBE -> {
+                    // One event goes first; the rest only follow if it gets through
+                    boolean delivered;
+                    try {
+                        delivered = send(tenant, events.get(0), outcomes);
+                    } finally {
+                        // A throttled probe records no outcome; hand the slot back for the next flush
+                        circuitBreakers.release(tenant, permission);
+                    }
+                    if (!delivered) {
+                        outcomes.deferred.addAll(events.subList(1, events.size()));
+                        return;
+                    }
+                    sendable = events.subList(1, events.size());
+                }
+                case ALLOWED -> { }
+            }
+            sendable.forEach(event -> sends.add(sendAsync(tenant, event, outcomes)));
+        });
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+
+        acknowledge(outcomes);
+        sample.stop(flushLatency);
+        logger.debug("Flushed {} custom events: {} delivered, {} retrying, {} failed, {} deferred",
+                    batch.size(), outcomes.delivered.size(), outcomes.retry.size(),
+                    outcomes.failed.size(), outcomes.deferred.size());
+        return batch.size();
+    }
+
+    /**
+     * Marks up to one batch of due events as SENDING under a fresh claim token and returns
+     * the ones this instance won.
+     */
+    private List<PendingCustomEvent> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        Query due = new Query(Criteria.where("status").is(PendingCustomEvent.Status.PENDING)
+                .and("nextAttemptAt").lte(now))
+            .with(Sort.by("nextAttemptAt"))
+            .limit(batchSize);
+        due.fields().include("_id");
+        List<String> ids = mongoTemplate.find(due, PendingCustomEvent.class).stream()
+            .map(PendingCustomEvent::getId)
+            .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        String claimToken = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(
+            new Query(Criteria.where("_id").in(ids).and("status").is(PendingCustomEvent.Status.PENDING)),
+            new Update().set("status", PendingCustomEvent.Status.SENDING)
+                .set("claimToken", claimToken)
+                .set("claimedAt", now),
+            PendingCustomEvent.class);
+        return mongoTemplate.find(new Query(Criteria.where("claimToken").is(claimToken)), PendingCustomEvent.class);
+    }
+
+    private void releaseExpiredClaims() {
+        long released = mongoTemplate.updateMulti(
+            new Query(Criteria.where("status").is(PendingCustomEvent.Status.SENDING)
+                .and("claimedAt").lt(LocalDateTime.now().minus(claimTimeout))),
+            new Update().set("status", PendingCustomEvent.Status.PENDING).unset("claimToken").unset("claimedAt"),
+            PendingCustomEvent.class).getModifiedCount();
+        if (released > 0) {
+            logger.warn("Released {} custom events whose claim expired", released);
+        }
+    }
+
+    private CompletableFuture<Void> sendAsync(TenantConfiguration tenant, PendingCustomEvent event, Outcomes outcomes) {
+        return CompletableFuture.runAsync(() -> send(tenant, event, outcomes), sendExecutor);
+    }
+
+    private boolean send(TenantConfiguration tenant, PendingCustomEvent event, Outcomes outcomes) {
+        try {
+            if (tenant == null) {
+                pxClient.sendCustomEvent(event.getPayload());
+            } else {
+                tenantClient.sendCustomEvent(tenant, event.getPayload());
+                circuitBreakers.recordSuccess(tenant);
+            }
+            outcomes.delivered(event);
+            return true;
+        } catch (Exception e) {
+            if (tenant != null) {
+                circuitBreakers.recordFailure(tenant, e);
+            }
+            String error = truncate(e.getMessage());
+            if (isRetryable(e) && event.getAttempts() + 1 < maxAttempts) {
+                outcomes.retry(event, error);
+            } else {
+                outcomes.failed(event, error);
+            }
+            return false;
+        }
+    }
+
+    private void acknowledge(Outcomes outcomes) {
+        if (!outcomes.delivered.isEmpty()) {
+            List<String> ids = outcomes.delivered.stream().map(PendingCustomEvent::getId).toList();
+            mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), PendingCustomEvent.class);
+            LocalDateTime now = LocalDateTime.now();
+            outcomes.delivered.forEach(event -> deliveryLag.record(Duration.between(event.getCreatedAt(), now)));
+            count("delivered", ids.size());
+        }
+
+        if (!outcomes.retry.isEmpty() || !outcomes.failed.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PendingCustomEvent.class);
+            LocalDateTime now = LocalDateTime.now();
+            outcomes.retry.forEach((event, error) -> {
+                int attempts = event.getAttempts() + 1;
+                bulk.updateOne(new Query(Criteria.where("_id").is(event.getId())),
+                    new Update().set("status", PendingCustomEvent.Status.PENDING)
+                        .set("attempts", attempts)
+                        .set("nextAttemptAt", now.plus(backoff(attempts)))
+                        .set("lastError", error)
+                        .unset("claimToken").unset("claimedAt"));
+            });
+            outcomes.failed.forEach((event, error) -> bulk.updateOne(new Query(Criteria.where("_id").is(event.getId())),
+                new Update().set("status", PendingCustomEvent.Status.FAILED)
+                    .set("attempts", event.getAttempts() + 1)
+                    .set("lastError", error)
+                    .unset("claimToken").unset("claimedAt")));
+            bulk.execute();
+            count("retried", outcomes.retry.size());
+            count("failed", outcomes.failed.size());
+        }
+
+        if (!outcomes.deferred.isEmpty()) {
+            List<String> ids = outcomes.deferred.stream().map(PendingCustomEvent::getId).toList();
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids)),
+                new Update().set("status", PendingCustomEvent.Status.PENDING)
+                    .set("nextAttemptAt", LocalDateTime.now().plus(Duration.ofMillis(flushIntervalMs)))
+                    .unset("claimToken").unset("claimedAt"),
+                PendingCustomEvent.class);
+            count("deferred", ids.size());
+        }
+    }
+
+    private void refreshQueueDepth() {
+        try {
+            pending.set(mongoTemplate.count(
+                new Query(Criteria.where("status").in(PendingCustomEvent.Status.PENDING, PendingCustomEvent.Status.SENDING)),
+                PendingCustomEvent.class));
+        } catch (Exception e) {
+            logger.debug("Could not count buffered custom events: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof HttpStatusCodeException http) {
+            int status = http.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        // Transport errors and anything unexpected are worth another attempt
+        return true;
+    }
+
+    private static Duration backoff(int attempts) {
+        Duration delay = RETRY_BASE_DELAY.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(RETRY_MAX_DELAY) > 0 ? RETRY_MAX_DELAY : delay;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    private void count(String result, long events) {
+        if (events == 0) {
+            return;
+        }
+        Counter.builder("gainsight.ingest.events")
+            .description("Custom events by ingestion outcome")
+            .tag("result", result)
+            .register(registry)
+            .increment(events);
+    }
+
+    /** Per-batch results; sends complete on the send executor, so the collections are synchronized. */
+    private static final class Outcomes {
+        final List<PendingCustomEvent> delivered = new ArrayList<>();
+        final Map<PendingCustomEvent, String> retry = new LinkedHashMap<>();
+        final Map<PendingCustomEvent, String> failed = new LinkedHashMap<>();
+        final List<PendingCustomEvent> deferred = new ArrayList<>();
+
+        synchronized void delivered(PendingCustomEvent event) {
+            delivered.add(event);
+        }
+
+        synchronized void retry(PendingCustomEvent event, String error) {
+            retry.put(event, error);
+        }
+
+        synchronized void failed(PendingCustomEvent event, String error) {
+            failed.put(event, error);
+        }
+    }
+}
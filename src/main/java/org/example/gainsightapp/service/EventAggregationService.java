@@ -0,0 +1,321 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.segment.EventSegment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Event counts and distinct users per event name, optionally per time bucket, computed by
+ * MongoDB instead of by pulling events.
+ *
+ * Each request becomes one pipeline: a {@code $match} on the fields of one of the
+ * {@link EventQueryService} indexes (passed as a hint), a group per name, bucket and user, and
+ * a group per name and bucket that counts events and users. It runs with {@code allowDiskUse}
+ * and a time limit. Distinct users are per bucket and cannot be added up across buckets.
+ *
+ * With {@link EventSegmentService} enabled, hourly and daily aggregations read the closed days
+ * that have a segment from the segment files and send only the remaining ranges to MongoDB.
+ * Weekly, monthly and unbucketed ones always run in MongoDB, since distinct users of a bucket
+ * spanning several sources cannot be combined.
+ *
+ * Results are cached per request together with the tenant's ingest watermark, the number of
+ * events committed by its extraction checkpoints
+ * ({@link ExtractionCheckpointStore#watermark}), and its promoted property version
+ * ({@link PropertyPromotionService#version}), and served for as long as both are unchanged.
+ */
+@Service
+public class EventAggregationService {
+
+    private final MongoTemplate mongoTemplate;
+    private final EventQueryService eventQueryService;
+    private final ExtractionCheckpointStore checkpointStore;
+    private final EventSegmentService segmentService;
+    private final PropertyPromotionService promotionService;
+    private final ExtractionMetrics metrics;
+    private final int maxBuckets;
+    private final Duration maxTime;
+    private final int maxEntries;
+    private final Map<AggregationQuery, Cached> cache;
+
+    public enum Interval { HOUR, DAY, WEEK, MONTH }
+
+    /**
+     * One aggregation; {@code eventType}, {@code eventNames}, {@code from} (inclusive),
+     * {@code to} (exclusive), {@code properties} (promoted property values) and
+     * {@code interval} are optional. Without an interval there is one bucket per event name.
+     */
+    public record AggregationQuery(String tenantId, String eventType, List<String> eventNames,
+                                   LocalDateTime from, LocalDateTime to, Map<String, String> properties,
+                                   Interval interval) {}
+
+    /** Events and distinct users of one event name in the bucket starting at {@code start}. */
+    public record Bucket(String eventName, LocalDateTime start, long events, long users) {}
+
+    /**
+     * Buckets ordered by start and name; {@code truncated} if there were more than the limit,
+     * {@code segments} the number of days answered from event segments.
+     */
+    public record AggregationResult(List<Bucket> buckets, boolean truncated, String index, int segments,
+                                    long watermark, boolean cached) {}
+
+    private record Cached(long watermark, long promotionVersion, AggregationResult result) {}
+
+    public EventAggregationService(
+            MongoTemplate mongoTemplate,
+            EventQueryService eventQueryService,
+            ExtractionCheckpointStore checkpointStore,
+            EventSegmentService segmentService,
+            PropertyPromotionService promotionService,
+            ExtractionMetrics metrics,
+            @Value("${gainsight.aggregation.max-buckets:10000}") int maxBuckets,
+            @Value("${gainsight.aggregation.max-time-ms:30000}") long maxTimeMs,
+            @Value("${gainsight.aggregation.cache.max-entries:1000}") int maxEntries) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventQueryService = eventQueryService;
+        this.checkpointStore = checkpointStore;
+        this.segmentService = segmentService;
+        this.promotionService = promotionService;
+        this.metrics = metrics;
+        this.maxBuckets = maxBuckets;
+        this.maxTime = Duration.ofMillis(maxTimeMs);
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<AggregationQuery, Cached> eldest) {
+                return size() > EventAggregationService.this.maxEntries;
+            }
+        };
+
+        Gauge.builder("gainsight.aggregation.cache.size", this, EventAggregationService::cacheSize)
+            .description("Entries in the event aggregation cache")
+            .register(metrics.getRegistry());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query is malformed
+     * @throws IllegalStateException if the index the query needs is not available
+     */
+    public AggregationResult aggregate(AggregationQuery query) {
+        if (query.from() != null && query.to() != null && !query.from().isBefore(query.to())) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        boolean byName = query.eventNames() != null && !query.eventNames().isEmpty();
+        Map<PropertyPromotionService.PromotedProperty, Object> properties =
+            eventQueryService.resolveProperties(query.tenantId(), query.properties());
+        String index = eventQueryService.indexFor(query.eventType() != null, byName, properties.keySet());
+
+        long watermark = checkpointStore.watermark(query.tenantId());
+        // Read before the aggregation, so a backfill batch written meanwhile invalidates the result
+        long promotionVersion = promotionService.version(query.tenantId());
+        Cached cached = cached(query);
+        if (cached != null && cached.watermark() == watermark && cached.promotionVersion() == promotionVersion) {
+            lookup(query.tenantId(), "hit");
+            AggregationResult result = cached.result();
+            return new AggregationResult(result.buckets(), result.truncated(), result.index(), result.segments(),
+                watermark, true);
+        }
+        lookup(query.tenantId(), "miss");
+
+        // Segments can answer whole days; only buckets within a day keep distinct users exact
+        Map<String, String> columns = new LinkedHashMap<>();
+        properties.forEach((property, value) ->
+            columns.put(EventSegmentService.column(property), EventSegmentService.columnValue(value)));
+        EventSegmentService.Plan plan = query.interval() == Interval.HOUR || query.interval() == Interval.DAY
+            ? segmentService.plan(query.tenantId(), query.from(), query.to(), columns.keySet())
+            : new EventSegmentService.Plan(List.of(), List.of(new EventSegmentService.Range(query.from(), query.to())));
+
+        Timer.Sample sample = metrics.startTimer();
+        List<Bucket> buckets = new ArrayList<>();
+        boolean truncated = false;
+        for (EventSegmentService.Range gap : plan.gaps()) {
+            truncated |= pipeline(query, properties, index, gap, buckets);
+        }
+        if (!plan.segments().isEmpty()) {
+            EventSegment.Filter filter = new EventSegment.Filter(query.eventType(),
+                byName ? new HashSet<>(query.eventNames()) : null, columns);
+            for (EventSegment segment : plan.segments()) {
+                scan(segment, filter, query.interval(), buckets);
+            }
+        }
+        sample.stop(Timer.builder("gainsight.aggregation.latency")
+            .description("Latency of event aggregations")
+            .tags("index", index, "source", plan.segments().isEmpty() ? "mongodb" : plan.gaps().isEmpty() ? "segments" : "mixed")
+            .register(metrics.getRegistry()));
+
+        buckets.sort(Comparator.comparing(Bucket::start, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+            .thenComparing(Bucket::eventName, Comparator.nullsFirst(Comparator.<String>naturalOrder())));
+        if (buckets.size() > maxBuckets) {
+            truncated = true;
+            buckets = buckets.subList(0, maxBuckets);
+        }
+        AggregationResult result = new AggregationResult(List.copyOf(buckets), truncated, index,
+            plan.segments().size(), watermark, false);
+        cache(query, new Cached(watermark, promotionVersion, result));
+        return result;
+    }
+
+    /**
+     * Events of the tenant in {@code [from, to)}, counted from segments for the days they
+     * cover and by MongoDB for the rest.
+     *
+     * @throws IllegalStateException if the timestamp index is not available
+     */
+    public long countEvents(String tenantId, LocalDateTime from, LocalDateTime to) {
+        String index = eventQueryService.indexFor(false, false, Set.of());
+        EventSegmentService.Plan plan = segmentService.plan(tenantId, from, to, Set.of());
+        long events = 0;
+        for (EventSegment segment : plan.segments()) {
+            events += segment.rows();
+        }
+        for (EventSegmentService.Range gap : plan.gaps()) {
+            events += mongoTemplate.count(Query.query(criteria(tenantId, gap)).withHint(index), ExtractedEvent.class);
+        }
+        return events;
+    }
+
+    // Adds the buckets of one range; true if MongoDB had more than the limit
+    private boolean pipeline(AggregationQuery query, Map<PropertyPromotionService.PromotedProperty, Object> properties,
+                             String index, EventSegmentService.Range range, List<Bucket> buckets) {
+        Criteria criteria = criteria(query.tenantId(), range);
+        for (Map.Entry<PropertyPromotionService.PromotedProperty, Object> property : properties.entrySet()) {
+            criteria = criteria.and(property.getKey().field()).is(property.getValue());
+        }
+        if (query.eventType() != null) {
+            criteria = criteria.and("eventType").is(query.eventType());
+        }
+        if (query.eventNames() != null && !query.eventNames().isEmpty()) {
+            criteria = criteria.and("eventName").in(query.eventNames());
+        }
+
+        ZoneId zone = segmentService.zone();
+        TypedAggregation<ExtractedEvent> aggregation = Aggregation.newAggregation(ExtractedEvent.class,
+                Aggregation.match(criteria),
+                stage("$group", new Document("_id", groupKey(query.interval(), zone).append("user", "$identifyId"))
+                    .append("events", new Document("$sum", 1))),
+                stage("$group", new Document("_id", new Document("name", "$_id.name").append("bucket", "$_id.bucket"))
+                    .append("events", new Document("$sum", "$events"))
+                    .append("users", new Document("$sum", new Document("$cond",
+                        List.of(new Document("$ifNull", List.of("$_id.user", false)), 1, 0))))),
+                stage("$sort", new Document("_id.bucket", 1).append("_id.name", 1)),
+                stage("$limit", maxBuckets + 1))
+            .withOptions(AggregationOptions.builder()
+                .allowDiskUse(true)
+                .hint(index)
+                .maxTime(maxTime)
+                .build());
+
+        List<Document> groups = mongoTemplate.aggregate(aggregation, Document.class).getMappedResults();
+        for (Document group : groups.subList(0, Math.min(groups.size(), maxBuckets))) {
+            Document id = group.get("_id", Document.class);
+            Date start = id.getDate("bucket");
+            buckets.add(new Bucket(id.getString("name"),
+                start != null ? LocalDateTime.ofInstant(start.toInstant(), zone) : null,
+                ((Number) group.get("events")).longValue(), ((Number) group.get("users")).longValue()));
+        }
+        return groups.size() > maxBuckets;
+    }
+
+    private void scan(EventSegment segment, EventSegment.Filter filter, Interval interval, List<Bucket> buckets) {
+        ZoneId zone = segmentService.zone();
+        ZonedDateTime dayStart = Instant.ofEpochMilli(segment.dayStart()).atZone(zone);
+        long dayEnd = dayStart.plusDays(1).toInstant().toEpochMilli();
+        List<Integer> boundaries = new ArrayList<>();
+        if (interval == Interval.HOUR) {
+            for (ZonedDateTime hour = dayStart; hour.toInstant().toEpochMilli() < dayEnd; hour = hour.plusHours(1)) {
+                boundaries.add((int) (hour.toInstant().toEpochMilli() - segment.dayStart()));
+            }
+        } else {
+            boundaries.add(0);
+        }
+        boundaries.add((int) (dayEnd - segment.dayStart()));
+        int[] edges = boundaries.stream().mapToInt(Integer::intValue).toArray();
+
+        for (EventSegment.Group group : segment.aggregate(filter, edges)) {
+            LocalDateTime start = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(segment.dayStart() + edges[group.bucket()]), zone);
+            buckets.add(new Bucket(group.eventName(), start, group.events(), group.users()));
+        }
+    }
+
+    private static Criteria criteria(String tenantId, EventSegmentService.Range range) {
+        Criteria criteria = Criteria.where("tenantId").is(tenantId);
+        if (range.from() != null || range.to() != null) {
+            Criteria timestamp = criteria.and("eventTimestamp");
+            if (range.from() != null) {
+                timestamp.gte(range.from());
+            }
+            if (range.to() != null) {
+                timestamp.lt(range.to());
+            }
+        }
+        return criteria;
+    }
+
+    // Buckets are truncated in the JVM's zone, the zone LocalDateTime values are stored in
+    private static Document groupKey(Interval interval, ZoneId zone) {
+        Document key = new Document("name", "$eventName");
+        if (interval != null) {
+            key.append("bucket", new Document("$dateTrunc", new Document("date", "$eventTimestamp")
+                .append("unit", interval.name().toLowerCase())
+                .append("timezone", zone.getId())));
+        }
+        return key;
+    }
+
+    private static AggregationOperation stage(String operator, Object spec) {
+        return context -> new Document(operator, spec);
+    }
+
+    private Cached cached(AggregationQuery query) {
+        synchronized (cache) {
+            return cache.get(query);
+        }
+    }
+
+    private void cache(AggregationQuery query, Cached cached) {
+        synchronized (cache) {
+            cache.put(query, cached);
+        }
+    }
+
+    private int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private void lookup(String tenantId, String result) {
+        Counter.builder("gainsight.aggregation.cache.lookups")
+            .description("Event aggregations served from the cache or run by MongoDB")
+            .tags("tenant", metrics.tenantTag(tenantId), "result", result)
+            .register(metrics.getRegistry())
+            .increment();
+    }
+}
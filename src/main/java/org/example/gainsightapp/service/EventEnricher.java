@@ -0,0 +1,225 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.EntitySnapshot;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.repository.EntitySnapshotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Optional extraction stage that copies selected user and account attributes onto each
+ * {@link ExtractedEvent} before it is stored, so consumers don't have to join afterwards.
+ *
+ * Attributes come from the local {@code entity_snapshots} written by {@link SnapshotSyncService}
+ * through a bounded LRU cache ({@code gainsight.enrichment.cache.*}). All misses of a page
+ * are loaded with one query per kind; ids that have no snapshot are cached as absent too, so
+ * they are not looked up again for every page. A user's account is taken from the event,
+ * or from the user's snapshot when the event has none.
+ */
+@Component
+public class EventEnricher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventEnricher.class);
+
+    private final EntitySnapshotRepository snapshotRepository;
+    private final ObjectMapper objectMapper;
+    private final ExtractionMetrics metrics;
+    private final boolean enabled;
+    private final List<String> userFields;
+    private final List<String> accountFields;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, Attributes> cache;
+
+    /** Projected attributes of one snapshot; {@code values} is null when there is no snapshot. */
+    private record Attributes(Map<String, Object> values, String accountId, long loadedAtNanos) {}
+
+    public EventEnricher(
+            EntitySnapshotRepository snapshotRepository,
+            ObjectMapper objectMapper,
+            ExtractionMetrics metrics,
+            @Value("${gainsight.enrichment.enabled:false}") boolean enabled,
+            @Value("${gainsight.enrichment.user-fields:email,firstName,lastName}") String userFields,
+            @Value("${gainsight.enrichment.account-fields:name,plan}") String accountFields,
+            @Value("${gainsight.enrichment.cache.max-entries:50000}") int maxEntries,
+            @Value("${gainsight.enrichment.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.snapshotRepository = snapshotRepository;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.userFields = fieldList(userFields);
+        this.accountFields = fieldList(accountFields);
+        this.maxEntries = maxEntries;
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        this.cache = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Attributes> eldest) {
+                return size() > EventEnricher.this.maxEntries;
+            }
+        };
+
+        Gauge.builder("gainsight.enrichment.cache.size", this, EventEnricher::cacheSize)
+            .description("Entries in the event enrichment cache")
+            .register(metrics.getRegistry());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds user and account attributes to the events of one page, in place.
+     */
+    public void enrich(TenantConfiguration tenant, String eventType, List<ExtractedEvent> events) {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+        Timer.Sample sample = metrics.startTimer();
+        String tenantId = tenant.getTenantId();
+        try {
+            Map<String, Attributes> users = resolve(tenantId, EntitySnapshot.Kind.USER,
+                ids(events, ExtractedEvent::getIdentifyId));
+
+            for (ExtractedEvent event : events) {
+                Attributes user = users.get(event.getIdentifyId());
+                if (user != null && user.values() != null) {
+                    event.setUserAttributes(user.values());
+                    if (event.getAccountId() == null) {
+                        event.setAccountId(user.accountId());
+                    }
+                }
+            }
+
+            Map<String, Attributes> accounts = resolve(tenantId, EntitySnapshot.Kind.ACCOUNT,
+                ids(events, ExtractedEvent::getAccountId));
+            for (ExtractedEvent event : events) {
+                Attributes account = accounts.get(event.getAccountId());
+                if (account != null && account.values() != null) {
+                    event.setAccountAttributes(account.values());
+                }
+            }
+        } catch (Exception e) {
+            // Enrichment is best effort; events are stored either way
+            logger.warn("Enrichment failed for tenant {}: {}", tenantId, e.getMessage());
+        } finally {
+            sample.stop(Timer.builder("gainsight.enrichment.latency")
+                .description("Time to enrich one page of events")
+                .tags(metrics.tags(tenantId, eventType))
+                .register(metrics.getRegistry()));
+        }
+    }
+
+    public int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private Map<String, Attributes> resolve(String tenantId, EntitySnapshot.Kind kind, Set<String> ids) {
+        Map<String, Attributes> resolved = new HashMap<>();
+        if (ids.isEmpty()) {
+            return resolved;
+        }
+
+        long now = System.nanoTime();
+        Set<String> misses = new LinkedHashSet<>();
+        synchronized (cache) {
+            for (String id : ids) {
+                Attributes cached = cache.get(key(tenantId, kind, id));
+                if (cached != null && now - cached.loadedAtNanos() < ttlNanos) {
+                    resolved.put(id, cached);
+                } else {
+                    misses.add(id);
+                }
+            }
+        }
+        lookups(kind, "hit", resolved.size());
+        lookups(kind, "miss", misses.size());
+        if (misses.isEmpty()) {
+            return resolved;
+        }
+
+        Map<String, Attributes> loaded = new HashMap<>();
+        for (EntitySnapshot snapshot : snapshotRepository.findByTenantIdAndKindAndEntityIdIn(tenantId, kind, misses)) {
+            loaded.put(snapshot.getEntityId(), project(kind, snapshot, now));
+        }
+        Attributes absent = new Attributes(null, null, now);
+        synchronized (cache) {
+            for (String id : misses) {
+                Attributes attributes = loaded.getOrDefault(id, absent);
+                cache.put(key(tenantId, kind, id), attributes);
+                resolved.put(id, attributes);
+            }
+        }
+        lookups(kind, "absent", misses.size() - loaded.size());
+        return resolved;
+    }
+
+    private Attributes project(EntitySnapshot.Kind kind, EntitySnapshot snapshot, long now) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        try {
+            JsonNode data = objectMapper.readTree(snapshot.getData());
+            for (String field : kind == EntitySnapshot.Kind.USER ? userFields : accountFields) {
+                JsonNode value = data.get(field);
+                if (value != null && !value.isNull()) {
+                    values.put(field, objectMapper.convertValue(value, Object.class));
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("Unreadable {} snapshot {}: {}", kind, snapshot.getEntityId(), e.getMessage());
+        }
+        return new Attributes(values, snapshot.getAccountId(), now);
+    }
+
+    private static Set<String> ids(List<ExtractedEvent> events, Function<ExtractedEvent, String> id) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (ExtractedEvent event : events) {
+            String value = id.apply(event);
+            if (value != null && !value.isEmpty()) {
+                ids.add(value);
+            }
+        }
+        return ids;
+    }
+
+    private static String key(String tenantId, EntitySnapshot.Kind kind, String id) {
+        return tenantId + '\u0000' + kind + '\u0000' + id;
+    }
+
+    private static List<String> fieldList(String fields) {
+        return Arrays.stream(fields.split(","))
+            .map(String::trim)
+            .filter(field -> !field.isEmpty())
+            .toList();
+    }
+
+    private void lookups(EntitySnapshot.Kind kind, String result, long count) {
+        if (count == 0) {
+            return;
+        }
+        Counter.builder("gainsight.enrichment.lookups")
+            .description("Enrichment attribute lookups by cache outcome")
+            .tags("kind", kind.name(), "result", result)
+            .register(metrics.getRegistry())
+            .increment(count);
+    }
+}
@@ -0,0 +1,294 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.Timer;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tenant-scoped event queries by event type, event name and {@code eventTimestamp} range,
+ * newest first.
+ *
+ * Every filter combination maps to one compound index (equality fields first, then the
+ * timestamp for the range and the sort), which is created on startup and passed to MongoDB
+ * as a hint. A query whose index is not available is refused instead of falling back to a
+ * collection scan; the index is then created again by a later query, at most once per
+ * backoff that starts at {@code gainsight.events.query.index-retry-ms} and doubles up to ten
+ * minutes. Results are projected to the requested fields; {@code eventData} is only
+ * read when asked for.
+ *
+ * Filters on promoted properties ({@code promoted.<name>=value}) use the property's own index
+ * from {@link PropertyPromotionService}; further filters are applied to what it selects.
+ */
+@Service
+public class EventQueryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventQueryService.class);
+
+    /** Fields a query may project; {@code eventData} also loads whatever stores the payload. */
+    public static final List<String> FIELDS = List.of(
+        "eventId", "eventType", "eventName", "eventTimestamp", "identifyId", "accountId",
+        "eventData", "userAttributes", "accountAttributes", "extractedAt", "status", "promoted");
+
+    public static final Set<String> DEFAULT_FIELDS = Set.of(
+        "eventId", "eventType", "eventName", "eventTimestamp", "identifyId", "accountId");
+
+    // eventId too, since a content-addressed body is stored without the id it is expanded with
+    static final List<String> PAYLOAD_FIELDS = List.of(
+        "eventId", "eventData", "eventDataCompressed", "payloadCodec", "payloadDictionaryVersion", "payloadHash");
+
+    private final MongoTemplate mongoTemplate;
+    private final ExtractionMetrics metrics;
+    private final TenantRegistry tenantRegistry;
+    private final PropertyPromotionService promotionService;
+    private static final long MAX_INDEX_RETRY_MILLIS = 600_000;
+
+    private final int maxLimit;
+    private final long indexRetryMillis;
+    private final Map<String, Index> indexes = new LinkedHashMap<>();
+    private final Set<String> readyIndexes = ConcurrentHashMap.newKeySet();
+    private final Map<String, IndexRetry> indexRetries = new ConcurrentHashMap<>();
+
+    /** When a missing index may be created again, and the backoff after that attempt. */
+    private record IndexRetry(long notBeforeNanos, long backoffMillis) {}
+
+    /**
+     * One query; {@code eventType}, {@code eventName}, {@code from} (inclusive) and {@code to}
+     * (exclusive) are optional. {@code properties} maps promoted property names to the values
+     * they must equal.
+     */
+    public record EventQuery(String tenantId, String eventType, String eventName,
+                             LocalDateTime from, LocalDateTime to, Map<String, String> properties,
+                             Set<String> fields, int limit) {}
+
+    /** Matching events as maps of the projected fields, and the index that served them. */
+    public record EventQueryResult(List<Map<String, Object>> events, String index) {}
+
+    public EventQueryService(
+            MongoTemplate mongoTemplate,
+            ExtractionMetrics metrics,
+            TenantRegistry tenantRegistry,
+            PropertyPromotionService promotionService,
+            @Value("${gainsight.events.query.max-limit:1000}") int maxLimit,
+            @Value("${gainsight.events.query.index-retry-ms:30000}") long indexRetryMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.metrics = metrics;
+        this.tenantRegistry = tenantRegistry;
+        this.promotionService = promotionService;
+        this.maxLimit = maxLimit;
+        this.indexRetryMillis = Math.max(1, indexRetryMillis);
+
+        indexes.put(ExtractedEvent.IDX_TENANT_NAME_TS, new Index().on("tenantId", Sort.Direction.ASC)
+            .on("eventName", Sort.Direction.ASC).on("eventTimestamp", Sort.Direction.DESC)
+            .named(ExtractedEvent.IDX_TENANT_NAME_TS));
+        indexes.put(ExtractedEvent.IDX_TENANT_TYPE_TS, new Index().on("tenantId", Sort.Direction.ASC)
+            .on("eventType", Sort.Direction.ASC).on("eventTimestamp", Sort.Direction.DESC)
+            .named(ExtractedEvent.IDX_TENANT_TYPE_TS));
+        indexes.put(ExtractedEvent.IDX_TENANT_TS, new Index().on("tenantId", Sort.Direction.ASC)
+            .on("eventTimestamp", Sort.Direction.DESC).named(ExtractedEvent.IDX_TENANT_TS));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        indexes.keySet().forEach(this::ensureIndex);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query is malformed
+     * @throws IllegalStateException if the index the query needs is not available
+     */
+    public EventQueryResult find(EventQuery query) {
+        if (query.limit() < 1 || query.limit() > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+        if (query.from() != null && query.to() != null && !query.from().isBefore(query.to())) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        Set<String> fields = query.fields() == null || query.fields().isEmpty() ? DEFAULT_FIELDS : query.fields();
+        for (String field : fields) {
+            if (!FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Unknown field: " + field + "; allowed: " + FIELDS);
+            }
+        }
+
+        Map<PropertyPromotionService.PromotedProperty, Object> properties =
+            resolveProperties(query.tenantId(), query.properties());
+        String index = indexFor(query.eventType() != null, query.eventName() != null, properties.keySet());
+
+        Criteria criteria = Criteria.where("tenantId").is(query.tenantId());
+        for (Map.Entry<PropertyPromotionService.PromotedProperty, Object> property : properties.entrySet()) {
+            criteria = criteria.and(property.getKey().field()).is(property.getValue());
+        }
+        if (query.eventName() != null) {
+            criteria = criteria.and("eventName").is(query.eventName());
+        }
+        if (query.eventType() != null) {
+            criteria = criteria.and("eventType").is(query.eventType());
+        }
+        if (query.from() != null || query.to() != null) {
+            Criteria range = criteria.and("eventTimestamp");
+            if (query.from() != null) {
+                range.gte(query.from());
+            }
+            if (query.to() != null) {
+                range.lt(query.to());
+            }
+        }
+
+        Query mongoQuery = Query.query(criteria)
+            .with(Sort.by(Sort.Direction.DESC, "eventTimestamp"))
+            .limit(query.limit())
+            .withHint(index);
+        mongoQuery.fields().include("tenantId");
+        for (String field : fields) {
+            if ("eventData".equals(field)) {
+                PAYLOAD_FIELDS.forEach(mongoQuery.fields()::include);
+            } else {
+                mongoQuery.fields().include(field);
+            }
+        }
+
+        Timer.Sample sample = metrics.startTimer();
+        List<ExtractedEvent> events = mongoTemplate.find(mongoQuery, ExtractedEvent.class);
+        sample.stop(Timer.builder("gainsight.events.query.latency")
+            .description("Latency of event queries by index")
+            .tag("index", index)
+            .register(metrics.getRegistry()));
+
+        List<Map<String, Object>> projected = new ArrayList<>(events.size());
+        for (ExtractedEvent event : events) {
+            projected.add(project(event, fields));
+        }
+        return new EventQueryResult(projected, index);
+    }
+
+    /**
+     * The index for a tenant-scoped filter on type, name and/or promoted properties plus a
+     * timestamp range; the first property's index wins, other filters are applied to its rows.
+     * A missing index of this service is created again once its backoff has passed.
+     *
+     * @throws IllegalStateException if that index is not available
+     */
+    public String indexFor(boolean byType, boolean byName, Set<PropertyPromotionService.PromotedProperty> properties) {
+        if (!properties.isEmpty()) {
+            PropertyPromotionService.PromotedProperty first = properties.iterator().next();
+            if (!promotionService.isIndexed(first)) {
+                throw new IllegalStateException("Index " + first.indexName()
+                    + " is not available; refusing to scan extracted_events");
+            }
+            return first.indexName();
+        }
+        // With a name the type is a residual filter; names rarely span both types
+        String index = byName ? ExtractedEvent.IDX_TENANT_NAME_TS
+            : byType ? ExtractedEvent.IDX_TENANT_TYPE_TS
+            : ExtractedEvent.IDX_TENANT_TS;
+        if (!readyIndexes.contains(index) && !retryIndex(index)) {
+            throw new IllegalStateException("Index " + index + " is not available; refusing to scan extracted_events");
+        }
+        return index;
+    }
+
+    /**
+     * Typed values of promoted property filters, ordered by name so the same filters always
+     * pick the same index.
+     *
+     * @throws IllegalArgumentException if a property is not promoted for the tenant or a value
+     *         does not fit its type
+     */
+    public Map<PropertyPromotionService.PromotedProperty, Object> resolveProperties(String tenantId,
+                                                                                   Map<String, String> filters) {
+        if (filters == null || filters.isEmpty()) {
+            return Map.of();
+        }
+        TenantConfiguration tenant = tenantRegistry.getTenant(tenantId)
+            .orElseThrow(() -> new IllegalArgumentException("Tenant not found: " + tenantId));
+        Map<String, PropertyPromotionService.PromotedProperty> promoted = new LinkedHashMap<>();
+        PropertyPromotionService.of(tenant).forEach(property -> promoted.put(property.name(), property));
+
+        Map<PropertyPromotionService.PromotedProperty, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<String, String> filter : new TreeMap<>(filters).entrySet()) {
+            PropertyPromotionService.PromotedProperty property = promoted.get(filter.getKey());
+            if (property == null) {
+                throw new IllegalArgumentException("Property " + filter.getKey() + " is not promoted for tenant "
+                    + tenantId + "; promoted: " + promoted.keySet());
+            }
+            values.put(property, property.parseValue(filter.getValue()));
+        }
+        return values;
+    }
+
+    // Only the caller that moves the deadline on tries; the others are refused as before
+    private boolean retryIndex(String name) {
+        IndexRetry retry = indexRetries.get(name);
+        long now = System.nanoTime();
+        if (retry == null || now - retry.notBeforeNanos() < 0) {
+            return false;
+        }
+        long backoff = Math.min(retry.backoffMillis() * 2, MAX_INDEX_RETRY_MILLIS);
+        if (!indexRetries.replace(name, retry, new IndexRetry(now + backoff * 1_000_000, backoff))) {
+            return false;
+        }
+        return ensureIndex(name);
+    }
+
+    private boolean ensureIndex(String name) {
+        try {
+            mongoTemplate.indexOps(ExtractedEvent.class).createIndex(indexes.get(name));
+            readyIndexes.add(name);
+            if (indexRetries.remove(name) != null) {
+                logger.info("Created index {} on extracted_events; queries needing it are served again", name);
+            }
+            return true;
+        } catch (Exception e) {
+            indexRetries.putIfAbsent(name, new IndexRetry(System.nanoTime() + indexRetryMillis * 1_000_000, indexRetryMillis));
+            logger.warn("Could not create index {} on extracted_events; queries needing it are refused: {}",
+                       name, e.getMessage());
+            return false;
+        }
+    }
+
+    private static Map<String, Object> project(ExtractedEvent event, Set<String> fields) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String field : FIELDS) {
+            if (!fields.contains(field)) {
+                continue;
+            }
+            values.put(field, switch (field) {
+                case "eventId" -> event.getEventId();
+                case "eventType" -> event.getEventType();
+                case "eventName" -> event.getEventName();
+                case "eventTimestamp" -> event.getEventTimestamp();
+                case "identifyId" -> event.getIdentifyId();
+                case "accountId" -> event.getAccountId();
+                case "eventData" -> event.getEventData();
+                case "userAttributes" -> event.getUserAttributes();
+                case "accountAttributes" -> event.getAccountAttributes();
+                case "extractedAt" -> event.getExtractedAt();
+                case "status" -> event.getStatus();
+                case "promoted" -> event.getPromoted();
+                default -> throw new IllegalArgumentException("Unknown field: " + field);
+            });
+        }
+        return values;
+    }
+}
@@ -0,0 +1,411 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.segment.EventSegment;
+import org.example.gainsightapp.segment.EventSegmentWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Columnar copies of closed days of {@code extracted_events}, enabled with
+ * {@code gainsight.segments.enabled=true}.
+ *
+ * A background compaction writes one {@link EventSegment} file per tenant and day under
+ * {@code gainsight.segments.directory} once the day is {@code gainsight.segments.close-after-days}
+ * old, going back at most {@code gainsight.segments.max-age-days}. Besides event name, type,
+ * timestamp and user, a segment has a column per promoted property of the tenant at the time
+ * it was written.
+ *
+ * Events that arrive late for a closed day are found on the next run: events inserted since
+ * the previous run (by their {@code _id} time) are grouped by tenant and day, and each such
+ * day whose event count no longer matches its segment is rewritten. Until then a segment can
+ * miss those events. Segments are local to each instance.
+ */
+@Service
+public class EventSegmentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventSegmentService.class);
+
+    private static final String STATE_FILE = "compaction.state";
+    private static final String SUFFIX = ".seg";
+    // ObjectIds are stamped by the inserting client, whose clock may be behind ours
+    private static final Duration CLOCK_MARGIN = Duration.ofMinutes(5);
+
+    private final MongoTemplate mongoTemplate;
+    private final TenantRegistry tenantRegistry;
+    private final PropertyPromotionService promotionService;
+    private final ExtractionMetrics metrics;
+    private final boolean enabled;
+    private final Path directory;
+    private final int closeAfterDays;
+    private final int maxAgeDays;
+    private final int maxDaysPerRun;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<Path, EventSegment> segments = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /** A time range; a null end is open. */
+    public record Range(LocalDateTime from, LocalDateTime to) {}
+
+    /** Days of a range that segments can answer, and the ranges left for MongoDB. */
+    public record Plan(List<EventSegment> segments, List<Range> gaps) {}
+
+    public record SegmentStats(int days, long events, long bytes, LocalDate oldest, LocalDate newest) {}
+
+    public EventSegmentService(
+            MongoTemplate mongoTemplate,
+            TenantRegistry tenantRegistry,
+            PropertyPromotionService promotionService,
+            ExtractionMetrics metrics,
+            @Value("${gainsight.segments.enabled:false}") boolean enabled,
+            @Value("${gainsight.segments.directory:./data/segments}") String directory,
+            @Value("${gainsight.segments.close-after-days:2}") int closeAfterDays,
+            @Value("${gainsight.segments.max-age-days:400}") int maxAgeDays,
+            @Value("${gainsight.segments.max-days-per-run:60}") int maxDaysPerRun) {
+        this.mongoTemplate = mongoTemplate;
+        this.tenantRegistry = tenantRegistry;
+        this.promotionService = promotionService;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.closeAfterDays = closeAfterDays;
+        this.maxAgeDays = maxAgeDays;
+        this.maxDaysPerRun = maxDaysPerRun;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ZoneId zone() {
+        return zone;
+    }
+
+    /** Segment column of a promoted property; includes the type, since values are stored as text. */
+    public static String column(PropertyPromotionService.PromotedProperty property) {
+        return property.field() + ":" + property.type();
+    }
+
+    /** Text a promoted value is stored as; integral numbers compare equal whatever their type. */
+    public static String columnValue(Object value) {
+        if (value instanceof Double number && number == Math.rint(number) && !Double.isInfinite(number)) {
+            return String.valueOf(number.longValue());
+        }
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * Splits {@code [from, to)} into whole closed days with a current segment that has the
+     * given columns, and the ranges in between.
+     */
+    public Plan plan(String tenantId, LocalDateTime from, LocalDateTime to, Set<String> columns) {
+        if (!enabled || from == null) {
+            return new Plan(List.of(), List.of(new Range(from, to)));
+        }
+        List<EventSegment> covered = new ArrayList<>();
+        List<Range> gaps = new ArrayList<>();
+        LocalDate last = lastClosedDay();
+        LocalDate first = last.minusDays(maxAgeDays - 1);
+        LocalDateTime gapStart = from;
+        for (LocalDate day = from.toLocalDate().isBefore(first) ? first : from.toLocalDate();
+                !day.isAfter(last); day = day.plusDays(1)) {
+            LocalDateTime start = day.atStartOfDay();
+            LocalDateTime end = day.plusDays(1).atStartOfDay();
+            if (to != null && end.isAfter(to)) {
+                break;
+            }
+            if (start.isBefore(from)) {
+                continue;
+            }
+            EventSegment segment = segment(tenantId, day);
+            if (segment != null && segment.dayStart() == dayStart(day) && segment.columns().containsAll(columns)) {
+                if (gapStart.isBefore(start)) {
+                    gaps.add(new Range(gapStart, start));
+                }
+                covered.add(segment);
+                gapStart = end;
+            }
+        }
+        if (to == null || gapStart.isBefore(to)) {
+            gaps.add(new Range(gapStart, to));
+        }
+        return new Plan(covered, gaps);
+    }
+
+    public SegmentStats stats(String tenantId) {
+        int days = 0;
+        long events = 0;
+        long bytes = 0;
+        LocalDate oldest = null;
+        LocalDate newest = null;
+        for (LocalDate day : days(tenantId)) {
+            EventSegment segment = segment(tenantId, day);
+            if (segment == null) {
+                continue;
+            }
+            days++;
+            events += segment.rows();
+            bytes += segment.bytes();
+            oldest = oldest == null || day.isBefore(oldest) ? day : oldest;
+            newest = newest == null || day.isAfter(newest) ? day : newest;
+        }
+        return new SegmentStats(days, events, bytes, oldest, newest);
+    }
+
+    @Scheduled(fixedDelayString = "${gainsight.segments.compaction-interval-ms:3600000}",
+               initialDelayString = "${gainsight.segments.compaction-initial-delay-ms:60000}")
+    public void compact() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        Timer.Sample sample = metrics.startTimer();
+        try {
+            Instant started = Instant.now();
+            LocalDate last = lastClosedDay();
+            Instant since = readState();
+            Set<String> dirty = since != null ? dirtyDays(since.minus(CLOCK_MARGIN), last) : null;
+
+            // The scan position only moves once every tenant has been brought up to date
+            boolean complete = true;
+            int budget = maxDaysPerRun;
+            for (TenantConfiguration tenant : tenantRegistry.getAllTenants()) {
+                String state = promotionService.backfillStatus(tenant.getTenantId())
+                    .map(PropertyPromotionService.BackfillStatus::state).orElse(null);
+                if ("QUEUED".equals(state) || "RUNNING".equals(state)) {
+                    complete = false;
+                    continue;
+                }
+                budget -= compactTenant(tenant, last, dirty, budget);
+                if (budget <= 0) {
+                    complete = false;
+                    break;
+                }
+            }
+            if (complete) {
+                writeState(started);
+            }
+        } catch (Exception e) {
+            logger.error("Error compacting event segments: {}", e.getMessage(), e);
+        } finally {
+            sample.stop(Timer.builder("gainsight.segments.compaction.duration")
+                .description("Duration of event segment compaction runs")
+                .register(metrics.getRegistry()));
+            running.set(false);
+        }
+    }
+
+    private int compactTenant(TenantConfiguration tenant, LocalDate last, Set<String> dirty, int budget)
+            throws IOException {
+        String tenantId = tenant.getTenantId();
+        List<PropertyPromotionService.PromotedProperty> properties = new ArrayList<>(PropertyPromotionService.of(tenant));
+        properties.sort(Comparator.comparing(PropertyPromotionService.PromotedProperty::name));
+        Set<String> columns = new LinkedHashSet<>();
+        properties.forEach(property -> columns.add(column(property)));
+
+        LocalDate first = last.minusDays(maxAgeDays - 1);
+        for (LocalDate day : days(tenantId)) {
+            if (day.isBefore(first)) {
+                Path path = path(tenantId, day);
+                segments.remove(path);
+                Files.deleteIfExists(path);
+            }
+        }
+        LocalDate oldest = oldestEventDay(tenantId);
+        if (oldest == null) {
+            return 0;
+        }
+
+        int written = 0;
+        for (LocalDate day = oldest.isAfter(first) ? oldest : first; !day.isAfter(last) && written < budget;
+                day = day.plusDays(1)) {
+            EventSegment segment = segment(tenantId, day);
+            boolean current = segment != null && segment.dayStart() == dayStart(day)
+                && segment.columns().equals(columns);
+            if (current && dirty != null && !dirty.contains(tenantId + "/" + day)) {
+                continue;
+            }
+            if (current && count(tenantId, day) == segment.rows()) {
+                continue;
+            }
+            write(tenantId, day, properties, new ArrayList<>(columns));
+            written++;
+        }
+        return written;
+    }
+
+    private void write(String tenantId, LocalDate day, List<PropertyPromotionService.PromotedProperty> properties,
+                       List<String> columns) throws IOException {
+        EventSegmentWriter writer = new EventSegmentWriter(dayStart(day), columns);
+        Query query = dayQuery(tenantId, day);
+        query.fields().include("eventName", "eventType", "eventTimestamp", "identifyId", "promoted");
+        String[] values = new String[properties.size()];
+        try (Stream<ExtractedEvent> events = mongoTemplate.stream(query, ExtractedEvent.class)) {
+            events.forEach(event -> {
+                Map<String, Object> promoted = event.getPromoted() != null ? event.getPromoted() : Map.of();
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = columnValue(promoted.get(properties.get(i).name()));
+                }
+                writer.add(event.getEventName(), event.getEventType(),
+                    event.getEventTimestamp().atZone(zone).toInstant().toEpochMilli(), event.getIdentifyId(), values);
+            });
+        }
+        Path path = path(tenantId, day);
+        long bytes = writer.write(path);
+        segments.put(path, EventSegment.open(path));
+        logger.debug("Wrote event segment {} with {} events ({} bytes)", path, writer.rows(), bytes);
+
+        Counter.builder("gainsight.segments.written")
+            .description("Event segments written by compaction")
+            .tag("tenant", metrics.tenantTag(tenantId))
+            .register(metrics.getRegistry())
+            .increment();
+    }
+
+    // One pass over the events inserted since the last run, via the _id index
+    private Set<String> dirtyDays(Instant since, LocalDate last) {
+        Criteria criteria = Criteria.where("_id").gt(new ObjectId(Date.from(since)))
+            .and("eventTimestamp").lt(last.plusDays(1).atStartOfDay());
+        TypedAggregation<ExtractedEvent> aggregation = Aggregation.newAggregation(ExtractedEvent.class,
+                Aggregation.match(criteria),
+                context -> new Document("$group", new Document("_id", new Document("tenantId", "$tenantId")
+                    .append("day", new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                        .append("date", "$eventTimestamp")
+                        .append("timezone", zone.getId()))))))
+            .withOptions(AggregationOptions.builder().allowDiskUse(true).hint("_id_").build());
+        Set<String> dirty = new HashSet<>();
+        for (Document group : mongoTemplate.aggregate(aggregation, Document.class).getMappedResults()) {
+            Document id = group.get("_id", Document.class);
+            dirty.add(id.getString("tenantId") + "/" + id.getString("day"));
+        }
+        return dirty;
+    }
+
+    private LocalDate oldestEventDay(String tenantId) {
+        Query query = Query.query(Criteria.where("tenantId").is(tenantId).and("eventTimestamp").ne(null))
+            .with(Sort.by(Sort.Direction.ASC, "eventTimestamp"))
+            .limit(1)
+            .withHint(ExtractedEvent.IDX_TENANT_TS);
+        query.fields().include("eventTimestamp");
+        ExtractedEvent oldest = mongoTemplate.findOne(query, ExtractedEvent.class);
+        return oldest != null ? oldest.getEventTimestamp().toLocalDate() : null;
+    }
+
+    private long count(String tenantId, LocalDate day) {
+        return mongoTemplate.count(dayQuery(tenantId, day), ExtractedEvent.class);
+    }
+
+    private Query dayQuery(String tenantId, LocalDate day) {
+        return Query.query(Criteria.where("tenantId").is(tenantId)
+                .and("eventTimestamp").gte(day.atStartOfDay()).lt(day.plusDays(1).atStartOfDay()))
+            .withHint(ExtractedEvent.IDX_TENANT_TS);
+    }
+
+    private EventSegment segment(String tenantId, LocalDate day) {
+        Path path = path(tenantId, day);
+        EventSegment segment = segments.get(path);
+        if (segment != null || !Files.exists(path)) {
+            return segment;
+        }
+        try {
+            segment = EventSegment.open(path);
+            segments.put(path, segment);
+            return segment;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable event segment {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private List<LocalDate> days(String tenantId) {
+        Path tenantDirectory = tenantDirectory(tenantId);
+        List<LocalDate> days = new ArrayList<>();
+        if (!Files.isDirectory(tenantDirectory)) {
+            return days;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tenantDirectory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    days.add(LocalDate.parse(name.substring(0, name.length() - SUFFIX.length())));
+                } catch (DateTimeParseException e) {
+                    logger.warn("Ignoring unexpected file {} among event segments", file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list event segments of tenant {}: {}", tenantId, e.getMessage());
+        }
+        return days;
+    }
+
+    private LocalDate lastClosedDay() {
+        return LocalDate.now(zone).minusDays(closeAfterDays);
+    }
+
+    private long dayStart(LocalDate day) {
+        return day.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private Path tenantDirectory(String tenantId) {
+        return directory.resolve(URLEncoder.encode(tenantId, StandardCharsets.UTF_8));
+    }
+
+    private Path path(String tenantId, LocalDate day) {
+        return tenantDirectory(tenantId).resolve(day + SUFFIX);
+    }
+
+    private Instant readState() {
+        Path state = directory.resolve(STATE_FILE);
+        try {
+            return Files.exists(state) ? Instant.ofEpochMilli(Long.parseLong(Files.readString(state).trim())) : null;
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Ignoring unreadable segment compaction state {}: {}", state, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeState(Instant started) throws IOException {
+        Files.createDirectories(directory);
+        Files.writeString(directory.resolve(STATE_FILE), Long.toString(started.toEpochMilli()));
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Maps a raw Gainsight PX event node to an {@link ExtractedEvent}. Shared by the blocking
+ * and reactive extraction paths so both store identical documents.
+ */
+@Component
+public class ExtractedEventMapper {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExtractedEventMapper.class);
+    
+    private final ObjectMapper objectMapper;
+    
+    public ExtractedEventMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+    
+    public ExtractedEvent toExtractedEvent(TenantConfiguration tenant, JsonNode event, String eventType,
+                                           String eventId) throws JsonProcessingException {
+        ExtractedEvent extractedEvent = new ExtractedEvent();
+        extractedEvent.setTenantId(tenant.getTenantId());
+        extractedEvent.setEventId(eventId);
+        extractedEvent.setEventType(eventType);
+        extractedEvent.setEventName(extractEventName(event));
+        extractedEvent.setEventData(objectMapper.writeValueAsString(event));
+        extractedEvent.setEventTimestamp(extractEventTimestamp(event));
+        extractedEvent.setIdentifyId(textOrNull(event, "identifyId", "userId"));
+        extractedEvent.setAccountId(textOrNull(event, "accountId"));
+        extractedEvent.setPromoted(PropertyPromotionService.extract(PropertyPromotionService.of(tenant), event));
+        extractedEvent.onCreate();
+        return extractedEvent;
+    }
+    
+    public String extractEventId(JsonNode event) {
+        // Try common ID fields
+        String[] idFields = {"id", "eventId", "globalContext.eventId", "_id"};
+        
+        for (String field : idFields) {
+            JsonNode idNode = event.at("/" + field.replace(".", "/"));
+            if (idNode != null && !idNode.isMissingNode() && !idNode.isNull()) {
+                return idNode.asText();
+            }
+        }
+        
+        return null;
+    }
+    
+    private String textOrNull(JsonNode event, String... fields) {
+        for (String field : fields) {
+            JsonNode node = event.get(field);
+            if (node != null && !node.isNull() && !node.asText().isEmpty()) {
+                return node.asText();
+            }
+        }
+        return null;
+    }
+    
+    private String extractEventName(JsonNode event) {
+        // Try common name fields
+        String[] nameFields = {"eventName", "name", "type", "eventType"};
+        
+        for (String field : nameFields) {
+            JsonNode nameNode = event.at("/" + field.replace(".", "/"));
+            if (nameNode != null && !nameNode.isMissingNode() && !nameNode.isNull()) {
+                return nameNode.asText();
+            }
+        }
+        
+        return "unknown";
+    }
+    
+    private LocalDateTime extractEventTimestamp(JsonNode event) {
+        // Try common timestamp fields
+        String[] timestampFields = {"timestamp", "eventTime", "createdAt", "occurred"};
+        
+        for (String field : timestampFields) {
+            JsonNode timestampNode = event.at("/" + field.replace(".", "/"));
+            if (timestampNode != null && !timestampNode.isMissingNode() && !timestampNode.isNull()) {
+                try {
+                    String timestampStr = timestampNode.asText();
+                    // Try different timestamp formats
+                    return parseTimestamp(timestampStr);
+                } catch (Exception e) {
+                    logger.debug("Failed to parse timestamp field {}: {}", field, e.getMessage());
+                }
+            }
+        }
+        
+        // Default to current time if no timestamp found
+        return LocalDateTime.now();
+    }
+    
+    // Package-private so the JMH benchmarks in src/jmh can drive it directly
+    LocalDateTime parseTimestamp(String timestamp) {
+        // Try different common formats
+        String[] formats = {
+            "yyyy-MM-dd'T'HH:mm:ss",
+            "yyyy-MM-dd'T'HH:mm:ss.SSS",
+            "yyyy-MM-dd'T'HH:mm:ss'Z'",
+            "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'",
+            "yyyy-MM-dd HH:mm:ss"
+        };
+        
+        for (String format : formats) {
+            try {
+                return LocalDateTime.parse(timestamp, DateTimeFormatter.ofPattern(format));
+            } catch (DateTimeParseException e) {
+                // Try next format
+            }
+        }
+        
+        // Try parsing as epoch milliseconds
+        try {
+            long epochMilli = Long.parseLong(timestamp);
+            return LocalDateTime.ofEpochSecond(epochMilli / 1000, 0, java.time.ZoneOffset.UTC);
+        } catch (NumberFormatException e) {
+            // Fall back to current time
+        }
+        
+        throw new DateTimeParseException("Unable to parse timestamp: " + timestamp, timestamp, 0);
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.gainsightapp.service;
+
+import org.example.gainsightapp.model.ExtractionCheckpoint;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reads and commits the per-stream scroll checkpoints in {@code extraction_checkpoints}.
+ *
+ * A page is committed by storing its events first and then advancing the checkpoint with a
+ * targeted upsert. Storing a page is idempotent (events already stored are skipped), so a
+ * crash between the two steps only means the page is fetched and skipped again; the
+ * checkpoint never runs ahead of the data. Keeping checkpoints out of the tenant document
+ * also stops whole-document saves of a stale tenant from moving the cursor.
+ */
+@Service
+public class ExtractionCheckpointStore {
+
+    private final MongoTemplate mongoTemplate;
+
+    public ExtractionCheckpointStore(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Scroll id to resume the stream from; tenants checkpointed before per-stream
+     * checkpoints existed fall back to {@link TenantConfiguration#getLastProcessedScrollId()}.
+     */
+    public String resumeScrollId(TenantConfiguration tenant, String eventType) {
+        ExtractionCheckpoint checkpoint = mongoTemplate.findById(
+            ExtractionCheckpoint.idFor(tenant.getTenantId(), eventType), ExtractionCheckpoint.class);
+        return checkpoint != null ? checkpoint.getScrollId() : tenant.getLastProcessedScrollId();
+    }
+
+    /** Advances the stream past a page whose events have been stored. */
+    public void commit(String tenantId, String eventType, String scrollId, boolean caughtUp, int events) {
+        mongoTemplate.upsert(query(tenantId, eventType), commitUpdate(tenantId, eventType, scrollId, caughtUp, events),
+            ExtractionCheckpoint.class);
+    }
+
+    /**
+     * Events committed for the tenant across its streams. Extraction only adds events behind a
+     * checkpoint commit, so the value changes whenever new events have been stored.
+     */
+    public long watermark(String tenantId) {
+        Query query = Query.query(Criteria.where("_id").in(
+            ExtractionCheckpoint.idFor(tenantId, "CUSTOM"), ExtractionCheckpoint.idFor(tenantId, "STANDARD")));
+        query.fields().include("eventsCommitted");
+        long watermark = 0;
+        for (ExtractionCheckpoint checkpoint : mongoTemplate.find(query, ExtractionCheckpoint.class)) {
+            watermark += checkpoint.getEventsCommitted() != null ? checkpoint.getEventsCommitted() : 0;
+        }
+        return watermark;
+    }
+
+    /** Tenants with a scroll that was left unfinished, e.g. by a shutdown. */
+    public List<String> tenantsWithUnfinishedScrolls() {
+        return mongoTemplate.findDistinct(Query.query(Criteria.where("caughtUp").is(false)),
+            "tenantId", ExtractionCheckpoint.class, String.class);
+    }
+
+    static Query query(String tenantId, String eventType) {
+        return Query.query(Criteria.where("_id").is(ExtractionCheckpoint.idFor(tenantId, eventType)));
+    }
+
+    static Update commitUpdate(String tenantId, String eventType, String scrollId, boolean caughtUp, int events) {
+        Update update = new Update()
+            .set("tenantId", tenantId)
+            .set("eventType", eventType)
+            .set("caughtUp", caughtUp)
+            .set("committedAt", LocalDateTime.now())
+            .inc("pagesCommitted", 1)
+            .inc("eventsCommitted", events);
+        return scrollId != null ? update.set("scrollId", scrollId) : update.unset("scrollId");
+    }
+}
@@ -0,0 +1,290 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractionJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of extraction jobs: every tenant run gets a job id under which its progress is
+ * visible while it runs and its outcome afterwards.
+ *
+ * Running jobs live in memory on the instance that runs them and are updated as pages are
+ * stored; cancellation and shutdown are cooperative, so a job stops at its next page
+ * boundary with its checkpoint intact. Finished jobs are inserted once into the capped
+ * {@code extraction_jobs} collection ({@code gainsight.jobs.history-max-jobs}), which keeps
+ * the most recent history without any cleanup.
+ *
+ * A run finishes in three steps: it records its outcome, releases its run lease, and only then
+ * closes its job. Until the job is closed it still counts as active, so {@link #awaitIdle}
+ * does not return while a history insert or a lease release is outstanding.
+ */
+@Service
+public class ExtractionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionJobService.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final ExtractionMetrics metrics;
+    private final long historyMaxJobs;
+    private final long historyMaxBytes;
+    private final String instance = ManagementFactory.getRuntimeMXBean().getName();
+    private final Map<String, Job> active = new ConcurrentHashMap<>();
+
+    public ExtractionJobService(
+            MongoTemplate mongoTemplate,
+            ExtractionMetrics metrics,
+            @Value("${gainsight.jobs.history-max-jobs:10000}") long historyMaxJobs,
+            @Value("${gainsight.jobs.history-max-bytes:16777216}") long historyMaxBytes) {
+        this.mongoTemplate = mongoTemplate;
+        this.metrics = metrics;
+        this.historyMaxJobs = historyMaxJobs;
+        this.historyMaxBytes = historyMaxBytes;
+
+        Gauge.builder("gainsight.jobs.active", active, Map::size)
+            .description("Extraction jobs queued or running on this instance")
+            .register(metrics.getRegistry());
+    }
+
+    /** Live progress of one job; updated by the run, read by the API. */
+    public final class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final String tenantId;
+        private final String trigger;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final AtomicInteger pages = new AtomicInteger();
+        private final AtomicLong events = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private volatile ExtractionJob.Status status = ExtractionJob.Status.QUEUED;
+        private volatile boolean cancelRequested;
+        private volatile boolean interruptRequested;
+        private volatile String currentEventType;
+        private volatile LocalDateTime startedAt;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+
+        private Job(String tenantId, String trigger) {
+            this.tenantId = tenantId;
+            this.trigger = trigger;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isCancelRequested() {
+            return cancelRequested;
+        }
+
+        /** True once the job was cancelled or is interrupted by a shutdown. */
+        public boolean shouldStop() {
+            return cancelRequested || interruptRequested;
+        }
+
+        public void started() {
+            startedAt = LocalDateTime.now();
+            status = ExtractionJob.Status.RUNNING;
+        }
+
+        /** Records one stored page. */
+        public void page(String eventType, long storedEvents, long pageBytes) {
+            currentEventType = eventType;
+            pages.incrementAndGet();
+            events.addAndGet(storedEvents);
+            bytes.addAndGet(pageBytes);
+        }
+
+        public void succeeded() {
+            record(this, ExtractionJob.Status.SUCCEEDED, null);
+        }
+
+        public void failed(String error) {
+            record(this, ExtractionJob.Status.FAILED, error);
+        }
+
+        /** Records that the run honoured {@link #shouldStop()}. */
+        public void stopped() {
+            record(this, cancelRequested ? ExtractionJob.Status.CANCELLED : ExtractionJob.Status.INTERRUPTED, null);
+        }
+
+        /** Removes the job from this instance once its outcome is recorded and its lease released. */
+        public void close() {
+            if (active.remove(id) == null) {
+                return;
+            }
+            synchronized (active) {
+                active.notifyAll();
+            }
+        }
+
+        ExtractionJob snapshot() {
+            ExtractionJob job = new ExtractionJob();
+            job.setId(id);
+            job.setTenantId(tenantId);
+            job.setTrigger(trigger);
+            job.setInstance(instance);
+            job.setStatus(status);
+            job.setCancelRequested(cancelRequested);
+            job.setCurrentEventType(currentEventType);
+            job.setPages(pages.get());
+            job.setEvents(events.get());
+            job.setBytes(bytes.get());
+            job.setCreatedAt(createdAt);
+            job.setStartedAt(startedAt);
+            return job;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureHistoryCollection() {
+        try {
+            if (!mongoTemplate.collectionExists(ExtractionJob.class)) {
+                mongoTemplate.createCollection(ExtractionJob.class,
+                    CollectionOptions.empty().capped().size(historyMaxBytes).maxDocuments(historyMaxJobs));
+                logger.info("Created capped extraction_jobs collection ({} jobs, {} bytes)", historyMaxJobs, historyMaxBytes);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not create extraction_jobs collection: {}", e.getMessage());
+        }
+    }
+
+    /** Registers a new job for a run that is about to be queued. */
+    public Job create(String tenantId, String trigger) {
+        Job job = new Job(tenantId, trigger);
+        active.put(job.id, job);
+        return job;
+    }
+
+    /** The tenant's job that is currently queued or running on this instance, if any. */
+    public Optional<ExtractionJob> activeJob(String tenantId) {
+        return active.values().stream()
+            .filter(job -> job.tenantId.equals(tenantId))
+            .findFirst()
+            .map(Job::snapshot);
+    }
+
+    /** Running jobs first, then the most recently finished ones. */
+    public List<ExtractionJob> list(String tenantId, int limit) {
+        List<ExtractionJob> jobs = new ArrayList<>();
+        active.values().stream()
+            .filter(job -> job.tenantId.equals(tenantId))
+            .map(Job::snapshot)
+            .sorted(Comparator.comparing(ExtractionJob::getCreatedAt).reversed())
+            .forEach(jobs::add);
+        if (jobs.size() < limit) {
+            // A job that is recorded but not yet closed is already in the history
+            List<String> activeIds = jobs.stream().map(ExtractionJob::getId).toList();
+            Query history = Query.query(Criteria.where("tenantId").is(tenantId).and("_id").nin(activeIds))
+                .with(Sort.by(Sort.Direction.DESC, "finishedAt"))
+                .limit(limit - jobs.size());
+            jobs.addAll(mongoTemplate.find(history, ExtractionJob.class));
+        }
+        return jobs.size() > limit ? jobs.subList(0, limit) : jobs;
+    }
+
+    public Optional<ExtractionJob> find(String tenantId, String jobId) {
+        Job job = active.get(jobId);
+        if (job != null) {
+            return job.tenantId.equals(tenantId) ? Optional.of(job.snapshot()) : Optional.empty();
+        }
+        return Optional.ofNullable(mongoTemplate.findById(jobId, ExtractionJob.class))
+            .filter(finished -> tenantId.equals(finished.getTenantId()));
+    }
+
+    /**
+     * Asks a running job to stop at its next page boundary.
+     *
+     * @return the job, or empty if it is not running on this instance
+     */
+    public Optional<ExtractionJob> cancel(String tenantId, String jobId) {
+        Job job = active.get(jobId);
+        if (job == null || !job.tenantId.equals(tenantId)) {
+            return Optional.empty();
+        }
+        job.cancelRequested = true;
+        logger.info("Cancellation requested for extraction job {} of tenant {}", jobId, tenantId);
+        return Optional.of(job.snapshot());
+    }
+
+    /** Asks every job on this instance to stop at its next page boundary, for shutdown. */
+    public void interruptAll() {
+        active.values().forEach(job -> job.interruptRequested = true);
+        if (!active.isEmpty()) {
+            logger.info("Interrupting {} extraction jobs for shutdown", active.size());
+        }
+    }
+
+    /**
+     * Waits until no job is queued or running on this instance.
+     *
+     * @return false if jobs were still active at the deadline
+     */
+    public boolean awaitIdle(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (active) {
+            while (!active.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    active.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int activeCount() {
+        return active.size();
+    }
+
+    private void record(Job job, ExtractionJob.Status status, String error) {
+        if (!job.recorded.compareAndSet(false, true)) {
+            return;
+        }
+        job.status = status;
+        ExtractionJob finished = job.snapshot();
+        finished.setError(error);
+        finished.setFinishedAt(LocalDateTime.now());
+        Counter.builder("gainsight.jobs.finished")
+            .description("Extraction jobs by final status")
+            .tag("status", status.name())
+            .register(metrics.getRegistry())
+            .increment();
+        try {
+            mongoTemplate.insert(finished);
+        } catch (Exception e) {
+            // History is informational; the run itself has completed
+            logger.warn("Could not record extraction job {}: {}", job.id, e.getMessage());
+        }
+    }
+}
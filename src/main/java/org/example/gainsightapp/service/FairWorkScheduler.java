@@ -0,0 +1,196 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of workers that run small units of work in weighted fair order across keys
+ * (tenants).
+ *
+ * Dispatch follows start-time fair queuing: each unit is tagged with a virtual start time
+ * and advances its key's finish tag by {@code 1 / weight}, and workers always take the unit
+ * with the smallest tag, ties in submission order. A key counts as active while any of its
+ * units is delayed, queued or running; an active key's next unit starts at its own finish
+ * tag, while a key that was idle starts at the current virtual time and gets no credit for
+ * the idle period. Active keys therefore share the workers in proportion to their weights
+ * however much work each has, including keys that submit their next unit only from inside
+ * the previous one (as a scroll does).
+ */
+public class FairWorkScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(FairWorkScheduler.class);
+
+    private final String name;
+    private final ExtractionMetrics metrics;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final PriorityQueue<Unit> queue = new PriorityQueue<>();
+    private final Map<String, Double> finishTags = new HashMap<>();
+    private final Map<String, Integer> outstanding = new HashMap<>();
+    private final ScheduledExecutorService delayer;
+    private final Thread[] workers;
+    private final AtomicInteger busy = new AtomicInteger();
+
+    private double virtualTime;
+    private long sequence;
+    private volatile boolean shutdown;
+
+    private record Unit(String key, Runnable task, double startTag, long sequence, long enqueuedNanos)
+            implements Comparable<Unit> {
+        @Override
+        public int compareTo(Unit other) {
+            int byTag = Double.compare(startTag, other.startTag);
+            return byTag != 0 ? byTag : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    public FairWorkScheduler(String name, int workerCount, ExtractionMetrics metrics) {
+        this.name = name;
+        this.metrics = metrics;
+        this.delayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name + "-delay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::work, name + "-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        Gauge.builder(name + ".queue.depth", this, FairWorkScheduler::queued)
+            .description("Work units waiting for a worker")
+            .register(metrics.getRegistry());
+        Gauge.builder(name + ".workers.busy", busy, AtomicInteger::get)
+            .description("Workers currently running a work unit")
+            .register(metrics.getRegistry());
+    }
+
+    /**
+     * Queues one unit of work for {@code key}; {@code weight} is the key's share relative to
+     * other keys (values below 1 are allowed).
+     */
+    public void submit(String key, double weight, Runnable task) {
+        enqueue(key, weight, task, register(key));
+    }
+
+    /**
+     * Queues the unit after {@code delayMillis} without holding a worker in the meantime.
+     * The key stays active during the delay.
+     */
+    public void submitAfter(String key, double weight, Runnable task, long delayMillis) {
+        boolean wasActive = register(key);
+        delayer.schedule(() -> enqueue(key, weight, task, wasActive), Math.max(delayMillis, 0), TimeUnit.MILLISECONDS);
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        delayer.shutdownNow();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private void work() {
+        while (!shutdown) {
+            Unit unit;
+            try {
+                unit = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Timer.builder(name + ".queue.wait")
+                .description("Time a work unit waited for a worker")
+                .tag("tenant", metrics.tenantTag(unit.key()))
+                .register(metrics.getRegistry())
+                .record(System.nanoTime() - unit.enqueuedNanos(), TimeUnit.NANOSECONDS);
+            busy.incrementAndGet();
+            try {
+                unit.task().run();
+            } catch (Throwable t) {
+                logger.error("Unhandled error in {} work unit for {}: {}", name, unit.key(), t.getMessage(), t);
+            } finally {
+                busy.decrementAndGet();
+                completed(unit.key());
+            }
+        }
+    }
+
+    // Counts a new unit for the key; returns whether the key already had outstanding units
+    private boolean register(String key) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new IllegalStateException(name + " is shut down");
+            }
+            return outstanding.merge(key, 1, Integer::sum) > 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(String key, double weight, Runnable task, boolean wasActive) {
+        double effectiveWeight = weight > 0 ? weight : 1;
+        lock.lock();
+        try {
+            double finish = finishTags.getOrDefault(key, 0.0);
+            double start = wasActive ? finish : Math.max(virtualTime, finish);
+            finishTags.put(key, start + 1 / effectiveWeight);
+            queue.add(new Unit(key, task, start, sequence++, System.nanoTime()));
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Unit take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queue.isEmpty()) {
+                available.await();
+            }
+            Unit unit = queue.poll();
+            virtualTime = Math.max(virtualTime, unit.startTag());
+            return unit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void completed(String key) {
+        lock.lock();
+        try {
+            outstanding.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+            if (outstanding.isEmpty()) {
+                // Idle: forget history so keys start level when work arrives again
+                finishTags.clear();
+                virtualTime = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,63 +1,127 @@
 package org.example.gainsightapp.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import io.micrometer.core.instrument.Timer;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers;
 import org.example.gainsightapp.integration.MultiTenantGainsightPXClient;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.metrics.jfr.CheckpointEvent;
+import org.example.gainsightapp.metrics.jfr.DedupEvent;
+import org.example.gainsightapp.metrics.jfr.PageFetchEvent;
+import org.example.gainsightapp.metrics.jfr.PersistEvent;
+import org.example.gainsightapp.metrics.jfr.TenantRunEvent;
 import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.ExtractionJob;
 import org.example.gainsightapp.model.TenantConfiguration;
 import org.example.gainsightapp.repository.ExtractedEventRepository;
 import org.example.gainsightapp.repository.TenantConfigurationRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 @Service
 public class GainsightEventExtractionService {
     
     private static final Logger logger = LoggerFactory.getLogger(GainsightEventExtractionService.class);
     
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 100; // Safety limit per event type and run
+    private static final long PAGE_DELAY_MS = 100; // Rate limiting between requests
+    static final String RUN_STREAM = "events"; // Both event types share one checkpoint
+    
     private final MultiTenantGainsightPXClient gainsightClient;
     private final TenantConfigurationRepository tenantRepository;
+    private final TenantRegistry tenantRegistry;
     private final ExtractedEventRepository eventRepository;
-    private final ObjectMapper objectMapper;
-    private final ExecutorService executorService;
+    private final ExtractedEventMapper eventMapper;
+    private final ExtractionMetrics metrics;
+    private final GainsightCircuitBreakers circuitBreakers;
+    private final EventEnricher eventEnricher;
+    private final PayloadStore payloadStore;
+    private final PayloadCodec payloadCodec;
+    private final MemoryBudget memoryBudget;
+    private final TenantRunCoordinator runCoordinator;
+    private final ExtractionJobService jobService;
+    private final ExtractionCheckpointStore checkpointStore;
+    private final FairWorkScheduler scheduler;
+    private final Duration shutdownTimeout;
+    private volatile boolean draining;
     
     public GainsightEventExtractionService(
             MultiTenantGainsightPXClient gainsightClient,
             TenantConfigurationRepository tenantRepository,
+            TenantRegistry tenantRegistry,
             ExtractedEventRepository eventRepository,
-            ObjectMapper objectMapper) {
+            ExtractedEventMapper eventMapper,
+            ExtractionMetrics metrics,
+            GainsightCircuitBreakers circuitBreakers,
+            EventEnricher eventEnricher,
+            PayloadStore payloadStore,
+            PayloadCodec payloadCodec,
+            MemoryBudget memoryBudget,
+            TenantRunCoordinator runCoordinator,
+            ExtractionJobService jobService,
+            ExtractionCheckpointStore checkpointStore,
+            @Value("${gainsight.extraction.workers:10}") int workers,
+            @Value("${gainsight.extraction.shutdown-timeout-seconds:30}") long shutdownTimeoutSeconds) {
         this.gainsightClient = gainsightClient;
         this.tenantRepository = tenantRepository;
+        this.tenantRegistry = tenantRegistry;
         this.eventRepository = eventRepository;
-        this.objectMapper = objectMapper;
-        this.executorService = Executors.newFixedThreadPool(10); // Configurable pool size
+        this.eventMapper = eventMapper;
+        this.metrics = metrics;
+        this.circuitBreakers = circuitBreakers;
+        this.eventEnricher = eventEnricher;
+        this.payloadStore = payloadStore;
+        this.payloadCodec = payloadCodec;
+        this.memoryBudget = memoryBudget;
+        this.runCoordinator = runCoordinator;
+        this.jobService = jobService;
+        this.checkpointStore = checkpointStore;
+        this.scheduler = new FairWorkScheduler("gainsight.extraction", workers, metrics);
+        this.shutdownTimeout = Duration.ofSeconds(shutdownTimeoutSeconds);
+    }
+    
+    /** What became of an extraction trigger. */
+    public enum TriggerResult {
+        STARTED,
+        /** Merged into a follow-up of the run that is already active. */
+        COALESCED,
+        CIRCUIT_OPEN,
+        SHUTTING_DOWN
     }
     
+    /**
+     * @param job the started job, or for {@code COALESCED} the active job on this instance if
+     *            known; otherwise null
+     */
+    public record TriggerOutcome(TriggerResult result, ExtractionJob job) {}
+    
     @Transactional
     public void extractEventsForAllTenants() {
         logger.info("Starting event extraction for all active tenants");
         
-        List<TenantConfiguration> activeTenants = tenantRepository.findByActiveTrue();
+        List<TenantConfiguration> activeTenants = tenantRegistry.getActiveTenants();
         logger.info("Found {} active tenants", activeTenants.size());
+        metrics.updateTenantLag(maxExtractionLagSeconds(activeTenants));
         
         List<CompletableFuture<Void>> futures = new ArrayList<>();
         
         for (TenantConfiguration tenant : activeTenants) {
             if (shouldExtractForTenant(tenant)) {
-                CompletableFuture<Void> future = CompletableFuture.runAsync(
-                    () -> extractEventsForTenant(tenant), executorService);
-                futures.add(future);
+                startRun(tenant, "sweep", futures);
             }
         }
         
@@ -68,121 +132,437 @@ public class GainsightEventExtractionService {
         logger.info("Completed event extraction for all tenants");
     }
     
-    @Transactional
-    public void extractEventsForTenant(TenantConfiguration tenant) {
-        logger.info("Starting event extraction for tenant: {}", tenant.getTenantId());
-        
+    /**
+     * Starts an extraction of one tenant in the background, unless one is already running
+     * on any instance, in which case a follow-up run is queued behind it.
+     */
+    public TriggerOutcome triggerExtraction(TenantConfiguration tenant) {
+        return startRun(tenant, "manual", null);
+    }
+    
+    /**
+     * Restarts runs whose scroll was left unfinished, typically by the shutdown of another
+     * (or this) instance, from their last committed checkpoint.
+     */
+    public void resumeInterruptedRuns() {
+        for (String tenantId : checkpointStore.tenantsWithUnfinishedScrolls()) {
+            tenantRegistry.getTenant(tenantId)
+                .filter(TenantConfiguration::getActive)
+                .ifPresent(tenant -> {
+                    TriggerOutcome outcome = startRun(tenant, "resume", null);
+                    logger.info("Resuming unfinished extraction for tenant {}: {}", tenantId, outcome.result());
+                });
+        }
+    }
+    
+    /**
+     * Drains extraction before the context closes: no new runs start, running jobs stop at
+     * their next page boundary (the page in flight is stored and checkpointed first) and
+     * release their leases so another instance can take over. Runs still busy when
+     * {@code gainsight.extraction.shutdown-timeout-seconds} is up are abandoned; their
+     * last committed checkpoint stands.
+     */
+    @PreDestroy
+    public void shutdown() {
+        draining = true;
+        jobService.interruptAll();
+        if (!jobService.awaitIdle(shutdownTimeout)) {
+            logger.warn("Extraction did not drain within {}s; {} runs abandoned at their last checkpoint",
+                       shutdownTimeout.toSeconds(), jobService.activeCount());
+        }
+        scheduler.shutdown();
+    }
+    
+    private TriggerOutcome startRun(TenantConfiguration tenant, String trigger, List<CompletableFuture<Void>> completions) {
+        if (draining) {
+            return new TriggerOutcome(TriggerResult.SHUTTING_DOWN, null);
+        }
+        // Decided here so tenants behind an open circuit never take a worker
+        GainsightCircuitBreakers.Permission permission = circuitBreakers.tryAcquire(tenant);
+        if (permission == GainsightCircuitBreakers.Permission.DENIED) {
+            logger.debug("Skipping tenant {}: circuit open", tenant.getTenantId());
+            return new TriggerOutcome(TriggerResult.CIRCUIT_OPEN, null);
+        }
+        TenantRunCoordinator.Lease lease;
         try {
-            // Update attempt timestamp
-            tenant.setLastAttemptedExtraction(LocalDateTime.now());
-            tenantRepository.save(tenant);
+            lease = runCoordinator.tryAcquire(tenant.getTenantId(), RUN_STREAM, trigger).orElse(null);
+        } catch (RuntimeException e) {
+            circuitBreakers.release(tenant, permission);
+            throw e;
+        }
+        if (lease == null) {
+            circuitBreakers.release(tenant, permission);
+            return new TriggerOutcome(TriggerResult.COALESCED, jobService.activeJob(tenant.getTenantId()).orElse(null));
+        }
+        TenantRun run = new TenantRun(tenant, permission, lease, jobService.create(tenant.getTenantId(), trigger));
+        scheduler.submit(tenant.getTenantId(), schedulingWeight(tenant), () -> runNextPage(run));
+        if (completions != null) {
+            completions.add(run.completion);
+        }
+        return new TriggerOutcome(TriggerResult.STARTED, run.job.snapshot());
+    }
+    
+    // Each page is its own work unit; the next one is queued behind other tenants' pages
+    private void runNextPage(TenantRun run) {
+        if (run.step()) {
+            scheduler.submitAfter(run.tenant.getTenantId(), schedulingWeight(run.tenant),
+                () -> runNextPage(run), PAGE_DELAY_MS);
+        }
+    }
+    
+    static double schedulingWeight(TenantConfiguration tenant) {
+        Integer weight = tenant.getSchedulingWeight();
+        return weight != null && weight > 0 ? weight : 1;
+    }
+    
+    /**
+     * One extraction of one tenant, advanced a page at a time: the first step records the
+     * attempt (and probes a half-open circuit), each step fetches and stores one page of the
+     * current event type, and the step that finishes the last event type records success.
+     * The run holds the tenant's run lease throughout and starts its own follow-up if other
+     * triggers arrived meanwhile. Progress goes to the run's job, and a cancelled or
+     * interrupted job stops before its next page.
+     */
+    private final class TenantRun {
+        
+        private final TenantConfiguration tenant;
+        private final GainsightCircuitBreakers.Permission permission;
+        private final TenantRunCoordinator.Lease lease;
+        private final ExtractionJobService.Job job;
+        private final Deque<PageCursor> streams = new ArrayDeque<>();
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private final TenantRunEvent runEvent = new TenantRunEvent();
+        private boolean started;
+        private int totalExtracted;
+        
+        TenantRun(TenantConfiguration tenant, GainsightCircuitBreakers.Permission permission,
+                  TenantRunCoordinator.Lease lease, ExtractionJobService.Job job) {
+            this.tenant = tenant;
+            this.permission = permission;
+            this.lease = lease;
+            this.job = job;
+        }
+        
+        /**
+         * @return true if there is more work for this run
+         */
+        boolean step() {
+            try {
+                if (job.shouldStop()) {
+                    stop();
+                    return false;
+                }
+                if (!started) {
+                    start();
+                } else {
+                    lease.renew();
+                }
+                PageCursor cursor = streams.peekFirst();
+                if (cursor != null) {
+                    if (cursor.page == 0) {
+                        cursor.scrollId = checkpointStore.resumeScrollId(tenant, cursor.eventType);
+                    }
+                    int extractedBefore = cursor.extracted;
+                    long bytesBefore = cursor.bytes;
+                    boolean hasMore = extractNextPage(tenant, cursor);
+                    job.page(cursor.eventType, cursor.extracted - extractedBefore, cursor.bytes - bytesBefore);
+                    if (!hasMore) {
+                        streams.removeFirst();
+                        totalExtracted += cursor.extracted;
+                        logger.info("Extracted {} {} events for tenant: {}", 
+                                   cursor.extracted, cursor.eventType.toLowerCase(), tenant.getTenantId());
+                    }
+                }
+                if (streams.isEmpty()) {
+                    succeed();
+                    return false;
+                }
+                return true;
+            } catch (Exception e) {
+                fail(e);
+                return false;
+            }
+        }
+        
+        private void start() {
+            logger.info("Starting event extraction for tenant: {}", tenant.getTenantId());
+            runEvent.begin();
+            started = true;
+            job.started();
             
-            // Test connection first
-            if (!gainsightClient.testConnection(tenant)) {
-                throw new RuntimeException("Connection test failed");
+            // The registry copy is current unless the previous run was on another instance
+            if (lease.previousRunElsewhere()) {
+                tenantRepository.findByTenantId(tenant.getTenantId()).ifPresent(stored ->
+                    tenant.setLastSuccessfulExtraction(stored.getLastSuccessfulExtraction()));
             }
             
-            int totalExtracted = 0;
+            LocalDateTime attemptedAt = LocalDateTime.now();
+            tenant.setLastAttemptedExtraction(attemptedAt);
+            tenantRepository.updateLastAttemptedExtraction(tenant.getTenantId(), attemptedAt);
+            tenantRegistry.update(tenant.getTenantId(), cached -> cached.setLastAttemptedExtraction(attemptedAt));
             
-            // Extract custom events if enabled
-            if (tenant.getExtractCustomEvents()) {
-                int customEventsExtracted = extractEventsByType(tenant, "CUSTOM");
-                totalExtracted += customEventsExtracted;
-                logger.info("Extracted {} custom events for tenant: {}", 
-                           customEventsExtracted, tenant.getTenantId());
+            // Half-open circuit: one single-record request decides whether the tenant is back
+            if (permission == GainsightCircuitBreakers.Permission.PROBE && !gainsightClient.testConnection(tenant)) {
+                throw new RuntimeException("Circuit probe failed");
             }
             
-            // Extract standard events if enabled
+            if (tenant.getExtractCustomEvents()) {
+                streams.add(new PageCursor("CUSTOM"));
+            }
             if (tenant.getExtractStandardEvents()) {
-                int standardEventsExtracted = extractEventsByType(tenant, "STANDARD");
-                totalExtracted += standardEventsExtracted;
-                logger.info("Extracted {} standard events for tenant: {}", 
-                           standardEventsExtracted, tenant.getTenantId());
+                streams.add(new PageCursor("STANDARD"));
             }
-            
-            // Update success status
-            tenant.setLastSuccessfulExtraction(LocalDateTime.now());
+        }
+        
+        private void succeed() {
+            LocalDateTime succeededAt = LocalDateTime.now();
+            tenant.setLastSuccessfulExtraction(succeededAt);
             tenant.setLastExtractionError(null);
-            tenantRepository.save(tenant);
+            tenantRepository.updateLastSuccessfulExtraction(tenant.getTenantId(), succeededAt);
+            tenantRegistry.update(tenant.getTenantId(), cached -> {
+                cached.setLastSuccessfulExtraction(succeededAt);
+                cached.setLastExtractionError(null);
+            });
             
             logger.info("Successfully extracted {} total events for tenant: {}", 
                        totalExtracted, tenant.getTenantId());
-            
-        } catch (Exception e) {
+            job.succeeded();
+            finish(true);
+        }
+        
+        // The checkpoint of the last stored page stands, so the next run resumes from it
+        private void stop() {
+            logger.info("Extraction job {} for tenant {} stopped after {} events{}", 
+                       job.getId(), tenant.getTenantId(), totalExtracted,
+                       job.isCancelRequested() ? "" : " for shutdown");
+            job.stopped();
+            finish(false);
+        }
+        
+        private void fail(Exception e) {
             logger.error("Error extracting events for tenant {}: {}", 
                         tenant.getTenantId(), e.getMessage(), e);
+            try {
+                String error = e.getMessage();
+                tenant.setLastExtractionError(error);
+                tenantRepository.updateLastExtractionError(tenant.getTenantId(), error);
+                tenantRegistry.update(tenant.getTenantId(), cached -> cached.setLastExtractionError(error));
+            } catch (Exception saveError) {
+                logger.error("Could not record extraction error for tenant {}: {}", 
+                            tenant.getTenantId(), saveError.getMessage());
+            } finally {
+                // Don't propagate to allow other tenants to continue
+                job.failed(e.getMessage());
+                finish(false);
+            }
+        }
+        
+        private void finish(boolean succeeded) {
+            circuitBreakers.release(tenant, permission);
+            boolean followUp = false;
+            try {
+                followUp = lease.release();
+            } catch (Exception e) {
+                logger.warn("Could not release run lease for tenant {}: {}", tenant.getTenantId(), e.getMessage());
+            }
+            // Only now, with history recorded and the lease free, may shutdown consider the run done
+            job.close();
+            runEvent.end();
+            if (started && runEvent.shouldCommit()) {
+                runEvent.tenantId = tenant.getTenantId();
+                runEvent.eventType = "ALL";
+                runEvent.events = totalExtracted;
+                runEvent.succeeded = succeeded;
+                runEvent.commit();
+            }
+            completion.complete(null);
             
-            // Update error status
-            tenant.setLastExtractionError(e.getMessage());
-            tenantRepository.save(tenant);
-            
-            // Don't rethrow to allow other tenants to continue
+            if (followUp && job.shouldStop()) {
+                // Don't let queued triggers restart what was just stopped
+                logger.info("Dropping follow-up extraction for tenant {}: job {} was stopped", 
+                           tenant.getTenantId(), job.getId());
+            } else if (followUp) {
+                logger.info("Starting follow-up extraction for tenant: {}", tenant.getTenantId());
+                try {
+                    startRun(tenant, "follow-up", null);
+                } catch (Exception e) {
+                    logger.error("Could not start follow-up extraction for tenant {}: {}", 
+                                tenant.getTenantId(), e.getMessage());
+                }
+            }
         }
     }
     
-    private int extractEventsByType(TenantConfiguration tenant, String eventType) {
-        int totalExtracted = 0;
-        String scrollId = tenant.getLastProcessedScrollId();
-        boolean hasMore = true;
-        int pageSize = 100; // Configurable
-        int maxPages = 100; // Safety limit
-        int pageCount = 0;
+    /** Position within one event type's scroll during a run. */
+    private static final class PageCursor {
+        private final String eventType;
+        private String scrollId;
+        private int page;
+        private int extracted;
+        private long bytes;
         
+        PageCursor(String eventType) {
+            this.eventType = eventType;
+        }
+    }
+    
+    /**
+     * Fetches, stores and checkpoints the next page of the cursor's event type.
+     *
+     * @return true if the scroll has more pages and the page limit has not been reached
+     */
+    private boolean extractNextPage(TenantConfiguration tenant, PageCursor cursor) {
+        // Held until the page is persisted; may shrink the page or wait while memory is short
+        try (MemoryBudget.Reservation reservation = reservePage(tenant)) {
+            return extractPage(tenant, cursor, reservation);
+        }
+    }
+    
+    private MemoryBudget.Reservation reservePage(TenantConfiguration tenant) {
         try {
-            while (hasMore && pageCount < maxPages) {
-                MultiTenantGainsightPXClient.GainsightResponse response = 
-                    gainsightClient.fetchEvents(tenant, eventType, scrollId, pageSize);
-                
-                if (!response.isSuccess()) {
-                    throw new RuntimeException("API request failed with status: " + response.getStatusCode());
-                }
-                
-                JsonNode events = response.getData();
-                if (events != null && events.isArray()) {
-                    List<ExtractedEvent> newEvents = processEvents(tenant, events, eventType);
-                    if (!newEvents.isEmpty()) {
-                        eventRepository.saveAll(newEvents);
-                        totalExtracted += newEvents.size();
-                        logger.debug("Saved {} {} events for tenant: {}", 
-                                   newEvents.size(), eventType, tenant.getTenantId());
-                    }
+            return memoryBudget.reserve(tenant.getTenantId(), PAGE_SIZE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for memory budget", e);
+        }
+    }
+    
+    private boolean extractPage(TenantConfiguration tenant, PageCursor cursor, MemoryBudget.Reservation reservation) {
+        String eventType = cursor.eventType;
+        String scrollId = cursor.scrollId;
+        int pageCount = cursor.page;
+        int extractedBefore = cursor.extracted;
+        
+        PageFetchEvent fetchEvent = new PageFetchEvent();
+        fetchEvent.begin();
+        MultiTenantGainsightPXClient.GainsightResponse response = 
+            gainsightClient.fetchEvents(tenant, eventType, scrollId, reservation.getPageSize(), pageCount);
+        fetchEvent.end();
+        if (fetchEvent.shouldCommit()) {
+            fetchEvent.tenantId = tenant.getTenantId();
+            fetchEvent.eventType = eventType;
+            fetchEvent.page = pageCount;
+            fetchEvent.statusCode = response.getStatusCode();
+            fetchEvent.bytes = response.getResponseBytes();
+            fetchEvent.resumed = scrollId != null;
+            fetchEvent.commit();
+        }
+        
+        if (!response.isSuccess()) {
+            throw new RuntimeException("API request failed with status: " + response.getStatusCode());
+        }
+        
+        JsonNode events = response.getData();
+        reservation.measured(response.getResponseBytes(), events != null ? events.size() : 0);
+        cursor.bytes += response.getResponseBytes();
+        if (events != null && events.isArray()) {
+            metrics.recordPageEvents(tenant.getTenantId(), eventType, events.size());
+            DedupEvent dedupEvent = new DedupEvent();
+            dedupEvent.begin();
+            List<ExtractedEvent> newEvents = processEvents(tenant, events, eventType);
+            dedupEvent.end();
+            if (newEvents.isEmpty() && !events.isEmpty()) {
+                runCoordinator.recordDuplicatePage(tenant.getTenantId(), eventType);
+            }
+            if (dedupEvent.shouldCommit()) {
+                dedupEvent.tenantId = tenant.getTenantId();
+                dedupEvent.eventType = eventType;
+                dedupEvent.page = pageCount;
+                dedupEvent.events = events.size();
+                dedupEvent.duplicates = events.size() - newEvents.size();
+                dedupEvent.commit();
+            }
+            if (!newEvents.isEmpty()) {
+                eventEnricher.enrich(tenant, eventType, newEvents);
+                payloadStore.store(tenant.getTenantId(), newEvents);
+                payloadCodec.encode(tenant.getTenantId(), newEvents);
+                PersistEvent persistEvent = new PersistEvent();
+                persistEvent.begin();
+                Timer.Sample persistSample = metrics.startTimer();
+                try {
+                    eventRepository.saveAll(newEvents);
+                } catch (RuntimeException e) {
+                    releaseUnwritten(tenant, newEvents, e);
+                    throw e;
                 }
-                
-                // Update pagination
-                scrollId = response.getScrollId();
-                scrollId = scrollId == "null" ? null : scrollId; // Handle null case
-                hasMore = response.isHasMore() && scrollId != null;
-                pageCount++;
-                
-                // Update scroll ID for resumption
-                tenant.setLastProcessedScrollId(scrollId);
-                tenantRepository.save(tenant);
-                
-                // Rate limiting
-                if (hasMore) {
-                    Thread.sleep(100); // 100ms delay between requests
+                metrics.recordPersist(tenant.getTenantId(), eventType, persistSample, newEvents.size());
+                persistEvent.end();
+                if (persistEvent.shouldCommit()) {
+                    persistEvent.tenantId = tenant.getTenantId();
+                    persistEvent.eventType = eventType;
+                    persistEvent.page = pageCount;
+                    persistEvent.events = newEvents.size();
+                    persistEvent.commit();
                 }
+                cursor.extracted += newEvents.size();
+                logger.debug("Saved {} {} events for tenant: {}", 
+                           newEvents.size(), eventType, tenant.getTenantId());
             }
-            
-            if (pageCount >= maxPages) {
-                logger.warn("Reached maximum page limit ({}) for tenant: {} event type: {}", 
-                           maxPages, tenant.getTenantId(), eventType);
-            }
-            
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Extraction interrupted", e);
         }
         
-        return totalExtracted;
+        // Update pagination
+        scrollId = response.getScrollId();
+        scrollId = scrollId == "null" ? null : scrollId; // Handle null case
+        boolean hasMore = response.isHasMore() && scrollId != null;
+        
+        // Commit the scroll position only now that the page's events are stored
+        CheckpointEvent checkpointEvent = new CheckpointEvent();
+        checkpointEvent.begin();
+        Timer.Sample checkpointSample = metrics.startTimer();
+        checkpointStore.commit(tenant.getTenantId(), eventType, scrollId, !hasMore, cursor.extracted - extractedBefore);
+        metrics.recordCheckpoint(tenant.getTenantId(), eventType, checkpointSample);
+        checkpointEvent.end();
+        if (checkpointEvent.shouldCommit()) {
+            checkpointEvent.tenantId = tenant.getTenantId();
+            checkpointEvent.eventType = eventType;
+            checkpointEvent.page = pageCount;
+            checkpointEvent.hasMore = hasMore;
+            checkpointEvent.commit();
+        }
+        cursor.scrollId = scrollId;
+        cursor.page = pageCount + 1;
+        
+        if (hasMore && cursor.page >= MAX_PAGES) {
+            logger.warn("Reached maximum page limit ({}) for tenant: {} event type: {}", 
+                       MAX_PAGES, tenant.getTenantId(), eventType);
+            return false;
+        }
+        return hasMore;
     }
     
-    private List<ExtractedEvent> processEvents(TenantConfiguration tenant, JsonNode events, String eventType) {
+    /**
+     * Drops the payload references of events a failed {@code saveAll} did not write. New events
+     * are inserted in order, so a bulk write error leaves everything from its index on unwritten;
+     * after any other error, the events not found in the store were not written.
+     */
+    private void releaseUnwritten(TenantConfiguration tenant, List<ExtractedEvent> events, RuntimeException error) {
+        if (!payloadStore.isEnabled()) {
+            return;
+        }
+        try {
+            List<ExtractedEvent> unwritten;
+            if (error.getCause() instanceof MongoBulkWriteException bulkError && !bulkError.getWriteErrors().isEmpty()) {
+                unwritten = events.subList(bulkError.getWriteErrors().get(0).getIndex(), events.size());
+            } else {
+                unwritten = events.stream()
+                    .filter(event -> !eventRepository.existsByTenantIdAndEventId(tenant.getTenantId(), event.getEventId()))
+                    .toList();
+            }
+            payloadStore.release(tenant.getTenantId(), unwritten);
+        } catch (Exception releaseError) {
+            logger.warn("Could not release payload references of unwritten events for tenant {}: {}", 
+                       tenant.getTenantId(), releaseError.getMessage());
+        }
+    }
+    
+    // Package-private so the JMH benchmarks in src/jmh can drive it directly
+    List<ExtractedEvent> processEvents(TenantConfiguration tenant, JsonNode events, String eventType) {
         List<ExtractedEvent> extractedEvents = new ArrayList<>();
+        int duplicates = 0;
         
         for (JsonNode event : events) {
             try {
-                String eventId = extractEventId(event);
+                String eventId = eventMapper.extractEventId(event);
                 if (eventId == null) {
                     logger.warn("Skipping event without ID for tenant: {}", tenant.getTenantId());
                     continue;
@@ -191,19 +571,11 @@ public class GainsightEventExtractionService {
                 // Check for duplicates
                 if (eventRepository.existsByTenantIdAndEventId(tenant.getTenantId(), eventId)) {
                     logger.debug("Skipping duplicate event {} for tenant: {}", eventId, tenant.getTenantId());
+                    duplicates++;
                     continue;
                 }
                 
-                ExtractedEvent extractedEvent = new ExtractedEvent();
-                extractedEvent.setTenantId(tenant.getTenantId());
-                extractedEvent.setEventId(eventId);
-                extractedEvent.setEventType(eventType);
-                extractedEvent.setEventName(extractEventName(event));
-                extractedEvent.setEventData(objectMapper.writeValueAsString(event));
-                extractedEvent.setEventTimestamp(extractEventTimestamp(event));
-                extractedEvent.onCreate();
-                
-                extractedEvents.add(extractedEvent);
+                extractedEvents.add(eventMapper.toExtractedEvent(tenant, event, eventType, eventId));
                 
             } catch (Exception e) {
                 logger.error("Error processing event for tenant {}: {}", 
@@ -212,88 +584,21 @@ public class GainsightEventExtractionService {
             }
         }
         
+        metrics.recordDedup(tenant.getTenantId(), eventType, duplicates, extractedEvents.size());
         return extractedEvents;
     }
     
-    private String extractEventId(JsonNode event) {
-        // Try common ID fields
-        String[] idFields = {"id", "eventId", "globalContext.eventId", "_id"};
-        
-        for (String field : idFields) {
-            JsonNode idNode = event.at("/" + field.replace(".", "/"));
-            if (idNode != null && !idNode.isMissingNode() && !idNode.isNull()) {
-                return idNode.asText();
-            }
-        }
-        
-        return null;
-    }
-    
-    private String extractEventName(JsonNode event) {
-        // Try common name fields
-        String[] nameFields = {"eventName", "name", "type", "eventType"};
-        
-        for (String field : nameFields) {
-            JsonNode nameNode = event.at("/" + field.replace(".", "/"));
-            if (nameNode != null && !nameNode.isMissingNode() && !nameNode.isNull()) {
-                return nameNode.asText();
-            }
-        }
-        
-        return "unknown";
-    }
-    
-    private LocalDateTime extractEventTimestamp(JsonNode event) {
-        // Try common timestamp fields
-        String[] timestampFields = {"timestamp", "eventTime", "createdAt", "occurred"};
-        
-        for (String field : timestampFields) {
-            JsonNode timestampNode = event.at("/" + field.replace(".", "/"));
-            if (timestampNode != null && !timestampNode.isMissingNode() && !timestampNode.isNull()) {
-                try {
-                    String timestampStr = timestampNode.asText();
-                    // Try different timestamp formats
-                    return parseTimestamp(timestampStr);
-                } catch (Exception e) {
-                    logger.debug("Failed to parse timestamp field {}: {}", field, e.getMessage());
-                }
-            }
-        }
-        
-        // Default to current time if no timestamp found
-        return LocalDateTime.now();
-    }
-    
-    private LocalDateTime parseTimestamp(String timestamp) {
-        // Try different common formats
-        String[] formats = {
-            "yyyy-MM-dd'T'HH:mm:ss",
-            "yyyy-MM-dd'T'HH:mm:ss.SSS",
-            "yyyy-MM-dd'T'HH:mm:ss'Z'",
-            "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'",
-            "yyyy-MM-dd HH:mm:ss"
-        };
-        
-        for (String format : formats) {
-            try {
-                return LocalDateTime.parse(timestamp, DateTimeFormatter.ofPattern(format));
-            } catch (DateTimeParseException e) {
-                // Try next format
-            }
-        }
-        
-        // Try parsing as epoch milliseconds
-        try {
-            long epochMilli = Long.parseLong(timestamp);
-            return LocalDateTime.ofEpochSecond(epochMilli / 1000, 0, java.time.ZoneOffset.UTC);
-        } catch (NumberFormatException e) {
-            // Fall back to current time
-        }
-        
-        throw new DateTimeParseException("Unable to parse timestamp: " + timestamp, timestamp, 0);
+    static long maxExtractionLagSeconds(List<TenantConfiguration> tenants) {
+        LocalDateTime now = LocalDateTime.now();
+        return tenants.stream()
+            .map(t -> t.getLastSuccessfulExtraction() != null ? t.getLastSuccessfulExtraction() : t.getCreatedAt())
+            .filter(java.util.Objects::nonNull)
+            .mapToLong(last -> java.time.Duration.between(last, now).getSeconds())
+            .max()
+            .orElse(0);
     }
     
-    private boolean shouldExtractForTenant(TenantConfiguration tenant) {
+    static boolean shouldExtractForTenant(TenantConfiguration tenant) {
         if (!tenant.getActive()) {
             return false;
         }
@@ -1,7 +1,12 @@
 package org.example.gainsightapp.service;
 
+import io.micrometer.core.instrument.Timer;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -11,9 +16,16 @@ public class GainsightScheduledTaskService {
     private static final Logger logger = LoggerFactory.getLogger(GainsightScheduledTaskService.class);
     
     private final GainsightEventExtractionService extractionService;
+    private final ReactiveEventExtractionService reactiveExtractionService;
+    private final ExtractionMetrics metrics;
     
-    public GainsightScheduledTaskService(GainsightEventExtractionService extractionService) {
+    public GainsightScheduledTaskService(GainsightEventExtractionService extractionService,
+                                         ObjectProvider<ReactiveEventExtractionService> reactiveExtractionService,
+                                         ExtractionMetrics metrics) {
         this.extractionService = extractionService;
+        // Only present with gainsight.extraction.mode=reactive
+        this.reactiveExtractionService = reactiveExtractionService.getIfAvailable();
+        this.metrics = metrics;
     }
     
     /**
@@ -22,12 +34,15 @@ public class GainsightScheduledTaskService {
     @Scheduled(fixedDelay = 300000) // 5 minutes = 300,000 milliseconds
     public void scheduledEventExtraction() {
         logger.info("Starting scheduled event extraction task");
+        Timer.Sample sample = metrics.startTimer();
         
         try {
-            extractionService.extractEventsForAllTenants();
+            extractAllTenants();
             logger.info("Completed scheduled event extraction task successfully");
         } catch (Exception e) {
             logger.error("Error during scheduled event extraction: {}", e.getMessage(), e);
+        } finally {
+            metrics.recordSweep("interval", sample);
         }
     }
     
@@ -37,12 +52,42 @@ public class GainsightScheduledTaskService {
     @Scheduled(fixedDelay = 3600000) // 1 hour = 3,600,000 milliseconds
     public void hourlyBackupExtraction() {
         logger.info("Starting hourly backup extraction task");
+        Timer.Sample sample = metrics.startTimer();
         
         try {
-            extractionService.extractEventsForAllTenants();
+            extractAllTenants();
             logger.info("Completed hourly backup extraction task successfully");
         } catch (Exception e) {
             logger.error("Error during hourly backup extraction: {}", e.getMessage(), e);
+        } finally {
+            metrics.recordSweep("hourly", sample);
+        }
+    }
+    
+    /**
+     * Picks up runs that a previous shutdown or crash left mid-scroll, so a rolling deploy
+     * does not wait for the next interval to continue.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedRuns() {
+        try {
+            if (reactiveExtractionService != null) {
+                reactiveExtractionService.resumeInterruptedRuns().subscribe(
+                    total -> logger.info("Resumed extraction stored {} events", total),
+                    e -> logger.error("Error resuming extraction: {}", e.getMessage()));
+            } else {
+                extractionService.resumeInterruptedRuns();
+            }
+        } catch (Exception e) {
+            logger.error("Error resuming interrupted extraction: {}", e.getMessage(), e);
+        }
+    }
+    
+    private void extractAllTenants() {
+        if (reactiveExtractionService != null) {
+            reactiveExtractionService.extractEventsForAllTenants();
+        } else {
+            extractionService.extractEventsForAllTenants();
         }
     }
 }
@@ -0,0 +1,272 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Global accountant for the heap held by event pages in flight.
+ *
+ * Every page reserves its estimated footprint before it is fetched and releases it once it
+ * has been persisted. The estimate is the tenant's observed decoded bytes per event times
+ * {@code gainsight.memory.expansion-factor}, which covers the parsed tree, the mapped
+ * {@link org.example.gainsightapp.model.ExtractedEvent}s and their serialized copies. When
+ * the budget can't hold a full page the page size is shrunk, down to
+ * {@code gainsight.memory.min-page-size}; below that the caller waits, in arrival order,
+ * until other pages release. Once a page is parsed its reservation is corrected to the
+ * measured size, which may briefly exceed the budget but holds back further reservations.
+ */
+@Component
+public class MemoryBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryBudget.class);
+
+    private static final double ESTIMATE_SMOOTHING = 0.2;
+
+    private final ExtractionMetrics metrics;
+    private final long limitBytes;
+    private final int minPageSize;
+    private final double expansionFactor;
+    private final double initialBytesPerEvent;
+    private final Duration maxWait;
+    private final Map<String, Double> bytesPerEvent = new ConcurrentHashMap<>();
+    private final Deque<Request> waiters = new ArrayDeque<>();
+
+    private long reservedBytes;
+
+    private record Request(String tenantId, int pageSize, CompletableFuture<Reservation> future, long enqueuedNanos) {}
+
+    public MemoryBudget(
+            ExtractionMetrics metrics,
+            @Value("${gainsight.memory.budget-mb:256}") long budgetMb,
+            @Value("${gainsight.memory.min-page-size:10}") int minPageSize,
+            @Value("${gainsight.memory.expansion-factor:4.0}") double expansionFactor,
+            @Value("${gainsight.memory.initial-bytes-per-event:4096}") double initialBytesPerEvent,
+            @Value("${gainsight.memory.max-wait-ms:60000}") long maxWaitMs) {
+        this.metrics = metrics;
+        this.limitBytes = budgetMb > 0 ? budgetMb * 1024 * 1024 : Long.MAX_VALUE;
+        this.minPageSize = Math.max(minPageSize, 1);
+        this.expansionFactor = expansionFactor;
+        this.initialBytesPerEvent = initialBytesPerEvent;
+        this.maxWait = Duration.ofMillis(maxWaitMs);
+
+        Gauge.builder("gainsight.memory.budget.limit", () -> limitBytes == Long.MAX_VALUE ? 0 : limitBytes)
+            .description("Bytes that pages in flight may reserve; 0 means unlimited")
+            .baseUnit("bytes")
+            .register(metrics.getRegistry());
+        Gauge.builder("gainsight.memory.budget.reserved", this, MemoryBudget::reservedBytes)
+            .description("Bytes currently reserved by pages in flight")
+            .baseUnit("bytes")
+            .register(metrics.getRegistry());
+        Gauge.builder("gainsight.memory.budget.waiters", this, MemoryBudget::waiting)
+            .description("Page fetches waiting for memory budget")
+            .register(metrics.getRegistry());
+    }
+
+    /** Memory held by one page from before its fetch until it has been persisted. */
+    public final class Reservation implements AutoCloseable {
+        private final String tenantId;
+        private final int pageSize;
+        private long bytes;
+        private boolean closed;
+
+        private Reservation(String tenantId, int pageSize, long bytes) {
+            this.tenantId = tenantId;
+            this.pageSize = pageSize;
+            this.bytes = bytes;
+        }
+
+        /** Page size to request; smaller than asked for when the budget is tight. */
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        /**
+         * Replaces the estimate with the footprint of the page as fetched and learns the
+         * tenant's bytes per event for later estimates.
+         */
+        public void measured(long decodedBytes, int events) {
+            if (events > 0) {
+                bytesPerEvent.merge(tenantId, (double) decodedBytes / events,
+                    (previous, sample) -> previous + ESTIMATE_SMOOTHING * (sample - previous));
+            }
+            resize((long) (decodedBytes * expansionFactor));
+        }
+
+        private void resize(long actualBytes) {
+            synchronized (MemoryBudget.this) {
+                if (closed) {
+                    return;
+                }
+                reservedBytes += actualBytes - bytes;
+                bytes = actualBytes;
+            }
+            grantWaiters();
+        }
+
+        @Override
+        public void close() {
+            synchronized (MemoryBudget.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                reservedBytes -= bytes;
+            }
+            grantWaiters();
+        }
+    }
+
+    /**
+     * Reserves memory for a page of up to {@code pageSize} events, blocking while the budget
+     * is exhausted.
+     */
+    public Reservation reserve(String tenantId, int pageSize) throws InterruptedException {
+        CompletableFuture<Reservation> future = request(tenantId, pageSize);
+        try {
+            return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(future);
+            throw timedOut(tenantId);
+        } catch (InterruptedException e) {
+            abandon(future);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Non-blocking {@link #reserve}; cancelling the subscription gives up the place in line.
+     */
+    public Mono<Reservation> reserveAsync(String tenantId, int pageSize) {
+        return Mono.defer(() -> {
+            CompletableFuture<Reservation> future = request(tenantId, pageSize);
+            return Mono.fromFuture(future)
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        abandon(future);
+                    }
+                })
+                .timeout(maxWait, Mono.error(() -> timedOut(tenantId)));
+        });
+    }
+
+    public synchronized long reservedBytes() {
+        return reservedBytes;
+    }
+
+    public synchronized int waiting() {
+        return waiters.size();
+    }
+
+    private CompletableFuture<Reservation> request(String tenantId, int pageSize) {
+        CompletableFuture<Reservation> future = new CompletableFuture<>();
+        Reservation granted;
+        synchronized (this) {
+            // Waiters are served in order, so a new request never overtakes them
+            granted = waiters.isEmpty() ? tryGrant(tenantId, pageSize) : null;
+            if (granted == null) {
+                waiters.addLast(new Request(tenantId, pageSize, future, System.nanoTime()));
+                return future;
+            }
+        }
+        recordWait(0);
+        future.complete(granted);
+        return future;
+    }
+
+    // Caller holds the monitor
+    private Reservation tryGrant(String tenantId, int pageSize) {
+        double perEvent = bytesPerEvent.getOrDefault(tenantId, initialBytesPerEvent) * expansionFactor;
+        long available = limitBytes - reservedBytes;
+        int fits = (int) Math.min(pageSize, Math.max(available, 0) / Math.max(perEvent, 1));
+        int granted;
+        if (fits >= Math.min(pageSize, minPageSize)) {
+            granted = fits;
+        } else if (reservedBytes <= 0) {
+            // Nothing else is in flight; let one page through even if it exceeds the budget
+            granted = Math.min(pageSize, minPageSize);
+        } else {
+            return null;
+        }
+        if (granted < pageSize) {
+            Counter.builder("gainsight.memory.budget.shrunk")
+                .description("Pages requested with a smaller page size to fit the memory budget")
+                .tag("tenant", metrics.tenantTag(tenantId))
+                .register(metrics.getRegistry())
+                .increment();
+        }
+        long bytes = (long) (granted * perEvent);
+        reservedBytes += bytes;
+        return new Reservation(tenantId, granted, bytes);
+    }
+
+    private void grantWaiters() {
+        while (true) {
+            Request request;
+            Reservation granted;
+            synchronized (this) {
+                request = waiters.peekFirst();
+                if (request == null) {
+                    return;
+                }
+                if (request.future().isDone()) {
+                    waiters.pollFirst();
+                    continue;
+                }
+                granted = tryGrant(request.tenantId(), request.pageSize());
+                if (granted == null) {
+                    return;
+                }
+                waiters.pollFirst();
+            }
+            recordWait(System.nanoTime() - request.enqueuedNanos());
+            if (!request.future().complete(granted)) {
+                // Abandoned between the check and the grant
+                granted.close();
+            }
+        }
+    }
+
+    private void abandon(CompletableFuture<Reservation> future) {
+        if (!future.cancel(false)) {
+            // Granted in the meantime; nobody will use it
+            future.thenAccept(Reservation::close);
+        }
+        synchronized (this) {
+            waiters.removeIf(request -> request.future() == future);
+        }
+        grantWaiters();
+    }
+
+    private IllegalStateException timedOut(String tenantId) {
+        logger.warn("Tenant {} waited more than {} ms for memory budget ({} of {} bytes reserved)",
+                   tenantId, maxWait.toMillis(), reservedBytes(), limitBytes);
+        return new IllegalStateException("Timed out waiting for memory budget");
+    }
+
+    private void recordWait(long nanos) {
+        Timer.builder("gainsight.memory.budget.wait")
+            .description("Time a page fetch waited for memory budget")
+            .register(metrics.getRegistry())
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,357 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.PayloadDictionary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional codec for {@link ExtractedEvent#getEventData()}, enabled with
+ * {@code gainsight.payload.compression.enabled=true}.
+ *
+ * Payloads of one tenant repeat the same keys, event names, URLs and user agents, which a
+ * single payload is too small to exploit. Each tenant therefore gets a deflate preset
+ * dictionary trained from its first {@code training-samples} payloads and stored in
+ * {@code payload_dictionaries}; events are stored as raw deflate bytes with the codec and
+ * dictionary version, and without {@code eventData}. Events extracted before a tenant has a
+ * dictionary, or that would not get smaller, are stored as plain JSON. Dictionaries are
+ * retrained after {@code retrain-hours} as new versions; old versions stay readable. The codec
+ * cannot be combined with {@code gainsight.payload.storage=content-addressed}, which already
+ * takes the bodies out of the events.
+ *
+ * Reads are transparent: events loaded through {@link MongoTemplate}, the reactive template or
+ * a repository are decoded back to plain {@code eventData} as they are converted.
+ */
+@Component
+public class PayloadCodec extends AbstractMongoEventListener<ExtractedEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadCodec.class);
+
+    static final String CODEC = "deflate-dict";
+
+    /** Deflate only looks back this far, so a longer dictionary would not help. */
+    static final int MAX_DICTIONARY_BYTES = 32 * 1024;
+
+    // JSON strings, followed by the colon when they are keys
+    private static final Pattern TOKEN = Pattern.compile("\"(?:[^\"\\\\]|\\\\.)*\":?");
+
+    private final MongoTemplate mongoTemplate;
+    private final ExtractionMetrics metrics;
+    private final boolean enabled;
+    private final int trainingSamples;
+    private final int dictionaryBytes;
+    private final long retrainNanos;
+    private final int level;
+    private final Map<String, TenantState> tenants = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> dictionaries = new ConcurrentHashMap<>();
+
+    private record Dictionary(int version, byte[] bytes, long trainedAtNanos) {}
+
+    /** Current dictionary of one tenant and the samples for its next one. */
+    private static final class TenantState {
+        private volatile Dictionary current;
+        private final List<String> samples = new ArrayList<>();
+    }
+
+    public PayloadCodec(
+            MongoTemplate mongoTemplate,
+            ExtractionMetrics metrics,
+            @Value("${gainsight.payload.compression.enabled:false}") boolean enabled,
+            @Value("${gainsight.payload.storage:inline}") String storage,
+            @Value("${gainsight.payload.compression.training-samples:500}") int trainingSamples,
+            @Value("${gainsight.payload.compression.dictionary-bytes:32768}") int dictionaryBytes,
+            @Value("${gainsight.payload.compression.retrain-hours:168}") long retrainHours,
+            @Value("${gainsight.payload.compression.level:6}") int level) {
+        // Content-addressed storage moves eventData out of the event before it reaches the codec
+        if (enabled && "content-addressed".equals(storage)) {
+            throw new IllegalStateException("gainsight.payload.compression.enabled=true cannot be combined with "
+                + "gainsight.payload.storage=content-addressed; enable one of them");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.trainingSamples = Math.max(1, trainingSamples);
+        this.dictionaryBytes = Math.min(dictionaryBytes, MAX_DICTIONARY_BYTES);
+        this.retrainNanos = Duration.ofHours(retrainHours).toNanos();
+        this.level = level;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Compresses the payloads of one page in place, training the tenant's dictionary first
+     * once enough samples were seen. May query and write MongoDB.
+     */
+    public void encode(String tenantId, List<ExtractedEvent> events) {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+        Timer.Sample sample = metrics.startTimer();
+        TenantState state = tenants.computeIfAbsent(tenantId, this::loadState);
+        sampleAndTrain(tenantId, state, events);
+
+        Dictionary dictionary = state.current;
+        if (dictionary == null) {
+            return;
+        }
+        long rawBytes = 0;
+        long storedBytes = 0;
+        Deflater deflater = new Deflater(level, true);
+        try {
+            for (ExtractedEvent event : events) {
+                if (event.getEventData() == null) {
+                    continue;
+                }
+                byte[] raw = event.getEventData().getBytes(StandardCharsets.UTF_8);
+                byte[] compressed = compress(deflater, dictionary.bytes(), raw);
+                rawBytes += raw.length;
+                if (compressed.length < raw.length) {
+                    event.setEventDataCompressed(compressed);
+                    event.setPayloadCodec(CODEC);
+                    event.setPayloadDictionaryVersion(dictionary.version());
+                    event.setEventData(null);
+                    storedBytes += compressed.length;
+                } else {
+                    storedBytes += raw.length;
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        sample.stop(Timer.builder("gainsight.payload.codec")
+            .description("Time spent compressing or decompressing event payloads")
+            .tag("op", "encode")
+            .register(metrics.getRegistry()));
+        bytes(tenantId, "raw", rawBytes);
+        bytes(tenantId, "stored", storedBytes);
+    }
+
+    /** Restores plain {@code eventData} on an event read from MongoDB. */
+    public void decode(ExtractedEvent event) {
+        if (event.getPayloadCodec() == null || event.getEventDataCompressed() == null) {
+            return; // plain, or the payload was not projected
+        }
+        if (!CODEC.equals(event.getPayloadCodec())) {
+            throw new IllegalStateException("Unknown payload codec " + event.getPayloadCodec() + " on event " + event.getId());
+        }
+        Timer.Sample sample = metrics.startTimer();
+        byte[] dictionary = dictionary(event.getTenantId(), event.getPayloadDictionaryVersion());
+        try {
+            event.setEventData(new String(decompress(dictionary, event.getEventDataCompressed()), StandardCharsets.UTF_8));
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt payload on event " + event.getId(), e);
+        }
+        // Decoded events are plain events again, also if they are saved back
+        event.setEventDataCompressed(null);
+        event.setPayloadCodec(null);
+        event.setPayloadDictionaryVersion(null);
+        sample.stop(Timer.builder("gainsight.payload.codec")
+            .description("Time spent compressing or decompressing event payloads")
+            .tag("op", "decode")
+            .register(metrics.getRegistry()));
+    }
+
+    @Override
+    public void onAfterConvert(AfterConvertEvent<ExtractedEvent> event) {
+        decode(event.getSource());
+    }
+
+    private void sampleAndTrain(String tenantId, TenantState state, List<ExtractedEvent> events) {
+        Dictionary current = state.current;
+        if (current != null && System.nanoTime() - current.trainedAtNanos() < retrainNanos) {
+            return;
+        }
+        List<String> samples;
+        synchronized (state) {
+            if (state.current != current || state.samples.size() >= trainingSamples) {
+                return; // another page trained meanwhile or is training now
+            }
+            for (ExtractedEvent event : events) {
+                if (event.getEventData() != null && state.samples.size() < trainingSamples) {
+                    state.samples.add(event.getEventData());
+                }
+            }
+            if (state.samples.size() < trainingSamples) {
+                return;
+            }
+            samples = List.copyOf(state.samples);
+        }
+        try {
+            Dictionary trained = store(tenantId, current != null ? current.version() + 1 : 1, samples);
+            dictionaries.put(PayloadDictionary.idFor(tenantId, trained.version()), trained.bytes());
+            state.current = trained;
+        } catch (Exception e) {
+            logger.warn("Could not train payload dictionary for tenant {}: {}", tenantId, e.getMessage());
+        } finally {
+            synchronized (state) {
+                state.samples.clear();
+            }
+        }
+    }
+
+    private Dictionary store(String tenantId, int version, List<String> samples) {
+        PayloadDictionary stored = new PayloadDictionary();
+        stored.setId(PayloadDictionary.idFor(tenantId, version));
+        stored.setTenantId(tenantId);
+        stored.setVersion(version);
+        stored.setDictionary(train(samples, dictionaryBytes));
+        stored.setSamples(samples.size());
+        stored.setSampleBytes(samples.stream().mapToLong(String::length).sum());
+        stored.setTrainedAt(LocalDateTime.now());
+        try {
+            mongoTemplate.insert(stored);
+            logger.info("Trained payload dictionary v{} for tenant {} ({} bytes from {} samples)",
+                       version, tenantId, stored.getDictionary().length, samples.size());
+            Counter.builder("gainsight.payload.dictionaries.trained")
+                .description("Payload compression dictionaries trained")
+                .tags("tenant", metrics.tenantTag(tenantId))
+                .register(metrics.getRegistry())
+                .increment();
+        } catch (DuplicateKeyException e) {
+            // Another instance trained this version first; everyone must use the same bytes
+            stored = mongoTemplate.findById(stored.getId(), PayloadDictionary.class);
+        }
+        return new Dictionary(version, stored.getDictionary(), System.nanoTime());
+    }
+
+    private TenantState loadState(String tenantId) {
+        TenantState state = new TenantState();
+        Query latest = Query.query(Criteria.where("tenantId").is(tenantId))
+            .with(Sort.by(Sort.Direction.DESC, "version"))
+            .limit(1);
+        PayloadDictionary stored = mongoTemplate.findOne(latest, PayloadDictionary.class);
+        if (stored != null) {
+            long age = Duration.between(stored.getTrainedAt(), LocalDateTime.now()).toNanos();
+            state.current = new Dictionary(stored.getVersion(), stored.getDictionary(), System.nanoTime() - age);
+            dictionaries.put(stored.getId(), stored.getDictionary());
+        }
+        return state;
+    }
+
+    private byte[] dictionary(String tenantId, Integer version) {
+        String id = PayloadDictionary.idFor(tenantId, version);
+        return dictionaries.computeIfAbsent(id, key -> {
+            PayloadDictionary stored = mongoTemplate.findById(key, PayloadDictionary.class);
+            if (stored == null) {
+                throw new IllegalStateException("Missing payload dictionary " + key);
+            }
+            return stored.getDictionary();
+        });
+    }
+
+    private void bytes(String tenantId, String stage, long bytes) {
+        Counter.builder("gainsight.payload.bytes")
+            .description("Event payload bytes before and after compression")
+            .tags("tenant", metrics.tenantTag(tenantId), "stage", stage)
+            .register(metrics.getRegistry())
+            .increment(bytes);
+    }
+
+    /**
+     * Builds a preset dictionary from the JSON strings (keys with their colon, and values)
+     * that occur in at least two samples, scored by sample count times length. The best
+     * scored strings go last, where deflate reaches them with the shortest distances.
+     */
+    static byte[] train(List<String> samples, int maxBytes) {
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (String sample : samples) {
+            Matcher matcher = TOKEN.matcher(sample);
+            Map<String, Boolean> seen = new HashMap<>();
+            while (matcher.find()) {
+                String token = matcher.group();
+                if (token.length() > 3 && seen.putIfAbsent(token, Boolean.TRUE) == null) {
+                    documentFrequency.merge(token, 1, Integer::sum);
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> tokens = new ArrayList<>(documentFrequency.entrySet());
+        tokens.removeIf(token -> token.getValue() < 2);
+        tokens.sort((a, b) -> Long.compare(
+            (long) b.getValue() * b.getKey().length(), (long) a.getValue() * a.getKey().length()));
+
+        List<byte[]> chosen = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> token : tokens) {
+            byte[] bytes = token.getKey().getBytes(StandardCharsets.UTF_8);
+            if (size + bytes.length <= maxBytes) {
+                chosen.add(bytes);
+                size += bytes.length;
+            }
+        }
+        byte[] dictionary = new byte[size];
+        int offset = size;
+        for (byte[] bytes : chosen) {
+            offset -= bytes.length;
+            System.arraycopy(bytes, 0, dictionary, offset, bytes.length);
+        }
+        return dictionary;
+    }
+
+    /** Raw deflate of {@code raw} against {@code dictionary}; resets and reuses {@code deflater}. */
+    static byte[] compress(Deflater deflater, byte[] dictionary, byte[] raw) {
+        deflater.reset();
+        if (dictionary.length > 0) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+        byte[] buffer = new byte[Math.max(64, raw.length)];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] decompress(byte[] dictionary, byte[] compressed) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        try {
+            if (dictionary.length > 0) {
+                inflater.setDictionary(dictionary);
+            }
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[Math.max(256, compressed.length * 4)];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated payload");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
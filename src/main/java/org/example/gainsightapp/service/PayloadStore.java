@@ -0,0 +1,300 @@
+package org.example.gainsightapp.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import org.bson.Document;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.EventPayload;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content-addressed storage of event bodies, enabled with
+ * {@code gainsight.payload.storage=content-addressed}.
+ *
+ * Each distinct body of a tenant is stored once in {@code event_payloads} under its SHA-256,
+ * and events keep only {@code payloadHash}. The event's own id is cut out of the body before
+ * hashing (and put back on read), so bodies that differ only by id, such as repeated page
+ * views and heartbeats, share one payload.
+ *
+ * {@code refCount} counts the events that reference a payload. References are added before
+ * the events are written and removed for events that turned out to exist already, so a crash
+ * in between can only leave a count too high (a payload kept too long), never one too low.
+ * Payloads without references are removed every {@code gainsight.payload.dedup.gc-interval-ms}.
+ * Reads are transparent; hot bodies are served from a bounded LRU cache
+ * ({@code gainsight.payload.dedup.cache.max-entries}).
+ */
+@Component
+public class PayloadStore extends AbstractMongoEventListener<ExtractedEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadStore.class);
+
+    // Stands in for the quoted event id; Jackson escapes NUL, so it never occurs in a body
+    static final String ID_PLACEHOLDER = "\u0000";
+
+    private final MongoTemplate mongoTemplate;
+    private final ExtractionMetrics metrics;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Map<String, String> cache;
+
+    /** Stored payloads of one tenant; {@code savedBytes} is what inline bodies would take on top. */
+    public record PayloadStats(long payloads, long references, long storedBytes, long savedBytes) {}
+
+    private record Pending(String id, String hash, String body, int bytes, List<ExtractedEvent> events) {}
+
+    public PayloadStore(
+            MongoTemplate mongoTemplate,
+            ExtractionMetrics metrics,
+            @Value("${gainsight.payload.storage:inline}") String storage,
+            @Value("${gainsight.payload.dedup.cache.max-entries:10000}") int maxEntries) {
+        this.mongoTemplate = mongoTemplate;
+        this.metrics = metrics;
+        this.enabled = "content-addressed".equals(storage);
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > PayloadStore.this.maxEntries;
+            }
+        };
+
+        Gauge.builder("gainsight.payload.dedup.cache.size", this, PayloadStore::cacheSize)
+            .description("Entries in the event payload cache")
+            .register(metrics.getRegistry());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stores the bodies of one page and replaces each event's {@code eventData} with its
+     * {@code payloadHash}, adding one reference per event.
+     */
+    public void store(String tenantId, List<ExtractedEvent> events) {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+        Map<String, Pending> pending = new LinkedHashMap<>();
+        for (ExtractedEvent event : events) {
+            if (event.getEventData() == null) {
+                continue;
+            }
+            String body = template(event.getEventData(), event.getEventId());
+            String hash = sha256(body);
+            pending.computeIfAbsent(hash, key -> new Pending(EventPayload.idFor(tenantId, key), key, body,
+                    body.getBytes(StandardCharsets.UTF_8).length, new ArrayList<>()))
+                .events().add(event);
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Pending> payloads = new ArrayList<>(pending.values());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EventPayload.class);
+        for (Pending payload : payloads) {
+            bulk.upsert(Query.query(Criteria.where("_id").is(payload.id())), new Update()
+                .setOnInsert("tenantId", tenantId)
+                .setOnInsert("hash", payload.hash())
+                .setOnInsert("body", payload.body())
+                .setOnInsert("bytes", payload.bytes())
+                .setOnInsert("createdAt", now)
+                .inc("refCount", payload.events().size())
+                .set("lastReferencedAt", now));
+        }
+        BulkWriteResult result = bulk.execute();
+
+        long storedBytes = 0;
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            storedBytes += payloads.get(upsert.getIndex()).bytes();
+        }
+        long totalBytes = 0;
+        for (Pending payload : payloads) {
+            totalBytes += (long) payload.bytes() * payload.events().size();
+            cache(payload.id(), payload.body());
+            for (ExtractedEvent event : payload.events()) {
+                event.setPayloadHash(payload.hash());
+                event.setEventData(null);
+            }
+        }
+        bytes(tenantId, "stored", storedBytes);
+        bytes(tenantId, "deduplicated", totalBytes - storedBytes);
+    }
+
+    /**
+     * Removes the references of events that were not written, or that are deleted. The
+     * payloads themselves go with the next collection once nothing references them.
+     */
+    public void release(String tenantId, List<ExtractedEvent> events) {
+        Map<String, Integer> references = new LinkedHashMap<>();
+        for (ExtractedEvent event : events) {
+            if (event.getPayloadHash() != null) {
+                references.merge(event.getPayloadHash(), 1, Integer::sum);
+            }
+        }
+        if (references.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EventPayload.class);
+        references.forEach((hash, count) -> bulk.updateOne(
+            Query.query(Criteria.where("_id").is(EventPayload.idFor(tenantId, hash))),
+            new Update().inc("refCount", -count)));
+        bulk.execute();
+    }
+
+    @Scheduled(fixedDelayString = "${gainsight.payload.dedup.gc-interval-ms:3600000}",
+               initialDelayString = "${gainsight.payload.dedup.gc-interval-ms:3600000}")
+    public void collectUnreferenced() {
+        try {
+            long removed = mongoTemplate.remove(Query.query(Criteria.where("refCount").lte(0)), EventPayload.class)
+                .getDeletedCount();
+            if (removed > 0) {
+                logger.info("Removed {} unreferenced event payloads", removed);
+            }
+        } catch (Exception e) {
+            logger.error("Error collecting unreferenced event payloads: {}", e.getMessage(), e);
+        }
+    }
+
+    public PayloadStats stats(String tenantId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("tenantId").is(tenantId)),
+            Aggregation.group()
+                .count().as("payloads")
+                .sum("refCount").as("references")
+                .sum("bytes").as("storedBytes")
+                .sum(ArithmeticOperators.Multiply.valueOf("bytes").multiplyBy("refCount")).as("referencedBytes"));
+        Document totals = mongoTemplate.aggregate(aggregation, EventPayload.class, Document.class).getUniqueMappedResult();
+        if (totals == null) {
+            return new PayloadStats(0, 0, 0, 0);
+        }
+        long storedBytes = number(totals, "storedBytes");
+        return new PayloadStats(number(totals, "payloads"), number(totals, "references"), storedBytes,
+            Math.max(0, number(totals, "referencedBytes") - storedBytes));
+    }
+
+    /** Restores plain {@code eventData} on an event read from MongoDB. */
+    @Override
+    public void onAfterConvert(AfterConvertEvent<ExtractedEvent> event) {
+        ExtractedEvent extracted = event.getSource();
+        if (extracted.getPayloadHash() == null || extracted.getEventData() != null) {
+            return;
+        }
+        String id = EventPayload.idFor(extracted.getTenantId(), extracted.getPayloadHash());
+        String body = cached(id);
+        if (body == null) {
+            EventPayload payload = mongoTemplate.findById(id, EventPayload.class);
+            if (payload == null) {
+                throw new IllegalStateException("Missing event payload " + id + " for event " + extracted.getId());
+            }
+            body = payload.getBody();
+            cache(id, body);
+        }
+        extracted.setEventData(expand(body, extracted.getEventId()));
+    }
+
+    /** Keeps a read event that is saved back referencing its payload instead of inlining it. */
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<ExtractedEvent> event) {
+        if (event.getSource().getPayloadHash() != null && event.getDocument() != null) {
+            event.getDocument().remove("eventData");
+        }
+    }
+
+    /** Cuts the first occurrence of the quoted event id out of the body. */
+    static String template(String body, String eventId) {
+        if (eventId == null || eventId.indexOf('"') >= 0 || eventId.indexOf('\\') >= 0
+                || body.contains(ID_PLACEHOLDER)) {
+            return body;
+        }
+        String quoted = '"' + eventId + '"';
+        int index = body.indexOf(quoted);
+        if (index < 0) {
+            return body;
+        }
+        return body.substring(0, index) + ID_PLACEHOLDER + body.substring(index + quoted.length());
+    }
+
+    /**
+     * @throws IllegalStateException if the body was templated but the event id was not read,
+     *         since the body cannot be restored without it
+     */
+    static String expand(String template, String eventId) {
+        int index = template.indexOf(ID_PLACEHOLDER);
+        if (index < 0) {
+            return template;
+        }
+        if (eventId == null) {
+            throw new IllegalStateException("Event id is needed to restore a templated event payload");
+        }
+        return template.substring(0, index) + '"' + eventId + '"' + template.substring(index + ID_PLACEHOLDER.length());
+    }
+
+    private static String sha256(String body) {
+        try {
+            return HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static long number(Document document, String key) {
+        Object value = document.get(key);
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+
+    private String cached(String id) {
+        synchronized (cache) {
+            return cache.get(id);
+        }
+    }
+
+    private void cache(String id, String body) {
+        synchronized (cache) {
+            cache.put(id, body);
+        }
+    }
+
+    private int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private void bytes(String tenantId, String result, long bytes) {
+        Counter.builder("gainsight.payload.dedup.bytes")
+            .description("Event payload bytes stored as new payloads or shared with stored ones")
+            .tags("tenant", metrics.tenantTag(tenantId), "result", result)
+            .register(metrics.getRegistry())
+            .increment(bytes);
+    }
+}
@@ -0,0 +1,482 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import org.bson.Document;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.repository.TenantConfigurationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Promotes configured payload properties of a tenant ({@link TenantConfiguration#getPromotedProperties()},
+ * e.g. {@code url} or {@code globalContext.userAgent:string}) into typed fields under
+ * {@link ExtractedEvent#getPromoted()}, so they can be indexed and queried.
+ *
+ * New events get the fields from {@link ExtractedEventMapper} at ingest. Changing a tenant's
+ * properties backfills its existing events: fields of properties that are no longer promoted
+ * are unset, then one coordinator walks the tenant's events in {@code _id} order (over the
+ * {@code tenantId, _id} index) and hands batches to {@code gainsight.promotion.backfill.concurrency}
+ * workers. Every promoted property name has one partial index
+ * ({@code tenantId, promoted.<name>, eventTimestamp}) over the events that have it, shared by
+ * all tenants that promote the same name and capped at {@code gainsight.promotion.max-indexes}.
+ */
+@Service
+public class PropertyPromotionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PropertyPromotionService.class);
+
+    private static final Pattern PATH = Pattern.compile("[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)*");
+    private static final int MAX_PARSED = 1024;
+
+    // Specs are parsed for every ingested page; bounded, since they come from the API
+    private static final Map<String, PromotedProperty> PARSED = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PromotedProperty> eldest) {
+            return size() > MAX_PARSED;
+        }
+    };
+
+    private final MongoTemplate mongoTemplate;
+    private final TenantConfigurationRepository tenantRepository;
+    private final TenantRegistry tenantRegistry;
+    private final ObjectMapper objectMapper;
+    private final ExtractionMetrics metrics;
+    private final int maxIndexes;
+    private final int batchSize;
+    private final int concurrency;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor();
+    private final ExecutorService workers;
+    private final Set<String> readyIndexes = ConcurrentHashMap.newKeySet();
+    private volatile boolean backfillIndexReady;
+    private final Map<String, Backfill> backfills = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public enum Type { STRING, NUMBER, BOOLEAN }
+
+    /** A property at {@code path} in the event JSON, stored as {@code promoted.<name>}. */
+    public record PromotedProperty(String name, String path, Type type) {
+
+        /** Parses {@code path} or {@code path:type}; the name is the path with dots as underscores. */
+        public static PromotedProperty parse(String spec) {
+            synchronized (PARSED) {
+                PromotedProperty parsed = PARSED.get(spec);
+                if (parsed != null) {
+                    return parsed;
+                }
+            }
+            int colon = spec.lastIndexOf(':');
+            String path = colon < 0 ? spec.trim() : spec.substring(0, colon).trim();
+            if (!PATH.matcher(path).matches()) {
+                throw new IllegalArgumentException("Invalid property path: " + spec);
+            }
+            Type type;
+            try {
+                type = colon < 0 ? Type.STRING : Type.valueOf(spec.substring(colon + 1).trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid property type in " + spec + "; use string, number or boolean");
+            }
+            PromotedProperty parsed = new PromotedProperty(path.replace('.', '_'), path, type);
+            synchronized (PARSED) {
+                PARSED.put(spec, parsed);
+            }
+            return parsed;
+        }
+
+        public String field() {
+            return "promoted." + name;
+        }
+
+        public String indexName() {
+            return "idx_promoted_" + name;
+        }
+
+        /** Typed value from the event, or null if it is absent or does not fit the type. */
+        Object valueOf(JsonNode event) {
+            JsonNode node = event.at("/" + path.replace('.', '/'));
+            if (node.isMissingNode() || node.isNull() || node.isContainerNode()) {
+                return null;
+            }
+            return switch (type) {
+                case STRING -> node.asText();
+                case NUMBER -> node.isNumber() ? number(node)
+                    : node.isTextual() ? parseNumber(node.asText()) : null;
+                case BOOLEAN -> node.isBoolean() ? Boolean.valueOf(node.asBoolean())
+                    : "true".equals(node.asText()) ? Boolean.TRUE
+                    : "false".equals(node.asText()) ? Boolean.FALSE : null;
+            };
+        }
+
+        /** Typed value of a query parameter. */
+        public Object parseValue(String text) {
+            Object value = switch (type) {
+                case STRING -> text;
+                case NUMBER -> parseNumber(text);
+                case BOOLEAN -> "true".equals(text) ? Boolean.TRUE : "false".equals(text) ? Boolean.FALSE : null;
+            };
+            if (value == null) {
+                throw new IllegalArgumentException("Invalid " + type.name().toLowerCase() + " value for " + name + ": " + text);
+            }
+            return value;
+        }
+
+        private static Object number(JsonNode node) {
+            return node.isIntegralNumber() ? (Object) node.asLong() : (Object) node.asDouble();
+        }
+
+        private static Object parseNumber(String text) {
+            try {
+                return Long.valueOf(text);
+            } catch (NumberFormatException e) {
+                try {
+                    return Double.valueOf(text);
+                } catch (NumberFormatException notDouble) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /** Backfill progress of one tenant on this instance. */
+    public record BackfillStatus(String state, long scanned, long updated, LocalDateTime startedAt,
+                                 LocalDateTime finishedAt, String error) {}
+
+    private static final class Backfill {
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong updated = new AtomicLong();
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile String state = "QUEUED";
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        BackfillStatus snapshot() {
+            return new BackfillStatus(state, scanned.get(), updated.get(), startedAt, finishedAt, error);
+        }
+    }
+
+    public PropertyPromotionService(
+            MongoTemplate mongoTemplate,
+            TenantConfigurationRepository tenantRepository,
+            TenantRegistry tenantRegistry,
+            ObjectMapper objectMapper,
+            ExtractionMetrics metrics,
+            @Value("${gainsight.promotion.max-indexes:20}") int maxIndexes,
+            @Value("${gainsight.promotion.backfill.batch-size:1000}") int batchSize,
+            @Value("${gainsight.promotion.backfill.concurrency:4}") int concurrency) {
+        this.mongoTemplate = mongoTemplate;
+        this.tenantRepository = tenantRepository;
+        this.tenantRegistry = tenantRegistry;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.maxIndexes = maxIndexes;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.workers = metrics.monitorExecutor(Executors.newFixedThreadPool(concurrency), "gainsight.promotion");
+    }
+
+    /** The tenant's promoted properties. */
+    public static List<PromotedProperty> of(TenantConfiguration tenant) {
+        List<String> specs = tenant.getPromotedProperties();
+        if (specs == null || specs.isEmpty()) {
+            return List.of();
+        }
+        return specs.stream().map(PromotedProperty::parse).toList();
+    }
+
+    /** Values of the tenant's promoted properties in one event, or null if there are none. */
+    public static Map<String, Object> extract(List<PromotedProperty> properties, JsonNode event) {
+        Map<String, Object> values = null;
+        for (PromotedProperty property : properties) {
+            Object value = property.valueOf(event);
+            if (value != null) {
+                if (values == null) {
+                    values = new LinkedHashMap<>();
+                }
+                values.put(property.name(), value);
+            }
+        }
+        return values;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        ensureBackfillIndex();
+        Set<String> specs = new LinkedHashSet<>();
+        for (TenantConfiguration tenant : tenantRegistry.getAllTenants()) {
+            if (tenant.getPromotedProperties() != null) {
+                specs.addAll(tenant.getPromotedProperties());
+            }
+        }
+        for (String spec : specs) {
+            try {
+                ensureIndex(PromotedProperty.parse(spec));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Ignoring promoted property {}: {}", spec, e.getMessage());
+            }
+        }
+    }
+
+    public boolean isIndexed(PromotedProperty property) {
+        return readyIndexes.contains(property.indexName());
+    }
+
+    /**
+     * Replaces the tenant's promoted properties, creates their indexes and queues a backfill of
+     * the tenant's existing events, which also removes the fields of dropped properties.
+     */
+    public List<PromotedProperty> configure(String tenantId, List<String> specs) {
+        List<PromotedProperty> properties = new ArrayList<>();
+        Set<String> names = new LinkedHashSet<>();
+        for (String spec : specs) {
+            PromotedProperty property = PromotedProperty.parse(spec);
+            if (!names.add(property.name())) {
+                throw new IllegalArgumentException("Property promoted twice: " + property.name());
+            }
+            properties.add(property);
+        }
+        Set<String> indexes = new LinkedHashSet<>(readyIndexes);
+        properties.forEach(property -> indexes.add(property.indexName()));
+        if (indexes.size() > maxIndexes) {
+            throw new IllegalArgumentException("At most " + maxIndexes + " properties can be promoted across all tenants");
+        }
+
+        TenantConfiguration tenant = tenantRepository.findByTenantId(tenantId)
+            .orElseThrow(() -> new IllegalArgumentException("Tenant not found: " + tenantId));
+        Set<String> removed = new LinkedHashSet<>();
+        for (PromotedProperty previous : of(tenant)) {
+            if (!names.contains(previous.name())) {
+                removed.add(previous.name());
+            }
+        }
+        tenant.setPromotedProperties(new ArrayList<>(specs));
+        tenant.onUpdate();
+        tenantRegistry.put(tenantRepository.save(tenant));
+        bumpVersion(tenantId);
+        logger.info("Promoted properties of tenant {}: {}", tenantId, names);
+
+        properties.forEach(this::ensureIndex);
+        if (!properties.isEmpty() || !removed.isEmpty()) {
+            backfill(tenantId, properties, removed);
+        }
+        return properties;
+    }
+
+    /**
+     * Changes whenever the tenant's promoted fields may have changed on this instance: when its
+     * properties are configured and as each backfill batch is written, so results computed
+     * from those fields can be cached against it.
+     */
+    public long version(String tenantId) {
+        AtomicLong version = versions.get(tenantId);
+        return version != null ? version.get() : 0;
+    }
+
+    public Optional<BackfillStatus> backfillStatus(String tenantId) {
+        return Optional.ofNullable(backfills.get(tenantId)).map(Backfill::snapshot);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void backfill(String tenantId, List<PromotedProperty> properties, Set<String> removed) {
+        Backfill backfill = new Backfill();
+        backfills.put(tenantId, backfill);
+        coordinator.submit(() -> {
+            backfill.state = "RUNNING";
+            Semaphore slots = new Semaphore(concurrency);
+            try {
+                unsetRemoved(tenantId, removed, backfill);
+                if (!properties.isEmpty() && !ensureBackfillIndex()) {
+                    throw new IllegalStateException("Index " + ExtractedEvent.IDX_TENANT_DOC_ID + " is not available");
+                }
+                String lastId = null;
+                while (!properties.isEmpty()) {
+                    List<ExtractedEvent> batch = nextBatch(tenantId, lastId, properties);
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    lastId = batch.get(batch.size() - 1).getId();
+                    slots.acquire();
+                    workers.submit(() -> {
+                        try {
+                            promote(tenantId, batch, properties, backfill);
+                        } catch (Exception e) {
+                            backfill.error = e.getMessage();
+                            logger.error("Error backfilling promoted properties for tenant {}: {}", tenantId, e.getMessage());
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                }
+                slots.acquire(concurrency);
+                backfill.state = backfill.error == null ? "SUCCEEDED" : "FAILED";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                backfill.state = "INTERRUPTED";
+            } catch (Exception e) {
+                backfill.error = e.getMessage();
+                backfill.state = "FAILED";
+                logger.error("Error backfilling promoted properties for tenant {}: {}", tenantId, e.getMessage(), e);
+            }
+            bumpVersion(tenantId);
+            backfill.finishedAt = LocalDateTime.now();
+            logger.info("Backfill of promoted properties for tenant {} {}: {} events scanned, {} updated",
+                       tenantId, backfill.state, backfill.scanned.get(), backfill.updated.get());
+        });
+    }
+
+    // Every removed property's events are found through its partial index, so one update each
+    private void unsetRemoved(String tenantId, Set<String> removed, Backfill backfill) {
+        for (String name : removed) {
+            String field = "promoted." + name;
+            long updated = mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("tenantId").is(tenantId).and(field).exists(true)),
+                    new Update().unset(field), ExtractedEvent.class)
+                .getModifiedCount();
+            backfill.updated.addAndGet(updated);
+            bumpVersion(tenantId);
+            logger.info("Removed promoted property {} from {} events of tenant {}", name, updated, tenantId);
+        }
+    }
+
+    // The tenantId, _id index seeks straight to this tenant's next ids, however many events other tenants have
+    private List<ExtractedEvent> nextBatch(String tenantId, String lastId, List<PromotedProperty> properties) {
+        Criteria criteria = Criteria.where("tenantId").is(tenantId);
+        if (lastId != null) {
+            criteria = criteria.and("id").gt(lastId);
+        }
+        Query query = Query.query(criteria)
+            .with(Sort.by(Sort.Direction.ASC, "id"))
+            .limit(batchSize)
+            .withHint(ExtractedEvent.IDX_TENANT_DOC_ID);
+        query.fields().include("tenantId", "eventId", "promoted");
+        EventQueryService.PAYLOAD_FIELDS.forEach(query.fields()::include);
+        return mongoTemplate.find(query, ExtractedEvent.class);
+    }
+
+    private void promote(String tenantId, List<ExtractedEvent> batch, List<PromotedProperty> properties,
+                         Backfill backfill) throws Exception {
+        BulkOperations bulk = null;
+        int changed = 0;
+        for (ExtractedEvent event : batch) {
+            backfill.scanned.incrementAndGet();
+            if (event.getEventData() == null) {
+                continue;
+            }
+            Map<String, Object> values = extract(properties, objectMapper.readTree(event.getEventData()));
+            Map<String, Object> current = event.getPromoted() != null ? event.getPromoted() : Map.of();
+            Update update = new Update();
+            boolean dirty = false;
+            for (PromotedProperty property : properties) {
+                Object value = values != null ? values.get(property.name()) : null;
+                if (!Objects.equals(value, current.get(property.name()))) {
+                    if (value != null) {
+                        update.set(property.field(), value);
+                    } else {
+                        update.unset(property.field());
+                    }
+                    dirty = true;
+                }
+            }
+            if (dirty) {
+                if (bulk == null) {
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ExtractedEvent.class);
+                }
+                bulk.updateOne(Query.query(Criteria.where("id").is(event.getId())), update);
+                changed++;
+            }
+        }
+        if (bulk != null) {
+            bulk.execute();
+            bumpVersion(tenantId);
+        }
+        backfill.updated.addAndGet(changed);
+        Counter.builder("gainsight.promotion.backfill.events")
+            .description("Events visited by promoted property backfills")
+            .tags("tenant", metrics.tenantTag(tenantId), "result", "updated")
+            .register(metrics.getRegistry())
+            .increment(changed);
+        Counter.builder("gainsight.promotion.backfill.events")
+            .description("Events visited by promoted property backfills")
+            .tags("tenant", metrics.tenantTag(tenantId), "result", "unchanged")
+            .register(metrics.getRegistry())
+            .increment(batch.size() - changed);
+    }
+
+    private void bumpVersion(String tenantId) {
+        versions.computeIfAbsent(tenantId, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    private boolean ensureBackfillIndex() {
+        if (backfillIndexReady) {
+            return true;
+        }
+        Index index = new Index()
+            .on("tenantId", Sort.Direction.ASC)
+            .on("_id", Sort.Direction.ASC)
+            .named(ExtractedEvent.IDX_TENANT_DOC_ID);
+        try {
+            mongoTemplate.indexOps(ExtractedEvent.class).createIndex(index);
+            backfillIndexReady = true;
+            return true;
+        } catch (Exception e) {
+            logger.warn("Could not create index {} on extracted_events; backfills fail until it exists: {}",
+                       ExtractedEvent.IDX_TENANT_DOC_ID, e.getMessage());
+            return false;
+        }
+    }
+
+    private void ensureIndex(PromotedProperty property) {
+        if (readyIndexes.contains(property.indexName())) {
+            return;
+        }
+        Index index = new Index()
+            .on("tenantId", Sort.Direction.ASC)
+            .on(property.field(), Sort.Direction.ASC)
+            .on("eventTimestamp", Sort.Direction.DESC)
+            .named(property.indexName())
+            .partial(PartialIndexFilter.of(new Document(property.field(), new Document("$exists", true))));
+        try {
+            mongoTemplate.indexOps(ExtractedEvent.class).createIndex(index);
+            readyIndexes.add(property.indexName());
+        } catch (Exception e) {
+            logger.warn("Could not create index {} on extracted_events; queries on {} are refused: {}",
+                       property.indexName(), property.name(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Timer;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers;
+import org.example.gainsightapp.integration.MultiTenantGainsightPXClient;
+import org.example.gainsightapp.integration.ReactiveGainsightPXClient;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.ExtractionCheckpoint;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Reactive extraction path, enabled with {@code gainsight.extraction.mode=reactive}.
+ *
+ * Produces the same documents and checkpoints as {@link GainsightEventExtractionService}
+ * but keeps many tenants in flight on a few threads: pages are fetched through
+ * {@link ReactiveGainsightPXClient}, each page is bulk-upserted through
+ * {@link ReactiveEventSink}, and the stream's checkpoint is committed before the next page
+ * is requested. Tenant concurrency is bounded by {@code gainsight.reactive.tenant-concurrency},
+ * and the pages held in memory by {@link MemoryBudget}.
+ */
+@Service
+@ConditionalOnProperty(name = "gainsight.extraction.mode", havingValue = "reactive")
+public class ReactiveEventExtractionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveEventExtractionService.class);
+    
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 100;
+    private static final Duration PAGE_DELAY = Duration.ofMillis(100);
+    
+    private final ReactiveGainsightPXClient gainsightClient;
+    private final ReactiveEventSink eventSink;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TenantRegistry tenantRegistry;
+    private final ExtractedEventMapper eventMapper;
+    private final ExtractionMetrics metrics;
+    private final GainsightCircuitBreakers circuitBreakers;
+    private final EventEnricher eventEnricher;
+    private final PayloadStore payloadStore;
+    private final PayloadCodec payloadCodec;
+    private final MemoryBudget memoryBudget;
+    private final TenantRunCoordinator runCoordinator;
+    private final ExtractionJobService jobService;
+    private final int tenantConcurrency;
+    private final Duration shutdownTimeout;
+    private volatile boolean draining;
+    
+    /** Outcome of one persisted page; {@code nextScrollId} is null at the end of the scroll. */
+    private record PageResult(int page, int inserted, String nextScrollId) {}
+    
+    public ReactiveEventExtractionService(
+            ReactiveGainsightPXClient gainsightClient,
+            ReactiveEventSink eventSink,
+            ReactiveMongoTemplate mongoTemplate,
+            TenantRegistry tenantRegistry,
+            ExtractedEventMapper eventMapper,
+            ExtractionMetrics metrics,
+            GainsightCircuitBreakers circuitBreakers,
+            EventEnricher eventEnricher,
+            PayloadStore payloadStore,
+            PayloadCodec payloadCodec,
+            MemoryBudget memoryBudget,
+            TenantRunCoordinator runCoordinator,
+            ExtractionJobService jobService,
+            @Value("${gainsight.reactive.tenant-concurrency:256}") int tenantConcurrency,
+            @Value("${gainsight.extraction.shutdown-timeout-seconds:30}") long shutdownTimeoutSeconds) {
+        this.gainsightClient = gainsightClient;
+        this.eventSink = eventSink;
+        this.mongoTemplate = mongoTemplate;
+        this.tenantRegistry = tenantRegistry;
+        this.eventMapper = eventMapper;
+        this.metrics = metrics;
+        this.circuitBreakers = circuitBreakers;
+        this.eventEnricher = eventEnricher;
+        this.payloadStore = payloadStore;
+        this.payloadCodec = payloadCodec;
+        this.memoryBudget = memoryBudget;
+        this.runCoordinator = runCoordinator;
+        this.jobService = jobService;
+        this.tenantConcurrency = tenantConcurrency;
+        this.shutdownTimeout = Duration.ofSeconds(shutdownTimeoutSeconds);
+    }
+    
+    /**
+     * Blocking entry point for the scheduler; the work itself runs on the reactive pipeline.
+     */
+    public void extractEventsForAllTenants() {
+        logger.info("Starting reactive event extraction for all active tenants");
+        Integer total = extractAll().block();
+        logger.info("Completed reactive event extraction for all tenants: {} events", total);
+    }
+    
+    public Mono<Integer> extractAll() {
+        return Mono.fromCallable(tenantRegistry::getActiveTenants)
+            .subscribeOn(Schedulers.boundedElastic())
+            .doOnNext(tenants -> {
+                logger.info("Found {} active tenants", tenants.size());
+                metrics.updateTenantLag(GainsightEventExtractionService.maxExtractionLagSeconds(tenants));
+            })
+            .flatMapMany(Flux::fromIterable)
+            .filter(GainsightEventExtractionService::shouldExtractForTenant)
+            .flatMap(tenant -> extractTenant(tenant, "sweep"), tenantConcurrency)
+            .reduce(0, Integer::sum);
+    }
+    
+    public Mono<Integer> extractTenant(TenantConfiguration tenant) {
+        return extractTenant(tenant, "manual");
+    }
+    
+    /**
+     * Restarts runs whose scroll was left unfinished, typically by the shutdown of another
+     * (or this) instance, from their last committed checkpoint.
+     */
+    public Mono<Integer> resumeInterruptedRuns() {
+        return mongoTemplate.findDistinct(Query.query(Criteria.where("caughtUp").is(false)),
+                "tenantId", ExtractionCheckpoint.class, String.class)
+            .flatMap(tenantId -> Mono.justOrEmpty(tenantRegistry.getTenant(tenantId)))
+            .filter(TenantConfiguration::getActive)
+            .doOnNext(tenant -> logger.info("Resuming unfinished extraction for tenant {}", tenant.getTenantId()))
+            .flatMap(tenant -> extractTenant(tenant, "resume"), tenantConcurrency)
+            .reduce(0, Integer::sum);
+    }
+    
+    /**
+     * Drains extraction before the context closes: no new runs start and running jobs stop
+     * at their next page boundary, after the page in flight is stored and checkpointed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        draining = true;
+        jobService.interruptAll();
+        if (!jobService.awaitIdle(shutdownTimeout)) {
+            logger.warn("Reactive extraction did not drain within {}s; {} runs abandoned at their last checkpoint",
+                       shutdownTimeout.toSeconds(), jobService.activeCount());
+        }
+    }
+    
+    /**
+     * Runs the tenant if it can take the tenant's run lease, otherwise merges the trigger into
+     * a follow-up of the active run. A follow-up requested during this run is run right after it.
+     */
+    private Mono<Integer> extractTenant(TenantConfiguration tenant, String trigger) {
+        if (draining) {
+            return Mono.just(0);
+        }
+        GainsightCircuitBreakers.Permission permission = circuitBreakers.tryAcquire(tenant);
+        if (permission == GainsightCircuitBreakers.Permission.DENIED) {
+            logger.debug("Skipping tenant {}: circuit open", tenant.getTenantId());
+            return Mono.just(0);
+        }
+        // The lease lives in MongoDB and is managed through the blocking driver
+        return Mono.fromCallable(() -> runCoordinator.tryAcquire(tenant.getTenantId(),
+                    GainsightEventExtractionService.RUN_STREAM, trigger))
+            .subscribeOn(Schedulers.boundedElastic())
+            .onErrorResume(e -> {
+                logger.error("Could not coordinate run for tenant {}: {}", tenant.getTenantId(), e.getMessage());
+                return Mono.just(Optional.empty());
+            })
+            .flatMap(lease -> {
+                if (lease.isEmpty()) {
+                    circuitBreakers.release(tenant, permission);
+                    return Mono.just(0);
+                }
+                ExtractionJobService.Job job = jobService.create(tenant.getTenantId(), trigger);
+                return extractTenant(tenant, permission, lease.get(), job)
+                    .flatMap(total -> Mono.fromCallable(() -> releaseLease(tenant, lease.get(), job))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(followUp -> followUp
+                            ? extractTenant(tenant, "follow-up").map(more -> total + more)
+                            : Mono.just(total)));
+            });
+    }
+    
+    private boolean releaseLease(TenantConfiguration tenant, TenantRunCoordinator.Lease lease,
+                                 ExtractionJobService.Job job) {
+        try {
+            boolean followUp = lease.release();
+            if (followUp && job.shouldStop()) {
+                // Don't let queued triggers restart what was just stopped
+                logger.info("Dropping follow-up extraction for tenant {}: job {} was stopped",
+                           tenant.getTenantId(), job.getId());
+                return false;
+            }
+            if (followUp) {
+                logger.info("Starting follow-up extraction for tenant: {}", tenant.getTenantId());
+            }
+            return followUp;
+        } catch (Exception e) {
+            logger.warn("Could not release run lease for tenant {}: {}", tenant.getTenantId(), e.getMessage());
+            return false;
+        } finally {
+            // Only now, with history recorded and the lease free, may shutdown consider the run done
+            job.close();
+        }
+    }
+    
+    private Mono<Integer> extractTenant(TenantConfiguration tenant, GainsightCircuitBreakers.Permission permission,
+                                        TenantRunCoordinator.Lease lease, ExtractionJobService.Job job) {
+        job.started();
+        LocalDateTime attemptedAt = LocalDateTime.now();
+        tenant.setLastAttemptedExtraction(attemptedAt);
+        
+        // Half-open circuit: one single-record request decides whether the tenant is back
+        Mono<Void> probe = permission == GainsightCircuitBreakers.Permission.PROBE
+            ? gainsightClient.testConnection(tenant)
+                .flatMap(ok -> ok ? Mono.<Void>empty() : Mono.error(new RuntimeException("Circuit probe failed")))
+            : Mono.empty();
+        
+        List<Mono<Integer>> streams = new ArrayList<>();
+        if (tenant.getExtractCustomEvents()) {
+            streams.add(extractStream(tenant, "CUSTOM", lease, job));
+        }
+        if (tenant.getExtractStandardEvents()) {
+            streams.add(extractStream(tenant, "STANDARD", lease, job));
+        }
+        
+        // The registry copy is current unless the previous run was on another instance
+        Mono<Void> refresh = !lease.previousRunElsewhere() ? Mono.empty() : mongoTemplate.findOne(
+                Query.query(Criteria.where("tenantId").is(tenant.getTenantId())), TenantConfiguration.class)
+            .doOnNext(stored -> tenant.setLastSuccessfulExtraction(stored.getLastSuccessfulExtraction()))
+            .then();
+        
+        return refresh
+            .then(recordStatus(tenant, new Update().set("lastAttemptedExtraction", attemptedAt),
+                cached -> cached.setLastAttemptedExtraction(attemptedAt)))
+            .then(probe)
+            .thenMany(Flux.concat(streams))
+            .reduce(0, Integer::sum)
+            .flatMap(total -> {
+                if (job.shouldStop()) {
+                    // The checkpoint of the last stored page stands, so the next run resumes from it
+                    logger.info("Extraction job {} for tenant {} stopped after {} events{}",
+                               job.getId(), tenant.getTenantId(), total,
+                               job.isCancelRequested() ? "" : " for shutdown");
+                    job.stopped();
+                    return Mono.just(total);
+                }
+                LocalDateTime succeededAt = LocalDateTime.now();
+                tenant.setLastSuccessfulExtraction(succeededAt);
+                tenant.setLastExtractionError(null);
+                logger.info("Successfully extracted {} total events for tenant: {}", total, tenant.getTenantId());
+                return recordStatus(tenant,
+                        new Update().set("lastSuccessfulExtraction", succeededAt).unset("lastExtractionError"),
+                        cached -> {
+                            cached.setLastSuccessfulExtraction(succeededAt);
+                            cached.setLastExtractionError(null);
+                        })
+                    .doOnSuccess(done -> job.succeeded())
+                    .thenReturn(total);
+            })
+            .onErrorResume(e -> {
+                logger.error("Error extracting events for tenant {}: {}", tenant.getTenantId(), e.getMessage());
+                job.failed(e.getMessage());
+                String error = e.getMessage();
+                tenant.setLastExtractionError(error);
+                // Don't propagate, so other tenants continue
+                return recordStatus(tenant, new Update().set("lastExtractionError", error),
+                        cached -> cached.setLastExtractionError(error))
+                    .thenReturn(0);
+            })
+            .doFinally(signal -> circuitBreakers.release(tenant, permission));
+    }
+    
+    // Only the run's own fields are written, so a concurrent admin edit of the tenant survives
+    private Mono<Void> recordStatus(TenantConfiguration tenant, Update update, Consumer<TenantConfiguration> change) {
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("tenantId").is(tenant.getTenantId())),
+                update, TenantConfiguration.class)
+            .doOnSuccess(result -> tenantRegistry.update(tenant.getTenantId(), change))
+            .then();
+    }
+    
+    private Mono<Integer> extractStream(TenantConfiguration tenant, String eventType,
+                                        TenantRunCoordinator.Lease lease, ExtractionJobService.Job job) {
+        // One page at a time per stream, so checkpoints are written in order; a cancelled or
+        // interrupted job stops before its next page
+        return Mono.defer(() -> job.shouldStop()
+                ? Mono.<PageResult>empty()
+                : resumeScrollId(tenant, eventType)
+                    .flatMap(scrollId -> extractPage(tenant, eventType, 0, scrollId.orElse(null), job)))
+            .expand(result -> result.nextScrollId() == null || job.shouldStop()
+                ? Mono.empty()
+                // Same spacing between requests as the blocking path
+                : Mono.delay(PAGE_DELAY)
+                    .then(Mono.fromRunnable(lease::renew).subscribeOn(Schedulers.boundedElastic()))
+                    .then(extractPage(tenant, eventType, result.page() + 1, result.nextScrollId(), job)))
+            .take(MAX_PAGES)
+            .map(PageResult::inserted)
+            .reduce(0, Integer::sum)
+            .doOnNext(extracted -> logger.info("Extracted {} {} events for tenant: {}",
+                extracted, eventType.toLowerCase(), tenant.getTenantId()));
+    }
+    
+    /** See {@link ExtractionCheckpointStore#resumeScrollId}. */
+    private Mono<Optional<String>> resumeScrollId(TenantConfiguration tenant, String eventType) {
+        return mongoTemplate.findById(ExtractionCheckpoint.idFor(tenant.getTenantId(), eventType), ExtractionCheckpoint.class)
+            .map(checkpoint -> Optional.ofNullable(checkpoint.getScrollId()))
+            .defaultIfEmpty(Optional.ofNullable(tenant.getLastProcessedScrollId()));
+    }
+    
+    // The page's memory is reserved before the fetch and released once it is persisted
+    private Mono<PageResult> extractPage(TenantConfiguration tenant, String eventType, int pageNumber,
+                                         String scrollId, ExtractionJobService.Job job) {
+        return Mono.usingWhen(
+            memoryBudget.reserveAsync(tenant.getTenantId(), PAGE_SIZE),
+            reservation -> gainsightClient.fetchEventPage(tenant, eventType, scrollId, reservation.getPageSize(), pageNumber)
+                .flatMap(page -> {
+                    reservation.measured(page.getResponseBytes(), page.getData() != null ? page.getData().size() : 0);
+                    String nextScrollId = page.getScrollId();
+                    boolean hasMore = page.isHasMore() && nextScrollId != null && !"null".equals(nextScrollId);
+                    return persistPage(tenant, eventType, page)
+                        .map(inserted -> {
+                            if (inserted == 0 && page.getData() != null && !page.getData().isEmpty()) {
+                                runCoordinator.recordDuplicatePage(tenant.getTenantId(), eventType);
+                            }
+                            job.page(eventType, inserted, page.getResponseBytes());
+                            return new PageResult(pageNumber, inserted, hasMore ? nextScrollId : null);
+                        });
+                }),
+            reservation -> Mono.fromRunnable(reservation::close));
+    }
+    
+    private Mono<Integer> persistPage(TenantConfiguration tenant, String eventType,
+                                      MultiTenantGainsightPXClient.GainsightResponse page) {
+        if (!page.isSuccess()) {
+            return Mono.error(new RuntimeException("API request failed with status: " + page.getStatusCode()));
+        }
+        
+        List<ExtractedEvent> mapped = mapEvents(tenant, eventType, page.getData());
+        
+        return prepare(tenant, eventType, mapped).flatMap(events -> {
+            Timer.Sample persistSample = metrics.startTimer();
+            return eventSink.insertNewEvents(events)
+                .flatMap(inserted -> releasePayloads(tenant, events, inserted).thenReturn(inserted.size()))
+                .flatMap(inserted -> {
+                    metrics.recordDedup(tenant.getTenantId(), eventType, mapped.size() - inserted, inserted);
+                    metrics.recordPersist(tenant.getTenantId(), eventType, persistSample, inserted);
+                    
+                    // Commit the scroll position only now that the page's events are stored
+                    String scrollId = "null".equals(page.getScrollId()) ? null : page.getScrollId();
+                    boolean caughtUp = !page.isHasMore() || scrollId == null;
+                    Timer.Sample checkpointSample = metrics.startTimer();
+                    return mongoTemplate.upsert(ExtractionCheckpointStore.query(tenant.getTenantId(), eventType),
+                            ExtractionCheckpointStore.commitUpdate(tenant.getTenantId(), eventType, scrollId, caughtUp, inserted),
+                            ExtractionCheckpoint.class)
+                        .doOnSuccess(saved -> metrics.recordCheckpoint(tenant.getTenantId(), eventType, checkpointSample))
+                        .thenReturn(inserted);
+                });
+        });
+    }
+    
+    /** Enrichment and payload storage stages, in the same order as the blocking path. */
+    private Mono<List<ExtractedEvent>> prepare(TenantConfiguration tenant, String eventType, List<ExtractedEvent> events) {
+        return enrich(tenant, eventType, events)
+            .flatMap(enriched -> storePayloads(tenant, enriched))
+            .flatMap(stored -> encode(tenant, stored));
+    }
+    
+    // Enrichment reads snapshots through the blocking driver, so it runs off the event loop
+    private Mono<List<ExtractedEvent>> enrich(TenantConfiguration tenant, String eventType, List<ExtractedEvent> events) {
+        if (!eventEnricher.isEnabled() || events.isEmpty()) {
+            return Mono.just(events);
+        }
+        return Mono.fromCallable(() -> {
+                eventEnricher.enrich(tenant, eventType, events);
+                return events;
+            })
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    // Payloads are stored through the blocking driver, like enrichment
+    private Mono<List<ExtractedEvent>> storePayloads(TenantConfiguration tenant, List<ExtractedEvent> events) {
+        if (!payloadStore.isEnabled() || events.isEmpty()) {
+            return Mono.just(events);
+        }
+        return Mono.fromCallable(() -> {
+                payloadStore.store(tenant.getTenantId(), events);
+                return events;
+            })
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    // Duplicates are only known after the bulk upsert, so their payload references are dropped here
+    private Mono<Void> releasePayloads(TenantConfiguration tenant, List<ExtractedEvent> events,
+                                       List<ExtractedEvent> inserted) {
+        if (!payloadStore.isEnabled() || inserted.size() == events.size()) {
+            return Mono.empty();
+        }
+        Set<ExtractedEvent> stored = Collections.newSetFromMap(new IdentityHashMap<>());
+        stored.addAll(inserted);
+        List<ExtractedEvent> duplicates = events.stream().filter(event -> !stored.contains(event)).toList();
+        return Mono.fromRunnable(() -> payloadStore.release(tenant.getTenantId(), duplicates))
+            .subscribeOn(Schedulers.boundedElastic())
+            .then();
+    }
+    
+    // Training a dictionary reads and writes through the blocking driver as well
+    private Mono<List<ExtractedEvent>> encode(TenantConfiguration tenant, List<ExtractedEvent> events) {
+        if (!payloadCodec.isEnabled() || events.isEmpty()) {
+            return Mono.just(events);
+        }
+        return Mono.fromCallable(() -> {
+                payloadCodec.encode(tenant.getTenantId(), events);
+                return events;
+            })
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    private List<ExtractedEvent> mapEvents(TenantConfiguration tenant, String eventType, JsonNode events) {
+        List<ExtractedEvent> mapped = new ArrayList<>();
+        if (events == null || !events.isArray()) {
+            return mapped;
+        }
+        metrics.recordPageEvents(tenant.getTenantId(), eventType, events.size());
+        
+        for (JsonNode event : events) {
+            try {
+                String eventId = eventMapper.extractEventId(event);
+                if (eventId == null) {
+                    logger.warn("Skipping event without ID for tenant: {}", tenant.getTenantId());
+                    continue;
+                }
+                mapped.add(eventMapper.toExtractedEvent(tenant, event, eventType, eventId));
+            } catch (Exception e) {
+                logger.error("Error processing event for tenant {}: {}", tenant.getTenantId(), e.getMessage(), e);
+            }
+        }
+        return mapped;
+    }
+}
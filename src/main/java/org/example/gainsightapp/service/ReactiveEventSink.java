@@ -0,0 +1,64 @@
+package org.example.gainsightapp.service;
+
+import org.bson.Document;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Writes a page of extracted events with one unordered bulk upsert keyed by
+ * (tenantId, eventId). Fields are only set on insert, so events that already exist are
+ * left untouched: the duplicate check happens on the server instead of one
+ * {@code existsByTenantIdAndEventId} round-trip per event.
+ */
+@Component
+@ConditionalOnProperty(name = "gainsight.extraction.mode", havingValue = "reactive")
+public class ReactiveEventSink {
+    
+    private final ReactiveMongoTemplate mongoTemplate;
+    
+    public ReactiveEventSink(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+    
+    /**
+     * @return the number of events that were new and got inserted
+     */
+    public Mono<Integer> insertNew(List<ExtractedEvent> events) {
+        return insertNewEvents(events).map(List::size);
+    }
+    
+    /**
+     * @return the events that were new and got inserted
+     */
+    public Mono<List<ExtractedEvent>> insertNewEvents(List<ExtractedEvent> events) {
+        if (events.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        
+        ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ExtractedEvent.class);
+        for (ExtractedEvent event : events) {
+            Document document = new Document();
+            mongoTemplate.getConverter().write(event, document);
+            
+            Update update = new Update();
+            document.forEach(update::setOnInsert);
+            
+            bulk.upsert(Query.query(Criteria.where("tenantId").is(event.getTenantId())
+                .and("eventId").is(event.getEventId())), update);
+        }
+        
+        return bulk.execute().map(result -> result.getUpserts().stream()
+            .map(upsert -> events.get(upsert.getIndex()))
+            .toList());
+    }
+}
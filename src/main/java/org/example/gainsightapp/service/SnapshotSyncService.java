@@ -0,0 +1,365 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers;
+import org.example.gainsightapp.integration.MultiTenantGainsightPXClient;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.EntitySnapshot;
+import org.example.gainsightapp.model.SnapshotSyncState;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.repository.SnapshotSyncStateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a local copy of each active tenant's Gainsight PX users and accounts in
+ * {@code entity_snapshots}.
+ *
+ * Every pass scrolls the full user and account lists, hashes each record and compares the
+ * hash with the stored one, so only new or changed records are written (as one bulk upsert
+ * per page). The scroll cursor and the pass's counters are saved in
+ * {@code snapshot_sync_state} after every page, so an interrupted pass resumes where it
+ * stopped; a cursor that can no longer be resumed starts the pass over. A run reads at most
+ * {@code gainsight.snapshots.max-pages} pages; a longer pass keeps its cursor, is marked
+ * truncated and is continued by the next run.
+ */
+@Service
+public class SnapshotSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotSyncService.class);
+
+    private final MultiTenantGainsightPXClient gainsightClient;
+    private final TenantRegistry tenantRegistry;
+    private final GainsightCircuitBreakers circuitBreakers;
+    private final MongoTemplate mongoTemplate;
+    private final SnapshotSyncStateRepository syncStateRepository;
+    private final ExtractionMetrics metrics;
+    private final boolean enabled;
+    private final int pageSize;
+    private final int maxPages;
+    private final ExecutorService executorService;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /** Record counts for one page or one whole pass. */
+    public record SyncCounts(long created, long updated, long unchanged) {}
+
+    public SnapshotSyncService(
+            MultiTenantGainsightPXClient gainsightClient,
+            TenantRegistry tenantRegistry,
+            GainsightCircuitBreakers circuitBreakers,
+            MongoTemplate mongoTemplate,
+            SnapshotSyncStateRepository syncStateRepository,
+            ExtractionMetrics metrics,
+            @Value("${gainsight.snapshots.enabled:true}") boolean enabled,
+            @Value("${gainsight.snapshots.page-size:500}") int pageSize,
+            @Value("${gainsight.snapshots.max-pages:1000}") int maxPages,
+            @Value("${gainsight.snapshots.concurrency:4}") int concurrency) {
+        this.gainsightClient = gainsightClient;
+        this.tenantRegistry = tenantRegistry;
+        this.circuitBreakers = circuitBreakers;
+        this.mongoTemplate = mongoTemplate;
+        this.syncStateRepository = syncStateRepository;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.executorService = metrics.monitorExecutor(
+            Executors.newFixedThreadPool(concurrency), "gainsight.snapshots");
+    }
+
+    @Scheduled(fixedDelayString = "${gainsight.snapshots.sync-interval-ms:3600000}",
+               initialDelayString = "${gainsight.snapshots.initial-delay-ms:60000}")
+    public void scheduledSync() {
+        if (!enabled) {
+            return;
+        }
+        Timer.Sample sample = metrics.startTimer();
+        try {
+            syncAllTenants();
+        } catch (Exception e) {
+            logger.error("Error during snapshot sync: {}", e.getMessage(), e);
+        } finally {
+            metrics.recordSweep("snapshots", sample);
+        }
+    }
+
+    public void syncAllTenants() {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Snapshot sync already running, skipping");
+            return;
+        }
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (TenantConfiguration tenant : tenantRegistry.getActiveTenants()) {
+                GainsightCircuitBreakers.Permission permission = circuitBreakers.tryAcquire(tenant);
+                if (permission == GainsightCircuitBreakers.Permission.DENIED) {
+                    logger.debug("Skipping snapshot sync for tenant {}: circuit open", tenant.getTenantId());
+                    continue;
+                }
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        // The first page request doubles as the half-open probe
+                        syncTenant(tenant);
+                    } finally {
+                        circuitBreakers.release(tenant, permission);
+                    }
+                }, executorService));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Map<EntitySnapshot.Kind, SyncCounts> syncTenant(TenantConfiguration tenant) {
+        Map<EntitySnapshot.Kind, SyncCounts> results = new LinkedHashMap<>();
+        for (EntitySnapshot.Kind kind : EntitySnapshot.Kind.values()) {
+            try {
+                results.put(kind, sync(tenant, kind));
+            } catch (Exception e) {
+                logger.warn("Snapshot sync of {} for tenant {} failed: {}", kind, tenant.getTenantId(), e.getMessage());
+                // Users and accounts share credentials; a failure on one will fail the other too
+                break;
+            }
+        }
+        return results;
+    }
+
+    public List<SnapshotSyncState> getSyncStates() {
+        return syncStateRepository.findAll();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    private SyncCounts sync(TenantConfiguration tenant, EntitySnapshot.Kind kind) {
+        String tenantId = tenant.getTenantId();
+        SnapshotSyncState state = syncStateRepository.findById(SnapshotSyncState.idFor(tenantId, kind))
+            .orElseGet(() -> new SnapshotSyncState(tenantId, kind));
+        boolean resuming = state.getScrollId() != null;
+        if (!resuming) {
+            startPass(state);
+        }
+
+        Timer.Sample sample = metrics.startTimer();
+        String outcome = "failure";
+        int pages = 0;
+        boolean truncated = false;
+        try {
+            while (true) {
+                MultiTenantGainsightPXClient.GainsightResponse response = kind == EntitySnapshot.Kind.USER
+                    ? gainsightClient.fetchUsers(tenant, state.getScrollId(), pageSize, state.getRunPages())
+                    : gainsightClient.fetchAccounts(tenant, state.getScrollId(), pageSize, state.getRunPages());
+                if (!response.isSuccess()) {
+                    throw new IllegalStateException("Unexpected status " + response.getStatusCode());
+                }
+                pages++;
+
+                SyncCounts page = applyPage(tenantId, kind, response.getData());
+                state.setRunPages(state.getRunPages() + 1);
+                state.setRunCreated(state.getRunCreated() + page.created());
+                state.setRunUpdated(state.getRunUpdated() + page.updated());
+                state.setRunUnchanged(state.getRunUnchanged() + page.unchanged());
+
+                boolean more = response.isHasMore() && response.getScrollId() != null
+                    && response.getData() != null && !response.getData().isEmpty();
+                if (!more) {
+                    break;
+                }
+                state.setScrollId(response.getScrollId());
+                if (pages >= maxPages) {
+                    truncated = true;
+                    break;
+                }
+                saveState(state);
+            }
+
+            if (truncated) {
+                // Keep the cursor; the next run continues this pass
+                state.setTruncated(true);
+                state.setLastError(null);
+                saveState(state);
+                outcome = "truncated";
+                logger.warn("Snapshot sync of {} for tenant {} stopped at the {} page limit after {} pages in this pass; "
+                           + "the next run continues it", kind, tenantId, maxPages, state.getRunPages());
+                return new SyncCounts(state.getRunCreated(), state.getRunUpdated(), state.getRunUnchanged());
+            }
+
+            SyncCounts total = new SyncCounts(state.getRunCreated(), state.getRunUpdated(), state.getRunUnchanged());
+            completePass(state);
+            outcome = "success";
+            logger.info("Snapshot sync of {} for tenant {}: {} created, {} updated, {} unchanged",
+                       kind, tenantId, total.created(), total.updated(), total.unchanged());
+            return total;
+
+        } catch (RuntimeException e) {
+            // An expired cursor fails straight away; start the pass over next time
+            if (resuming && pages == 0) {
+                startPass(state);
+            }
+            state.setLastError(e.getMessage());
+            saveState(state);
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("gainsight.snapshot.sync.duration")
+                .description("Time to sync one tenant's users or accounts")
+                .tags("kind", kind.name(), "outcome", outcome)
+                .register(metrics.getRegistry()));
+        }
+    }
+
+    /**
+     * Writes the records of one page whose content hash differs from the stored one.
+     */
+    SyncCounts applyPage(String tenantId, EntitySnapshot.Kind kind, JsonNode records) {
+        if (records == null || records.isEmpty()) {
+            return new SyncCounts(0, 0, 0);
+        }
+
+        Map<String, JsonNode> byId = new LinkedHashMap<>();
+        for (JsonNode record : records) {
+            String entityId = entityId(kind, record);
+            if (entityId != null) {
+                byId.put(entityId, record);
+            }
+        }
+
+        Query existingQuery = new Query(Criteria.where("tenantId").is(tenantId)
+            .and("kind").is(kind)
+            .and("entityId").in(byId.keySet()));
+        existingQuery.fields().include("entityId").include("contentHash");
+        Map<String, String> storedHashes = new HashMap<>();
+        mongoTemplate.find(existingQuery, EntitySnapshot.class)
+            .forEach(snapshot -> storedHashes.put(snapshot.getEntityId(), snapshot.getContentHash()));
+
+        long created = 0;
+        long updated = 0;
+        long unchanged = 0;
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EntitySnapshot.class);
+        for (Map.Entry<String, JsonNode> entry : byId.entrySet()) {
+            String json = entry.getValue().toString();
+            String hash = sha256(json);
+            String storedHash = storedHashes.get(entry.getKey());
+            if (hash.equals(storedHash)) {
+                unchanged++;
+                continue;
+            }
+            if (storedHash == null) {
+                created++;
+            } else {
+                updated++;
+            }
+            Update update = new Update()
+                .set("data", json)
+                .set("contentHash", hash)
+                .set("updatedAt", now)
+                .setOnInsert("firstSyncedAt", now);
+            if (kind == EntitySnapshot.Kind.USER) {
+                update.set("accountId", entry.getValue().path("accountId").asText(null));
+            }
+            bulk.upsert(new Query(Criteria.where("tenantId").is(tenantId)
+                .and("kind").is(kind)
+                .and("entityId").is(entry.getKey())), update);
+        }
+        if (created + updated > 0) {
+            bulk.execute();
+        }
+
+        record(tenantId, kind, "created", created);
+        record(tenantId, kind, "updated", updated);
+        record(tenantId, kind, "unchanged", unchanged);
+        return new SyncCounts(created, updated, unchanged);
+    }
+
+    private void startPass(SnapshotSyncState state) {
+        state.setScrollId(null);
+        state.setTruncated(false);
+        state.setRunStartedAt(LocalDateTime.now());
+        state.setRunPages(0);
+        state.setRunCreated(0L);
+        state.setRunUpdated(0L);
+        state.setRunUnchanged(0L);
+    }
+
+    private void completePass(SnapshotSyncState state) {
+        state.setLastCompletedAt(LocalDateTime.now());
+        state.setLastCreated(state.getRunCreated());
+        state.setLastUpdated(state.getRunUpdated());
+        state.setLastUnchanged(state.getRunUnchanged());
+        state.setLastError(null);
+        startPass(state);
+        state.setRunStartedAt(null);
+        saveState(state);
+    }
+
+    private void saveState(SnapshotSyncState state) {
+        state.setUpdatedAt(LocalDateTime.now());
+        syncStateRepository.save(state);
+    }
+
+    private static String entityId(EntitySnapshot.Kind kind, JsonNode record) {
+        JsonNode id = kind == EntitySnapshot.Kind.USER
+            ? firstPresent(record, "identifyId", "aptrinsicId", "id")
+            : firstPresent(record, "id", "accountId");
+        return id != null ? id.asText() : null;
+    }
+
+    private static JsonNode firstPresent(JsonNode record, String... fields) {
+        for (String field : fields) {
+            JsonNode value = record.get(field);
+            if (value != null && !value.isNull() && !value.asText().isEmpty()) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static String sha256(String json) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(json.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void record(String tenantId, EntitySnapshot.Kind kind, String result, long records) {
+        if (records == 0) {
+            return;
+        }
+        Counter.builder("gainsight.snapshot.records")
+            .description("Synced user and account records by outcome")
+            .tags("tenant", metrics.tenantTag(tenantId), "kind", kind.name(), "result", result)
+            .register(metrics.getRegistry())
+            .increment(records);
+    }
+}
@@ -18,12 +18,15 @@ public class TenantManagementService {
     private static final Logger logger = LoggerFactory.getLogger(TenantManagementService.class);
     
     private final TenantConfigurationRepository tenantRepository;
+    private final TenantRegistry tenantRegistry;
     private final MultiTenantGainsightPXClient gainsightClient;
     
     public TenantManagementService(
             TenantConfigurationRepository tenantRepository,
+            TenantRegistry tenantRegistry,
             MultiTenantGainsightPXClient gainsightClient) {
         this.tenantRepository = tenantRepository;
+        this.tenantRegistry = tenantRegistry;
         this.gainsightClient = gainsightClient;
     }
     
@@ -36,6 +39,9 @@ public class TenantManagementService {
             throw new IllegalArgumentException("Tenant already exists: " + tenant.getTenantId());
         }
         
+        // Rejects malformed promoted properties before they reach ingest
+        PropertyPromotionService.of(tenant);
+        
         // Test connection before saving
         if (!gainsightClient.testConnection(tenant)) {
             throw new IllegalArgumentException("Invalid Gainsight PX credentials for tenant: " + tenant.getTenantId());
@@ -43,6 +49,7 @@ public class TenantManagementService {
         
         tenant.onCreate();
         TenantConfiguration savedTenant = tenantRepository.save(tenant);
+        tenantRegistry.put(savedTenant);
         logger.info("Successfully created tenant configuration: {}", savedTenant.getTenantId());
         
         return savedTenant;
@@ -65,6 +72,7 @@ public class TenantManagementService {
         existingTenant.setExtractStandardEvents(updatedTenant.getExtractStandardEvents());
         existingTenant.setMaxRetryAttempts(updatedTenant.getMaxRetryAttempts());
         existingTenant.setTimeoutSeconds(updatedTenant.getTimeoutSeconds());
+        existingTenant.setSchedulingWeight(updatedTenant.getSchedulingWeight());
         
         // Test connection if credentials changed
         if (!existingTenant.getApiKey().equals(updatedTenant.getApiKey()) || 
@@ -76,6 +84,7 @@ public class TenantManagementService {
         
         existingTenant.onUpdate();
         TenantConfiguration savedTenant = tenantRepository.save(existingTenant);
+        tenantRegistry.put(savedTenant);
         logger.info("Successfully updated tenant configuration: {}", savedTenant.getTenantId());
         
         return savedTenant;
@@ -89,6 +98,7 @@ public class TenantManagementService {
             .orElseThrow(() -> new IllegalArgumentException("Tenant not found: " + tenantId));
         
         tenantRepository.delete(tenant);
+        tenantRegistry.remove(tenant);
         logger.info("Successfully deleted tenant configuration: {}", tenantId);
     }
     
@@ -100,7 +110,7 @@ public class TenantManagementService {
             .orElseThrow(() -> new IllegalArgumentException("Tenant not found: " + tenantId));
         
         tenant.setActive(false);
-        tenantRepository.save(tenant);
+        tenantRegistry.put(tenantRepository.save(tenant));
         
         logger.info("Successfully deactivated tenant: {}", tenantId);
     }
@@ -119,34 +129,34 @@ public class TenantManagementService {
         
         tenant.setActive(true);
         tenant.setLastExtractionError(null); // Clear any previous errors
-        tenantRepository.save(tenant);
+        tenantRegistry.put(tenantRepository.save(tenant));
         
         logger.info("Successfully activated tenant: {}", tenantId);
     }
     
     public Optional<TenantConfiguration> getTenant(String tenantId) {
-        return tenantRepository.findByTenantId(tenantId);
+        return tenantRegistry.getTenant(tenantId);
     }
     
     public List<TenantConfiguration> getAllTenants() {
-        return tenantRepository.findAll();
+        return tenantRegistry.getAllTenants();
     }
     
     public List<TenantConfiguration> getActiveTenants() {
-        return tenantRepository.findByActiveTrue();
+        return tenantRegistry.getActiveTenants();
     }
     
     public List<TenantConfiguration> getTenantsWithErrors() {
-        return tenantRepository.findTenantsWithErrors();
+        return tenantRegistry.getTenantsWithErrors();
     }
     
     public List<TenantConfiguration> getTenantsReadyForExtraction() {
         LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(5); // 5 minutes ago
-        return tenantRepository.findTenantsReadyForExtraction(cutoffTime);
+        return tenantRegistry.getTenantsReadyForExtraction(cutoffTime);
     }
     
     public boolean testTenantConnection(String tenantId) {
-        TenantConfiguration tenant = tenantRepository.findByTenantId(tenantId)
+        TenantConfiguration tenant = tenantRegistry.getTenant(tenantId)
             .orElseThrow(() -> new IllegalArgumentException("Tenant not found: " + tenantId));
         
         return gainsightClient.testConnection(tenant);
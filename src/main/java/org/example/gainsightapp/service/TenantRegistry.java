@@ -0,0 +1,341 @@
+package org.example.gainsightapp.service;
+
+import com.mongodb.client.model.changestream.FullDocument;
+import io.micrometer.core.instrument.Gauge;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.repository.TenantConfigurationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory, read-through view of {@code tenant_configurations}.
+ *
+ * Tenants are indexed by tenantId, active flag and API host, so controller calls,
+ * scheduler sweeps and monitoring requests no longer query MongoDB. The view is kept
+ * current by {@link TenantManagementService} writes, by a MongoDB change stream (so writes
+ * from other instances are picked up) and, when change streams are not available (e.g. a
+ * standalone server), by a full reload every {@code gainsight.tenants.refresh-interval-ms}.
+ *
+ * Returned instances are copies, so callers can change them freely; a change only shows up
+ * here once it is saved and handed to {@link #put} or {@link #update}.
+ */
+@Service
+public class TenantRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantRegistry.class);
+
+    private final TenantConfigurationRepository tenantRepository;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final GainsightCircuitBreakers circuitBreakers;
+
+    private final Map<String, TenantConfiguration> byTenantId = new ConcurrentHashMap<>();
+    private final Map<String, String> tenantIdByDocumentId = new ConcurrentHashMap<>();
+    private volatile Indexes indexes;
+    private volatile boolean loaded;
+    private volatile boolean changeStreamActive;
+    private volatile boolean changeStreamWarned;
+    private volatile Disposable changeStream;
+
+    /** Secondary indexes hold tenantIds; instances are always resolved through {@link #byTenantId}. */
+    private record Indexes(List<String> active, Map<String, List<String>> byHost) {}
+
+    public TenantRegistry(TenantConfigurationRepository tenantRepository,
+                          ReactiveMongoTemplate reactiveMongoTemplate,
+                          GainsightCircuitBreakers circuitBreakers,
+                          ExtractionMetrics metrics) {
+        this.tenantRepository = tenantRepository;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.circuitBreakers = circuitBreakers;
+
+        Gauge.builder("gainsight.tenants.cached", byTenantId, Map::size)
+            .description("Tenant configurations held in the in-memory registry")
+            .register(metrics.getRegistry());
+    }
+
+    public Optional<TenantConfiguration> getTenant(String tenantId) {
+        ensureLoaded();
+        TenantConfiguration tenant = byTenantId.get(tenantId);
+        if (tenant != null) {
+            return Optional.of(new TenantConfiguration(tenant));
+        }
+        // Read-through: another instance may have created it and the change isn't here yet
+        Optional<TenantConfiguration> stored = tenantRepository.findByTenantId(tenantId);
+        stored.ifPresent(this::put);
+        return stored;
+    }
+
+    public List<TenantConfiguration> getAllTenants() {
+        ensureLoaded();
+        return byTenantId.values().stream().map(TenantConfiguration::new).collect(Collectors.toList());
+    }
+
+    public List<TenantConfiguration> getActiveTenants() {
+        List<TenantConfiguration> tenants = resolve(indexes().active());
+        tenants.removeIf(t -> !Boolean.TRUE.equals(t.getActive()));
+        return tenants;
+    }
+
+    public List<TenantConfiguration> getTenantsByHost(String host) {
+        return resolve(indexes().byHost().getOrDefault(host, List.of()));
+    }
+
+    public List<TenantConfiguration> getTenantsWithErrors() {
+        return getActiveTenants().stream()
+            .filter(t -> t.getLastExtractionError() != null)
+            .toList();
+    }
+
+    public List<TenantConfiguration> getTenantsReadyForExtraction(LocalDateTime cutoffTime) {
+        return getActiveTenants().stream()
+            .filter(t -> t.getLastAttemptedExtraction() == null || t.getLastAttemptedExtraction().isBefore(cutoffTime))
+            .toList();
+    }
+
+    public int size() {
+        ensureLoaded();
+        return byTenantId.size();
+    }
+
+    /**
+     * Records a tenant that was just saved, so this instance sees the write immediately.
+     */
+    public synchronized void put(TenantConfiguration tenant) {
+        if (tenant.getTenantId() == null) {
+            return;
+        }
+        TenantConfiguration previous = byTenantId.put(tenant.getTenantId(), new TenantConfiguration(tenant));
+        if (tenant.getId() != null) {
+            String previousTenantId = tenantIdByDocumentId.put(tenant.getId(), tenant.getTenantId());
+            if (previousTenantId != null && !previousTenantId.equals(tenant.getTenantId())) {
+                byTenantId.remove(previousTenantId);
+                circuitBreakers.evictTenant(previousTenantId);
+                indexes = null;
+            }
+        }
+        if (previous == null
+                || !Objects.equals(previous.getActive(), tenant.getActive())
+                || !Objects.equals(previous.getApiUrl(), tenant.getApiUrl())) {
+            indexes = null;
+        }
+    }
+
+    /**
+     * Applies a change that was just written with a targeted update, so this instance sees it
+     * before the change stream delivers it. Must not touch the active flag or the API URL.
+     */
+    public synchronized void update(String tenantId, Consumer<TenantConfiguration> change) {
+        TenantConfiguration cached = byTenantId.get(tenantId);
+        if (cached != null) {
+            TenantConfiguration updated = new TenantConfiguration(cached);
+            change.accept(updated);
+            byTenantId.put(tenantId, updated);
+        }
+    }
+
+    public synchronized void remove(TenantConfiguration tenant) {
+        if (byTenantId.remove(tenant.getTenantId()) != null) {
+            indexes = null;
+        }
+        circuitBreakers.evictTenant(tenant.getTenantId());
+        if (tenant.getId() != null) {
+            tenantIdByDocumentId.remove(tenant.getId());
+        }
+    }
+
+    /**
+     * Replaces the whole view with the current contents of the collection.
+     */
+    public synchronized void reload() {
+        List<TenantConfiguration> tenants = tenantRepository.findAll();
+        Map<String, TenantConfiguration> fresh = new HashMap<>();
+        tenants.forEach(t -> fresh.put(t.getTenantId(), t));
+
+        for (String tenantId : List.copyOf(byTenantId.keySet())) {
+            if (!fresh.containsKey(tenantId)) {
+                byTenantId.remove(tenantId);
+                circuitBreakers.evictTenant(tenantId);
+            }
+        }
+        byTenantId.putAll(fresh);
+        tenantIdByDocumentId.clear();
+        tenants.forEach(t -> tenantIdByDocumentId.put(t.getId(), t.getTenantId()));
+        indexes = null;
+        loaded = true;
+        logger.debug("Reloaded {} tenant configurations", tenants.size());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startChangeStream() {
+        if (reactiveMongoTemplate == null || changeStream != null && !changeStream.isDisposed()) {
+            return;
+        }
+        changeStreamActive = true;
+        changeStream = reactiveMongoTemplate.changeStream(TenantConfiguration.class)
+            .withOptions(options -> options.fullDocumentLookup(FullDocument.UPDATE_LOOKUP))
+            .listen()
+            .subscribe(this::onChange, this::onChangeStreamError);
+        // Anything written before the stream was open is covered by a full load
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.warn("Could not load tenant configurations: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Fallback for deployments without change streams: reload periodically and try to
+     * reopen the stream.
+     */
+    @Scheduled(fixedDelayString = "${gainsight.tenants.refresh-interval-ms:60000}",
+               initialDelayString = "${gainsight.tenants.refresh-interval-ms:60000}")
+    public void refreshIfStale() {
+        if (changeStreamActive) {
+            return;
+        }
+        try {
+            if (reactiveMongoTemplate == null) {
+                reload();
+            } else {
+                startChangeStream();
+            }
+        } catch (Exception e) {
+            logger.debug("Tenant refresh failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stopChangeStream() {
+        Disposable stream = changeStream;
+        if (stream != null) {
+            stream.dispose();
+        }
+    }
+
+    private void onChange(ChangeStreamEvent<TenantConfiguration> event) {
+        if (event.getOperationType() == null) {
+            return;
+        }
+        switch (event.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                TenantConfiguration tenant = event.getBody();
+                if (tenant != null) {
+                    put(tenant);
+                } else {
+                    // Document already gone by the time it was looked up
+                    removeByDocumentId(documentId(event));
+                }
+            }
+            case DELETE -> removeByDocumentId(documentId(event));
+            default -> {
+                // drop / rename / invalidate end the stream; the next refresh reopens it
+                changeStreamActive = false;
+                stopChangeStream();
+            }
+        }
+    }
+
+    private void onChangeStreamError(Throwable e) {
+        changeStreamActive = false;
+        if (!changeStreamWarned) {
+            changeStreamWarned = true;
+            logger.warn("Tenant change stream unavailable, falling back to periodic refresh: {}", e.getMessage());
+        } else {
+            logger.debug("Tenant change stream closed: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void removeByDocumentId(String documentId) {
+        if (documentId == null) {
+            return;
+        }
+        String tenantId = tenantIdByDocumentId.remove(documentId);
+        if (tenantId == null) {
+            return;
+        }
+        if (byTenantId.remove(tenantId) != null) {
+            indexes = null;
+        }
+        circuitBreakers.evictTenant(tenantId);
+    }
+
+    private static String documentId(ChangeStreamEvent<TenantConfiguration> event) {
+        if (event.getRaw() == null || event.getRaw().getDocumentKey() == null) {
+            return null;
+        }
+        BsonDocument key = event.getRaw().getDocumentKey();
+        BsonValue id = key.get("_id");
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString()
+            : id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        }
+    }
+
+    private Indexes indexes() {
+        ensureLoaded();
+        Indexes current = indexes;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (indexes == null) {
+                List<String> active = new ArrayList<>();
+                Map<String, List<String>> byHost = new HashMap<>();
+                for (TenantConfiguration tenant : byTenantId.values()) {
+                    if (Boolean.TRUE.equals(tenant.getActive())) {
+                        active.add(tenant.getTenantId());
+                    }
+                    byHost.computeIfAbsent(GainsightCircuitBreakers.hostOf(tenant.getApiUrl()), h -> new ArrayList<>())
+                        .add(tenant.getTenantId());
+                }
+                indexes = new Indexes(Collections.unmodifiableList(active), byHost);
+            }
+            return indexes;
+        }
+    }
+
+    private List<TenantConfiguration> resolve(List<String> tenantIds) {
+        List<TenantConfiguration> tenants = new ArrayList<>(tenantIds.size());
+        for (String tenantId : tenantIds) {
+            TenantConfiguration tenant = byTenantId.get(tenantId);
+            if (tenant != null) {
+                tenants.add(new TenantConfiguration(tenant));
+            }
+        }
+        return tenants;
+    }
+}
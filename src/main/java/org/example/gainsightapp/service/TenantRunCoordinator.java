@@ -0,0 +1,203 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.TenantRunLease;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Single-flight coordination of tenant runs across instances, backed by
+ * {@code tenant_run_leases}.
+ *
+ * A run starts only if it can take the lease of its tenant and stream. A trigger that finds
+ * the lease held doesn't start anything; it marks the lease for a follow-up, and the holder
+ * learns on release that it should run once more, so any number of overlapping triggers
+ * (sweeps, manual requests, other instances) cost at most one extra run. Holders renew the
+ * lease while they work; a lease that is not renewed within {@code gainsight.runs.lease-seconds}
+ * (a crashed instance) can be taken over.
+ */
+@Service
+public class TenantRunCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantRunCoordinator.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final ExtractionMetrics metrics;
+    private final Duration leaseDuration;
+    private final String instance = ManagementFactory.getRuntimeMXBean().getName();
+
+    public TenantRunCoordinator(
+            MongoTemplate mongoTemplate,
+            ExtractionMetrics metrics,
+            @Value("${gainsight.runs.lease-seconds:600}") long leaseSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.metrics = metrics;
+        this.leaseDuration = Duration.ofSeconds(leaseSeconds);
+    }
+
+    /** Held lease of one run; renew it while working and release it when done. */
+    public final class Lease {
+        private final String tenantId;
+        private final String stream;
+        private final String owner;
+        private final boolean previousRunElsewhere;
+        private LocalDateTime renewedAt;
+
+        private Lease(String tenantId, String stream, String owner, boolean previousRunElsewhere,
+                      LocalDateTime renewedAt) {
+            this.tenantId = tenantId;
+            this.stream = stream;
+            this.owner = owner;
+            this.previousRunElsewhere = previousRunElsewhere;
+            this.renewedAt = renewedAt;
+        }
+
+        /**
+         * Whether the lease was last held by another instance, whose run may have changed
+         * tenant state this instance has not seen yet.
+         */
+        public boolean previousRunElsewhere() {
+            return previousRunElsewhere;
+        }
+
+        /**
+         * Extends the lease once a third of it has passed.
+         *
+         * @throws IllegalStateException if another run has taken the lease over
+         */
+        public void renew() {
+            LocalDateTime now = LocalDateTime.now();
+            if (Duration.between(renewedAt, now).compareTo(leaseDuration.dividedBy(3)) < 0) {
+                return;
+            }
+            long renewed = mongoTemplate.updateFirst(
+                owned(tenantId, stream, owner),
+                new Update().set("renewedAt", now).set("expiresAt", now.plus(leaseDuration)),
+                TenantRunLease.class).getModifiedCount();
+            if (renewed == 0) {
+                count("lost");
+                throw new IllegalStateException("Run lease for " + TenantRunLease.idFor(tenantId, stream) + " was lost");
+            }
+            renewedAt = now;
+        }
+
+        /**
+         * Gives up the lease.
+         *
+         * @return true if triggers arrived during the run and a follow-up run is due
+         */
+        public boolean release() {
+            TenantRunLease previous = mongoTemplate.findAndModify(
+                owned(tenantId, stream, owner),
+                new Update().unset("owner").unset("expiresAt")
+                    .set("followUpRequested", false).set("lastReleasedAt", LocalDateTime.now()),
+                TenantRunLease.class);
+            if (previous == null) {
+                logger.warn("Run lease for tenant {} stream {} was taken over before release", tenantId, stream);
+                return false;
+            }
+            return Boolean.TRUE.equals(previous.getFollowUpRequested());
+        }
+    }
+
+    /**
+     * Takes the lease for a new run, or records the trigger as a follow-up of the run that
+     * holds it.
+     *
+     * @return the lease, or empty if the trigger was merged into the active run
+     */
+    public Optional<Lease> tryAcquire(String tenantId, String stream, String trigger) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Optional<Lease> lease = acquire(tenantId, stream, trigger);
+            if (lease.isPresent()) {
+                return lease;
+            }
+            long marked = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(TenantRunLease.idFor(tenantId, stream)).and("owner").ne(null)),
+                new Update().set("followUpRequested", true).inc("coalescedTriggers", 1),
+                TenantRunLease.class).getModifiedCount();
+            if (marked > 0) {
+                logger.info("Tenant {} {} already running; {} trigger merged into a follow-up run",
+                           tenantId, stream, trigger);
+                count("coalesced");
+                return Optional.empty();
+            }
+            // Released in between; try to take it once more
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Lease> acquire(String tenantId, String stream, String trigger) {
+        String id = TenantRunLease.idFor(tenantId, stream);
+        String owner = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        Query free = Query.query(Criteria.where("_id").is(id)
+            .orOperator(Criteria.where("owner").is(null), Criteria.where("expiresAt").lt(now)));
+        Update take = new Update()
+            .set("tenantId", tenantId)
+            .set("stream", stream)
+            .set("owner", owner)
+            .set("instance", instance)
+            .set("trigger", trigger)
+            .set("acquiredAt", now)
+            .set("renewedAt", now)
+            .set("expiresAt", now.plus(leaseDuration))
+            .set("followUpRequested", false);
+        try {
+            TenantRunLease previous = mongoTemplate.findAndModify(free, take,
+                FindAndModifyOptions.options().upsert(true), TenantRunLease.class);
+            if (previous != null && previous.getOwner() != null) {
+                logger.warn("Took over expired run lease of tenant {} stream {} from {}",
+                           tenantId, stream, previous.getInstance());
+                count("takeover");
+            } else {
+                count("started");
+            }
+            boolean elsewhere = previous != null && previous.getInstance() != null
+                && !instance.equals(previous.getInstance());
+            return Optional.of(new Lease(tenantId, stream, owner, elsewhere, now));
+        } catch (DuplicateKeyException e) {
+            // The lease exists and is held, so the upsert tried to insert a second one
+            return Optional.empty();
+        }
+    }
+
+    private static Query owned(String tenantId, String stream, String owner) {
+        return Query.query(Criteria.where("_id").is(TenantRunLease.idFor(tenantId, stream)).and("owner").is(owner));
+    }
+
+    private void count(String result) {
+        Counter.builder("gainsight.runs.triggers")
+            .description("Run triggers by outcome of the run lease")
+            .tag("result", result)
+            .register(metrics.getRegistry())
+            .increment();
+    }
+
+    /**
+     * Counts a page that brought no new events, i.e. work another run or an earlier attempt
+     * had already done.
+     */
+    public void recordDuplicatePage(String tenantId, String eventType) {
+        Counter.builder("gainsight.runs.duplicate.pages")
+            .description("Fetched pages whose events were all stored already")
+            .tags(metrics.tags(tenantId, eventType))
+            .register(metrics.getRegistry())
+            .increment();
+    }
+}
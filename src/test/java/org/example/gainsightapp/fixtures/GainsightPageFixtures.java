@@ -0,0 +1,175 @@
+package org.example.gainsightapp.fixtures;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * Synthetic Gainsight PX event pages shared by the JMH benchmarks and the load-test simulator.
+ *
+ * Shapes follow what the API actually returns: custom events come back under
+ * {@code customEvents} with epoch-millisecond timestamps, standard (page view / session)
+ * events under {@code data} with ISO-8601 timestamps and a nested {@code globalContext}.
+ * Generation is seeded so every run sees the same bytes.
+ */
+public final class GainsightPageFixtures {
+
+    public enum Shape { CUSTOM, STANDARD }
+
+    private static final String[] EVENT_NAMES = {
+        "feature_used", "report_exported", "dashboard_viewed", "invite_sent",
+        "settings_changed", "file_uploaded", "search_performed", "checkout_completed"
+    };
+
+    private static final String[] PATHS = {
+        "/app/dashboard", "/app/reports/weekly", "/app/settings/profile", "/app/projects",
+        "/app/projects/42/tasks", "/app/billing", "/app/search", "/app/admin/users"
+    };
+
+    private static final String[] USER_AGENTS = {
+        "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0.0.0 Safari/537.36",
+        "Mozilla/5.0 (Macintosh; Intel Mac OS X 14_4_1) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.4.1 Safari/605.1.15",
+        "Mozilla/5.0 (X11; Linux x86_64; rv:125.0) Gecko/20100101 Firefox/125.0"
+    };
+
+    private static final DateTimeFormatter ISO_SECONDS =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'").withZone(ZoneOffset.UTC);
+
+    private static final long BASE_EPOCH_MILLI = Instant.parse("2024-05-01T00:00:00Z").toEpochMilli();
+
+    private GainsightPageFixtures() {
+    }
+
+    /** A full page body as the API would send it. */
+    public static String page(ObjectMapper mapper, Shape shape, int events, long seed) {
+        try {
+            return mapper.writeValueAsString(pageNode(mapper, shape, events, seed, "scroll-" + seed, true));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to build fixture page", e);
+        }
+    }
+
+    public static ObjectNode pageNode(ObjectMapper mapper, Shape shape, int events, long seed,
+                                      String scrollId, boolean hasMore) {
+        Random random = new Random(seed);
+        ObjectNode root = mapper.createObjectNode();
+        ArrayNode items = root.putArray(shape == Shape.CUSTOM ? "customEvents" : "data");
+        for (int i = 0; i < events; i++) {
+            items.add(shape == Shape.CUSTOM
+                ? customEvent(mapper, random, seed, i)
+                : standardEvent(mapper, random, seed, i));
+        }
+        if (scrollId != null) {
+            root.put("scrollId", scrollId);
+        } else {
+            root.putNull("scrollId");
+        }
+        root.put("hasMore", hasMore);
+        return root;
+    }
+
+    /** A {@code /v1/accounts} page. */
+    public static ObjectNode accountPageNode(ObjectMapper mapper, int accounts, long seed,
+                                             String scrollId, boolean hasMore) {
+        Random random = new Random(seed);
+        ObjectNode root = mapper.createObjectNode();
+        ArrayNode items = root.putArray("accounts");
+        for (int i = 0; i < accounts; i++) {
+            ObjectNode account = items.addObject();
+            account.put("id", "account-" + seed + "-" + i);
+            account.put("name", "Account " + i);
+            account.put("plan", random.nextBoolean() ? "enterprise" : "growth");
+            account.put("numberOfUsers", random.nextInt(1_000));
+            account.put("lastSeenDate", BASE_EPOCH_MILLI + random.nextInt(86_400_000));
+        }
+        if (scrollId != null) {
+            root.put("scrollId", scrollId);
+        } else {
+            root.putNull("scrollId");
+        }
+        root.put("hasMore", hasMore);
+        return root;
+    }
+
+    /** Just the event array, for code that starts from a parsed page. */
+    public static ArrayNode events(ObjectMapper mapper, Shape shape, int events, long seed) {
+        return (ArrayNode) pageNode(mapper, shape, events, seed, null, false)
+            .get(shape == Shape.CUSTOM ? "customEvents" : "data");
+    }
+
+    /** A {@code /v1/users} page. */
+    public static ObjectNode userPageNode(ObjectMapper mapper, int users, long seed,
+                                          String scrollId, boolean hasMore) {
+        Random random = new Random(seed);
+        ObjectNode root = mapper.createObjectNode();
+        ArrayNode items = root.putArray("users");
+        for (int i = 0; i < users; i++) {
+            ObjectNode user = items.addObject();
+            user.put("identifyId", "user-" + seed + "-" + i);
+            user.put("accountId", "account-" + random.nextInt(200));
+            user.put("email", "user" + i + "@example.com");
+            user.put("firstName", "User");
+            user.put("lastName", String.valueOf(i));
+            user.put("numberOfVisits", random.nextInt(500));
+            user.put("lastSeenDate", BASE_EPOCH_MILLI + random.nextInt(86_400_000));
+        }
+        if (scrollId != null) {
+            root.put("scrollId", scrollId);
+        } else {
+            root.putNull("scrollId");
+        }
+        root.put("hasMore", hasMore);
+        return root;
+    }
+
+    private static ObjectNode customEvent(ObjectMapper mapper, Random random, long seed, int index) {
+        ObjectNode event = mapper.createObjectNode();
+        event.put("eventId", eventId(seed, index));
+        event.put("eventName", EVENT_NAMES[random.nextInt(EVENT_NAMES.length)]);
+        event.put("identifyId", "user-" + random.nextInt(5_000));
+        event.put("accountId", "account-" + random.nextInt(200));
+        event.put("propertyKey", "AP-BENCH-2");
+        event.put("sessionId", "session-" + Long.toHexString(random.nextLong()));
+        event.put("timestamp", String.valueOf(BASE_EPOCH_MILLI + random.nextInt(86_400_000)));
+
+        ObjectNode attributes = event.putObject("attributes");
+        attributes.put("plan", random.nextBoolean() ? "enterprise" : "growth");
+        attributes.put("feature", "feature-" + random.nextInt(40));
+        attributes.put("durationMs", random.nextInt(30_000));
+        attributes.put("success", random.nextInt(10) != 0);
+        return event;
+    }
+
+    private static ObjectNode standardEvent(ObjectMapper mapper, Random random, long seed, int index) {
+        String path = PATHS[random.nextInt(PATHS.length)];
+
+        ObjectNode event = mapper.createObjectNode();
+        event.put("eventType", random.nextInt(5) == 0 ? "SESSION_INITIALIZED" : "PAGE_VIEW");
+        event.put("identifyId", "user-" + random.nextInt(5_000));
+        event.put("accountId", "account-" + random.nextInt(200));
+        event.put("timestamp", ISO_SECONDS.format(Instant.ofEpochMilli(BASE_EPOCH_MILLI + random.nextInt(86_400_000))));
+        event.put("url", "https://app.example.com" + path + "?tab=" + random.nextInt(4));
+        event.put("path", path);
+        event.put("host", "app.example.com");
+        event.put("referrer", "https://app.example.com" + PATHS[random.nextInt(PATHS.length)]);
+        event.put("screenHeight", 1080);
+        event.put("screenWidth", 1920);
+
+        ObjectNode context = event.putObject("globalContext");
+        context.put("eventId", eventId(seed, index));
+        context.put("sessionId", "session-" + Long.toHexString(random.nextLong()));
+        context.put("userAgent", USER_AGENTS[random.nextInt(USER_AGENTS.length)]);
+        context.put("remoteHost", "10." + random.nextInt(255) + "." + random.nextInt(255) + "." + random.nextInt(255));
+        context.put("countryCode", random.nextBoolean() ? "US" : "DE");
+        return event;
+    }
+
+    private static String eventId(long seed, int index) {
+        return new java.util.UUID(seed, index).toString();
+    }
+}
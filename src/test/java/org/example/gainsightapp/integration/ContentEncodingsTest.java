@@ -0,0 +1,71 @@
+package org.example.gainsightapp.integration;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContentEncodingsTest {
+
+    private static final String BODY = "{\"data\":[{\"eventId\":\"e1\"}],\"hasMore\":false}";
+
+    @Test
+    void decodesGzipAndDeflate() throws IOException {
+        assertThat(decode(gzip(BODY), "gzip")).isEqualTo(BODY);
+        assertThat(decode(gzip(BODY), "X-GZIP")).isEqualTo(BODY);
+        assertThat(decode(deflate(BODY), "deflate")).isEqualTo(BODY);
+    }
+
+    @Test
+    void emptyEncodedBodiesDecodeToNothing() throws IOException {
+        assertThat(decode(new byte[0], "gzip")).isEmpty();
+        assertThat(decode(new byte[0], "deflate")).isEmpty();
+        assertThat(decode(new byte[0], "br")).isEmpty();
+    }
+
+    @Test
+    void rejectsUnknownEncodings() {
+        assertThatThrownBy(() -> decode(BODY.getBytes(StandardCharsets.UTF_8), "compress"))
+            .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void countsBytesReadThrough() throws IOException {
+        byte[] wire = gzip(BODY);
+        ContentEncodings.CountingInputStream counted = new ContentEncodings.CountingInputStream(new ByteArrayInputStream(wire));
+        try (InputStream decoded = ContentEncodings.decode(counted, "gzip")) {
+            decoded.readAllBytes();
+        }
+        assertThat(counted.getCount()).isEqualTo(wire.length);
+    }
+
+    private static String decode(byte[] body, String encoding) throws IOException {
+        try (InputStream decoded = ContentEncodings.decode(new ByteArrayInputStream(body), encoding)) {
+            return new String(decoded.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] gzip(String value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(String value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,175 @@
+package org.example.gainsightapp.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers.Permission;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers.State;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GainsightCircuitBreakersTest {
+
+    private static final String API_URL = "https://api.aptrinsic.com";
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        GainsightCircuitBreakers breakers = breakers(60);
+        TenantConfiguration tenant = tenant("t1");
+
+        breakers.recordFailure(tenant, new IllegalStateException("bad page"));
+        breakers.recordFailure(tenant, new IllegalStateException("bad page"));
+        assertThat(breakers.getState(tenant)).isEqualTo(State.CLOSED);
+        assertThat(breakers.tryAcquire(tenant)).isEqualTo(Permission.ALLOWED);
+
+        breakers.recordFailure(tenant, new IllegalStateException("bad page"));
+        assertThat(breakers.getState(tenant)).isEqualTo(State.OPEN);
+        assertThat(breakers.tryAcquire(tenant)).isEqualTo(Permission.DENIED);
+        assertThat(breakers.getOpenBreakers()).singleElement()
+            .satisfies(open -> assertThat(open).containsEntry("key", "t1"));
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        GainsightCircuitBreakers breakers = breakers(60);
+        TenantConfiguration tenant = tenant("t1");
+
+        breakers.recordFailure(tenant, new IllegalStateException("bad page"));
+        breakers.recordFailure(tenant, new IllegalStateException("bad page"));
+        breakers.recordSuccess(tenant);
+        breakers.recordFailure(tenant, new IllegalStateException("bad page"));
+
+        assertThat(breakers.getState(tenant)).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void credentialFailuresOpenImmediatelyAndThrottlingIsIgnored() {
+        GainsightCircuitBreakers breakers = breakers(60);
+        TenantConfiguration throttled = tenant("throttled");
+        TenantConfiguration unauthorized = tenant("unauthorized");
+
+        for (int i = 0; i < 5; i++) {
+            breakers.recordFailure(throttled, HttpClientErrorException.create(
+                HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", null, null, null));
+        }
+        breakers.recordFailure(unauthorized, HttpClientErrorException.create(
+            HttpStatus.UNAUTHORIZED, "Unauthorized", null, null, null));
+
+        assertThat(breakers.getState(throttled)).isEqualTo(State.CLOSED);
+        assertThat(breakers.getState(unauthorized)).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    void halfOpenLetsOneProbeThroughAndClosesOnSuccess() {
+        GainsightCircuitBreakers breakers = breakers(0);
+        TenantConfiguration tenant = tenant("t1");
+        open(breakers, tenant);
+
+        assertThat(breakers.tryAcquire(tenant)).isEqualTo(Permission.PROBE);
+        assertThat(breakers.getState(tenant)).isEqualTo(State.HALF_OPEN);
+        assertThat(breakers.tryAcquire(tenant)).isEqualTo(Permission.DENIED);
+
+        breakers.recordSuccess(tenant);
+        assertThat(breakers.getState(tenant)).isEqualTo(State.CLOSED);
+        assertThat(breakers.tryAcquire(tenant)).isEqualTo(Permission.ALLOWED);
+    }
+
+    @Test
+    void failedProbeReopens() {
+        GainsightCircuitBreakers breakers = breakers(0);
+        TenantConfiguration tenant = tenant("t1");
+        open(breakers, tenant);
+
+        assertThat(breakers.tryAcquire(tenant)).isEqualTo(Permission.PROBE);
+        breakers.recordFailure(tenant, new IllegalStateException("still broken"));
+        assertThat(breakers.getState(tenant)).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    void releasedProbeCanBeTakenAgain() {
+        GainsightCircuitBreakers breakers = breakers(0);
+        TenantConfiguration tenant = tenant("t1");
+        open(breakers, tenant);
+
+        Permission probe = breakers.tryAcquire(tenant);
+        assertThat(probe).isEqualTo(Permission.PROBE);
+        breakers.release(tenant, probe);
+
+        assertThat(breakers.tryAcquire(tenant)).isEqualTo(Permission.PROBE);
+    }
+
+    @Test
+    void transportFailuresOfSeveralTenantsOpenTheHost() {
+        GainsightCircuitBreakers breakers = breakers(60);
+        breakers.recordFailure(tenant("a"), new ResourceAccessException("connect timed out"));
+        breakers.recordFailure(tenant("b"), new ResourceAccessException("connect timed out"));
+
+        assertThat(breakers.getState(tenant("a"))).isEqualTo(State.CLOSED);
+        assertThat(breakers.tryAcquire(tenant("c"))).isEqualTo(Permission.DENIED);
+    }
+
+    @Test
+    void releasingATenantProbeKeepsAnotherTenantsHostProbe() {
+        GainsightCircuitBreakers breakers = breakers(0);
+        TenantConfiguration tenantProbe = tenant("tenant-probe");
+        TenantConfiguration hostProbe = tenant("host-probe");
+        TenantConfiguration other = tenant("other");
+
+        // tenant-probe holds a probe of its own tenant breaker while the host is still closed
+        open(breakers, tenantProbe);
+        Permission tenantPermission = breakers.tryAcquire(tenantProbe);
+        assertThat(tenantPermission).isEqualTo(Permission.PROBE);
+
+        // Then the host opens and host-probe takes the host probe
+        breakers.recordFailure(tenant("x"), new ResourceAccessException("connection reset"));
+        breakers.recordFailure(tenant("y"), new ResourceAccessException("connection reset"));
+        Permission hostPermission = breakers.tryAcquire(hostProbe);
+        assertThat(hostPermission).isEqualTo(Permission.PROBE);
+
+        breakers.release(tenantProbe, tenantPermission);
+        assertThat(breakers.tryAcquire(other)).isEqualTo(Permission.DENIED);
+
+        breakers.release(hostProbe, hostPermission);
+        assertThat(breakers.tryAcquire(other)).isEqualTo(Permission.PROBE);
+    }
+
+    @Test
+    void evictedTenantStartsClosedAndHandsBackItsHostProbe() {
+        GainsightCircuitBreakers breakers = breakers(0);
+        TenantConfiguration deleted = tenant("deleted");
+        TenantConfiguration other = tenant("other");
+
+        breakers.recordFailure(tenant("x"), new ResourceAccessException("connection reset"));
+        breakers.recordFailure(tenant("y"), new ResourceAccessException("connection reset"));
+        assertThat(breakers.tryAcquire(deleted)).isEqualTo(Permission.PROBE);
+        breakers.recordFailure(deleted, HttpClientErrorException.create(
+            HttpStatus.FORBIDDEN, "Forbidden", null, null, null));
+        assertThat(breakers.getState(deleted)).isEqualTo(State.OPEN);
+
+        breakers.evictTenant("deleted");
+
+        assertThat(breakers.getState(deleted)).isEqualTo(State.CLOSED);
+        assertThat(breakers.getOpenBreakers()).noneMatch(open -> "deleted".equals(open.get("key")));
+        assertThat(breakers.tryAcquire(other)).isEqualTo(Permission.PROBE);
+    }
+
+    private static void open(GainsightCircuitBreakers breakers, TenantConfiguration tenant) {
+        for (int i = 0; i < 3; i++) {
+            breakers.recordFailure(tenant, new IllegalStateException("bad page"));
+        }
+        assertThat(breakers.getState(tenant)).isEqualTo(State.OPEN);
+    }
+
+    private static GainsightCircuitBreakers breakers(long openDurationSeconds) {
+        return new GainsightCircuitBreakers(3, 2, openDurationSeconds, 3600,
+            new ExtractionMetrics(new SimpleMeterRegistry(), 200));
+    }
+
+    private static TenantConfiguration tenant(String tenantId) {
+        return new TenantConfiguration(tenantId, tenantId, "key-" + tenantId, API_URL);
+    }
+}
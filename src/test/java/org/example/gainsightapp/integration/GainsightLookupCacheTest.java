@@ -0,0 +1,170 @@
+package org.example.gainsightapp.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GainsightLookupCacheTest {
+
+    private final GainsightPXClient pxClient = mock(GainsightPXClient.class);
+
+    @Test
+    void servesFreshEntriesWithoutAnUpstreamCall() {
+        GainsightLookupCache cache = cache(10, 60, 600);
+        when(pxClient.getUserById(eq("u1"), isNull())).thenReturn(ok("u1", "\"v1\""));
+
+        assertThat(cache.getUser("u1").body().get("identifyId")).isEqualTo("u1");
+        assertThat(cache.getUser("u1").body().get("identifyId")).isEqualTo("u1");
+
+        verify(pxClient, times(1)).getUserById(any(), any());
+    }
+
+    @Test
+    void expiredEntryWithETagIsRevalidated() {
+        GainsightLookupCache cache = cache(10, 0, 600);
+        when(pxClient.getUserById(eq("u1"), isNull())).thenReturn(ok("u1", "\"v1\""));
+        when(pxClient.getUserById("u1", "\"v1\"")).thenReturn(ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+
+        GainsightLookupCache.Entry first = cache.getUser("u1");
+        GainsightLookupCache.Entry second = cache.getUser("u1");
+
+        assertThat(second.status()).isEqualTo(HttpStatus.OK);
+        assertThat(second.body()).isSameAs(first.body());
+        assertThat(second.fetchedAtNanos()).isGreaterThanOrEqualTo(first.fetchedAtNanos());
+        verify(pxClient).getUserById("u1", "\"v1\"");
+    }
+
+    @Test
+    void expiredEntryWithoutETagIsRefetched() {
+        GainsightLookupCache cache = cache(10, 0, 600);
+        when(pxClient.getAccountById(eq("a1"), isNull())).thenReturn(ok("a1", null));
+
+        cache.getAccount("a1");
+        cache.getAccount("a1");
+
+        verify(pxClient, times(2)).getAccountById("a1", null);
+    }
+
+    @Test
+    void entriesPastRetentionAreDropped() {
+        GainsightLookupCache cache = cache(10, 0, 0);
+        when(pxClient.getUserById(eq("u1"), isNull())).thenReturn(ok("u1", "\"v1\""));
+
+        cache.getUser("u1");
+        cache.getUser("u1");
+
+        verify(pxClient, times(2)).getUserById("u1", null);
+    }
+
+    @Test
+    void notFoundIsCachedForItsShorterTtl() throws InterruptedException {
+        GainsightLookupCache cache = new GainsightLookupCache(pxClient,
+            new ExtractionMetrics(new SimpleMeterRegistry(), 200), 10, 60, 600, 0);
+        when(pxClient.getUserById(eq("missing"), isNull())).thenThrow(notFound());
+
+        GainsightLookupCache.Entry first = cache.getUser("missing");
+        assertThat(first.status()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(first.body().get("error")).isEqualTo("user not found: missing");
+        Thread.sleep(1);
+        cache.getUser("missing");
+        verify(pxClient, times(2)).getUserById("missing", null);
+
+        GainsightLookupCache longer = cache(10, 60, 600);
+        longer.getUser("missing");
+        longer.getUser("missing");
+        assertThat(longer.size()).isOne();
+        verify(pxClient, times(3)).getUserById("missing", null);
+    }
+
+    @Test
+    void otherErrorsAreNotCached() {
+        GainsightLookupCache cache = cache(10, 60, 600);
+        HttpServerErrorException unavailable = HttpServerErrorException.create(
+            HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", HttpHeaders.EMPTY, null, null);
+        when(pxClient.getAccountById(eq("a1"), isNull())).thenThrow(unavailable);
+
+        assertThatThrownBy(() -> cache.getAccount("a1")).isSameAs(unavailable);
+        assertThatThrownBy(() -> cache.getAccount("a1")).isSameAs(unavailable);
+
+        assertThat(cache.size()).isZero();
+        verify(pxClient, times(2)).getAccountById("a1", null);
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedAtCapacity() {
+        GainsightLookupCache cache = cache(2, 60, 600);
+        for (String id : new String[] {"u1", "u2", "u3"}) {
+            when(pxClient.getUserById(eq(id), isNull())).thenReturn(ok(id, null));
+        }
+
+        cache.getUser("u1");
+        cache.getUser("u2");
+        cache.getUser("u1");
+        cache.getUser("u3");
+        cache.getUser("u1");
+        cache.getUser("u2");
+
+        assertThat(cache.size()).isEqualTo(2);
+        verify(pxClient, times(1)).getUserById("u1", null);
+        verify(pxClient, times(2)).getUserById("u2", null);
+    }
+
+    @Test
+    void concurrentMissesShareOneUpstreamRequest() throws Exception {
+        GainsightLookupCache cache = cache(10, 60, 600);
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(pxClient.getUserById(eq("u1"), isNull())).thenAnswer(invocation -> {
+            fetching.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return ok("u1", null);
+        });
+
+        CompletableFuture<GainsightLookupCache.Entry> leader = CompletableFuture.supplyAsync(() -> cache.getUser("u1"));
+        assertThat(fetching.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<GainsightLookupCache.Entry> follower = CompletableFuture.supplyAsync(() -> cache.getUser("u1"));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThat(follower.get(5, TimeUnit.SECONDS).body()).isSameAs(leader.get(5, TimeUnit.SECONDS).body());
+        verify(pxClient, times(1)).getUserById(any(), any());
+    }
+
+    private GainsightLookupCache cache(int maxEntries, long ttlSeconds, long retentionSeconds) {
+        return new GainsightLookupCache(pxClient, new ExtractionMetrics(new SimpleMeterRegistry(), 200),
+            maxEntries, ttlSeconds, retentionSeconds, 10);
+    }
+
+    private static HttpClientErrorException notFound() {
+        return HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", HttpHeaders.EMPTY, null, null);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static ResponseEntity<Map> ok(String id, String etag) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (etag != null) {
+            builder.eTag(etag);
+        }
+        return builder.body(Map.of("identifyId", id));
+    }
+}
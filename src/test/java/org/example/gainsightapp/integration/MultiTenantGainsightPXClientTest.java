@@ -0,0 +1,133 @@
+package org.example.gainsightapp.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MultiTenantGainsightPXClientTest {
+
+    private final GainsightHttpClientPool httpClientPool = mock(GainsightHttpClientPool.class);
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private final GainsightCircuitBreakers circuitBreakers = mock(GainsightCircuitBreakers.class);
+    private final TenantConfiguration tenant = new TenantConfiguration("t1", "Acme", "key", "https://api.aptrinsic.com");
+    private AnnotationConfigApplicationContext context;
+    private MultiTenantGainsightPXClient client;
+
+    @Configuration
+    @EnableRetry
+    static class RetryConfig {
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(httpClientPool.restTemplateFor(tenant)).thenReturn(restTemplate);
+        context = new AnnotationConfigApplicationContext();
+        context.register(RetryConfig.class);
+        context.registerBean(MultiTenantGainsightPXClient.class, () -> new MultiTenantGainsightPXClient(httpClientPool,
+            new ObjectMapper(), new ExtractionMetrics(new SimpleMeterRegistry(), 200), circuitBreakers));
+        context.refresh();
+        client = context.getBean(MultiTenantGainsightPXClient.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void credentialErrorsAreNotRetried() {
+        HttpClientErrorException unauthorized = HttpClientErrorException.create(
+            HttpStatus.UNAUTHORIZED, "Unauthorized", HttpHeaders.EMPTY, null, null);
+        when(execute()).thenThrow(unauthorized);
+
+        assertThatThrownBy(() -> client.fetchEvents(tenant, "CUSTOM", null, 100, 0)).isSameAs(unauthorized);
+
+        verify(restTemplate, times(1)).execute(anyString(), eq(HttpMethod.GET), any(RequestCallback.class), any(ResponseExtractor.class));
+        verify(circuitBreakers, times(1)).recordFailure(tenant, unauthorized);
+    }
+
+    @Test
+    void transientErrorThatRecoversIsNotABreakerFailure() {
+        when(execute())
+            .thenThrow(new ResourceAccessException("connection reset"))
+            .thenReturn(success());
+
+        assertThat(client.fetchUsers(tenant, null, 100, 0).isSuccess()).isTrue();
+
+        verify(restTemplate, times(2)).execute(anyString(), eq(HttpMethod.GET), any(RequestCallback.class), any(ResponseExtractor.class));
+        verify(circuitBreakers, never()).recordFailure(any(), any());
+        verify(circuitBreakers, times(1)).recordSuccess(tenant);
+    }
+
+    @Test
+    void exhaustedRetriesCountAsOneBreakerFailure() {
+        HttpServerErrorException unavailable = HttpServerErrorException.create(
+            HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", HttpHeaders.EMPTY, null, null);
+        when(execute()).thenThrow(unavailable);
+
+        assertThatThrownBy(() -> client.fetchAccounts(tenant, null, 100, 0)).isSameAs(unavailable);
+
+        verify(restTemplate, times(GainsightRetryPolicy.MAX_ATTEMPTS))
+            .execute(anyString(), eq(HttpMethod.GET), any(RequestCallback.class), any(ResponseExtractor.class));
+        verify(circuitBreakers, times(1)).recordFailure(tenant, unavailable);
+    }
+
+    @Test
+    void blockingAndReactiveErrorsAreClassifiedAlike() {
+        assertThat(GainsightRetryPolicy.isRetryable(new ResourceAccessException("reset"))).isTrue();
+        assertThat(GainsightRetryPolicy.isRetryable(new TimeoutException())).isTrue();
+        for (HttpStatus status : new HttpStatus[] {HttpStatus.TOO_MANY_REQUESTS, HttpStatus.BAD_GATEWAY}) {
+            assertThat(GainsightRetryPolicy.isRetryable(HttpServerErrorException.create(status, "", HttpHeaders.EMPTY, null, null)))
+                .isEqualTo(GainsightRetryPolicy.isRetryable(WebClientResponseException.create(status.value(), "", HttpHeaders.EMPTY, null, null)))
+                .isTrue();
+        }
+        for (HttpStatus status : new HttpStatus[] {HttpStatus.UNAUTHORIZED, HttpStatus.FORBIDDEN, HttpStatus.NOT_FOUND}) {
+            assertThat(GainsightRetryPolicy.isRetryable(HttpClientErrorException.create(status, "", HttpHeaders.EMPTY, null, null)))
+                .isEqualTo(GainsightRetryPolicy.isRetryable(WebClientResponseException.create(status.value(), "", HttpHeaders.EMPTY, null, null)))
+                .isFalse();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private MultiTenantGainsightPXClient.GainsightResponse execute() {
+        return restTemplate.execute(anyString(), eq(HttpMethod.GET), any(RequestCallback.class),
+            (ResponseExtractor<MultiTenantGainsightPXClient.GainsightResponse>) any(ResponseExtractor.class));
+    }
+
+    private static MultiTenantGainsightPXClient.GainsightResponse success() {
+        MultiTenantGainsightPXClient.GainsightResponse response = new MultiTenantGainsightPXClient.GainsightResponse();
+        response.setSuccess(true);
+        response.setStatusCode(200);
+        return response;
+    }
+}
@@ -0,0 +1,228 @@
+package org.example.gainsightapp.loadtest;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import org.example.gainsightapp.app.GainsightAppApplication;
+import org.example.gainsightapp.model.EventPayload;
+import org.example.gainsightapp.model.ExtractionCheckpoint;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.model.TenantRunLease;
+import org.example.gainsightapp.repository.ExtractedEventRepository;
+import org.example.gainsightapp.repository.TenantConfigurationRepository;
+import org.example.gainsightapp.service.GainsightEventExtractionService;
+import org.example.gainsightapp.service.GainsightScheduledTaskService;
+import org.example.gainsightapp.service.TenantRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * End-to-end extraction load test against {@link GainsightPXSimulator}.
+ *
+ * Drives {@link GainsightEventExtractionService#extractEventsForAllTenants()} for N synthetic
+ * tenants and logs events/sec, p50/p99 page latency, DB write rate and peak heap. Excluded
+ * from the default build; run with {@code mvn test -Ploadtest} against a local MongoDB
+ * ({@code -Dloadtest.mongodb.uri=...}, default {@code mongodb://localhost:27017/gainsight_loadtest}).
+ * Sizing knobs: {@code loadtest.tenants}, {@code loadtest.pages}, {@code loadtest.eventsPerPage},
+ * {@code loadtest.latencyMs}, {@code loadtest.paddingBytes}, {@code loadtest.throttleRate},
+ * {@code loadtest.errorRate}, {@code loadtest.gzip}.
+ */
+@Tag("load")
+@SpringBootTest(classes = GainsightAppApplication.class, webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class ExtractionLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionLoadTest.class);
+
+    private static final String MONGODB_URI =
+        System.getProperty("loadtest.mongodb.uri", "mongodb://localhost:27017/gainsight_loadtest");
+
+    private static GainsightPXSimulator simulator;
+
+    // Keep the scheduled sweeps out of the measured run
+    @MockitoBean
+    private GainsightScheduledTaskService scheduledTaskService;
+
+    @Autowired
+    private GainsightEventExtractionService extractionService;
+
+    @Autowired
+    private TenantConfigurationRepository tenantRepository;
+
+    @Autowired
+    private TenantRegistry tenantRegistry;
+
+    @Autowired
+    private ExtractedEventRepository eventRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        String database = new ConnectionString(MONGODB_URI).getDatabase();
+        registry.add("spring.data.mongodb.uri", () -> MONGODB_URI);
+        registry.add("spring.data.mongodb.database", () -> database != null ? database : "gainsight_loadtest");
+    }
+
+    @BeforeAll
+    static void startSimulator() throws Exception {
+        assumeTrue(mongoAvailable(), "MongoDB not reachable at " + MONGODB_URI);
+
+        GainsightPXSimulator.Settings settings = new GainsightPXSimulator.Settings();
+        settings.pagesPerStream = Integer.getInteger("loadtest.pages", 10);
+        settings.eventsPerPage = Integer.getInteger("loadtest.eventsPerPage", 100);
+        settings.latencyMillis = Long.getLong("loadtest.latencyMs", 50L);
+        settings.paddingBytes = Integer.getInteger("loadtest.paddingBytes", 0);
+        settings.throttleRate = Double.parseDouble(System.getProperty("loadtest.throttleRate", "0.0"));
+        settings.errorRate = Double.parseDouble(System.getProperty("loadtest.errorRate", "0.0"));
+        settings.gzip = Boolean.parseBoolean(System.getProperty("loadtest.gzip", "true"));
+        simulator = new GainsightPXSimulator(settings).start();
+    }
+
+    @AfterAll
+    static void stopSimulator() {
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    @BeforeEach
+    void resetData() {
+        tenantRepository.deleteAll();
+        eventRepository.deleteAll();
+        // Leases and checkpoints left by an earlier run would skip tenants or resume mid-stream
+        mongoTemplate.remove(new Query(), TenantRunLease.class);
+        mongoTemplate.remove(new Query(), ExtractionCheckpoint.class);
+        mongoTemplate.remove(new Query(), EventPayload.class);
+
+        int tenants = Integer.getInteger("loadtest.tenants", 20);
+        List<TenantConfiguration> configurations = new ArrayList<>();
+        for (int i = 0; i < tenants; i++) {
+            TenantConfiguration tenant = new TenantConfiguration(
+                "loadtest-" + i, "Load Test " + i, GainsightPXSimulator.apiKeyFor(i), simulator.baseUrl());
+            tenant.setActive(true);
+            tenant.setExtractCustomEvents(true);
+            tenant.setExtractStandardEvents(true);
+            configurations.add(tenant);
+        }
+        tenantRepository.saveAll(configurations);
+        // Written behind the registry's back; a standalone mongod has no change stream
+        tenantRegistry.reload();
+    }
+
+    @Test
+    void extractAllTenants() {
+        resetPeakHeap();
+        long requestsBefore = simulator.getRequests();
+        long started = System.nanoTime();
+
+        extractionService.extractEventsForAllTenants();
+
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        long events = eventRepository.count();
+        long tenantsWithErrors = tenantRepository.findTenantsWithErrors().size();
+
+        logger.info(String.join(System.lineSeparator(),
+            "",
+            "=== Extraction load test ===",
+            String.format("tenants            %d (%d with errors)", tenantRepository.count(), tenantsWithErrors),
+            String.format("duration           %.2f s", seconds),
+            String.format("events stored      %d (%.0f events/s)", events, events / seconds),
+            String.format("api requests       %d (throttled %d, failed %d, %.1f MB served)",
+                simulator.getRequests() - requestsBefore, simulator.getThrottled(), simulator.getFailed(),
+                simulator.getBytesServed() / (1024.0 * 1024.0)),
+            String.format("transfer           %.1f MB on the wire, %.1f MB decoded",
+                counterTotal("gainsight.transfer.wire.bytes") / (1024.0 * 1024.0),
+                counterTotal("gainsight.transfer.decoded.bytes") / (1024.0 * 1024.0)),
+            String.format("page latency       p50 %.1f ms, p99 %.1f ms",
+                fetchLatencyPercentile(0.50), fetchLatencyPercentile(0.99)),
+            String.format("db write rate      %.0f events/s wall clock, %.0f events/s per writer (%.2f s in saveAll)",
+                events / seconds, events / Math.max(persistSeconds(), 1e-9), persistSeconds()),
+            String.format("peak heap used     %.1f MB", peakHeapBytes() / (1024.0 * 1024.0))));
+
+        assertTrue(events > 0, "No events were extracted");
+    }
+
+    /** Merges the fetch latency histograms of all tenants and reads the percentile off the buckets. */
+    private double fetchLatencyPercentile(double percentile) {
+        Map<Double, Double> cumulative = new TreeMap<>();
+        long total = 0;
+        for (Timer timer : meterRegistry.find("gainsight.fetch.latency").timers()) {
+            total += timer.count();
+            for (CountAtBucket bucket : timer.takeSnapshot().histogramCounts()) {
+                cumulative.merge(bucket.bucket(TimeUnit.MILLISECONDS), bucket.count(), Double::sum);
+            }
+        }
+        double target = percentile * total;
+        for (Map.Entry<Double, Double> bucket : cumulative.entrySet()) {
+            if (bucket.getValue() >= target) {
+                return bucket.getKey();
+            }
+        }
+        return Double.NaN;
+    }
+
+    private double counterTotal(String name) {
+        return meterRegistry.find(name).counters().stream().mapToDouble(Counter::count).sum();
+    }
+
+    private double persistSeconds() {
+        return meterRegistry.find("gainsight.persist.latency").timers().stream()
+            .mapToDouble(timer -> timer.totalTime(TimeUnit.SECONDS))
+            .sum();
+    }
+
+    private static void resetPeakHeap() {
+        ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    private static long peakHeapBytes() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .mapToLong(pool -> pool.getPeakUsage().getUsed())
+            .sum();
+    }
+
+    private static boolean mongoAvailable() {
+        try (MongoClient client = MongoClients.create(MONGODB_URI + (MONGODB_URI.contains("?") ? "&" : "?")
+                + "serverSelectionTimeoutMS=2000")) {
+            client.getDatabase("admin").runCommand(new org.bson.Document("ping", 1));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
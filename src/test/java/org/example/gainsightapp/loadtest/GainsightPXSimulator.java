@@ -0,0 +1,226 @@
+package org.example.gainsightapp.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.gainsightapp.fixtures.GainsightPageFixtures;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process stand-in for the Gainsight PX REST API.
+ *
+ * Serves {@code /v1/events}, {@code /v1/events/custom}, {@code /v1/users} and {@code /v1/accounts} with scroll
+ * pagination. Each tenant is identified by its bearer token and gets
+ * {@link Settings#pagesPerStream} pages per endpoint; event ids are derived from
+ * (tenant, endpoint, page), so re-running an extraction produces the same ids.
+ * Latency, payload padding, 429 throttling and 5xx errors are injected per request.
+ * Bodies are gzip-encoded when the client accepts it and {@link Settings#gzip} is set.
+ */
+public class GainsightPXSimulator implements AutoCloseable {
+
+    public static class Settings {
+        public int pagesPerStream = 10;
+        public int eventsPerPage = 100;
+        public long latencyMillis = 50;
+        public long latencyJitterMillis = 25;
+        public int paddingBytes = 0;
+        public double throttleRate = 0.0;
+        public double errorRate = 0.0;
+        public boolean gzip = true;
+    }
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    public GainsightPXSimulator(Settings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/events/custom", exchange -> handle(exchange, Stream.CUSTOM));
+        server.createContext("/v1/events", exchange -> handle(exchange, Stream.STANDARD));
+        server.createContext("/v1/users", exchange -> handle(exchange, Stream.USERS));
+        server.createContext("/v1/accounts", exchange -> handle(exchange, Stream.ACCOUNTS));
+        server.setExecutor(executor);
+    }
+
+    public GainsightPXSimulator start() {
+        server.start();
+        return this;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public static String apiKeyFor(int tenantIndex) {
+        return "loadtest-key-" + tenantIndex;
+    }
+
+    public long getRequests() { return requests.get(); }
+    public long getThrottled() { return throttled.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getBytesServed() { return bytesServed.get(); }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private enum Stream { CUSTOM, STANDARD, USERS, ACCOUNTS }
+
+    private void handle(HttpExchange exchange, Stream stream) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            injectLatency();
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < settings.throttleRate) {
+                throttled.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 429, "{\"message\":\"Too Many Requests\"}");
+                return;
+            }
+            if (random.nextDouble() < settings.errorRate) {
+                failed.incrementAndGet();
+                send(exchange, 500, "{\"message\":\"Internal Server Error\"}");
+                return;
+            }
+
+            int tenantIndex = tenantIndex(exchange);
+            if (tenantIndex < 0) {
+                send(exchange, 401, "{\"message\":\"Unauthorized\"}");
+                return;
+            }
+
+            Map<String, String> query = query(exchange.getRequestURI());
+            int page = page(query.get("scrollId"));
+            int pageSize = query.containsKey("pageSize")
+                ? Math.min(Integer.parseInt(query.get("pageSize")), settings.eventsPerPage)
+                : settings.eventsPerPage;
+            boolean hasMore = page + 1 < settings.pagesPerStream;
+            String nextScrollId = hasMore ? stream.name() + ":" + (page + 1) : null;
+            long seed = ((long) tenantIndex << 40) | ((long) stream.ordinal() << 32) | page;
+
+            ObjectNode body = switch (stream) {
+                case USERS -> GainsightPageFixtures.userPageNode(objectMapper, pageSize, seed, nextScrollId, hasMore);
+                case ACCOUNTS -> GainsightPageFixtures.accountPageNode(objectMapper, pageSize, seed, nextScrollId, hasMore);
+                case CUSTOM -> GainsightPageFixtures.pageNode(objectMapper, GainsightPageFixtures.Shape.CUSTOM,
+                    pageSize, seed, nextScrollId, hasMore);
+                case STANDARD -> GainsightPageFixtures.pageNode(objectMapper, GainsightPageFixtures.Shape.STANDARD,
+                    pageSize, seed, nextScrollId, hasMore);
+            };
+            pad(body);
+
+            send(exchange, 200, objectMapper.writeValueAsString(body));
+        }
+    }
+
+    private void injectLatency() {
+        long latency = settings.latencyMillis;
+        if (settings.latencyJitterMillis > 0) {
+            latency += ThreadLocalRandom.current().nextLong(settings.latencyJitterMillis + 1);
+        }
+        if (latency <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void pad(ObjectNode body) {
+        if (settings.paddingBytes <= 0) {
+            return;
+        }
+        String padding = "x".repeat(settings.paddingBytes);
+        body.properties().forEach(field -> {
+            if (field.getValue() instanceof ArrayNode items) {
+                items.forEach(item -> ((ObjectNode) item).put("padding", padding));
+            }
+        });
+    }
+
+    private int tenantIndex(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        String prefix = "Bearer loadtest-key-";
+        if (authorization == null || !authorization.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(authorization.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private int page(String scrollId) {
+        if (scrollId == null || scrollId.isEmpty()) {
+            return 0;
+        }
+        int separator = scrollId.lastIndexOf(':');
+        try {
+            return Integer.parseInt(scrollId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private Map<String, String> query(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String rawQuery = uri.getRawQuery();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(pair.substring(0, separator),
+                    java.net.URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (settings.gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        bytesServed.addAndGet(bytes.length);
+    }
+}
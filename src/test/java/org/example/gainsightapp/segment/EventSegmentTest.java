@@ -0,0 +1,146 @@
+package org.example.gainsightapp.segment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventSegmentTest {
+
+    private static final long DAY_START = 1_714_521_600_000L; // 2024-05-01T00:00Z
+    private static final int HOUR = 3_600_000;
+    private static final String[] NAMES = {"login", "page_view", "feature_used", "logout"};
+    private static final String[] TYPES = {"CUSTOM", "STANDARD"};
+    private static final String[] PLANS = {"free", "pro", "enterprise", null};
+
+    @TempDir
+    Path directory;
+
+    private record Row(String name, String type, int offset, String user, String plan) {}
+
+    @Test
+    void aggregateMatchesARecountOfTheRows() throws IOException {
+        List<Row> rows = rows(5_000, new Random(42));
+        EventSegment segment = write(rows);
+
+        int[] hours = new int[25];
+        for (int i = 0; i < hours.length; i++) {
+            hours[i] = i * HOUR;
+        }
+        int[] day = {0, 24 * HOUR};
+        List<EventSegment.Filter> filters = List.of(
+            new EventSegment.Filter(null, null, Map.of()),
+            new EventSegment.Filter("CUSTOM", null, Map.of()),
+            new EventSegment.Filter(null, Set.of("login", "logout"), Map.of()),
+            new EventSegment.Filter("STANDARD", Set.of("page_view"), Map.of("plan", "pro")),
+            new EventSegment.Filter(null, null, Map.of("plan", "enterprise")));
+        for (EventSegment.Filter filter : filters) {
+            assertThat(segment.aggregate(filter, hours)).as("hourly %s", filter)
+                .containsExactlyInAnyOrderElementsOf(recount(rows, filter, hours));
+            assertThat(segment.aggregate(filter, day)).as("daily %s", filter)
+                .containsExactlyInAnyOrderElementsOf(recount(rows, filter, day));
+        }
+    }
+
+    @Test
+    void headerIsReadBack() throws IOException {
+        List<Row> rows = rows(10, new Random(7));
+        EventSegment segment = write(rows);
+
+        assertThat(segment.dayStart()).isEqualTo(DAY_START);
+        assertThat(segment.rows()).isEqualTo(10);
+        assertThat(segment.columns()).containsExactly("plan");
+        assertThat(segment.bytes()).isPositive();
+    }
+
+    @Test
+    void unknownValuesMatchNothingAndUnknownColumnsAreRefused() throws IOException {
+        EventSegment segment = write(rows(100, new Random(1)));
+        int[] day = {0, 24 * HOUR};
+
+        assertThat(segment.aggregate(new EventSegment.Filter("OTHER", null, Map.of()), day)).isEmpty();
+        assertThat(segment.aggregate(new EventSegment.Filter(null, Set.of("missing"), Map.of()), day)).isEmpty();
+        assertThat(segment.aggregate(new EventSegment.Filter(null, null, Map.of("plan", "gold")), day)).isEmpty();
+        assertThatThrownBy(() -> segment.aggregate(new EventSegment.Filter(null, null, Map.of("region", "eu")), day))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> segment.aggregate(new EventSegment.Filter(null, null, Map.of()), new int[] {0}))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void writerRefusesTimestampsOutsideTheDay() {
+        EventSegmentWriter writer = new EventSegmentWriter(DAY_START, List.of());
+
+        assertThatThrownBy(() -> writer.add("login", "CUSTOM", DAY_START - 1, "u1", new String[0]))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private EventSegment write(List<Row> rows) throws IOException {
+        EventSegmentWriter writer = new EventSegmentWriter(DAY_START, List.of("plan"));
+        for (Row row : rows) {
+            writer.add(row.name(), row.type(), DAY_START + row.offset(), row.user(), new String[] {row.plan()});
+        }
+        Path path = directory.resolve("t1").resolve("2024-05-01.seg");
+        writer.write(path);
+        return EventSegment.open(path);
+    }
+
+    private static List<Row> rows(int count, Random random) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new Row(NAMES[random.nextInt(NAMES.length)], TYPES[random.nextInt(TYPES.length)],
+                random.nextInt(24 * HOUR), random.nextInt(10) == 0 ? null : "user-" + random.nextInt(200),
+                PLANS[random.nextInt(PLANS.length)]));
+        }
+        return rows;
+    }
+
+    // The obvious way: count every matching row into its name and bucket
+    private static List<EventSegment.Group> recount(List<Row> rows, EventSegment.Filter filter, int[] boundaries) {
+        Map<String, long[]> events = new TreeMap<>();
+        Map<String, List<Set<String>>> users = new HashMap<>();
+        for (Row row : rows) {
+            if ((filter.eventType() != null && !filter.eventType().equals(row.type()))
+                    || (filter.eventNames() != null && !filter.eventNames().contains(row.name()))
+                    || (filter.columns().containsKey("plan") && !filter.columns().get("plan").equals(row.plan()))) {
+                continue;
+            }
+            for (int bucket = 0; bucket < boundaries.length - 1; bucket++) {
+                if (row.offset() >= boundaries[bucket] && row.offset() < boundaries[bucket + 1]) {
+                    events.computeIfAbsent(row.name(), key -> new long[boundaries.length - 1])[bucket]++;
+                    if (row.user() != null) {
+                        users.computeIfAbsent(row.name(), key -> {
+                            List<Set<String>> sets = new ArrayList<>();
+                            for (int i = 0; i < boundaries.length - 1; i++) {
+                                sets.add(new HashSet<>());
+                            }
+                            return sets;
+                        }).get(bucket).add(row.user());
+                    }
+                }
+            }
+        }
+        List<EventSegment.Group> groups = new ArrayList<>();
+        events.forEach((name, counts) -> {
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                if (counts[bucket] > 0) {
+                    long distinct = users.containsKey(name) ? users.get(name).get(bucket).size() : 0;
+                    groups.add(new EventSegment.Group(name, bucket, counts[bucket], distinct));
+                }
+            }
+        });
+        return groups;
+    }
+}
@@ -0,0 +1,200 @@
+package org.example.gainsightapp.service;
+
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers;
+import org.example.gainsightapp.integration.GainsightPXClient;
+import org.example.gainsightapp.integration.MultiTenantGainsightPXClient;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.PendingCustomEvent;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomEventIngestionServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final MultiTenantGainsightPXClient tenantClient = mock(MultiTenantGainsightPXClient.class);
+    private final TenantRegistry tenantRegistry = mock(TenantRegistry.class);
+    private final ExtractionMetrics metrics = new ExtractionMetrics(new SimpleMeterRegistry(), 200);
+    private final TenantConfiguration tenant = new TenantConfiguration("t1", "Acme", "key", "https://api.aptrinsic.com");
+    private CustomEventIngestionService service;
+
+    @BeforeEach
+    void setUp() {
+        when(tenantRegistry.getTenant("t1")).thenReturn(Optional.of(tenant));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(PendingCustomEvent.class)))
+            .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PendingCustomEvent.class)).thenReturn(bulk);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void dueEventsAreClaimedUnderOneTokenAndRemovedOnceDelivered() {
+        service = service(breakers(60));
+        waiting(event("p1", 0), event("p2", 0));
+
+        service.flushSafely();
+
+        List<Update> updates = updates();
+        Document claim = updates.get(1).getUpdateObject().get("$set", Document.class);
+        assertThat(claim.get("status")).isEqualTo(PendingCustomEvent.Status.SENDING);
+        ArgumentCaptor<Query> finds = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(finds.capture(), eq(PendingCustomEvent.class));
+        assertThat(finds.getAllValues().get(1).getQueryObject().get("claimToken")).isEqualTo(claim.get("claimToken"));
+        verify(tenantClient, times(2)).sendCustomEvent(eq(tenant), anyString());
+        verify(mongoTemplate).remove(any(Query.class), eq(PendingCustomEvent.class));
+    }
+
+    @Test
+    void transientErrorIsRetriedWithBackoff() {
+        service = service(breakers(60));
+        waiting(event("p1", 2));
+        when(tenantClient.sendCustomEvent(eq(tenant), anyString())).thenThrow(HttpServerErrorException.create(
+            HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", HttpHeaders.EMPTY, null, null));
+
+        LocalDateTime before = LocalDateTime.now();
+        service.flushSafely();
+
+        Document set = bulkUpdate().get("$set", Document.class);
+        assertThat(set.get("status")).isEqualTo(PendingCustomEvent.Status.PENDING);
+        assertThat(set.get("attempts")).isEqualTo(3);
+        // Third attempt: 1s doubled twice
+        assertThat((LocalDateTime) set.get("nextAttemptAt"))
+            .isAfterOrEqualTo(before.plusSeconds(4))
+            .isBefore(LocalDateTime.now().plusSeconds(5));
+    }
+
+    @Test
+    void clientErrorFailsTheEvent() {
+        service = service(breakers(60));
+        waiting(event("p1", 0));
+        when(tenantClient.sendCustomEvent(eq(tenant), anyString())).thenThrow(HttpClientErrorException.create(
+            HttpStatus.BAD_REQUEST, "Bad Request", HttpHeaders.EMPTY, null, null));
+
+        service.flushSafely();
+
+        Document set = bulkUpdate().get("$set", Document.class);
+        assertThat(set.get("status")).isEqualTo(PendingCustomEvent.Status.FAILED);
+        assertThat(set.get("attempts")).isEqualTo(1);
+    }
+
+    @Test
+    void openCircuitDefersEventsWithoutUsingAttempts() {
+        GainsightCircuitBreakers breakers = breakers(60);
+        breakers.recordFailure(tenant, unauthorized());
+        service = service(breakers);
+        waiting(event("p1", 1), event("p2", 1));
+
+        service.flushSafely();
+
+        verify(tenantClient, never()).sendCustomEvent(any(), anyString());
+        Document set = updates().get(2).getUpdateObject().get("$set", Document.class);
+        assertThat(set.get("status")).isEqualTo(PendingCustomEvent.Status.PENDING);
+        assertThat(set).doesNotContainKey("attempts");
+    }
+
+    @Test
+    void throttledProbeHandsItsSlotBack() {
+        GainsightCircuitBreakers breakers = breakers(0);
+        breakers.recordFailure(tenant, unauthorized());
+        service = service(breakers);
+        waiting(event("p1", 0), event("p2", 0));
+        when(tenantClient.sendCustomEvent(eq(tenant), anyString())).thenThrow(HttpClientErrorException.create(
+            HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", HttpHeaders.EMPTY, null, null));
+
+        service.flushSafely();
+
+        // Only the probe went out, and the next flush may probe again
+        verify(tenantClient, times(1)).sendCustomEvent(eq(tenant), anyString());
+        assertThat(breakers.tryAcquire(tenant)).isEqualTo(GainsightCircuitBreakers.Permission.PROBE);
+    }
+
+    @Test
+    void expiredClaimsAreReleased() {
+        service = service(breakers(60));
+        waiting();
+
+        service.flushSafely();
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(queries.capture(), updates.capture(), eq(PendingCustomEvent.class));
+        Document query = queries.getValue().getQueryObject();
+        assertThat(query.get("status")).isEqualTo(PendingCustomEvent.Status.SENDING);
+        assertThat(query.get("claimedAt", Document.class)).containsKey("$lt");
+        assertThat(updates.getValue().getUpdateObject().get("$set", Document.class).get("status"))
+            .isEqualTo(PendingCustomEvent.Status.PENDING);
+        assertThat(updates.getValue().getUpdateObject().get("$unset", Document.class)).containsKey("claimToken");
+    }
+
+    private CustomEventIngestionService service(GainsightCircuitBreakers breakers) {
+        return new CustomEventIngestionService(mongoTemplate, mock(GainsightPXClient.class), tenantClient,
+            tenantRegistry, breakers, metrics, 1000, 10, 1000, 2, 8, 300);
+    }
+
+    private GainsightCircuitBreakers breakers(long openDurationSeconds) {
+        return new GainsightCircuitBreakers(3, 10, openDurationSeconds, 3600, metrics);
+    }
+
+    // Both the due-events query and the claimed-events query return the batch
+    private void waiting(PendingCustomEvent... events) {
+        when(mongoTemplate.find(any(Query.class), eq(PendingCustomEvent.class))).thenReturn(new ArrayList<>(List.of(events)));
+    }
+
+    private List<Update> updates() {
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, atLeast(2)).updateMulti(any(Query.class), updates.capture(), eq(PendingCustomEvent.class));
+        return updates.getAllValues();
+    }
+
+    private Document bulkUpdate() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulk).updateOne(any(Query.class), update.capture());
+        verify(bulk).execute();
+        return update.getValue().getUpdateObject();
+    }
+
+    private static HttpClientErrorException unauthorized() {
+        return HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized", HttpHeaders.EMPTY, null, null);
+    }
+
+    private static PendingCustomEvent event(String id, int attempts) {
+        PendingCustomEvent event = new PendingCustomEvent("t1", "{\"eventName\":\"signup\"}", LocalDateTime.now());
+        event.setId(id);
+        event.setAttempts(attempts);
+        return event;
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EventAggregationServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final EventQueryService eventQueryService = mock(EventQueryService.class);
+    private final ExtractionCheckpointStore checkpointStore = mock(ExtractionCheckpointStore.class);
+    private final EventSegmentService segmentService = mock(EventSegmentService.class);
+    private final PropertyPromotionService promotionService = mock(PropertyPromotionService.class);
+    private final EventAggregationService service = new EventAggregationService(mongoTemplate, eventQueryService,
+        checkpointStore, segmentService, promotionService, new ExtractionMetrics(new SimpleMeterRegistry(), 200),
+        10_000, 30_000, 100);
+
+    private final EventAggregationService.AggregationQuery query = new EventAggregationService.AggregationQuery(
+        "t1", null, null, null, null, Map.of("plan", "enterprise"), null);
+
+    @BeforeEach
+    void setUp() {
+        when(eventQueryService.resolveProperties("t1", Map.of("plan", "enterprise"))).thenReturn(Map.of());
+        when(eventQueryService.indexFor(anyBoolean(), anyBoolean(), eq(Set.of()))).thenReturn(ExtractedEvent.IDX_TENANT_TS);
+        when(segmentService.zone()).thenReturn(ZoneOffset.UTC);
+        when(checkpointStore.watermark("t1")).thenReturn(10L);
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Document.class))).thenReturn(new AggregationResults<>(
+            List.of(new Document("_id", new Document("name", "login")).append("events", 5).append("users", 2)),
+            new Document()));
+    }
+
+    @Test
+    void unchangedTenantIsServedFromTheCache() {
+        assertThat(service.aggregate(query).cached()).isFalse();
+        EventAggregationService.AggregationResult second = service.aggregate(query);
+
+        assertThat(second.cached()).isTrue();
+        assertThat(second.buckets()).containsExactly(new EventAggregationService.Bucket("login", null, 5, 2));
+        verify(mongoTemplate, times(1)).aggregate(any(TypedAggregation.class), eq(Document.class));
+    }
+
+    @Test
+    void newEventsInvalidateTheCachedResult() {
+        service.aggregate(query);
+        when(checkpointStore.watermark("t1")).thenReturn(11L);
+
+        assertThat(service.aggregate(query).cached()).isFalse();
+        verify(mongoTemplate, times(2)).aggregate(any(TypedAggregation.class), eq(Document.class));
+    }
+
+    @Test
+    void promotionChangesInvalidateTheCachedResult() {
+        service.aggregate(query);
+        when(promotionService.version("t1")).thenReturn(1L);
+
+        assertThat(service.aggregate(query).cached()).isFalse();
+        assertThat(service.aggregate(query).cached()).isTrue();
+        verify(mongoTemplate, times(2)).aggregate(any(TypedAggregation.class), eq(Document.class));
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.EntitySnapshot;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.repository.EntitySnapshotRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EventEnricherTest {
+
+    private final EntitySnapshotRepository repository = mock(EntitySnapshotRepository.class);
+    private final EventEnricher enricher = new EventEnricher(repository, new ObjectMapper(),
+        new ExtractionMetrics(new SimpleMeterRegistry(), 200), true, "email,plan", "name", 100, 600);
+    private final TenantConfiguration tenant = new TenantConfiguration("t1", "Acme", "key", "https://api.aptrinsic.com");
+
+    @Test
+    void missesOfAPageAreLoadedWithOneQueryPerKind() {
+        when(repository.findByTenantIdAndKindAndEntityIdIn("t1", EntitySnapshot.Kind.USER, Set.of("u1", "u2")))
+            .thenReturn(List.of(snapshot("u1", "a1", "{\"email\":\"u1@example.com\",\"plan\":null,\"age\":40}"),
+                snapshot("u2", "a2", "{\"email\":\"u2@example.com\"}")));
+        when(repository.findByTenantIdAndKindAndEntityIdIn("t1", EntitySnapshot.Kind.ACCOUNT, Set.of("a1", "a2")))
+            .thenReturn(List.of(snapshot("a1", null, "{\"name\":\"Acme\"}")));
+        List<ExtractedEvent> events = List.of(event("u1", "a1"), event("u2", "a2"), event("u1", null));
+
+        enricher.enrich(tenant, "CUSTOM", events);
+
+        assertThat(events.get(0).getUserAttributes()).isEqualTo(Map.of("email", "u1@example.com"));
+        assertThat(events.get(0).getAccountAttributes()).isEqualTo(Map.of("name", "Acme"));
+        assertThat(events.get(1).getAccountAttributes()).isNull();
+        verify(repository, times(1)).findByTenantIdAndKindAndEntityIdIn(eq("t1"), eq(EntitySnapshot.Kind.USER), anyCollection());
+        verify(repository, times(1)).findByTenantIdAndKindAndEntityIdIn(eq("t1"), eq(EntitySnapshot.Kind.ACCOUNT), anyCollection());
+    }
+
+    @Test
+    void idsWithoutASnapshotAreCachedAsAbsent() {
+        when(repository.findByTenantIdAndKindAndEntityIdIn(any(), any(), anyCollection())).thenReturn(List.of());
+
+        enricher.enrich(tenant, "CUSTOM", List.of(event("ghost", "nowhere")));
+        List<ExtractedEvent> second = List.of(event("ghost", "nowhere"));
+        enricher.enrich(tenant, "CUSTOM", second);
+
+        assertThat(second.get(0).getUserAttributes()).isNull();
+        assertThat(second.get(0).getAccountAttributes()).isNull();
+        verify(repository, times(2)).findByTenantIdAndKindAndEntityIdIn(any(), any(), anyCollection());
+        assertThat(enricher.cacheSize()).isEqualTo(2);
+    }
+
+    @Test
+    void accountIsTakenFromTheUserSnapshotWhenTheEventHasNone() {
+        when(repository.findByTenantIdAndKindAndEntityIdIn("t1", EntitySnapshot.Kind.USER, Set.of("u1")))
+            .thenReturn(List.of(snapshot("u1", "a1", "{\"email\":\"u1@example.com\"}")));
+        when(repository.findByTenantIdAndKindAndEntityIdIn("t1", EntitySnapshot.Kind.ACCOUNT, Set.of("a1")))
+            .thenReturn(List.of(snapshot("a1", null, "{\"name\":\"Acme\"}")));
+        ExtractedEvent event = event("u1", null);
+
+        enricher.enrich(tenant, "STANDARD", List.of(event));
+
+        assertThat(event.getAccountId()).isEqualTo("a1");
+        assertThat(event.getAccountAttributes()).isEqualTo(Map.of("name", "Acme"));
+    }
+
+    @Test
+    void disabledEnricherLeavesEventsAlone() {
+        EventEnricher disabled = new EventEnricher(repository, new ObjectMapper(),
+            new ExtractionMetrics(new SimpleMeterRegistry(), 200), false, "email", "name", 100, 600);
+        ExtractedEvent event = event("u1", "a1");
+
+        disabled.enrich(tenant, "CUSTOM", List.of(event));
+
+        assertThat(event.getUserAttributes()).isNull();
+        verify(repository, never()).findByTenantIdAndKindAndEntityIdIn(any(), any(), anyCollection());
+    }
+
+    private static ExtractedEvent event(String identifyId, String accountId) {
+        ExtractedEvent event = new ExtractedEvent();
+        event.setTenantId("t1");
+        event.setIdentifyId(identifyId);
+        event.setAccountId(accountId);
+        return event;
+    }
+
+    private static EntitySnapshot snapshot(String entityId, String accountId, String data) {
+        EntitySnapshot snapshot = new EntitySnapshot();
+        snapshot.setEntityId(entityId);
+        snapshot.setAccountId(accountId);
+        snapshot.setData(data);
+        return snapshot;
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.gainsightapp.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.EventPayload;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertEvent;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EventQueryServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final IndexOperations indexOps = mock(IndexOperations.class);
+    private final PropertyPromotionService promotionService = mock(PropertyPromotionService.class);
+
+    @Test
+    void picksTheIndexForTheFilters() {
+        EventQueryService service = service(30_000);
+        service.ensureIndexes();
+
+        assertThat(service.indexFor(false, false, Set.of())).isEqualTo(ExtractedEvent.IDX_TENANT_TS);
+        assertThat(service.indexFor(true, false, Set.of())).isEqualTo(ExtractedEvent.IDX_TENANT_TYPE_TS);
+        assertThat(service.indexFor(false, true, Set.of())).isEqualTo(ExtractedEvent.IDX_TENANT_NAME_TS);
+        assertThat(service.indexFor(true, true, Set.of())).isEqualTo(ExtractedEvent.IDX_TENANT_NAME_TS);
+    }
+
+    @Test
+    void promotedPropertyUsesItsOwnIndexOrIsRefused() {
+        EventQueryService service = service(30_000);
+        service.ensureIndexes();
+        PropertyPromotionService.PromotedProperty plan = PropertyPromotionService.PromotedProperty.parse("globalContext.plan");
+        when(promotionService.isIndexed(plan)).thenReturn(true);
+
+        assertThat(service.indexFor(true, true, Set.of(plan))).isEqualTo("idx_promoted_globalContext_plan");
+
+        when(promotionService.isIndexed(plan)).thenReturn(false);
+        assertThatThrownBy(() -> service.indexFor(false, false, Set.of(plan)))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("idx_promoted_globalContext_plan");
+    }
+
+    @Test
+    void missingIndexIsRefusedUntilItsBackoffHasPassed() {
+        EventQueryService service = service(60_000);
+        when(indexOps.createIndex(any(Index.class))).thenThrow(new IllegalStateException("not primary"));
+        service.ensureIndexes();
+        when(indexOps.createIndex(any(Index.class))).thenReturn(ExtractedEvent.IDX_TENANT_TS);
+
+        assertThatThrownBy(() -> service.indexFor(false, false, Set.of()))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining(ExtractedEvent.IDX_TENANT_TS);
+        // Only the startup attempts so far
+        verify(indexOps, times(3)).createIndex(any(Index.class));
+    }
+
+    @Test
+    void missingIndexIsCreatedAgainByALaterQuery() throws InterruptedException {
+        EventQueryService service = service(1);
+        when(indexOps.createIndex(any(Index.class))).thenThrow(new IllegalStateException("not primary"));
+        service.ensureIndexes();
+        Thread.sleep(5);
+
+        // The retry fails too and backs off again
+        assertThatThrownBy(() -> service.indexFor(false, false, Set.of())).isInstanceOf(IllegalStateException.class);
+        verify(indexOps, times(4)).createIndex(any(Index.class));
+
+        when(indexOps.createIndex(any(Index.class))).thenReturn(ExtractedEvent.IDX_TENANT_TS);
+        Thread.sleep(5);
+        assertThat(service.indexFor(false, false, Set.of())).isEqualTo(ExtractedEvent.IDX_TENANT_TS);
+        assertThat(service.indexFor(false, false, Set.of())).isEqualTo(ExtractedEvent.IDX_TENANT_TS);
+        verify(indexOps, times(5)).createIndex(any(Index.class));
+    }
+
+    @Test
+    void templatedPayloadIsRestoredWhenOnlyEventDataIsProjected() {
+        // Store a content-addressed body, as extraction does
+        BulkOperations bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EventPayload.class)).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()));
+        PayloadStore payloadStore = new PayloadStore(mongoTemplate,
+            new ExtractionMetrics(new SimpleMeterRegistry(), 200), "content-addressed", 100);
+        String body = "{\"eventId\":\"e-1\",\"eventType\":\"HEARTBEAT\"}";
+        ExtractedEvent stored = new ExtractedEvent();
+        stored.setTenantId("t1");
+        stored.setEventId("e-1");
+        stored.setEventTimestamp(LocalDateTime.now());
+        stored.setEventData(body);
+        payloadStore.store("t1", List.of(stored));
+
+        // Read it back with only the projected fields, converted as MongoTemplate would
+        when(mongoTemplate.find(any(Query.class), eq(ExtractedEvent.class))).thenAnswer(invocation -> {
+            Document fields = invocation.<Query>getArgument(0).getFieldsObject();
+            ExtractedEvent read = new ExtractedEvent();
+            read.setTenantId(stored.getTenantId());
+            if (fields.containsKey("eventId")) {
+                read.setEventId(stored.getEventId());
+            }
+            if (fields.containsKey("payloadHash")) {
+                read.setPayloadHash(stored.getPayloadHash());
+            }
+            payloadStore.onAfterConvert(new AfterConvertEvent<>(new Document(), read, "extracted_events"));
+            return List.of(read);
+        });
+        EventQueryService service = service(30_000);
+        service.ensureIndexes();
+
+        EventQueryService.EventQueryResult result = service.find(new EventQueryService.EventQuery(
+            "t1", null, null, null, null, Map.of(), Set.of("eventData"), 10));
+
+        assertThat(result.events()).hasSize(1);
+        assertThat(result.events().get(0)).containsOnlyKeys("eventData");
+        assertThat(result.events().get(0).get("eventData")).isEqualTo(body);
+    }
+
+    @Test
+    void templatedPayloadWithoutItsIdIsNotExpanded() {
+        String template = PayloadStore.template("{\"eventId\":\"e-1\"}", "e-1");
+
+        assertThatThrownBy(() -> PayloadStore.expand(template, null)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private EventQueryService service(long indexRetryMillis) {
+        when(mongoTemplate.indexOps(ExtractedEvent.class)).thenReturn(indexOps);
+        return new EventQueryService(mongoTemplate, new ExtractionMetrics(new SimpleMeterRegistry(), 200),
+            mock(TenantRegistry.class), promotionService, 1000, indexRetryMillis);
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.gainsightapp.service;
+
+import org.bson.Document;
+import org.example.gainsightapp.model.ExtractionCheckpoint;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExtractionCheckpointStoreTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ExtractionCheckpointStore store = new ExtractionCheckpointStore(mongoTemplate);
+    private final TenantConfiguration tenant = new TenantConfiguration("t1", "Acme", "key", "https://api.aptrinsic.com");
+
+    @Test
+    void tenantsWithoutACheckpointResumeFromTheirLegacyScrollId() {
+        tenant.setLastProcessedScrollId("legacy");
+
+        assertThat(store.resumeScrollId(tenant, "CUSTOM")).isEqualTo("legacy");
+    }
+
+    @Test
+    void checkpointTakesPrecedenceOverTheLegacyScrollId() {
+        tenant.setLastProcessedScrollId("legacy");
+        ExtractionCheckpoint custom = new ExtractionCheckpoint();
+        custom.setScrollId("s7");
+        when(mongoTemplate.findById(ExtractionCheckpoint.idFor("t1", "CUSTOM"), ExtractionCheckpoint.class)).thenReturn(custom);
+        // A caught-up stream starts over rather than falling back
+        when(mongoTemplate.findById(ExtractionCheckpoint.idFor("t1", "STANDARD"), ExtractionCheckpoint.class))
+            .thenReturn(new ExtractionCheckpoint());
+
+        assertThat(store.resumeScrollId(tenant, "CUSTOM")).isEqualTo("s7");
+        assertThat(store.resumeScrollId(tenant, "STANDARD")).isNull();
+    }
+
+    @Test
+    void commitAdvancesTheCursorAndCounters() {
+        Document update = ExtractionCheckpointStore.commitUpdate("t1", "CUSTOM", "s2", false, 40).getUpdateObject();
+
+        assertThat(update.get("$set", Document.class)).containsEntry("scrollId", "s2").containsEntry("caughtUp", false);
+        assertThat(update.get("$inc", Document.class)).containsEntry("pagesCommitted", 1).containsEntry("eventsCommitted", 40);
+    }
+
+    @Test
+    void commitOfTheLastPageClearsTheCursor() {
+        Document update = ExtractionCheckpointStore.commitUpdate("t1", "CUSTOM", null, true, 0).getUpdateObject();
+
+        assertThat(update.get("$set", Document.class)).doesNotContainKey("scrollId").containsEntry("caughtUp", true);
+        assertThat(update.get("$unset", Document.class)).containsKey("scrollId");
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractionJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExtractionJobServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ExtractionJobService jobService =
+        new ExtractionJobService(mongoTemplate, new ExtractionMetrics(new SimpleMeterRegistry(), 200), 100, 1024);
+
+    @Test
+    void historyIsInsertedWhileTheJobIsStillActive() {
+        List<Integer> activeAtInsert = new ArrayList<>();
+        when(mongoTemplate.insert(any(ExtractionJob.class))).thenAnswer(invocation -> {
+            activeAtInsert.add(jobService.activeCount());
+            return invocation.getArgument(0);
+        });
+        ExtractionJobService.Job job = jobService.create("t1", "manual");
+
+        job.succeeded();
+        assertThat(activeAtInsert).containsExactly(1);
+        assertThat(jobService.activeCount()).isEqualTo(1);
+
+        job.close();
+        assertThat(jobService.activeCount()).isZero();
+    }
+
+    @Test
+    void outcomeIsRecordedOnce() {
+        ExtractionJobService.Job job = jobService.create("t1", "manual");
+
+        job.failed("boom");
+        job.succeeded();
+        job.close();
+        job.close();
+
+        verify(mongoTemplate, times(1)).insert(any(ExtractionJob.class));
+        assertThat(jobService.activeCount()).isZero();
+    }
+
+    @Test
+    void awaitIdleWaitsForCloseNotForTheOutcome() throws Exception {
+        ExtractionJobService.Job job = jobService.create("t1", "manual");
+        job.succeeded();
+
+        assertThat(jobService.awaitIdle(Duration.ofMillis(50))).isFalse();
+
+        CompletableFuture<Boolean> idle = CompletableFuture.supplyAsync(() -> jobService.awaitIdle(Duration.ofSeconds(5)));
+        job.close();
+        assertThat(idle.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
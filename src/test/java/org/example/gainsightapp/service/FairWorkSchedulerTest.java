@@ -0,0 +1,119 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FairWorkSchedulerTest {
+
+    private final FairWorkScheduler scheduler =
+        new FairWorkScheduler("test.scheduler", 1, new ExtractionMetrics(new SimpleMeterRegistry(), 200));
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void queuedKeysShareWorkersByWeight() throws InterruptedException {
+        CountDownLatch gate = blockWorker();
+        CountDownLatch done = new CountDownLatch(12);
+        for (int i = 0; i < 6; i++) {
+            scheduler.submit("heavy", 2, record("heavy", done));
+            scheduler.submit("light", 1, record("light", done));
+        }
+        gate.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        List<String> firstSix = executed.subList(0, 6);
+        assertThat(firstSix).filteredOn("heavy"::equals).hasSize(4);
+        assertThat(firstSix).filteredOn("light"::equals).hasSize(2);
+    }
+
+    @Test
+    void keySubmittingFromInsideItsUnitKeepsItsShare() throws InterruptedException {
+        CountDownLatch gate = blockWorker();
+        CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 10; i++) {
+            scheduler.submit("bulk", 1, record("bulk", done));
+        }
+        AtomicInteger pages = new AtomicInteger();
+        scheduler.submit("scroll", 1, new Runnable() {
+            @Override
+            public void run() {
+                record("scroll", done).run();
+                if (pages.incrementAndGet() < 10) {
+                    scheduler.submit("scroll", 1, this);
+                }
+            }
+        });
+        gate.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executed.subList(0, 10)).filteredOn("scroll"::equals).hasSizeGreaterThanOrEqualTo(4);
+    }
+
+    @Test
+    void delayedUnitRunsAfterItsDelay() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        long submitted = System.nanoTime();
+        scheduler.submitAfter("delayed", 1, done::countDown, 100);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted)).isGreaterThanOrEqualTo(100);
+    }
+
+    @Test
+    void failingUnitDoesNotStopTheWorker() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.submit("broken", 1, () -> {
+            throw new IllegalStateException("boom");
+        });
+        scheduler.submit("broken", 1, done::countDown);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void rejectsWorkAfterShutdown() {
+        scheduler.shutdown();
+
+        assertThatThrownBy(() -> scheduler.submit("late", 1, () -> { }))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    // Occupies the single worker until the returned latch is released, so later units queue up
+    private CountDownLatch blockWorker() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        scheduler.submit("gate", 1, () -> {
+            running.countDown();
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        return gate;
+    }
+
+    private Runnable record(String key, CountDownLatch done) {
+        return () -> {
+            executed.add(key);
+            done.countDown();
+        };
+    }
+}
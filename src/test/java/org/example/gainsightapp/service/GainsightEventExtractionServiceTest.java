@@ -0,0 +1,202 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers;
+import org.example.gainsightapp.integration.MultiTenantGainsightPXClient;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.ExtractionJob;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.repository.EntitySnapshotRepository;
+import org.example.gainsightapp.repository.ExtractedEventRepository;
+import org.example.gainsightapp.repository.TenantConfigurationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GainsightEventExtractionServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MultiTenantGainsightPXClient client = mock(MultiTenantGainsightPXClient.class);
+    private final ExtractedEventRepository eventRepository = mock(ExtractedEventRepository.class);
+    private final TenantRunCoordinator runCoordinator = mock(TenantRunCoordinator.class);
+    private final TenantRunCoordinator.Lease lease = mock(TenantRunCoordinator.Lease.class);
+    private final ExtractionCheckpointStore checkpointStore = mock(ExtractionCheckpointStore.class);
+    private final PayloadStore payloadStore = mock(PayloadStore.class);
+    private final MongoTemplate jobHistory = mock(MongoTemplate.class);
+    private final ExtractionMetrics metrics = new ExtractionMetrics(new SimpleMeterRegistry(), 200);
+    private final ExtractionJobService jobService = new ExtractionJobService(jobHistory, metrics, 100, 1024);
+    private final TenantConfiguration tenant = new TenantConfiguration("t1", "Acme", "key", "https://api.aptrinsic.com");
+    private GainsightEventExtractionService service;
+
+    @BeforeEach
+    void setUp() {
+        tenant.setExtractStandardEvents(false);
+        when(runCoordinator.tryAcquire(eq("t1"), anyString(), anyString())).thenReturn(Optional.of(lease));
+        GainsightCircuitBreakers circuitBreakers = new GainsightCircuitBreakers(3, 10, 60, 3600, metrics);
+        service = new GainsightEventExtractionService(client, mock(TenantConfigurationRepository.class),
+            mock(TenantRegistry.class), eventRepository, new ExtractedEventMapper(objectMapper), metrics, circuitBreakers,
+            new EventEnricher(mock(EntitySnapshotRepository.class), objectMapper, metrics, false, "", "", 1, 1),
+            payloadStore,
+            new PayloadCodec(null, metrics, false, "inline", 1, 1, 1, 1),
+            new MemoryBudget(metrics, 256, 10, 4.0, 1024, 1000),
+            runCoordinator, jobService, checkpointStore, 1, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void pageIsCheckpointedOnlyAfterItsEventsAreStored() {
+        when(client.fetchEvents(eq(tenant), eq("CUSTOM"), isNull(), anyInt(), eq(0))).thenReturn(page("e1", "s1", true));
+        when(client.fetchEvents(eq(tenant), eq("CUSTOM"), eq("s1"), anyInt(), eq(1))).thenReturn(page("e2", null, false));
+
+        service.triggerExtraction(tenant);
+        assertThat(jobService.awaitIdle(Duration.ofSeconds(5))).isTrue();
+
+        InOrder inOrder = inOrder(eventRepository, checkpointStore);
+        inOrder.verify(eventRepository).saveAll(anyList());
+        inOrder.verify(checkpointStore).commit("t1", "CUSTOM", "s1", false, 1);
+        inOrder.verify(eventRepository).saveAll(anyList());
+        inOrder.verify(checkpointStore).commit("t1", "CUSTOM", null, true, 1);
+        assertThat(history().getStatus()).isEqualTo(ExtractionJob.Status.SUCCEEDED);
+    }
+
+    @Test
+    void failedWriteLeavesTheCheckpointWhereItWas() {
+        when(client.fetchEvents(eq(tenant), eq("CUSTOM"), isNull(), anyInt(), eq(0))).thenReturn(page("e1", "s1", true));
+        when(eventRepository.saveAll(anyList())).thenThrow(new IllegalStateException("write failed"));
+
+        service.triggerExtraction(tenant);
+        assertThat(jobService.awaitIdle(Duration.ofSeconds(5))).isTrue();
+
+        verify(checkpointStore, never()).commit(anyString(), anyString(), any(), any(Boolean.class), anyInt());
+        assertThat(history().getStatus()).isEqualTo(ExtractionJob.Status.FAILED);
+    }
+
+    @Test
+    void runResumesFromTheStoredCheckpoint() {
+        when(checkpointStore.resumeScrollId(tenant, "CUSTOM")).thenReturn("s5");
+        when(client.fetchEvents(eq(tenant), eq("CUSTOM"), eq("s5"), anyInt(), eq(0))).thenReturn(page("e6", null, false));
+
+        service.triggerExtraction(tenant);
+        assertThat(jobService.awaitIdle(Duration.ofSeconds(5))).isTrue();
+
+        verify(client, times(1)).fetchEvents(any(), anyString(), any(), anyInt(), anyInt());
+        verify(checkpointStore).commit("t1", "CUSTOM", null, true, 1);
+    }
+
+    @Test
+    void interruptedRunStopsAtThePageBoundary() {
+        // The shutdown arrives while the first page is in flight
+        when(client.fetchEvents(eq(tenant), eq("CUSTOM"), isNull(), anyInt(), eq(0))).thenAnswer(invocation -> {
+            jobService.interruptAll();
+            return page("e1", "s1", true);
+        });
+
+        service.triggerExtraction(tenant);
+        assertThat(jobService.awaitIdle(Duration.ofSeconds(5))).isTrue();
+
+        verify(eventRepository, times(1)).saveAll(anyList());
+        verify(checkpointStore).commit("t1", "CUSTOM", "s1", false, 1);
+        verify(client, times(1)).fetchEvents(any(), anyString(), any(), anyInt(), anyInt());
+        verify(lease, timeout(5000)).release();
+        assertThat(history().getStatus()).isEqualTo(ExtractionJob.Status.INTERRUPTED);
+    }
+
+    @Test
+    void eventsAfterAFailedInsertHandTheirPayloadReferencesBack() {
+        when(payloadStore.isEnabled()).thenReturn(true);
+        when(client.fetchEvents(eq(tenant), eq("CUSTOM"), isNull(), anyInt(), eq(0)))
+            .thenReturn(page(null, false, "e1", "e2", "e3"));
+        MongoBulkWriteException bulkError = new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+            List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)), null, new ServerAddress(), Set.of());
+        when(eventRepository.saveAll(anyList())).thenThrow(new DuplicateKeyException("duplicate key", bulkError));
+
+        service.triggerExtraction(tenant);
+        assertThat(jobService.awaitIdle(Duration.ofSeconds(5))).isTrue();
+
+        assertThat(released()).extracting(ExtractedEvent::getEventId).containsExactly("e2", "e3");
+        verify(checkpointStore, never()).commit(anyString(), anyString(), any(), any(Boolean.class), anyInt());
+    }
+
+    @Test
+    void eventsMissingAfterAFailedWriteHandTheirPayloadReferencesBack() {
+        when(payloadStore.isEnabled()).thenReturn(true);
+        when(client.fetchEvents(eq(tenant), eq("CUSTOM"), isNull(), anyInt(), eq(0)))
+            .thenReturn(page(null, false, "e1", "e2"));
+        // e1 reached the store before the connection dropped
+        when(eventRepository.existsByTenantIdAndEventId("t1", "e1")).thenReturn(false, true);
+        when(eventRepository.saveAll(anyList())).thenThrow(new IllegalStateException("connection reset"));
+
+        service.triggerExtraction(tenant);
+        assertThat(jobService.awaitIdle(Duration.ofSeconds(5))).isTrue();
+
+        assertThat(released()).extracting(ExtractedEvent::getEventId).containsExactly("e2");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ExtractedEvent> released() {
+        ArgumentCaptor<List<ExtractedEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(payloadStore).release(eq("t1"), events.capture());
+        return events.getValue();
+    }
+
+    private ExtractionJob history() {
+        ArgumentCaptor<ExtractionJob> job = ArgumentCaptor.forClass(ExtractionJob.class);
+        verify(jobHistory, timeout(5000)).insert(job.capture());
+        return job.getValue();
+    }
+
+    private MultiTenantGainsightPXClient.GainsightResponse page(String eventId, String scrollId, boolean hasMore) {
+        return page(scrollId, hasMore, eventId);
+    }
+
+    private MultiTenantGainsightPXClient.GainsightResponse page(String scrollId, boolean hasMore, String... eventIds) {
+        MultiTenantGainsightPXClient.GainsightResponse response = new MultiTenantGainsightPXClient.GainsightResponse();
+        response.setSuccess(true);
+        response.setStatusCode(200);
+        response.setScrollId(scrollId);
+        response.setHasMore(hasMore);
+        response.setResponseBytes(100);
+        ArrayNode events = objectMapper.createArrayNode();
+        for (String eventId : eventIds) {
+            events.add(objectMapper.createObjectNode().put("eventId", eventId).put("identifyId", "u1"));
+        }
+        response.setData(events);
+        return response;
+    }
+}
@@ -0,0 +1,119 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryBudgetTest {
+
+    // 1 MB budget, 1 KB per event estimated, expansion 4: 256 events fit
+    private static final long EVENT_BYTES = 4096;
+
+    @Test
+    void reservesAndReleasesTheEstimate() throws InterruptedException {
+        MemoryBudget budget = budget(60_000);
+
+        MemoryBudget.Reservation reservation = budget.reserve("t1", 100);
+        assertThat(reservation.getPageSize()).isEqualTo(100);
+        assertThat(budget.reservedBytes()).isEqualTo(100 * EVENT_BYTES);
+
+        reservation.close();
+        reservation.close();
+        assertThat(budget.reservedBytes()).isZero();
+    }
+
+    @Test
+    void shrinksThePageToWhatStillFits() throws InterruptedException {
+        MemoryBudget budget = budget(60_000);
+
+        budget.reserve("t1", 200);
+        MemoryBudget.Reservation second = budget.reserve("t2", 100);
+
+        assertThat(second.getPageSize()).isEqualTo(56);
+        assertThat(budget.reservedBytes()).isEqualTo(256 * EVENT_BYTES);
+    }
+
+    @Test
+    void waitsUntilAnotherPageReleases() throws Exception {
+        MemoryBudget budget = budget(60_000);
+        MemoryBudget.Reservation full = budget.reserve("t1", 256);
+
+        CompletableFuture<MemoryBudget.Reservation> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return budget.reserve("t2", 50);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (budget.waiting() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(budget.waiting()).isEqualTo(1);
+        assertThat(waiting).isNotDone();
+
+        full.close();
+        assertThat(waiting.get(5, TimeUnit.SECONDS).getPageSize()).isEqualTo(50);
+        assertThat(budget.waiting()).isZero();
+    }
+
+    @Test
+    void givesUpAfterMaxWait() throws InterruptedException {
+        MemoryBudget budget = budget(100);
+        budget.reserve("t1", 256);
+
+        assertThatThrownBy(() -> budget.reserve("t2", 50)).isInstanceOf(IllegalStateException.class);
+        assertThat(budget.waiting()).isZero();
+        assertThat(budget.reservedBytes()).isEqualTo(256 * EVENT_BYTES);
+    }
+
+    @Test
+    void measuredPagesCorrectTheReservationAndLaterEstimates() throws InterruptedException {
+        MemoryBudget budget = budget(60_000);
+
+        MemoryBudget.Reservation reservation = budget.reserve("t1", 10);
+        reservation.measured(20_480, 10);
+        assertThat(budget.reservedBytes()).isEqualTo(4 * 20_480);
+        reservation.close();
+
+        // 2 KB per event measured, so twice the estimate per event: 128 fit
+        assertThat(budget.reserve("t1", 200).getPageSize()).isEqualTo(128);
+    }
+
+    @Test
+    void letsOneMinimumPageThroughWhenNothingElseIsInFlight() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(new ExtractionMetrics(new SimpleMeterRegistry(), 200),
+            1, 10, 4.0, 1024 * 1024, 60_000);
+
+        MemoryBudget.Reservation reservation = budget.reserve("t1", 100);
+
+        assertThat(reservation.getPageSize()).isEqualTo(10);
+        assertThat(budget.reservedBytes()).isGreaterThan(1024 * 1024);
+    }
+
+    @Test
+    void asyncReservationsAreServedInOrder() throws InterruptedException {
+        MemoryBudget budget = budget(60_000);
+        MemoryBudget.Reservation full = budget.reserve("t1", 256);
+
+        CompletableFuture<MemoryBudget.Reservation> first = budget.reserveAsync("t2", 200).toFuture();
+        CompletableFuture<MemoryBudget.Reservation> second = budget.reserveAsync("t3", 200).toFuture();
+        assertThat(budget.waiting()).isEqualTo(2);
+
+        full.close();
+        assertThat(first).isCompleted();
+        assertThat(first.join().getPageSize()).isEqualTo(200);
+        // The remaining 56 events of budget go to the second waiter, shrunk
+        assertThat(second.join().getPageSize()).isEqualTo(56);
+    }
+
+    private static MemoryBudget budget(long maxWaitMs) {
+        return new MemoryBudget(new ExtractionMetrics(new SimpleMeterRegistry(), 200), 1, 10, 4.0, 1024, maxWaitMs);
+    }
+}
@@ -0,0 +1,141 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.PayloadDictionary;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PayloadCodecTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    @Test
+    void trainKeepsStringsSharedBySamplesWithinTheLimit() {
+        List<String> samples = samples(10);
+
+        String dictionary = new String(PayloadCodec.train(samples, 1024), StandardCharsets.UTF_8);
+
+        assertThat(dictionary).contains("\"eventType\":", "\"https://app.example.com/dashboard\"");
+        assertThat(dictionary).doesNotContain("\"event-3\"");
+        assertThat(PayloadCodec.train(samples, 20)).hasSizeLessThanOrEqualTo(20);
+    }
+
+    @Test
+    void compressAndDecompressRoundTrip() throws DataFormatException {
+        List<String> samples = samples(50);
+        byte[] dictionary = PayloadCodec.train(samples, PayloadCodec.MAX_DICTIONARY_BYTES);
+        byte[] raw = sample(99).getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(6, true);
+        try {
+            byte[] withDictionary = PayloadCodec.compress(deflater, dictionary, raw);
+            byte[] withoutDictionary = PayloadCodec.compress(deflater, new byte[0], raw);
+
+            assertThat(PayloadCodec.decompress(dictionary, withDictionary)).isEqualTo(raw);
+            assertThat(PayloadCodec.decompress(new byte[0], withoutDictionary)).isEqualTo(raw);
+            assertThat(withDictionary.length).isLessThan(withoutDictionary.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Test
+    void decompressWithoutTheDictionaryFails() {
+        byte[] dictionary = PayloadCodec.train(samples(50), PayloadCodec.MAX_DICTIONARY_BYTES);
+        Deflater deflater = new Deflater(6, true);
+        byte[] compressed;
+        try {
+            compressed = PayloadCodec.compress(deflater, dictionary, sample(99).getBytes(StandardCharsets.UTF_8));
+        } finally {
+            deflater.end();
+        }
+
+        assertThatThrownBy(() -> PayloadCodec.decompress(new byte[0], compressed))
+            .isInstanceOf(DataFormatException.class);
+    }
+
+    @Test
+    void encodedPagesDecodeBackToTheOriginalPayloads() {
+        when(mongoTemplate.insert(any(PayloadDictionary.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        PayloadCodec codec = new PayloadCodec(mongoTemplate, new ExtractionMetrics(new SimpleMeterRegistry(), 200),
+            true, "inline", 20, 4096, 168, 6);
+
+        List<ExtractedEvent> page = events(20);
+        codec.encode("t1", page);
+
+        verify(mongoTemplate).insert(any(PayloadDictionary.class));
+        for (int i = 0; i < page.size(); i++) {
+            ExtractedEvent event = page.get(i);
+            assertThat(event.getEventData()).isNull();
+            assertThat(event.getPayloadCodec()).isEqualTo(PayloadCodec.CODEC);
+            assertThat(event.getPayloadDictionaryVersion()).isEqualTo(1);
+
+            codec.decode(event);
+            assertThat(event.getEventData()).isEqualTo(sample(i));
+            assertThat(event.getEventDataCompressed()).isNull();
+            assertThat(event.getPayloadCodec()).isNull();
+        }
+    }
+
+    @Test
+    void pagesBeforeTheFirstDictionaryStayPlain() {
+        PayloadCodec codec = new PayloadCodec(mongoTemplate, new ExtractionMetrics(new SimpleMeterRegistry(), 200),
+            true, "inline", 100, 4096, 168, 6);
+
+        List<ExtractedEvent> page = events(5);
+        codec.encode("t1", page);
+
+        assertThat(page).allSatisfy(event -> {
+            assertThat(event.getEventData()).isNotNull();
+            assertThat(event.getPayloadCodec()).isNull();
+        });
+    }
+
+    @Test
+    void contentAddressedStorageIsRejected() {
+        assertThatThrownBy(() -> new PayloadCodec(mongoTemplate, new ExtractionMetrics(new SimpleMeterRegistry(), 200),
+            true, "content-addressed", 100, 4096, 168, 6))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("gainsight.payload.storage=content-addressed");
+    }
+
+    private static List<ExtractedEvent> events(int count) {
+        List<ExtractedEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ExtractedEvent event = new ExtractedEvent();
+            event.setTenantId("t1");
+            event.setEventId("event-" + i);
+            event.setEventData(sample(i));
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static List<String> samples(int count) {
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            samples.add(sample(i));
+        }
+        return samples;
+    }
+
+    private static String sample(int i) {
+        return "{\"eventId\":\"event-" + i + "\",\"eventType\":\"PAGE_VIEW\",\"identifyId\":\"user-" + (i % 7)
+            + "\",\"url\":\"https://app.example.com/dashboard\",\"userAgent\":\"Mozilla/5.0 (Windows NT 10.0; Win64; x64)\""
+            + ",\"date\":" + (1700000000000L + i * 1000L) + "}";
+    }
+}
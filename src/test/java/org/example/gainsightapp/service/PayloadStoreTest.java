@@ -0,0 +1,106 @@
+package org.example.gainsightapp.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.EventPayload;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertEvent;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PayloadStoreTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+
+    @Test
+    void templateCutsOutTheQuotedIdAndExpandPutsItBack() {
+        String body = "{\"eventId\":\"e-1\",\"eventType\":\"PAGE_VIEW\",\"ref\":\"e-1\"}";
+
+        String template = PayloadStore.template(body, "e-1");
+
+        assertThat(template).isEqualTo("{\"eventId\":" + PayloadStore.ID_PLACEHOLDER
+            + ",\"eventType\":\"PAGE_VIEW\",\"ref\":\"e-1\"}");
+        assertThat(PayloadStore.expand(template, "e-1")).isEqualTo(body);
+    }
+
+    @Test
+    void bodiesThatDifferOnlyByIdShareATemplate() {
+        assertThat(PayloadStore.template("{\"eventId\":\"e-1\",\"url\":\"/home\"}", "e-1"))
+            .isEqualTo(PayloadStore.template("{\"eventId\":\"e-2\",\"url\":\"/home\"}", "e-2"));
+    }
+
+    @Test
+    void bodiesThatCannotBeTemplatedAreKeptAsTheyAre() {
+        String body = "{\"eventId\":\"e-1\"}";
+
+        assertThat(PayloadStore.template(body, null)).isEqualTo(body);
+        assertThat(PayloadStore.template(body, "e-2")).isEqualTo(body);
+        assertThat(PayloadStore.template("{\"eventId\":\"e\\\"1\"}", "e\"1")).isEqualTo("{\"eventId\":\"e\\\"1\"}");
+        String withPlaceholder = "{\"eventId\":\"e-1\",\"raw\":\"" + PayloadStore.ID_PLACEHOLDER + "\"}";
+        assertThat(PayloadStore.template(withPlaceholder, "e-1")).isEqualTo(withPlaceholder);
+        assertThat(PayloadStore.expand(body, "e-1")).isEqualTo(body);
+    }
+
+    @Test
+    void storedPageIsReadBackWithItsOwnIds() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EventPayload.class)).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0,
+            List.of(new BulkWriteUpsert(0, new BsonString("t1:hash"))), List.of()));
+        PayloadStore store = store();
+
+        List<ExtractedEvent> page = List.of(event("e-1"), event("e-2"));
+        store.store("t1", page);
+
+        // One payload for both events, referenced twice
+        verify(bulk, times(1)).upsert(any(Query.class), any(Update.class));
+        assertThat(page.get(0).getPayloadHash()).isNotNull().isEqualTo(page.get(1).getPayloadHash());
+        assertThat(page).allSatisfy(event -> assertThat(event.getEventData()).isNull());
+
+        for (ExtractedEvent stored : page) {
+            ExtractedEvent read = new ExtractedEvent();
+            read.setTenantId("t1");
+            read.setEventId(stored.getEventId());
+            read.setPayloadHash(stored.getPayloadHash());
+            store.onAfterConvert(new AfterConvertEvent<>(new Document(), read, "extracted_events"));
+            assertThat(read.getEventData()).isEqualTo(body(stored.getEventId()));
+        }
+        // Served from the cache filled by the store
+        verify(mongoTemplate, never()).findById(any(), eq(EventPayload.class));
+    }
+
+    private PayloadStore store() {
+        return new PayloadStore(mongoTemplate, new ExtractionMetrics(new SimpleMeterRegistry(), 200),
+            "content-addressed", 100);
+    }
+
+    private static ExtractedEvent event(String eventId) {
+        ExtractedEvent event = new ExtractedEvent();
+        event.setTenantId("t1");
+        event.setEventId(eventId);
+        event.setEventData(body(eventId));
+        return event;
+    }
+
+    private static String body(String eventId) {
+        return "{\"eventId\":\"" + eventId + "\",\"eventType\":\"HEARTBEAT\",\"url\":\"/home\"}";
+    }
+}
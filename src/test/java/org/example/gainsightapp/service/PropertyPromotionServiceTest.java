@@ -0,0 +1,173 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.ExtractedEvent;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.repository.TenantConfigurationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PropertyPromotionServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final TenantConfigurationRepository repository = mock(TenantConfigurationRepository.class);
+    private final PropertyPromotionService service = new PropertyPromotionService(mongoTemplate, repository,
+        mock(TenantRegistry.class), objectMapper, new ExtractionMetrics(new SimpleMeterRegistry(), 200), 20, 100, 2);
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void parseReadsPathAndType() {
+        PropertyPromotionService.PromotedProperty plan = PropertyPromotionService.PromotedProperty.parse("globalContext.plan:number");
+
+        assertThat(plan.name()).isEqualTo("globalContext_plan");
+        assertThat(plan.path()).isEqualTo("globalContext.plan");
+        assertThat(plan.type()).isEqualTo(PropertyPromotionService.Type.NUMBER);
+        assertThat(plan.field()).isEqualTo("promoted.globalContext_plan");
+        assertThat(plan.indexName()).isEqualTo("idx_promoted_globalContext_plan");
+        assertThat(PropertyPromotionService.PromotedProperty.parse("url").type()).isEqualTo(PropertyPromotionService.Type.STRING);
+        assertThat(PropertyPromotionService.PromotedProperty.parse(" trial : Boolean ").type())
+            .isEqualTo(PropertyPromotionService.Type.BOOLEAN);
+    }
+
+    @Test
+    void parseRejectsInvalidPathsAndTypes() {
+        assertThatThrownBy(() -> PropertyPromotionService.PromotedProperty.parse("a..b"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Invalid property path");
+        assertThatThrownBy(() -> PropertyPromotionService.PromotedProperty.parse("$where"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PropertyPromotionService.PromotedProperty.parse("plan:date"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Invalid property type");
+    }
+
+    @Test
+    void valueOfReadsTypedValuesAndSkipsWhatDoesNotFit() throws Exception {
+        JsonNode event = objectMapper.readTree("""
+            {"url": "/home", "seats": 12, "price": 9.5, "count": "7", "trial": "true", "active": false,
+             "globalContext": {"plan": "enterprise"}, "tags": ["a"], "empty": null}
+            """);
+
+        assertThat(value("url", event)).isEqualTo("/home");
+        assertThat(value("globalContext.plan", event)).isEqualTo("enterprise");
+        assertThat(value("seats:number", event)).isEqualTo(12L);
+        assertThat(value("price:number", event)).isEqualTo(9.5);
+        assertThat(value("count:number", event)).isEqualTo(7L);
+        assertThat(value("url:number", event)).isNull();
+        assertThat(value("trial:boolean", event)).isEqualTo(Boolean.TRUE);
+        assertThat(value("active:boolean", event)).isEqualTo(Boolean.FALSE);
+        assertThat(value("seats:string", event)).isEqualTo("12");
+        assertThat(value("tags", event)).isNull();
+        assertThat(value("empty", event)).isNull();
+        assertThat(value("missing", event)).isNull();
+    }
+
+    @Test
+    void extractCollectsOnlyPresentValues() throws Exception {
+        List<PropertyPromotionService.PromotedProperty> properties = List.of(
+            PropertyPromotionService.PromotedProperty.parse("url"),
+            PropertyPromotionService.PromotedProperty.parse("seats:number"));
+
+        assertThat(PropertyPromotionService.extract(properties, objectMapper.readTree("{\"url\":\"/home\"}")))
+            .isEqualTo(Map.of("url", "/home"));
+        assertThat(PropertyPromotionService.extract(properties, objectMapper.readTree("{}"))).isNull();
+    }
+
+    @Test
+    void parseValueChecksTheType() {
+        PropertyPromotionService.PromotedProperty seats = PropertyPromotionService.PromotedProperty.parse("seats:number");
+
+        assertThat(seats.parseValue("3")).isEqualTo(3L);
+        assertThatThrownBy(() -> seats.parseValue("three")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PropertyPromotionService.PromotedProperty.parse("trial:boolean").parseValue("yes"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void droppedPropertiesAreUnsetAndTheRestBackfilledOverTheTenantIdIndex() throws InterruptedException {
+        tenant("url", "plan");
+        when(mongoTemplate.indexOps(ExtractedEvent.class)).thenReturn(mock(IndexOperations.class));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(ExtractedEvent.class)))
+            .thenReturn(UpdateResult.acknowledged(3, 3L, null));
+        when(mongoTemplate.find(any(Query.class), eq(ExtractedEvent.class))).thenReturn(List.of());
+
+        service.configure("t1", List.of("url"));
+        awaitBackfill();
+
+        ArgumentCaptor<Query> unset = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(unset.capture(), update.capture(), eq(ExtractedEvent.class));
+        assertThat(unset.getValue().getQueryObject()).containsKey("promoted.plan");
+        assertThat(update.getValue().getUpdateObject().get("$unset", Document.class)).containsKey("promoted.plan");
+
+        ArgumentCaptor<Query> batch = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(batch.capture(), eq(ExtractedEvent.class));
+        assertThat(batch.getValue().getHint()).isEqualTo(ExtractedEvent.IDX_TENANT_DOC_ID);
+        assertThat(service.backfillStatus("t1").orElseThrow().state()).isEqualTo("SUCCEEDED");
+        assertThat(service.backfillStatus("t1").orElseThrow().updated()).isEqualTo(3);
+    }
+
+    @Test
+    void removingEveryPropertyStillUnsetsTheirFields() throws InterruptedException {
+        tenant("plan");
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(ExtractedEvent.class)))
+            .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        assertThat(service.configure("t1", List.of())).isEmpty();
+        awaitBackfill();
+
+        verify(mongoTemplate).updateMulti(any(Query.class), any(Update.class), eq(ExtractedEvent.class));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(ExtractedEvent.class));
+        assertThat(service.backfillStatus("t1").orElseThrow().state()).isEqualTo("SUCCEEDED");
+        // Configured, fields unset, backfill finished
+        assertThat(service.version("t1")).isEqualTo(3);
+        assertThat(service.version("t2")).isZero();
+    }
+
+    private void tenant(String... promoted) {
+        TenantConfiguration tenant = new TenantConfiguration("t1", "Acme", "key", "https://api.aptrinsic.com");
+        tenant.setPromotedProperties(new ArrayList<>(List.of(promoted)));
+        when(repository.findByTenantId("t1")).thenReturn(Optional.of(tenant));
+        when(repository.save(any(TenantConfiguration.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private void awaitBackfill() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.backfillStatus("t1").map(status -> status.finishedAt() == null).orElse(true)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static Object value(String spec, JsonNode event) {
+        return PropertyPromotionService.PromotedProperty.parse(spec).valueOf(event);
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.gainsightapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers;
+import org.example.gainsightapp.integration.MultiTenantGainsightPXClient;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.EntitySnapshot;
+import org.example.gainsightapp.model.SnapshotSyncState;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.repository.SnapshotSyncStateRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SnapshotSyncServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MultiTenantGainsightPXClient client = mock(MultiTenantGainsightPXClient.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final SnapshotSyncStateRepository stateRepository = mock(SnapshotSyncStateRepository.class);
+    private final Map<String, SnapshotSyncState> states = new HashMap<>();
+    private final TenantConfiguration tenant = new TenantConfiguration("t1", "Acme", "key", "https://api.aptrinsic.com");
+    private SnapshotSyncService service;
+
+    @BeforeEach
+    void setUp() {
+        ExtractionMetrics metrics = new ExtractionMetrics(new SimpleMeterRegistry(), 200);
+        service = new SnapshotSyncService(client, mock(TenantRegistry.class),
+            new GainsightCircuitBreakers(3, 10, 60, 3600, metrics), mongoTemplate, stateRepository, metrics,
+            true, 100, 2, 1);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EntitySnapshot.class)).thenReturn(bulk);
+        when(stateRepository.findById(any())).thenAnswer(invocation -> Optional.ofNullable(states.get(invocation.<String>getArgument(0))));
+        when(stateRepository.save(any(SnapshotSyncState.class))).thenAnswer(invocation -> {
+            SnapshotSyncState state = invocation.getArgument(0);
+            states.put(state.getId(), state);
+            return state;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void onlyNewAndChangedRecordsAreWritten() throws Exception {
+        JsonNode unchanged = objectMapper.readTree("{\"identifyId\":\"u1\",\"email\":\"a@example.com\"}");
+        JsonNode changed = objectMapper.readTree("{\"identifyId\":\"u2\",\"email\":\"new@example.com\",\"accountId\":\"a1\"}");
+        JsonNode created = objectMapper.readTree("{\"aptrinsicId\":\"u3\"}");
+        JsonNode withoutId = objectMapper.readTree("{\"email\":\"nobody@example.com\"}");
+        when(mongoTemplate.find(any(Query.class), eq(EntitySnapshot.class)))
+            .thenReturn(List.of(snapshot("u1", sha256(unchanged.toString())), snapshot("u2", "stale")));
+
+        SnapshotSyncService.SyncCounts counts = service.applyPage("t1", EntitySnapshot.Kind.USER,
+            objectMapper.createArrayNode().add(unchanged).add(changed).add(created).add(withoutId));
+
+        assertThat(counts).isEqualTo(new SnapshotSyncService.SyncCounts(1, 1, 1));
+        ArgumentCaptor<Query> upserted = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(2)).upsert(upserted.capture(), updates.capture());
+        assertThat(upserted.getAllValues()).extracting(query -> query.getQueryObject().get("entityId"))
+            .containsExactly("u2", "u3");
+        Document set = updates.getAllValues().get(0).getUpdateObject().get("$set", Document.class);
+        assertThat(set.get("contentHash")).isEqualTo(sha256(changed.toString()));
+        assertThat(set.get("accountId")).isEqualTo("a1");
+        verify(bulk).execute();
+    }
+
+    @Test
+    void unchangedPageWritesNothing() throws Exception {
+        JsonNode account = objectMapper.readTree("{\"id\":\"a1\",\"name\":\"Acme\"}");
+        when(mongoTemplate.find(any(Query.class), eq(EntitySnapshot.class)))
+            .thenReturn(List.of(snapshot("a1", sha256(account.toString()))));
+
+        SnapshotSyncService.SyncCounts counts = service.applyPage("t1", EntitySnapshot.Kind.ACCOUNT,
+            objectMapper.createArrayNode().add(account));
+
+        assertThat(counts).isEqualTo(new SnapshotSyncService.SyncCounts(0, 0, 1));
+        verify(bulk, never()).execute();
+    }
+
+    @Test
+    void passLongerThanThePageLimitKeepsItsCursorForTheNextRun() throws Exception {
+        when(mongoTemplate.find(any(Query.class), eq(EntitySnapshot.class))).thenReturn(List.of());
+        when(client.fetchUsers(eq(tenant), isNull(), anyInt(), anyInt())).thenReturn(page("u1", "s1", true));
+        when(client.fetchUsers(eq(tenant), eq("s1"), anyInt(), anyInt())).thenReturn(page("u2", "s2", true));
+        when(client.fetchUsers(eq(tenant), eq("s2"), anyInt(), anyInt())).thenReturn(page("u3", "s3", false));
+        when(client.fetchAccounts(eq(tenant), isNull(), anyInt(), anyInt())).thenReturn(page("a1", null, false));
+
+        service.syncTenant(tenant);
+
+        SnapshotSyncState users = states.get(SnapshotSyncState.idFor("t1", EntitySnapshot.Kind.USER));
+        assertThat(users.getScrollId()).isEqualTo("s2");
+        assertThat(users.getTruncated()).isTrue();
+        assertThat(users.getRunPages()).isEqualTo(2);
+        assertThat(users.getLastCompletedAt()).isNull();
+
+        service.syncTenant(tenant);
+
+        verify(client).fetchUsers(eq(tenant), eq("s2"), anyInt(), eq(2));
+        assertThat(users.getScrollId()).isNull();
+        assertThat(users.getTruncated()).isFalse();
+        assertThat(users.getLastCompletedAt()).isNotNull();
+        assertThat(users.getLastCreated()).isEqualTo(3);
+    }
+
+    private MultiTenantGainsightPXClient.GainsightResponse page(String id, String scrollId, boolean hasMore) {
+        MultiTenantGainsightPXClient.GainsightResponse response = new MultiTenantGainsightPXClient.GainsightResponse();
+        response.setSuccess(true);
+        response.setStatusCode(200);
+        response.setScrollId(scrollId);
+        response.setHasMore(hasMore);
+        response.setData(objectMapper.createArrayNode().add(objectMapper.createObjectNode().put("id", id).put("identifyId", id)));
+        return response;
+    }
+
+    private static EntitySnapshot snapshot(String entityId, String contentHash) {
+        EntitySnapshot snapshot = new EntitySnapshot();
+        snapshot.setEntityId(entityId);
+        snapshot.setContentHash(contentHash);
+        return snapshot;
+    }
+
+    private static String sha256(String json) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.gainsightapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.gainsightapp.integration.GainsightCircuitBreakers;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.TenantConfiguration;
+import org.example.gainsightapp.repository.TenantConfigurationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TenantRegistryTest {
+
+    private final TenantConfigurationRepository repository = mock(TenantConfigurationRepository.class);
+    private final GainsightCircuitBreakers circuitBreakers = mock(GainsightCircuitBreakers.class);
+    private TenantRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        TenantConfiguration stored = new TenantConfiguration("t1", "Acme", "key", "https://api.aptrinsic.com");
+        stored.setId("doc-1");
+        when(repository.findAll()).thenReturn(List.of(stored));
+        registry = new TenantRegistry(repository, null, circuitBreakers,
+            new ExtractionMetrics(new SimpleMeterRegistry(), 200));
+    }
+
+    @Test
+    void handsOutCopies() {
+        TenantConfiguration first = registry.getTenant("t1").orElseThrow();
+        first.setCompanyName("Changed");
+        first.getPromotedProperties().add("plan");
+
+        TenantConfiguration second = registry.getTenant("t1").orElseThrow();
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getCompanyName()).isEqualTo("Acme");
+        assertThat(second.getPromotedProperties()).isEmpty();
+        assertThat(registry.getActiveTenants().get(0)).isNotSameAs(second);
+    }
+
+    @Test
+    void putStoresACopy() {
+        TenantConfiguration edited = registry.getTenant("t1").orElseThrow();
+        edited.setCompanyName("Acme Corp");
+        registry.put(edited);
+        edited.setCompanyName("Not saved");
+
+        assertThat(registry.getTenant("t1").orElseThrow().getCompanyName()).isEqualTo("Acme Corp");
+    }
+
+    @Test
+    void updateAppliesRunBookkeepingToTheView() {
+        assertThat(registry.getTenantsReadyForExtraction(LocalDateTime.now())).hasSize(1);
+        LocalDateTime attemptedAt = LocalDateTime.now();
+        registry.update("t1", tenant -> tenant.setLastAttemptedExtraction(attemptedAt));
+
+        assertThat(registry.getTenant("t1").orElseThrow().getLastAttemptedExtraction()).isEqualTo(attemptedAt);
+        assertThat(registry.getTenantsReadyForExtraction(attemptedAt)).isEmpty();
+    }
+
+    @Test
+    void removeEvictsTheTenantsBreaker() {
+        registry.remove(registry.getTenant("t1").orElseThrow());
+
+        assertThat(registry.getAllTenants()).isEmpty();
+        verify(circuitBreakers).evictTenant("t1");
+    }
+}
@@ -0,0 +1,193 @@
+package org.example.gainsightapp.service;
+
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.example.gainsightapp.metrics.ExtractionMetrics;
+import org.example.gainsightapp.model.TenantRunLease;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TenantRunCoordinatorTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<String, TenantRunLease> leases = new HashMap<>();
+
+    @Test
+    void overlappingTriggersCoalesceIntoOneFollowUp() {
+        TenantRunCoordinator coordinator = coordinator(600);
+
+        Optional<TenantRunCoordinator.Lease> lease = coordinator.tryAcquire("t1", "events", "sweep");
+        assertThat(lease).isPresent();
+        assertThat(coordinator.tryAcquire("t1", "events", "manual")).isEmpty();
+        assertThat(coordinator.tryAcquire("t1", "events", "sweep")).isEmpty();
+        assertThat(leases.get("t1:events").getCoalescedTriggers()).isEqualTo(2);
+
+        assertThat(lease.get().release()).isTrue();
+
+        Optional<TenantRunCoordinator.Lease> followUp = coordinator.tryAcquire("t1", "events", "follow-up");
+        assertThat(followUp).isPresent();
+        assertThat(followUp.get().release()).isFalse();
+        assertThat(triggers("started")).isEqualTo(2);
+        assertThat(triggers("coalesced")).isEqualTo(2);
+    }
+
+    @Test
+    void streamsAndTenantsHaveSeparateLeases() {
+        TenantRunCoordinator coordinator = coordinator(600);
+
+        assertThat(coordinator.tryAcquire("t1", "events", "sweep")).isPresent();
+        assertThat(coordinator.tryAcquire("t1", "users", "sweep")).isPresent();
+        assertThat(coordinator.tryAcquire("t2", "events", "sweep")).isPresent();
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndTheOldHolderLosesIt() throws InterruptedException {
+        TenantRunCoordinator coordinator = coordinator(0);
+
+        TenantRunCoordinator.Lease crashed = coordinator.tryAcquire("t1", "events", "sweep").orElseThrow();
+        Thread.sleep(5);
+        TenantRunCoordinator.Lease takeover = coordinator.tryAcquire("t1", "events", "sweep").orElseThrow();
+
+        assertThat(triggers("takeover")).isEqualTo(1);
+        assertThatThrownBy(crashed::renew).isInstanceOf(IllegalStateException.class);
+        assertThat(crashed.release()).isFalse();
+        takeover.renew();
+        assertThat(takeover.release()).isFalse();
+    }
+
+    @Test
+    void leaseKnowsWhetherItsPreviousRunWasOnAnotherInstance() {
+        TenantRunCoordinator coordinator = coordinator(600);
+
+        TenantRunCoordinator.Lease first = coordinator.tryAcquire("t1", "events", "sweep").orElseThrow();
+        assertThat(first.previousRunElsewhere()).isFalse();
+        first.release();
+        TenantRunCoordinator.Lease again = coordinator.tryAcquire("t1", "events", "sweep").orElseThrow();
+        assertThat(again.previousRunElsewhere()).isFalse();
+        again.release();
+
+        leases.get("t1:events").setInstance("12345@other-host");
+        assertThat(coordinator.tryAcquire("t1", "events", "sweep").orElseThrow().previousRunElsewhere()).isTrue();
+    }
+
+    @Test
+    void renewIsSkippedUntilAThirdOfTheLeaseHasPassed() {
+        TenantRunCoordinator coordinator = coordinator(600);
+
+        coordinator.tryAcquire("t1", "events", "sweep").orElseThrow().renew();
+
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(TenantRunLease.class));
+    }
+
+    private TenantRunCoordinator coordinator(long leaseSeconds) {
+        // Acquire: upsert of a free or expired lease; a held one makes the upsert collide on _id
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(TenantRunLease.class))).thenAnswer(invocation -> {
+            String id = id(invocation.getArgument(0));
+            TenantRunLease current = leases.get(id);
+            if (current != null && current.getOwner() != null && !current.getExpiresAt().isBefore(LocalDateTime.now())) {
+                throw new DuplicateKeyException("E11000 duplicate key " + id);
+            }
+            TenantRunLease previous = current != null ? copy(current) : null;
+            TenantRunLease taken = current != null ? current : new TenantRunLease();
+            taken.setId(id);
+            apply(taken, invocation.getArgument(1));
+            leases.put(id, taken);
+            return previous;
+        });
+        // Release: only by the owner, returns the lease as it was
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(TenantRunLease.class)))
+            .thenAnswer(invocation -> {
+                Query query = invocation.getArgument(0);
+                TenantRunLease current = leases.get(id(query));
+                if (current == null || !query.getQueryObject().get("owner").equals(current.getOwner())) {
+                    return null;
+                }
+                TenantRunLease previous = copy(current);
+                apply(current, invocation.getArgument(1));
+                return previous;
+            });
+        // Renew (owner equals) or mark a follow-up (owner not null)
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(TenantRunLease.class)))
+            .thenAnswer(invocation -> {
+                Query query = invocation.getArgument(0);
+                TenantRunLease current = leases.get(id(query));
+                Object owner = query.getQueryObject().get("owner");
+                boolean matches = current != null && current.getOwner() != null
+                    && (owner instanceof Document || owner.equals(current.getOwner()));
+                if (matches) {
+                    apply(current, invocation.getArgument(1));
+                }
+                return UpdateResult.acknowledged(matches ? 1 : 0, matches ? 1L : 0L, null);
+            });
+        return new TenantRunCoordinator(mongoTemplate, new ExtractionMetrics(registry, 200), leaseSeconds);
+    }
+
+    private double triggers(String result) {
+        return registry.counter("gainsight.runs.triggers", "result", result).count();
+    }
+
+    private static String id(Query query) {
+        return (String) query.getQueryObject().get("_id");
+    }
+
+    private static void apply(TenantRunLease lease, Update update) {
+        Document changes = update.getUpdateObject();
+        Document set = changes.get("$set", new Document());
+        Document unset = changes.get("$unset", new Document());
+        Document inc = changes.get("$inc", new Document());
+        if (set.containsKey("owner")) {
+            lease.setOwner(set.getString("owner"));
+        }
+        if (set.containsKey("expiresAt")) {
+            lease.setExpiresAt((LocalDateTime) set.get("expiresAt"));
+        }
+        if (set.containsKey("instance")) {
+            lease.setInstance(set.getString("instance"));
+        }
+        if (set.containsKey("followUpRequested")) {
+            lease.setFollowUpRequested(set.getBoolean("followUpRequested"));
+        }
+        if (unset.containsKey("owner")) {
+            lease.setOwner(null);
+        }
+        if (unset.containsKey("expiresAt")) {
+            lease.setExpiresAt(null);
+        }
+        if (inc.containsKey("coalescedTriggers")) {
+            long previous = lease.getCoalescedTriggers() != null ? lease.getCoalescedTriggers() : 0;
+            lease.setCoalescedTriggers(previous + ((Number) inc.get("coalescedTriggers")).longValue());
+        }
+    }
+
+    private static TenantRunLease copy(TenantRunLease lease) {
+        TenantRunLease copy = new TenantRunLease();
+        copy.setId(lease.getId());
+        copy.setOwner(lease.getOwner());
+        copy.setInstance(lease.getInstance());
+        copy.setExpiresAt(lease.getExpiresAt());
+        copy.setFollowUpRequested(lease.getFollowUpRequested());
+        copy.setCoalescedTriggers(lease.getCoalescedTriggers());
+        return copy;
+    }
+}